@@ -21,6 +21,7 @@ import repast.simphony.engine.schedule.ISchedulableAction;
 import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.engine.schedule.ScheduleParameters;
 import repast.simphony.engine.schedule.ScheduledMethod;
+import repast.simphony.engine.schedule.ScheduledMethodCache;
 import repast.simphony.parameter.Parameters;
 
 /**
@@ -37,25 +38,17 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
     boolean shuffle = true;
     Set<Class<?>> excludes = new LinkedHashSet<Class<?>>();
 
-    public PickData(Method method, ScheduledMethod annotation) {
-      this.method = method;
-      this.annotation = annotation;
+    ScheduleParameters parameters;
+
+    public PickData(ScheduledMethodCache.Entry entry) {
+      this.method = entry.getMethod();
+      this.annotation = entry.getAnnotation();
+      this.parameters = entry.getParameters();
       this.shuffle = this.annotation.shuffle();
     }
 
     public ScheduleParameters getParameters() {
-      double duration = annotation.duration();
-      ScheduleParameters params;
-      if (annotation.start() == ScheduledMethod.END) {
-        params = ScheduleParameters.createAtEnd(annotation.priority());
-      } else if (annotation.interval() > 0) {
-        params = ScheduleParameters.createRepeating(annotation.start(), annotation.interval(),
-            annotation.priority(), duration);
-      } else {
-        params = ScheduleParameters.createOneTime(annotation.start(), annotation.priority(),
-            duration);
-      }
-      return params;
+      return parameters;
     }
   }
 
@@ -100,9 +93,7 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
     }
 
     for (Class<?> clazz : clazzes) {
-      Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
-      gatherInterfaces(clazz, interfaces);
-      for (Class<?> inter : interfaces) {
+      for (Class<?> inter : ScheduledMethodCache.getInterfaces(clazz)) {
         if (!processedClasses.contains(inter)) {
           processAnnotations(inter);
         }
@@ -110,46 +101,27 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
     }
   }
 
-  private void gatherInterfaces(Class<?> clazz, Set<Class<?>> interfaces) {
-    if (clazz.equals(Object.class))
-      return;
-    Class<?>[] inters = clazz.getInterfaces();
-    for (Class<?> inter : inters) {
-      interfaces.add(inter);
-      gatherInterfaces(inter, interfaces);
-    }
-
-    if (clazz.getSuperclass() != null)
-      gatherInterfaces(clazz.getSuperclass(), interfaces);
-  }
-
   public void processAnnotations(Class<?> clazz) {
     // if its a context, don't process from the class
     // process during run intialize
     if (!Context.class.isAssignableFrom(clazz) && !clazz.toString().contains("repast.simphony")) {
-      Method[] methods = clazz.getMethods();
-      for (Method method : methods) {
+      for (ScheduledMethodCache.Entry entry : ScheduledMethodCache.getScheduledMethods(clazz)) {
         // If the method has already been processed, skip it. This prevents
         // a subclass from causing duplicate entries of the superclass methods.
-        if (!processedMethods.contains(method))
-          processMethod(method);
+        if (!processedMethods.contains(entry.getMethod()))
+          processMethod(entry);
       }
       processedClasses.add(clazz);
     }
   }
 
-  private PickData processMethod(Method method) {
-    // we don't need to use ClassUtilities.deepAnnotationCheck here because
-    // class.getMethods() returns all the inherited public methods anyway.
-    ScheduledMethod schedule = method.getAnnotation(ScheduledMethod.class);
-    if (schedule != null) {
-      PickData data = new PickData(method, schedule);
-      pickData.add(data);
-      processedMethods.add(method);
-      return data;
-    }
-
-    return null;
+  private PickData processMethod(ScheduledMethodCache.Entry entry) {
+    // the cache uses class.getMethods() which returns all the inherited
+    // public methods, so we don't need ClassUtilities.deepAnnotationCheck here.
+    PickData data = new PickData(entry);
+    pickData.add(data);
+    processedMethods.add(entry.getMethod());
+    return data;
   }
 
   public void batchInitialize(RunState runState, Object contextId) {
@@ -160,13 +132,10 @@ public class ScheduledMethodControllerAction implements ControllerAction, Contex
     Class<? extends Context> clazz = context.getClass();
     if (!processedClasses.contains(clazz)) {
       boolean found = false;
-      Method[] methods = clazz.getMethods();
-      for (Method method : methods) {
-        PickData data = processMethod(method);
-        if (data != null) {
-          data.target = context;
-          found = true;
-        }
+      for (ScheduledMethodCache.Entry entry : ScheduledMethodCache.getScheduledMethods(clazz)) {
+        PickData data = processMethod(entry);
+        data.target = context;
+        found = true;
       }
       if (found) {
         context.addContextListener(this);
@@ -4,6 +4,7 @@
 package repast.simphony.engine.schedule;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -11,6 +12,7 @@ import java.util.List;
 
 import repast.simphony.random.RandomHelper;
 import repast.simphony.util.SimUtilities;
+import cern.jet.random.Uniform;
 
 /**
  * A list of IActions.
@@ -74,6 +76,71 @@ public class ActionList implements Iterable<ISchedulableAction> {
     list.addAll(other.list);
   }
 
+  /**
+   * Merges the elements of the other list into this one at random positions
+   * without marking this as dirty and needing to be sorted. The result is the
+   * same as adding each of the other elements in turn at an index drawn from
+   * the uniform between 0 and the current size (inclusive), given the same
+   * random numbers, but without shifting this list's elements for every
+   * insertion.
+   * 
+   * @param other
+   *          the list whose elements to merge into this one
+   * @param uniform
+   *          the uniform to draw the insertion indices from
+   */
+  public void mergeRandomly(ActionList other, Uniform uniform) {
+    int m = other.list.size();
+    if (m == 0)
+      return;
+    int size = list.size();
+    int total = size + m;
+    int[] indices = new int[m];
+    for (int i = 0; i < m; i++) {
+      indices[i] = uniform.nextIntFromTo(0, size);
+      size++;
+    }
+
+    // Each element ends up at its drawn index among the positions that
+    // are not taken by elements inserted after it, so we place them from
+    // last to first, using a Fenwick tree of the free positions to find
+    // the drawn index'th free position.
+    int[] tree = new int[total + 1];
+    for (int i = 1; i <= total; i++) {
+      tree[i]++;
+      int parent = i + (i & -i);
+      if (parent <= total)
+        tree[parent] += tree[i];
+    }
+
+    ISchedulableAction[] merged = new ISchedulableAction[total];
+    int highBit = Integer.highestOneBit(total);
+    for (int i = m - 1; i >= 0; i--) {
+      int pos = 0;
+      int remaining = indices[i] + 1;
+      for (int step = highBit; step > 0; step >>= 1) {
+        int next = pos + step;
+        if (next <= total && tree[next] < remaining) {
+          pos = next;
+          remaining -= tree[next];
+        }
+      }
+      merged[pos] = other.list.get(i);
+      for (int j = pos + 1; j <= total; j += j & -j) {
+        tree[j]--;
+      }
+    }
+
+    // this list's elements fill the remaining positions in their current order
+    int index = 0;
+    for (int i = 0; i < total; i++) {
+      if (merged[i] == null)
+        merged[i] = list.get(index++);
+    }
+    list.clear();
+    list.addAll(Arrays.asList(merged));
+  }
+
   /**
    * Removes the specified action.
    * 
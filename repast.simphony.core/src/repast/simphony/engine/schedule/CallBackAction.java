@@ -37,10 +37,25 @@ public class CallBackAction implements IAction {
   public CallBackAction(Object target, Method method) {
     args = new Object[method.getParameterTypes().length];
     this.target = target;
-    this.method = FastClass.create(target.getClass()).getMethod(method);
+    this.method = ScheduledMethodCache.getFastMethod(target.getClass(), method);
     methodName = this.method.getName();
   }
 
+  /**
+   * Creates a CallBackAction from the specified target and FastMethod. When executed, the
+   * CallBackAction will call the method on the target. The FastMethod must have been created
+   * for the target's class.
+   *
+   * @param target the object to call the method on
+   * @param method the method to call
+   */
+  public CallBackAction(Object target, FastMethod method) {
+    args = new Object[method.getParameterTypes().length];
+    this.target = target;
+    this.method = method;
+    methodName = method.getName();
+  }
+
   /**
    * Creates a CallBackAction from the specified target, method and parameters. When executed, the CallBackAction
    * will call the the method on the target passing the parameters.
@@ -52,7 +67,7 @@ public class CallBackAction implements IAction {
   public CallBackAction(Object target, Method method, Object... parameters) {
     args = new Object[parameters.length];
     this.target = target;
-    this.method = FastClass.create(target.getClass()).getMethod(method);
+    this.method = ScheduledMethodCache.getFastMethod(target.getClass(), method);
     System.arraycopy(parameters, 0, args, 0, parameters.length);
     methodName = this.method.getName();
   }
@@ -81,13 +96,13 @@ public class CallBackAction implements IAction {
 
   // initializes the method field
   private void initMethod(Object target, String methodName, Class[] paramTypes) {
-    FastClass fClass = FastClass.create(target.getClass());
+    FastClass fClass = ScheduledMethodCache.getFastClass(target.getClass());
     try {
       // try for the quick find
       method = fClass.getMethod(methodName, paramTypes);
     } catch (NoSuchMethodError er) {
       Method jMethod = ClassUtilities.findMethod(target.getClass(), methodName, paramTypes);
-      if (jMethod != null) method = FastClass.create(jMethod.getDeclaringClass()).getMethod(jMethod);
+      if (jMethod != null) method = ScheduledMethodCache.getFastMethod(jMethod.getDeclaringClass(), jMethod);
     }
 
     if (method == null) {
@@ -4,7 +4,6 @@ import repast.simphony.util.ClassUtilities;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -113,26 +112,7 @@ public class DefaultActionFactory implements IActionFactory {
   }
 
   private Map<String, ScheduleParameters> findCandidateMethodMatches(Class clazz) {
-    Method[] methods = clazz.getMethods();
-    // will contain the list of candidate method names
-    Map<String, ScheduleParameters> nameParamMap = new HashMap<String, ScheduleParameters>();
-    for (Method method : methods) {
-      ScheduledMethod scheduledMethod = ClassUtilities.deepAnnotationCheck(method, ScheduledMethod.class);
-      if (scheduledMethod != null) {
-        String methodName = method.getName();
-        ScheduleParameters params;
-        double duration = scheduledMethod.duration();
-        if (scheduledMethod.interval() > 0) {
-          params = ScheduleParameters.createRepeating(scheduledMethod.start(),
-                  scheduledMethod.interval(), scheduledMethod.priority(), duration);
-        } else {
-          params = ScheduleParameters.createOneTime(scheduledMethod.start(), scheduledMethod.priority(),
-                  duration);
-        }
-        nameParamMap.put(methodName, params);
-      }
-    }
-    return nameParamMap;
+    return ScheduledMethodCache.getCandidateMethods(clazz);
   }
 
   /**
@@ -146,27 +126,15 @@ public class DefaultActionFactory implements IActionFactory {
    * @see repast.simphony.engine.schedule.IActionParameterPair
    */
   public List<IActionParameterPair> createActions(Object obj) {
-    Class clazz = obj.getClass();
-    Method[] methods = clazz.getMethods();
     List<IActionParameterPair> actions = new ArrayList<IActionParameterPair>();
-    for (Method method : methods) {
-      ScheduledMethod scheduledMethod = method.getAnnotation(ScheduledMethod.class);
-      if (scheduledMethod != null && method.getParameterTypes().length == 0 && scheduledMethod.start() != 
+    // the annotated methods, their parameters and invokers are found once per class
+    for (ScheduledMethodCache.Entry entry : ScheduledMethodCache.getScheduledMethods(obj.getClass())) {
+      Method method = entry.getMethod();
+      if (method.getParameterCount() == 0 && entry.getAnnotation().start() != 
               ScheduledMethod.NO_PARAMETERS) 
       {
-        CallBackAction action = new CallBackAction(obj, method);
-        ScheduleParameters params;
-        double duration = scheduledMethod.duration();
-        if (scheduledMethod.start() == ScheduledMethod.END) {
-          params = ScheduleParameters.createAtEnd(scheduledMethod.priority());
-        } else if (scheduledMethod.interval() > 0) {
-          params = ScheduleParameters.createRepeating(scheduledMethod.start(),
-                  scheduledMethod.interval(), scheduledMethod.priority(), duration);
-        } else {
-          params = ScheduleParameters.createOneTime(scheduledMethod.start(), scheduledMethod.priority(),
-                  duration);
-        }
-        actions.add(new IActionParameterPair(action, params));
+        CallBackAction action = new CallBackAction(obj, entry.getFastMethod());
+        actions.add(new IActionParameterPair(action, entry.getParameters()));
       }
     }
     return actions;
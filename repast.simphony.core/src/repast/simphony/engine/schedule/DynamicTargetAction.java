@@ -38,19 +38,19 @@ public class DynamicTargetAction implements IAction {
    */
   public DynamicTargetAction(Method method) {
 	  targetClass = method.getDeclaringClass();
-	  this.method = FastClass.create(targetClass).getMethod(method);
+	  this.method = ScheduledMethodCache.getFastMethod(targetClass, method);
     methodName = this.method.getName();
   }
 
   // initializes the method field
   private void initMethod(String methodName) {
-    FastClass fClass = FastClass.create(targetClass);
+    FastClass fClass = ScheduledMethodCache.getFastClass(targetClass);
     try {
       // try for the quick find
       method = fClass.getMethod(methodName, EMPTY_CLASS_ARRAY);
     } catch (NoSuchMethodError er) {
       Method jMethod = ClassUtilities.findMethod(target.getClass(), methodName, EMPTY_CLASS_ARRAY);
-      if (jMethod != null) method = FastClass.create(jMethod.getDeclaringClass()).getMethod(jMethod);
+      if (jMethod != null) method = ScheduledMethodCache.getFastMethod(jMethod.getDeclaringClass(), jMethod);
     }
 
     if (method == null) {
@@ -6,7 +6,6 @@ import java.util.Iterator;
 import java.util.List;
 
 import repast.simphony.random.RandomHelper;
-import cern.jet.random.Uniform;
 
 /**
  * A collection of ISchedulableActions. This class assumes that the actions are
@@ -294,18 +293,8 @@ public class ScheduleGroup implements IAction {
     if (actions.size() > 0) {
       // sort the indexed actions
       actions.sort(iComp, true);
-      // merge the random actions randomly into actions
-      int size = actions.size();
-      Uniform defaultUniform = RandomHelper.getUniform();
-      for (ISchedulableAction action : randomActions) {
-        int index = defaultUniform.nextIntFromTo(0, size);
-        if (index == size) {
-          actions.addNoSort(action);
-        } else {
-          actions.addNoSort(index, action);
-        }
-        size++;
-      }
+      // merge the random actions randomly into actions in a single pass
+      actions.mergeRandomly(randomActions, RandomHelper.getUniform());
 
     } else {
       randomActions.shuffle();
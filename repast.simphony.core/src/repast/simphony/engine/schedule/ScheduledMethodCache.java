@@ -0,0 +1,260 @@
+package repast.simphony.engine.schedule;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
+import repast.simphony.util.ClassUtilities;
+
+/**
+ * Per class cache of the scheduling metadata used to create actions from
+ * ScheduledMethod annotated classes: the annotated methods, their parsed
+ * ScheduleParameters, and the FastClass and FastMethods used to invoke them.
+ * The metadata is found the first time a class is asked for and then shared by
+ * all the instances of that class, across runs in the same JVM. The cache is
+ * attached to the classes themselves and so does not keep them from being
+ * unloaded.
+ *
+ * @author Nick Collier
+ */
+public class ScheduledMethodCache {
+
+  /**
+   * A ScheduledMethod annotated method together with its parsed
+   * ScheduleParameters.
+   */
+  public static class Entry {
+
+    private Method method;
+    private ScheduledMethod annotation;
+    private ScheduleParameters parameters;
+    private ClassData data;
+
+    private Entry(ClassData data, Method method, ScheduledMethod annotation) {
+      this.data = data;
+      this.method = method;
+      this.annotation = annotation;
+      this.parameters = createParameters(annotation);
+    }
+
+    /**
+     * Gets the annotated method.
+     *
+     * @return the annotated method.
+     */
+    public Method getMethod() {
+      return method;
+    }
+
+    /**
+     * Gets the method's ScheduledMethod annotation.
+     *
+     * @return the method's ScheduledMethod annotation.
+     */
+    public ScheduledMethod getAnnotation() {
+      return annotation;
+    }
+
+    /**
+     * Gets the ScheduleParameters described by the annotation. If the
+     * annotation's start is NO_PARAMETERS, these are not meaningful.
+     *
+     * @return the ScheduleParameters described by the annotation.
+     */
+    public ScheduleParameters getParameters() {
+      return parameters;
+    }
+
+    /**
+     * Gets the FastMethod for invoking the method on instances of the class
+     * this entry was found in.
+     *
+     * @return the FastMethod for invoking the method.
+     */
+    public FastMethod getFastMethod() {
+      return data.getFastMethod(method);
+    }
+  }
+
+  private static class ClassData {
+
+    private Class<?> clazz;
+    private volatile FastClass fastClass;
+    private Map<Method, FastMethod> fastMethods = new ConcurrentHashMap<Method, FastMethod>();
+    private volatile List<Entry> scheduled;
+    private volatile Map<String, ScheduleParameters> candidates;
+    private volatile Set<Class<?>> interfaces;
+
+    private ClassData(Class<?> clazz) {
+      this.clazz = clazz;
+    }
+
+    FastClass getFastClass() {
+      // creating the same FastClass twice is harmless, so no locking
+      if (fastClass == null)
+        fastClass = FastClass.create(clazz);
+      return fastClass;
+    }
+
+    FastMethod getFastMethod(Method method) {
+      FastMethod fMethod = fastMethods.get(method);
+      if (fMethod == null) {
+        fMethod = getFastClass().getMethod(method);
+        fastMethods.put(method, fMethod);
+      }
+      return fMethod;
+    }
+
+    List<Entry> getScheduled() {
+      if (scheduled == null) {
+        List<Entry> list = new ArrayList<Entry>();
+        // getMethods() returns all the inherited public methods
+        for (Method method : clazz.getMethods()) {
+          ScheduledMethod annotation = method.getAnnotation(ScheduledMethod.class);
+          if (annotation != null)
+            list.add(new Entry(this, method, annotation));
+        }
+        scheduled = Collections.unmodifiableList(list);
+      }
+      return scheduled;
+    }
+
+    Map<String, ScheduleParameters> getCandidates() {
+      if (candidates == null) {
+        Map<String, ScheduleParameters> map = new HashMap<String, ScheduleParameters>();
+        for (Method method : clazz.getMethods()) {
+          ScheduledMethod annotation = ClassUtilities.deepAnnotationCheck(method,
+              ScheduledMethod.class);
+          if (annotation != null) {
+            double duration = annotation.duration();
+            ScheduleParameters params;
+            if (annotation.interval() > 0) {
+              params = ScheduleParameters.createRepeating(annotation.start(),
+                  annotation.interval(), annotation.priority(), duration);
+            } else {
+              params = ScheduleParameters.createOneTime(annotation.start(),
+                  annotation.priority(), duration);
+            }
+            map.put(method.getName(), params);
+          }
+        }
+        candidates = Collections.unmodifiableMap(map);
+      }
+      return candidates;
+    }
+
+    Set<Class<?>> getInterfaces() {
+      if (interfaces == null) {
+        Set<Class<?>> set = new LinkedHashSet<Class<?>>();
+        gatherInterfaces(clazz, set);
+        interfaces = Collections.unmodifiableSet(set);
+      }
+      return interfaces;
+    }
+
+    private static void gatherInterfaces(Class<?> clazz, Set<Class<?>> interfaces) {
+      if (clazz.equals(Object.class))
+        return;
+      for (Class<?> inter : clazz.getInterfaces()) {
+        interfaces.add(inter);
+        gatherInterfaces(inter, interfaces);
+      }
+
+      if (clazz.getSuperclass() != null)
+        gatherInterfaces(clazz.getSuperclass(), interfaces);
+    }
+  }
+
+  private static final ClassValue<ClassData> cache = new ClassValue<ClassData>() {
+    @Override
+    protected ClassData computeValue(Class<?> type) {
+      return new ClassData(type);
+    }
+  };
+
+  private ScheduledMethodCache() {
+  }
+
+  /**
+   * Creates the ScheduleParameters described by the specified annotation.
+   *
+   * @param annotation
+   * @return the ScheduleParameters described by the specified annotation.
+   */
+  public static ScheduleParameters createParameters(ScheduledMethod annotation) {
+    double duration = annotation.duration();
+    if (annotation.start() == ScheduledMethod.END) {
+      return ScheduleParameters.createAtEnd(annotation.priority());
+    } else if (annotation.interval() > 0) {
+      return ScheduleParameters.createRepeating(annotation.start(), annotation.interval(),
+          annotation.priority(), duration);
+    } else {
+      return ScheduleParameters.createOneTime(annotation.start(), annotation.priority(), duration);
+    }
+  }
+
+  /**
+   * Gets the public methods of the specified class, including inherited ones,
+   * that are directly annotated with ScheduledMethod. The methods are in the
+   * order returned by Class.getMethods().
+   *
+   * @param clazz
+   * @return an unmodifiable list of the ScheduledMethod annotated methods.
+   */
+  public static List<Entry> getScheduledMethods(Class<?> clazz) {
+    return cache.get(clazz).getScheduled();
+  }
+
+  /**
+   * Gets the ScheduleParameters of the public methods of the specified class
+   * that are annotated with ScheduledMethod either directly or on an
+   * interface they implement, keyed by method name.
+   *
+   * @param clazz
+   * @return an unmodifiable map of method name to ScheduleParameters.
+   */
+  public static Map<String, ScheduleParameters> getCandidateMethods(Class<?> clazz) {
+    return cache.get(clazz).getCandidates();
+  }
+
+  /**
+   * Gets all the interfaces implemented by the specified class, its
+   * superclasses and their super interfaces.
+   *
+   * @param clazz
+   * @return an unmodifiable set of the interfaces.
+   */
+  public static Set<Class<?>> getInterfaces(Class<?> clazz) {
+    return cache.get(clazz).getInterfaces();
+  }
+
+  /**
+   * Gets the shared FastClass for the specified class.
+   *
+   * @param clazz
+   * @return the shared FastClass for the specified class.
+   */
+  public static FastClass getFastClass(Class<?> clazz) {
+    return cache.get(clazz).getFastClass();
+  }
+
+  /**
+   * Gets the shared FastMethod for invoking the specified method on instances
+   * of the specified class.
+   *
+   * @param clazz
+   * @param method
+   * @return the shared FastMethod.
+   */
+  public static FastMethod getFastMethod(Class<?> clazz, Method method) {
+    return cache.get(clazz).getFastMethod(method);
+  }
+}
@@ -36,6 +36,25 @@ public class GridValueLayer implements IGridValueLayer {
 
   protected GridPointTranslator translator;
 
+  /**
+   * The width and height, in cells, of the tiles in which changes to the
+   * layer are tracked.
+   */
+  public static final int TILE_SIZE = 16;
+
+  private static final int TILE_SHIFT = 4;
+
+  // layers with more tiles than this are not tracked
+  private static final long MAX_TRACKED_TILES = 1 << 22;
+
+  // modification count of the most recent change to each tile,
+  // null until change tracking has been requested
+  private volatile long[] tileModCounts;
+
+  private int tileCountX, tileCountY;
+
+  private long modCount;
+
   /**
    * Creates a GridValueLayer with the specified name, density, and dimensions.
    * The default value of every cell in the grid will be 0. The default border
@@ -280,8 +299,83 @@ public class GridValueLayer implements IGridValueLayer {
    */
   public void set(double value, int... coordinate) {
     if (coordinate.length != dims.size()) throw new SpatialException("Invalid number coordinates");
-    int index = getIndex(getTransformedLocation(coordinate));
-    store.set(index, value);
+    int[] location = getTransformedLocation(coordinate);
+    store.set(getIndex(location), value);
+    long[] modCounts = tileModCounts;
+    if (modCounts != null) {
+      int tileY = location.length > 1 ? (location[1] + origin[1]) >> TILE_SHIFT : 0;
+      modCounts[((location[0] + origin[0]) >> TILE_SHIFT) * tileCountY + tileY] = ++modCount;
+    }
+  }
+
+  /**
+   * Gets the number of times a cell of this layer has been set since changes
+   * started being tracked. The first call to this starts tracking changes.
+   * Callers that cache some function of the cell values, such as displays,
+   * can remember the returned count and later repaint only the tiles whose
+   * {@link #getTileModificationCount(int, int) tile modification count} is
+   * greater than it. Tiles are {@link #TILE_SIZE} by TILE_SIZE blocks of cells
+   * in the first two dimensions, counted from the layer's origin.
+   * 
+   * @return the number of times a cell of this layer has been set since
+   *         changes started being tracked, or -1 if this layer is too large
+   *         for its changes to be tracked.
+   */
+  public long getModificationCount() {
+    if (tileModCounts == null) {
+      synchronized (this) {
+        if (tileModCounts == null) {
+          long countX = ((long) dims.getDimension(0) + TILE_SIZE - 1) / TILE_SIZE;
+          long countY = dims.size() > 1 ? ((long) dims.getDimension(1) + TILE_SIZE - 1)
+              / TILE_SIZE : 1;
+          if (countX * countY > MAX_TRACKED_TILES) return -1;
+          tileCountX = (int) countX;
+          tileCountY = (int) countY;
+          tileModCounts = new long[tileCountX * tileCountY];
+        }
+      }
+    }
+    return modCount;
+  }
+
+  /**
+   * Gets the number of tiles along the first dimension. This is only valid
+   * once changes are being tracked.
+   * 
+   * @return the number of tiles along the first dimension.
+   * @see #getModificationCount()
+   */
+  public int getTileCountX() {
+    return tileCountX;
+  }
+
+  /**
+   * Gets the number of tiles along the second dimension. This is only valid
+   * once changes are being tracked.
+   * 
+   * @return the number of tiles along the second dimension.
+   * @see #getModificationCount()
+   */
+  public int getTileCountY() {
+    return tileCountY;
+  }
+
+  /**
+   * Gets the modification count of the most recent change to a cell in the
+   * specified tile.
+   * 
+   * @param tileX
+   *          the index of the tile along the first dimension
+   * @param tileY
+   *          the index of the tile along the second dimension
+   * @return the modification count of the most recent change to a cell in the
+   *         tile, or 0 if no cell in it has been set since changes started
+   *         being tracked.
+   * @see #getModificationCount()
+   */
+  public long getTileModificationCount(int tileX, int tileY) {
+    long[] modCounts = tileModCounts;
+    return modCounts == null ? 0 : modCounts[tileX * tileCountY + tileY];
   }
 
   /**
@@ -14,6 +14,7 @@ import org.apache.log4j.BasicConfigurator;
 
 import repast.simphony.engine.environment.RunState;
 import repast.simphony.random.RandomHelper;
+import cern.jet.random.Uniform;
 
 /**
  * Unit tests for the schedule package.
@@ -806,6 +807,75 @@ public class ScheduleTest extends TestCase {
 
   }
 
+  public void testMergeRandomly() {
+    // merging must give the same order as inserting each random action
+    // at a drawn index, given the same random numbers
+    IAction noop = new IAction() {
+      public void execute() {
+      }
+    };
+    int[][] sizes = { { 0, 5 }, { 1, 1 }, { 5, 0 }, { 7, 3 }, { 3, 40 }, { 250, 600 } };
+    for (int[] size : sizes) {
+      ActionList actions = new ActionList();
+      List<ISchedulableAction> expected = new ArrayList<ISchedulableAction>();
+      for (int i = 0; i < size[0]; i++) {
+        ISchedulableAction action = new DefaultAction(ScheduleParameters.createOneTime(1, 0), noop, i);
+        actions.addNoSort(action);
+        expected.add(action);
+      }
+      ActionList randomActions = new ActionList();
+      List<ISchedulableAction> randoms = new ArrayList<ISchedulableAction>();
+      for (int i = 0; i < size[1]; i++) {
+        ISchedulableAction action = new DefaultAction(ScheduleParameters.createOneTime(1,
+            ScheduleParameters.RANDOM_PRIORITY), noop, size[0] + i);
+        randomActions.addNoSort(action);
+        randoms.add(action);
+      }
+
+      Uniform uniform = new Uniform(0, 1, 42 + size[1]);
+      for (ISchedulableAction action : randoms) {
+        expected.add(uniform.nextIntFromTo(0, expected.size()), action);
+      }
+
+      actions.mergeRandomly(randomActions, new Uniform(0, 1, 42 + size[1]));
+      assertEquals(expected.size(), actions.size());
+      int i = 0;
+      for (ISchedulableAction action : actions) {
+        assertSame(expected.get(i++), action);
+      }
+    }
+  }
+
+  public void testScheduledMethodCache() {
+    // the metadata for a class is found once and shared by all its instances
+    List<ScheduledMethodCache.Entry> entries = ScheduledMethodCache.getScheduledMethods(ScheduledObject.class);
+    assertSame(entries, ScheduledMethodCache.getScheduledMethods(ScheduledObject.class));
+    assertTrue(entries.size() > 0);
+
+    DefaultActionFactory factory = new DefaultActionFactory();
+    List<IActionParameterPair> pairs1 = factory.createActions(new ScheduledObject(schedule));
+    List<IActionParameterPair> pairs2 = factory.createActions(new ScheduledObject(schedule));
+    assertEquals(pairs1.size(), pairs2.size());
+    for (int i = 0; i < pairs1.size(); i++) {
+      CallBackAction action1 = (CallBackAction) pairs1.get(i).getAction();
+      CallBackAction action2 = (CallBackAction) pairs2.get(i).getAction();
+      assertNotSame(action1.getTarget(), action2.getTarget());
+      assertSame(action1.getFastMethod(), action2.getFastMethod());
+      assertSame(pairs1.get(i).getParams(), pairs2.get(i).getParams());
+    }
+
+    // objects scheduled from the cached metadata still run as before
+    ScheduledObject obj1 = new ScheduledObject(schedule);
+    ScheduledObject obj2 = new ScheduledObject(schedule);
+    schedule.schedule(obj1);
+    schedule.schedule(obj2);
+    schedule.execute();
+    assertEquals(3.0, obj1.results.get(0).tick);
+    assertEquals(MethodName.START, obj1.results.get(0).methodName);
+    assertEquals(3.0, obj2.results.get(0).tick);
+    assertEquals(MethodName.START, obj2.results.get(0).methodName);
+  }
+
   @SuppressWarnings({ "serial", "unchecked" })
   class DurationTestAction implements IAction {
 
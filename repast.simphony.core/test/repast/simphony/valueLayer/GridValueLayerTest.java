@@ -144,7 +144,43 @@ public class GridValueLayerTest extends TestCase {
 		assertEquals(grid.get(0,1), 0.0);
 	}
 	
+	public void testTileModifications(){
+		int[] dimensions = {40,20};
+		int[] origin = {3,4};
+		GridValueLayer grid = new GridValueLayer("Grid", 0, true, 
+				new WrapAroundBorders(), dimensions, origin);
+		
+		// not tracked yet
+		grid.set(1.0, 0, 0);
+		long count = grid.getModificationCount();
+		assertEquals(0, count);
+		assertEquals(3, grid.getTileCountX());
+		assertEquals(2, grid.getTileCountY());
+		
+		grid.set(1.0, -3, -4);
+		grid.set(2.0, 30, 12);
+		grid.set(3.0, -4, -4);
+		assertEquals(count + 3, grid.getModificationCount());
+		assertTrue(grid.getTileModificationCount(0, 0) > count);
+		assertTrue(grid.getTileModificationCount(2, 1) > count);
+		// wraps to 35, -4
+		assertTrue(grid.getTileModificationCount(2, 0) > count);
+		assertEquals(0, grid.getTileModificationCount(1, 0));
+		assertEquals(0, grid.getTileModificationCount(1, 1));
+		assertEquals(0, grid.getTileModificationCount(0, 1));
+		
+		count = grid.getModificationCount();
+		grid.set(4.0, 0, 12);
+		assertTrue(grid.getTileModificationCount(0, 1) > count);
+		assertFalse(grid.getTileModificationCount(0, 0) > count);
+	}
 	
+	public void testSparseNotTracked(){
+		GridValueLayer grid = new GridValueLayer("Grid", false, 500000, 500000);
+		assertEquals(-1, grid.getModificationCount());
+		grid.set(1.0, 10, 10);
+		assertEquals(1.0, grid.get(10, 10));
+	}
 
 	public static junit.framework.Test suite() {
 		return new TestSuite(GridValueLayerTest.class);
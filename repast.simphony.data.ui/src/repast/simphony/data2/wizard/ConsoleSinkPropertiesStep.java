@@ -44,7 +44,7 @@ public class ConsoleSinkPropertiesStep extends PluginWizardStep {
 	protected JPanel getContentPanel(){
   	enabledChk = new JCheckBox("Enabled (Turn Console Writing On / Off)");
   	delimiterFld = new JTextField();
-  	formatBox = new JComboBox(FormatType.values());
+  	formatBox = new JComboBox(FormatType.textValues());
   	outputBox = new JComboBox(new String[]{"Standard", "Error"});
   	
     FormLayout layout = new FormLayout(
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import simphony.util.messages.MessageCenter;
+
+/**
+ * The statistics shared by all the aggregate data sources created by a single
+ * AggregateDSCreator. The statistics are calculated at most once between
+ * resets, either by the first of the sources to be asked for its value, or in
+ * bulk together with the calculations of other creators by an
+ * {@link AggregateCalculator}.
+ *
+ * @author Nick Collier
+ */
+class AggregateCalculation {
+
+  private static MessageCenter msg = MessageCenter.getMessageCenter(AggregateCalculation.class);
+
+  private NonAggregateDataSource source;
+  private PrimitiveDataSource primitive;
+  private boolean bool, objectType, threadSafe;
+  StatsAccumulator stats = new StatsAccumulator();
+  boolean calculated = false;
+
+  public AggregateCalculation(NonAggregateDataSource source) {
+    this.source = source;
+    Class<?> type = source.getDataType();
+    bool = type.equals(Boolean.class) || type.equals(boolean.class);
+    objectType = type.equals(Object.class);
+    if (source instanceof PrimitiveDataSource && ((PrimitiveDataSource) source).getPrimitiveType() != null)
+      primitive = (PrimitiveDataSource) source;
+  }
+
+  /**
+   * Gets the source type of the data source whose data is aggregated.
+   */
+  public Class<?> getSourceType() {
+    return source.getSourceType();
+  }
+
+  /**
+   * Gets whether or not the data source can safely be called from multiple
+   * threads. This is false unless it has been set by
+   * {@link #setThreadSafe(boolean)}.
+   */
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+
+  /**
+   * Sets whether or not the data source can safely be called from multiple
+   * threads.
+   */
+  public void setThreadSafe(boolean threadSafe) {
+    this.threadSafe = threadSafe;
+  }
+
+  /**
+   * Gets whether or not the data source produces plain Objects.
+   */
+  public boolean isObjectType() {
+    return objectType;
+  }
+
+  /**
+   * Gets the value to aggregate from the specified object.
+   *
+   * @throws ClassCastException
+   *           if the data is non-numeric
+   */
+  public double value(Object obj) {
+    if (primitive != null) {
+      if (bool)
+        return primitive.getBoolean(obj) ? 1 : 0;
+      return primitive.getDouble(obj);
+    }
+    if (bool)
+      return (Boolean) source.get(obj) ? 1 : 0;
+    return ((Number) source.get(obj)).doubleValue();
+  }
+
+  /**
+   * Logs a non-numeric data error if the data source produces Objects,
+   * otherwise rethrows the exception.
+   */
+  public void handleError(String id, ClassCastException ex) {
+    if (!objectType)
+      throw ex;
+    msg.error("Aggregate Data Source Error: Data Source '" + id + "' is non-numeric", ex);
+  }
+
+  /**
+   * Calculates the statistics, if they haven't been calculated yet. Non-numeric
+   * Object data is logged and leaves the statistics empty until the next reset.
+   */
+  public void calculate(String id, Iterable<?> objs) {
+    if (calculated)
+      return;
+    try {
+      for (Object obj : objs) {
+        stats.addValue(value(obj));
+      }
+    } catch (ClassCastException ex) {
+      stats.clear();
+      handleError(id, ex);
+    }
+    calculated = true;
+  }
+
+  public void reset() {
+    stats.clear();
+    calculated = false;
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Calculates the statistics of several AggregateCalculations over the same
+ * source type in a single pass over the objects. Large collections are split
+ * across the common fork-join pool, each part accumulating into its own
+ * StatsAccumulators which are then merged. Collections below the parallel
+ * threshold, and calculations whose data sources have not been marked as
+ * thread safe, are calculated serially, although still in a single pass.
+ * Calculations of Object typed data, which may turn out to be non-numeric, are
+ * each calculated in their own pass so that an error in one of them doesn't
+ * affect the others.
+ *
+ * @author Nick Collier
+ */
+class AggregateCalculator {
+
+  static final int PARALLEL_THRESHOLD = 20000;
+  static final int CHUNK_SIZE = 4096;
+
+  @SuppressWarnings("serial")
+  private class AccumulateTask extends RecursiveTask<StatsAccumulator[]> {
+
+    int start, end;
+
+    public AccumulateTask(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected StatsAccumulator[] compute() {
+      if (end - start <= CHUNK_SIZE) {
+        StatsAccumulator[] accs = new StatsAccumulator[current.length];
+        for (int i = 0; i < accs.length; i++) {
+          accs[i] = new StatsAccumulator();
+        }
+
+        for (int j = start; j < end; j++) {
+          Object obj = objArray[j];
+          for (int i = 0; i < current.length; i++) {
+            double val = current[i].value(obj);
+            accs[i].accumulate(val);
+            if (values[i] != null)
+              values[i][j] = val;
+          }
+        }
+        return accs;
+      }
+
+      int mid = (start + end) >>> 1;
+      AccumulateTask left = new AccumulateTask(start, mid);
+      left.fork();
+      StatsAccumulator[] right = new AccumulateTask(mid, end).compute();
+      StatsAccumulator[] result = left.join();
+      // always merge left to right so that the result
+      // doesn't depend on the order in which the parts finish
+      for (int i = 0; i < result.length; i++) {
+        result[i].merge(right[i]);
+      }
+      return result;
+    }
+  }
+
+  private List<AggregateCalculation> calcs = new ArrayList<AggregateCalculation>();
+  private List<String> ids = new ArrayList<String>();
+
+  // per calculate call state read by the tasks
+  private Object[] objArray = new Object[0];
+  private AggregateCalculation[] current;
+  private double[][] values;
+
+  /**
+   * Adds the specified calculation to those calculated by this
+   * AggregateCalculator.
+   *
+   * @param id
+   *          the id used when reporting errors for the calculation
+   * @param calc
+   */
+  public void addCalculation(String id, AggregateCalculation calc) {
+    if (!calcs.contains(calc)) {
+      calcs.add(calc);
+      ids.add(id);
+    }
+  }
+
+  /**
+   * Calculates the statistics of all the calculations that have not yet been
+   * calculated.
+   *
+   * @param objs
+   *          the objects to calculate the statistics over
+   */
+  public void calculate(SizedIterable<?> objs) {
+    List<AggregateCalculation> toCalc = new ArrayList<AggregateCalculation>();
+    boolean threadSafe = true;
+    for (AggregateCalculation calc : calcs) {
+      if (!calc.calculated && !calc.isObjectType()) {
+        toCalc.add(calc);
+        threadSafe = threadSafe && calc.isThreadSafe();
+      }
+    }
+
+    if (!toCalc.isEmpty()) {
+      current = toCalc.toArray(new AggregateCalculation[toCalc.size()]);
+      boolean done = false;
+      try {
+        int size = objs.size();
+        if (threadSafe && size >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+          calculateParallel(objs, size);
+        } else {
+          calculateSerial(objs);
+        }
+        done = true;
+      } finally {
+        for (AggregateCalculation calc : current) {
+          if (done)
+            calc.calculated = true;
+          else
+            calc.stats.clear();
+        }
+        current = null;
+        values = null;
+      }
+    }
+
+    for (int i = 0; i < calcs.size(); i++) {
+      AggregateCalculation calc = calcs.get(i);
+      if (calc.isObjectType())
+        calc.calculate(ids.get(i), objs);
+    }
+  }
+
+  private void calculateSerial(SizedIterable<?> objs) {
+    for (Object obj : objs) {
+      for (AggregateCalculation calc : current) {
+        calc.stats.addValue(calc.value(obj));
+      }
+    }
+  }
+
+  private void calculateParallel(SizedIterable<?> objs, int size) {
+    if (objArray.length < size)
+      objArray = new Object[size];
+    int count = 0;
+    for (Object obj : objs) {
+      if (count == objArray.length)
+        objArray = Arrays.copyOf(objArray, count + (count >> 1) + 1);
+      objArray[count++] = obj;
+    }
+
+    values = new double[current.length][];
+    for (int i = 0; i < current.length; i++) {
+      if (current[i].stats.isKeepValues())
+        values[i] = current[i].stats.valuesArray(count);
+    }
+
+    try {
+      StatsAccumulator[] results = ForkJoinPool.commonPool().invoke(new AccumulateTask(0, count));
+      for (int i = 0; i < current.length; i++) {
+        current[i].stats.merge(results[i]);
+      }
+    } finally {
+      // don't hold on to the agents between records
+      Arrays.fill(objArray, 0, count, null);
+    }
+  }
+}
@@ -3,99 +3,37 @@
  */
 package repast.simphony.data2;
 
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
-
-import simphony.util.messages.MessageCenter;
-
 /**
  * Creates aggregate DataSources. The data sources produced by this creator are
  * share a common statistical object such that calling get on one of these is a
  * record for all of them, until reset is called. Consequently, these assume
- * that the collection passed will not change between calls to get.
+ * that the collection passed will not change between calls to get. An
+ * AggregateDataSet calculates the statistics of all the creators whose sources
+ * it contains in a single (possibly parallel) pass before getting the values.
  * 
  * @author Nick Collier
  */
 public class AggregateDSCreator {
 
-  static interface Calculator {
-    void calcStats(NonAggregateDataSource source, SummaryStatistics stats, Iterable<?> objs,
-        int size);
-  }
-
-  static class NumberCalculator implements Calculator {
-
-    public void calcStats(NonAggregateDataSource source, SummaryStatistics stats, Iterable<?> objs,
-        int size) {
-
-      if (stats.getN() == 0) {
-        for (Object obj : objs) {
-          stats.addValue(((Number) source.get(obj)).doubleValue());
-        }
-      }
-
-    }
-  }
-
-  static class ObjectCalculator implements Calculator {
-
-    private static MessageCenter msg = MessageCenter.getMessageCenter(ADS.class);
-
-    String id;
-    
-    public ObjectCalculator(String id) {
-      this.id = id;
-    }
-
-    public void calcStats(NonAggregateDataSource source, SummaryStatistics stats, Iterable<?> objs,
-        int size) {
-      try {
-        if (stats.getN() == 0) {
-          for (Object obj : objs) {
-            stats.addValue(((Number) source.get(obj)).doubleValue());
-          }
-        }
-      } catch (ClassCastException ex) {
-        msg.error("Aggregate Data Source Error: Data Source '" + id + "' is non-numeric", ex);
-      }
-    }
-  }
-
-  static class BooleanCalculator implements Calculator {
-    public void calcStats(NonAggregateDataSource source, SummaryStatistics stats, Iterable<?> objs,
-        int size) {
-      if (stats.getN() == 0) {
-        for (Object obj : objs) {
-          int val = (Boolean) source.get(obj) ? 1 : 0;
-          stats.addValue(val);
-        }
-      }
-    }
-  }
-
   static abstract class ADS implements AggregateDataSource {
 
-    private NonAggregateDataSource source;
-    private SummaryStatistics stats = new SummaryStatistics();
+    protected StatsAccumulator stats;
+    private AggregateCalculation calc;
     private String id;
-    private Calculator calculator;
 
     /**
-     * @param source
-     * @param stats
+     * @param calc
      * @param id
      */
-    public ADS(NonAggregateDataSource source, SummaryStatistics stats, String id) {
-      Class<?> type = source.getDataType();
-      if (type.equals(Boolean.class) || type.equals(boolean.class))
-        calculator = new BooleanCalculator();
-      else if (type.equals(Object.class))
-        calculator = new ObjectCalculator(id);
-      else
-        calculator = new NumberCalculator();
-      this.source = source;
-      this.stats = stats;
+    public ADS(AggregateCalculation calc, String id) {
+      this.calc = calc;
+      this.stats = calc.stats;
       this.id = id;
     }
+    
+    AggregateCalculation getCalculation() {
+      return calc;
+    }
 
     @Override
     public Class<Double> getDataType() {
@@ -108,13 +46,13 @@ public class AggregateDSCreator {
 
     @Override
     public Object get(Iterable<?> objs, int size) {
-      calculator.calcStats(source, stats, objs, size);
+      calc.calculate(id, objs);
       return doGet();
     }
 
     @Override
     public void reset() {
-      stats.clear();
+      calc.reset();
     }
 
     public abstract Double doGet();
@@ -126,12 +64,12 @@ public class AggregateDSCreator {
      */
     @Override
     public Class<?> getSourceType() {
-      return source.getSourceType();
+      return calc.getSourceType();
     }
   }
 
   private NonAggregateDataSource source;
-  private SummaryStatistics stats = new SummaryStatistics();
+  private AggregateCalculation calc;
 
   /**
    * Creates a builder that will create aggregate data sources using the
@@ -143,6 +81,29 @@ public class AggregateDSCreator {
    */
   public AggregateDSCreator(NonAggregateDataSource source) {
     this.source = source;
+    this.calc = new AggregateCalculation(source);
+  }
+
+  /**
+   * Sets whether or not the source for the non-aggregate data can safely be
+   * called from multiple threads. If so, an AggregateDataSet may calculate the
+   * statistics for large collections in parallel. The default is false.
+   *
+   * @param threadSafe
+   */
+  public void setThreadSafe(boolean threadSafe) {
+    calc.setThreadSafe(threadSafe);
+  }
+
+  /**
+   * Gets whether or not the source for the non-aggregate data can safely be
+   * called from multiple threads.
+   *
+   * @return whether or not the source for the non-aggregate data can safely be
+   *         called from multiple threads.
+   */
+  public boolean isThreadSafe() {
+    return calc.isThreadSafe();
   }
 
   /**
@@ -157,7 +118,7 @@ public class AggregateDSCreator {
    *         objects passed into it.
    */
   public AggregateDataSource createSumSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getSum();
@@ -177,7 +138,7 @@ public class AggregateDSCreator {
    *         of objects passed into it.
    */
   public AggregateDataSource createMeanSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getMean();
@@ -197,7 +158,7 @@ public class AggregateDSCreator {
    *         objects passed into it.
    */
   public AggregateDataSource createMinSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getMin();
@@ -217,7 +178,7 @@ public class AggregateDSCreator {
    *         objects passed into it.
    */
   public AggregateDataSource createMaxSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getMax();
@@ -237,7 +198,7 @@ public class AggregateDSCreator {
    *         of objects passed into it.
    */
   public AggregateDataSource createStdDevSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getStandardDeviation();
@@ -257,7 +218,7 @@ public class AggregateDSCreator {
    *         collection of objects passed into it.
    */
   public AggregateDataSource createSumLogsSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getSumOfLogs();
@@ -277,7 +238,7 @@ public class AggregateDSCreator {
    *         collection of objects passed into it.
    */
   public AggregateDataSource createSumSquaresSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getSumsq();
@@ -297,7 +258,7 @@ public class AggregateDSCreator {
    *         of objects passed into it.
    */
   public AggregateDataSource createVarianceSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getVariance();
@@ -317,7 +278,7 @@ public class AggregateDSCreator {
    *         collection of objects passed into it.
    */
   public AggregateDataSource createGeoMeanSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getGeometricMean();
@@ -337,7 +298,7 @@ public class AggregateDSCreator {
    *         collection of objects passed into it.
    */
   public AggregateDataSource createSecondMomentSource(String id) {
-    return new ADS(source, stats, id) {
+    return new ADS(calc, id) {
       @Override
       public Double doGet() {
         return stats.getSecondMoment();
@@ -345,6 +306,27 @@ public class AggregateDSCreator {
     };
   }
 
+  /**
+   * Creates an aggregate data source that will get the median of the
+   * collection of objects passed into it. The id should be unique across the
+   * DataSet that this source is added to.
+   * 
+   * @param id
+   *          the unique id of the data source.
+   * 
+   * @return an aggregate data source that will get the median the collection
+   *         of objects passed into it.
+   */
+  public AggregateDataSource createMedianSource(String id) {
+    calc.stats.setKeepValues(true);
+    return new ADS(calc, id) {
+      @Override
+      public Double doGet() {
+        return stats.getMedian();
+      }
+    };
+  }
+
   /**
    * Convenience method for creating a count data source that will return all
    * the objects of a particular type.
@@ -373,6 +355,8 @@ public class AggregateDSCreator {
       return createSumSource(id);
     case MEAN:
       return createMeanSource(id);
+    case MEDIAN:
+      return createMedianSource(id);
     case MIN:
       return createMinSource(id);
     case MAX:
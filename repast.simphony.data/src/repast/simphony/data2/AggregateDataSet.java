@@ -5,11 +5,15 @@ package repast.simphony.data2;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * DataSet implementation that records data from aggregate DataSources.
+ * DataSet implementation that records data from aggregate DataSources. The
+ * statistics for the sources created by AggregateDSCreators are calculated
+ * together, one pass over the objects of each source type, before the source
+ * values are retrieved.
  * 
  * @author Nick Collier
  */
@@ -17,6 +21,7 @@ public class AggregateDataSet extends AbstractDataSet {
 
   private List<AggregateDataSource> sources = new ArrayList<AggregateDataSource>();
   private List<Class<?>> targetTypes = new ArrayList<Class<?>>();
+  private Map<Class<?>, AggregateCalculator> calculators = new LinkedHashMap<Class<?>, AggregateCalculator>();
 
   /**
    * Creates an AggregateDataSet with the specified sources and sinks.
@@ -29,8 +34,16 @@ public class AggregateDataSet extends AbstractDataSet {
     super(id);
     this.sources.addAll(sources);
     this.sinks.addAll(sinks);
-    for (DataSource source : sources) {
+    for (AggregateDataSource source : sources) {
       targetTypes.add(source.getSourceType());
+      if (source instanceof AggregateDSCreator.ADS) {
+        AggregateCalculator calculator = calculators.get(source.getSourceType());
+        if (calculator == null) {
+          calculator = new AggregateCalculator();
+          calculators.put(source.getSourceType(), calculator);
+        }
+        calculator.addCalculation(source.getId(), ((AggregateDSCreator.ADS) source).getCalculation());
+      }
     }
   }
 
@@ -73,6 +86,10 @@ public class AggregateDataSet extends AbstractDataSet {
     for (AggregateDataSource source : sources) {
       source.reset();
     }
+    
+    for (Map.Entry<Class<?>, AggregateCalculator> entry : calculators.entrySet()) {
+      entry.getValue().calculate(objMap.get(entry.getKey()));
+    }
 
     for (AggregateDataSource source : sources) {
       String id = source.getId();
@@ -41,6 +41,12 @@ public enum AggregateOp {
     }
   },
   
+  MEDIAN() {
+    public String toString() {
+      return "Median";
+    }
+  },
+  
   MIN() {
     public String toString() {
       return "Min";
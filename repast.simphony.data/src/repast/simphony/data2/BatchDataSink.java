@@ -0,0 +1,27 @@
+/**
+ * 
+ */
+package repast.simphony.data2;
+
+/**
+ * A DataSink that can accept all the rows of a record at once as a column
+ * oriented {@link RecordBatch}. When a DataSet records into a BatchDataSink,
+ * it calls {@link #append(RecordBatch)} once per record instead of the
+ * rowStarted, append and rowEnded sequence for each row. recordEnded is still
+ * called after the batch has been appended.
+ * 
+ * @author Nick Collier
+ */
+public interface BatchDataSink extends DataSink {
+
+  /**
+   * Appends all the rows in the specified batch to this sink. The batch and
+   * its arrays are reused by the DataSet, so implementors must copy any data
+   * that they want to keep.
+   * 
+   * @param batch
+   *          the batch to append
+   */
+  void append(RecordBatch batch);
+
+}
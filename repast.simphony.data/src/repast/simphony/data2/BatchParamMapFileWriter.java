@@ -79,8 +79,9 @@ public class BatchParamMapFileWriter implements DataSink {
       }
     }
 
-    formatter = formatType == FormatType.TABULAR ? new TabularFormatter(sources, delimiter)
-        : new LineFormatter(sources, delimiter);
+    // the param map is always text, so columnar sinks get a tabular param map
+    formatter = formatType == FormatType.LINE ? new LineFormatter(sources, delimiter)
+        : new TabularFormatter(sources, delimiter);
 
     try {
       String file = fnFormatter.getFilename("batch_param_map");
@@ -0,0 +1,466 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import repast.simphony.data2.ColumnarFormat.ColumnType;
+
+/**
+ * DataSink that writes data to a file in a typed, binary column format. Rows
+ * are buffered into record batches of primitive column arrays. When a batch is
+ * full (or the sink is flushed or closed) each column is written as a separate,
+ * deflate compressed chunk. String columns are dictionary encoded per batch.
+ * See {@link ColumnarFormat} for the file layout and {@link ColumnarFileReader}
+ * for reading the files back. As a {@link BatchDataSink}, primitive columns of
+ * a {@link RecordBatch} are copied directly into the column buffers.
+ *
+ * @author Nick Collier
+ */
+public class ColumnarFileDataSink implements BatchDataSink {
+
+  public static final int DEFAULT_BATCH_SIZE = 8192;
+
+  private static class ChunkBuffer extends ByteArrayOutputStream {
+
+    public ChunkBuffer(int size) {
+      super(size);
+    }
+
+    public byte[] buffer() {
+      return buf;
+    }
+  }
+
+  private static class Column {
+
+    String id;
+    ColumnType type;
+    int capacity;
+
+    double[] doubles;
+    long[] longs;
+    boolean[] booleans;
+    String[] strings;
+
+    public Column(String id, ColumnType type, int capacity) {
+      this.id = id;
+      this.capacity = capacity;
+      if (type != null)
+        init(type);
+    }
+
+    // data sources typed as Object resolve their type from the first
+    // non-null value
+    void init(ColumnType type) {
+      this.type = type;
+      if (type == ColumnType.DOUBLE) {
+        doubles = new double[capacity];
+        Arrays.fill(doubles, Double.NaN);
+      } else if (type == ColumnType.LONG) {
+        longs = new long[capacity];
+      } else if (type == ColumnType.BOOLEAN) {
+        booleans = new boolean[capacity];
+      } else {
+        strings = new String[capacity];
+      }
+    }
+
+    void clear(int row) {
+      if (type == ColumnType.DOUBLE)
+        doubles[row] = Double.NaN;
+      else if (type == ColumnType.LONG)
+        longs[row] = 0;
+      else if (type == ColumnType.BOOLEAN)
+        booleans[row] = false;
+      else if (type == ColumnType.STRING)
+        strings[row] = null;
+    }
+
+    void set(int row, Object val) {
+      if (val == null)
+        return;
+      if (type == null)
+        init(ColumnType.forDataType(val.getClass()));
+
+      if (type == ColumnType.DOUBLE) {
+        doubles[row] = val instanceof Number ? ((Number) val).doubleValue() : Double.NaN;
+      } else if (type == ColumnType.LONG) {
+        longs[row] = val instanceof Number ? ((Number) val).longValue() : 0;
+      } else if (type == ColumnType.BOOLEAN) {
+        booleans[row] = val instanceof Boolean ? ((Boolean) val).booleanValue() : false;
+      } else {
+        strings[row] = val.toString();
+      }
+    }
+  }
+
+  private String name;
+  private File file;
+  private int batchSize;
+  private List<Column> columns = new ArrayList<Column>();
+  private Map<String, Column> columnMap = new HashMap<String, Column>();
+
+  private DataOutputStream out;
+  private boolean headerWritten = false;
+  private boolean closed = false;
+  private int rows = 0;
+
+  private ChunkBuffer chunk;
+  private DataOutputStream chunkOut;
+  private byte[] compressed = new byte[0];
+  private Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+  // maps batch columns to sink columns, recomputed when the batch changes
+  private RecordBatch lastBatch;
+  private Column[] batchColumns;
+  private List<Column> missingColumns = new ArrayList<Column>();
+  private Map<String, Integer> dictionary = new HashMap<String, Integer>();
+  private List<String> dictEntries = new ArrayList<String>();
+
+  /**
+   * Creates a ColumnarFileDataSink that will write the data from the specified
+   * sources to the specified file.
+   *
+   * @param name
+   *          the name of the sink
+   * @param file
+   *          the file to write to
+   * @param sources
+   *          the sources whose data will be written. The ids of the sources
+   *          become the column names.
+   * @param batchSize
+   *          the number of rows in each record batch
+   */
+  public ColumnarFileDataSink(String name, File file, Collection<? extends DataSource> sources,
+      int batchSize) {
+    this.name = name;
+    this.file = file;
+    this.batchSize = batchSize;
+    for (DataSource source : sources) {
+      Column column = new Column(source.getId(), ColumnType.forDataType(source.getDataType()),
+          batchSize);
+      columns.add(column);
+      columnMap.put(column.id, column);
+    }
+    chunk = new ChunkBuffer(batchSize * 8);
+    chunkOut = new DataOutputStream(chunk);
+  }
+
+  /**
+   * Gets the file this ColumnarFileDataSink will write to.
+   *
+   * @return the file this ColumnarFileDataSink will write to.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Gets the name of this ColumnarFileDataSink.
+   *
+   * @return the name of this ColumnarFileDataSink.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the format type for this ColumnarFileDataSink.
+   *
+   * @return the format type for this ColumnarFileDataSink.
+   */
+  public FormatType getFormat() {
+    return FormatType.COLUMNAR;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#open(java.util.List)
+   */
+  @Override
+  public void open(List<String> sourceIds) {
+    try {
+      File parentFile = file.getCanonicalFile().getParentFile();
+      if (parentFile != null && !parentFile.exists()) parentFile.mkdirs();
+
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    } catch (IOException ex) {
+      throw new DataException("Error opening ColumnarFileDataSink.", ex);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#rowStarted()
+   */
+  @Override
+  public void rowStarted() {
+    for (Column column : columns) {
+      column.clear(rows);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#append(java.lang.String,
+   * java.lang.Object)
+   */
+  @Override
+  public void append(String key, Object value) {
+    Column column = columnMap.get(key);
+    if (column != null)
+      column.set(rows, value);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#rowEnded()
+   */
+  @Override
+  public void rowEnded() {
+    rows++;
+    if (rows == batchSize) {
+      writeBatch();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.data2.BatchDataSink#append(repast.simphony.data2.RecordBatch
+   * )
+   */
+  @Override
+  public void append(RecordBatch batch) {
+    if (batch != lastBatch) {
+      mapColumns(batch);
+    }
+
+    int offset = 0;
+    int total = batch.getRowCount();
+    while (offset < total) {
+      int count = Math.min(batchSize - rows, total - offset);
+      for (int i = 0; i < batchColumns.length; i++) {
+        Column column = batchColumns[i];
+        if (column != null)
+          copy(batch, i, offset, column, count);
+      }
+      for (Column column : missingColumns) {
+        for (int row = rows, n = rows + count; row < n; row++) {
+          column.clear(row);
+        }
+      }
+
+      rows += count;
+      offset += count;
+      if (rows == batchSize) {
+        writeBatch();
+      }
+    }
+  }
+
+  private void mapColumns(RecordBatch batch) {
+    batchColumns = new Column[batch.getColumnCount()];
+    missingColumns.clear();
+    missingColumns.addAll(columns);
+    for (int i = 0; i < batchColumns.length; i++) {
+      Column column = columnMap.get(batch.getId(i));
+      batchColumns[i] = column;
+      missingColumns.remove(column);
+    }
+    lastBatch = batch;
+  }
+
+  private void copy(RecordBatch batch, int index, int offset, Column column, int count) {
+    RecordBatch.Kind kind = batch.getKind(index);
+    if (column.type == null) {
+      if (kind == RecordBatch.Kind.DOUBLE)
+        column.init(ColumnType.DOUBLE);
+      else if (kind == RecordBatch.Kind.LONG)
+        column.init(ColumnType.LONG);
+      else if (kind == RecordBatch.Kind.BOOLEAN)
+        column.init(ColumnType.BOOLEAN);
+    }
+
+    if (kind == RecordBatch.Kind.DOUBLE && column.type == ColumnType.DOUBLE) {
+      System.arraycopy(batch.getDoubles(index), offset, column.doubles, rows, count);
+    } else if (kind == RecordBatch.Kind.LONG && column.type == ColumnType.LONG) {
+      System.arraycopy(batch.getLongs(index), offset, column.longs, rows, count);
+    } else if (kind == RecordBatch.Kind.BOOLEAN && column.type == ColumnType.BOOLEAN) {
+      System.arraycopy(batch.getBooleans(index), offset, column.booleans, rows, count);
+    } else {
+      for (int i = 0; i < count; i++) {
+        column.clear(rows + i);
+        column.set(rows + i, batch.getValue(index, offset + i));
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#recordEnded()
+   */
+  @Override
+  public void recordEnded() {
+  }
+
+  private void writeHeader() throws IOException {
+    out.writeInt(ColumnarFormat.MAGIC);
+    out.writeShort(ColumnarFormat.VERSION);
+    out.writeInt(columns.size());
+    for (Column column : columns) {
+      // columns whose type couldn't be resolved from a value
+      // default to strings
+      if (column.type == null)
+        column.init(ColumnType.STRING);
+      ColumnarFormat.writeString(out, column.id);
+      out.writeByte(column.type.ordinal());
+    }
+    headerWritten = true;
+  }
+
+  private synchronized void writeBatch() {
+    if (closed || out == null)
+      return;
+    try {
+      if (!headerWritten)
+        writeHeader();
+      if (rows == 0)
+        return;
+
+      out.writeInt(ColumnarFormat.BATCH_MARKER);
+      out.writeInt(rows);
+      for (Column column : columns) {
+        chunk.reset();
+        encode(column);
+        writeChunk();
+      }
+      rows = 0;
+    } catch (IOException ex) {
+      throw new DataException("Error writing to ColumnarFileDataSink '" + file.getName() + "'", ex);
+    }
+  }
+
+  private void encode(Column column) throws IOException {
+    if (column.type == ColumnType.DOUBLE) {
+      for (int i = 0; i < rows; i++) {
+        chunkOut.writeDouble(column.doubles[i]);
+      }
+    } else if (column.type == ColumnType.LONG) {
+      for (int i = 0; i < rows; i++) {
+        chunkOut.writeLong(column.longs[i]);
+      }
+    } else if (column.type == ColumnType.BOOLEAN) {
+      for (int i = 0; i < rows; i++) {
+        chunkOut.writeByte(column.booleans[i] ? 1 : 0);
+      }
+    } else {
+      dictionary.clear();
+      dictEntries.clear();
+      for (int i = 0; i < rows; i++) {
+        String val = column.strings[i];
+        if (val != null && !dictionary.containsKey(val)) {
+          dictionary.put(val, dictEntries.size());
+          dictEntries.add(val);
+        }
+      }
+      chunkOut.writeInt(dictEntries.size());
+      for (String entry : dictEntries) {
+        ColumnarFormat.writeString(chunkOut, entry);
+      }
+      for (int i = 0; i < rows; i++) {
+        String val = column.strings[i];
+        chunkOut.writeInt(val == null ? -1 : dictionary.get(val));
+      }
+    }
+    chunkOut.flush();
+  }
+
+  private void writeChunk() throws IOException {
+    int length = chunk.size();
+    if (compressed.length < length)
+      compressed = new byte[length];
+
+    deflater.reset();
+    deflater.setInput(chunk.buffer(), 0, length);
+    deflater.finish();
+    int compressedLength = 0;
+    while (!deflater.finished() && compressedLength < length) {
+      compressedLength += deflater.deflate(compressed, compressedLength, length - compressedLength);
+    }
+
+    if (deflater.finished() && compressedLength < length) {
+      out.writeByte(ColumnarFormat.CODEC_DEFLATE);
+      out.writeInt(length);
+      out.writeInt(compressedLength);
+      out.write(compressed, 0, compressedLength);
+    } else {
+      // not compressible so store it raw
+      out.writeByte(ColumnarFormat.CODEC_RAW);
+      out.writeInt(length);
+      out.writeInt(length);
+      out.write(chunk.buffer(), 0, length);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#flush()
+   */
+  @Override
+  public synchronized void flush() {
+    if (!closed && out != null) {
+      writeBatch();
+      try {
+        out.flush();
+      } catch (IOException ex) {
+        throw new DataException("Error while flushing ColumnarFileDataSink.", ex);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.data2.DataSink#close()
+   */
+  @Override
+  public synchronized void close() {
+    if (!closed && out != null) {
+      try {
+        writeBatch();
+        out.writeInt(ColumnarFormat.END_MARKER);
+        out.flush();
+      } catch (IOException ex) {
+        throw new DataException("Error closing ColumnarFileDataSink.", ex);
+      } finally {
+        try {
+          closed = true;
+          deflater.end();
+          out.close();
+        } catch (IOException ex) {
+        }
+      }
+    }
+  }
+}
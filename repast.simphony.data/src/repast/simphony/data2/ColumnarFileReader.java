@@ -0,0 +1,253 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import repast.simphony.data2.ColumnarFormat.ColumnType;
+
+/**
+ * Reads files written by a {@link ColumnarFileDataSink} one record batch at a
+ * time.
+ *
+ * @author Nick Collier
+ */
+public class ColumnarFileReader implements Closeable {
+
+  /**
+   * A batch of rows read from a columnar file. Column data is returned as
+   * primitive arrays whose length is the row count of the batch.
+   */
+  public static class Batch {
+
+    private int rowCount;
+    private Object[] columns;
+
+    Batch(int rowCount, Object[] columns) {
+      this.rowCount = rowCount;
+      this.columns = columns;
+    }
+
+    /**
+     * Gets the number of rows in this batch.
+     *
+     * @return the number of rows in this batch.
+     */
+    public int getRowCount() {
+      return rowCount;
+    }
+
+    public double[] getDoubles(int column) {
+      return (double[]) columns[column];
+    }
+
+    public long[] getLongs(int column) {
+      return (long[]) columns[column];
+    }
+
+    public boolean[] getBooleans(int column) {
+      return (boolean[]) columns[column];
+    }
+
+    public String[] getStrings(int column) {
+      return (String[]) columns[column];
+    }
+
+    /**
+     * Gets the value at the specified column and row as an Object.
+     *
+     * @param column
+     *          the column index
+     * @param row
+     *          the row index
+     * @return the value at the specified column and row.
+     */
+    public Object getValue(int column, int row) {
+      Object data = columns[column];
+      if (data instanceof double[])
+        return ((double[]) data)[row];
+      if (data instanceof long[])
+        return ((long[]) data)[row];
+      if (data instanceof boolean[])
+        return ((boolean[]) data)[row];
+      return ((String[]) data)[row];
+    }
+  }
+
+  private DataInputStream in;
+  private short version;
+  private List<String> names = new ArrayList<String>();
+  private List<ColumnType> types = new ArrayList<ColumnType>();
+  private Inflater inflater = new Inflater();
+  private byte[] stored = new byte[0];
+  private byte[] chunk = new byte[0];
+  private boolean done = false;
+
+  /**
+   * Creates a ColumnarFileReader that reads the specified file.
+   *
+   * @param file
+   *          the file to read
+   * @throws IOException
+   *           if the file cannot be read or is not a columnar file.
+   */
+  public ColumnarFileReader(File file) throws IOException {
+    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+    if (in.readInt() != ColumnarFormat.MAGIC) {
+      in.close();
+      throw new IOException("'" + file.getName() + "' is not a columnar data file");
+    }
+    version = in.readShort();
+    if (version > ColumnarFormat.VERSION) {
+      in.close();
+      throw new IOException("Unsupported columnar data file version: " + version);
+    }
+
+    int count = in.readInt();
+    ColumnType[] values = ColumnType.values();
+    for (int i = 0; i < count; i++) {
+      names.add(ColumnarFormat.readString(in, version));
+      types.add(values[in.readByte()]);
+    }
+  }
+
+  /**
+   * Gets the column names in column order.
+   *
+   * @return the column names in column order.
+   */
+  public List<String> getColumnNames() {
+    return Collections.unmodifiableList(names);
+  }
+
+  /**
+   * Gets the type of the specified column.
+   *
+   * @param column
+   *          the column index
+   * @return the type of the specified column.
+   */
+  public ColumnType getColumnType(int column) {
+    return types.get(column);
+  }
+
+  /**
+   * Reads the next record batch.
+   *
+   * @return the next record batch or null if there are no more batches.
+   * @throws IOException
+   *           if there is an error reading the batch.
+   */
+  public Batch nextBatch() throws IOException {
+    if (done)
+      return null;
+
+    int marker;
+    try {
+      marker = in.readInt();
+    } catch (EOFException ex) {
+      // file was not closed properly, treat as the end
+      done = true;
+      return null;
+    }
+
+    if (marker == ColumnarFormat.END_MARKER) {
+      done = true;
+      return null;
+    }
+    if (marker != ColumnarFormat.BATCH_MARKER)
+      throw new IOException("Corrupt columnar data file: expected a record batch");
+
+    int rows = in.readInt();
+    Object[] columns = new Object[types.size()];
+    for (int i = 0; i < columns.length; i++) {
+      DataInputStream chunkIn = readChunk();
+      columns[i] = decode(types.get(i), rows, chunkIn);
+    }
+    return new Batch(rows, columns);
+  }
+
+  private DataInputStream readChunk() throws IOException {
+    byte codec = in.readByte();
+    int length = in.readInt();
+    int storedLength = in.readInt();
+    if (chunk.length < length)
+      chunk = new byte[length];
+
+    if (codec == ColumnarFormat.CODEC_RAW) {
+      in.readFully(chunk, 0, length);
+    } else {
+      if (stored.length < storedLength)
+        stored = new byte[storedLength];
+      in.readFully(stored, 0, storedLength);
+      inflater.reset();
+      inflater.setInput(stored, 0, storedLength);
+      try {
+        int read = 0;
+        while (read < length && !inflater.finished()) {
+          read += inflater.inflate(chunk, read, length - read);
+        }
+      } catch (DataFormatException ex) {
+        throw new IOException("Corrupt columnar data file", ex);
+      }
+    }
+    return new DataInputStream(new ByteArrayInputStream(chunk, 0, length));
+  }
+
+  private Object decode(ColumnType type, int rows, DataInputStream chunkIn) throws IOException {
+    if (type == ColumnType.DOUBLE) {
+      double[] vals = new double[rows];
+      for (int i = 0; i < rows; i++) {
+        vals[i] = chunkIn.readDouble();
+      }
+      return vals;
+    } else if (type == ColumnType.LONG) {
+      long[] vals = new long[rows];
+      for (int i = 0; i < rows; i++) {
+        vals[i] = chunkIn.readLong();
+      }
+      return vals;
+    } else if (type == ColumnType.BOOLEAN) {
+      boolean[] vals = new boolean[rows];
+      for (int i = 0; i < rows; i++) {
+        vals[i] = chunkIn.readByte() != 0;
+      }
+      return vals;
+    } else {
+      String[] dict = new String[chunkIn.readInt()];
+      for (int i = 0; i < dict.length; i++) {
+        dict[i] = ColumnarFormat.readString(chunkIn, version);
+      }
+      String[] vals = new String[rows];
+      for (int i = 0; i < rows; i++) {
+        int index = chunkIn.readInt();
+        vals[i] = index == -1 ? null : dict[index];
+      }
+      return vals;
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.Closeable#close()
+   */
+  @Override
+  public void close() throws IOException {
+    inflater.end();
+    in.close();
+  }
+}
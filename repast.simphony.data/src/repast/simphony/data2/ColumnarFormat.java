@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and column types shared by the {@link ColumnarFileDataSink} and
+ * the {@link ColumnarFileReader}. A columnar file has the following layout (all
+ * values big endian, as written by a DataOutputStream):
+ *
+ * <pre>
+ * int   MAGIC
+ * short VERSION
+ * int   column count
+ *   for each column: string name, byte ColumnType ordinal
+ * repeated record batches:
+ *   int   BATCH_MARKER
+ *   int   row count
+ *   for each column:
+ *     byte  codec (CODEC_RAW or CODEC_DEFLATE)
+ *     int   uncompressed chunk length
+ *     int   stored chunk length
+ *     bytes chunk
+ * int END_MARKER
+ * </pre>
+ *
+ * Chunks of DOUBLE and LONG columns are row count 8 byte values, BOOLEAN
+ * columns are row count bytes and STRING columns are dictionary encoded: an
+ * int dictionary size, the dictionary entries as strings, and then row count
+ * int indices into the dictionary (-1 for null). Strings are an int byte
+ * length followed by the string's UTF-8 bytes. Version 1 files wrote them as
+ * modified UTF-8 (see {@link DataOutput#writeUTF(String)}), which cannot hold
+ * strings longer than 65535 bytes.
+ *
+ * @author Nick Collier
+ */
+public class ColumnarFormat {
+
+  /**
+   * The type of a column in a columnar file.
+   */
+  public enum ColumnType {
+    DOUBLE, LONG, BOOLEAN, STRING;
+
+    /**
+     * Gets the ColumnType appropriate for the specified data type, or null if
+     * the type cannot be determined until a value is seen (i.e. the data type
+     * is Object).
+     *
+     * @param type
+     *          the data type
+     *
+     * @return the ColumnType appropriate for the specified data type.
+     */
+    public static ColumnType forDataType(Class<?> type) {
+      if (type.equals(Object.class))
+        return null;
+      if (type.equals(double.class) || type.equals(float.class) || type.equals(Double.class)
+          || type.equals(Float.class))
+        return DOUBLE;
+      if (type.equals(long.class) || type.equals(int.class) || type.equals(short.class)
+          || type.equals(byte.class) || type.equals(Long.class) || type.equals(Integer.class)
+          || type.equals(Short.class) || type.equals(Byte.class))
+        return LONG;
+      if (type.equals(boolean.class) || type.equals(Boolean.class))
+        return BOOLEAN;
+      if (Number.class.isAssignableFrom(type))
+        return DOUBLE;
+      return STRING;
+    }
+  }
+
+  public static final int MAGIC = 0x5253434C; // "RSCL"
+  public static final short VERSION = 2;
+
+  public static final int BATCH_MARKER = 0x42415443;
+  public static final int END_MARKER = 0x454E4443;
+
+  public static final byte CODEC_RAW = 0;
+  public static final byte CODEC_DEFLATE = 1;
+
+  private ColumnarFormat() {
+  }
+
+  static void writeString(DataOutput out, String val) throws IOException {
+    byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInput in, short version) throws IOException {
+    if (version < 2)
+      return in.readUTF();
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -18,6 +18,7 @@ public class DataSetRegistry {
   
   private Map<Object, DataSetManager> map = new HashMap<Object, DataSetManager>();
   private List<FileDataSink> fileSinks = new ArrayList<FileDataSink>();
+  private List<ColumnarFileDataSink> columnarFileSinks = new ArrayList<ColumnarFileDataSink>();
   
   /**
    * Adds a DataSetManager for the specified context. 
@@ -59,5 +60,26 @@ public class DataSetRegistry {
   public Iterable<FileDataSink> fileSinks() {
     return fileSinks;
   }
+  
+  /**
+   * Adds a ColumnarFileDataSink to this DataSetRegistry.
+   * 
+   * @param sink
+   */
+  public void addColumnarFileDataSink(ColumnarFileDataSink sink) {
+    columnarFileSinks.add(sink);
+  }
+  
+  /**
+   * Gets all the ColumnarFileDataSinks that have been added to this
+   * DataSetRegistry. These are kept apart from the FileDataSinks, whose
+   * users expect delimited text files.
+   * 
+   * @return all the ColumnarFileDataSinks that have been added to this
+   * DataSetRegistry.
+   */
+  public Iterable<ColumnarFileDataSink> columnarFileSinks() {
+    return columnarFileSinks;
+  }
 
 }
@@ -4,7 +4,9 @@
 package repast.simphony.data2;
 
 /**
- * Enum specifying textual DataSink format type.
+ * Enum specifying DataSink format type. TABULAR and LINE are textual formats,
+ * COLUMNAR is a typed binary column format that is only available for file
+ * sinks.
  * 
  * @author Nick Collier
  */
@@ -20,6 +22,22 @@ public enum FormatType {
     public String toString() {
       return "Line";
     }
+  },
+  
+  COLUMNAR() {
+    public String toString() {
+      return "Columnar (Binary)";
+    }
+  };
+  
+  /**
+   * Gets the textual format types, that is, those that can be 
+   * written via a Formatter.
+   * 
+   * @return the textual format types.
+   */
+  public static FormatType[] textValues() {
+    return new FormatType[] { TABULAR, LINE };
   }
 
 }
@@ -1,5 +1,8 @@
 package repast.simphony.data2;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 import net.sf.cglib.reflect.FastClass;
@@ -12,11 +15,13 @@ import org.apache.commons.lang3.ClassUtils;
  */
 
 /**
- * DataSource that retrieves data from a method call on an object.
+ * DataSource that retrieves data from a method call on an object. If the method
+ * returns a primitive, the data can also be retrieved without boxing via the
+ * {@link PrimitiveDataSource} getters.
  * 
  * @author Nick Collier
  */
-public class MethodDataSource implements NonAggregateDataSource {
+public class MethodDataSource implements PrimitiveDataSource {
 
   private static Object[] NO_ARGS = {};
 
@@ -24,6 +29,10 @@ public class MethodDataSource implements NonAggregateDataSource {
   private String id;
   private Class<?> type, sourceType;
   private int hashcode;
+  
+  private Class<?> primitiveType;
+  // at most one of these is non-null, depending on the primitive return type
+  private MethodHandle doubleHandle, longHandle, booleanHandle;
 
   /**
    * Creates a MethodDataSource that will call the named method on objects of
@@ -51,6 +60,8 @@ public class MethodDataSource implements NonAggregateDataSource {
       else
         type = (Class<?>) ret;
       
+      initPrimitiveHandle(method);
+      
       hashcode = 17;
       hashcode = 31 * hashcode + id.hashCode();
       hashcode = 31 * hashcode + fmethod.hashCode();
@@ -62,6 +73,30 @@ public class MethodDataSource implements NonAggregateDataSource {
 
   }
   
+  private void initPrimitiveHandle(Method method) {
+    Class<?> ret = method.getReturnType();
+    if (!ret.isPrimitive() || ret.equals(char.class))
+      return;
+
+    MethodHandle handle;
+    try {
+      handle = MethodHandles.publicLookup().unreflect(method);
+    } catch (IllegalAccessException ex) {
+      // method's declaring class is not public, so
+      // fall back to the boxed FastMethod invocation.
+      return;
+    }
+
+    if (ret.equals(double.class) || ret.equals(float.class)) {
+      doubleHandle = handle.asType(MethodType.methodType(double.class, Object.class));
+    } else if (ret.equals(boolean.class)) {
+      booleanHandle = handle.asType(MethodType.methodType(boolean.class, Object.class));
+    } else {
+      longHandle = handle.asType(MethodType.methodType(long.class, Object.class));
+    }
+    primitiveType = ret;
+  }
+
   /**
    * Gets the FastMethod that this MethodDataSource will invoke on a "get".
    * 
@@ -100,6 +135,60 @@ public class MethodDataSource implements NonAggregateDataSource {
     }
   }
 
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getPrimitiveType()
+   */
+  @Override
+  public Class<?> getPrimitiveType() {
+    return primitiveType;
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getDouble(java.lang.Object)
+   */
+  @Override
+  public double getDouble(Object obj) {
+    try {
+      if (doubleHandle != null)
+        return (double) doubleHandle.invokeExact(obj);
+      if (longHandle != null)
+        return (long) longHandle.invokeExact(obj);
+    } catch (Throwable e) {
+      throw new DataException("Error invoking method on object", e);
+    }
+    return ((Number) get(obj)).doubleValue();
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getLong(java.lang.Object)
+   */
+  @Override
+  public long getLong(Object obj) {
+    try {
+      if (longHandle != null)
+        return (long) longHandle.invokeExact(obj);
+      if (doubleHandle != null)
+        return (long) (double) doubleHandle.invokeExact(obj);
+    } catch (Throwable e) {
+      throw new DataException("Error invoking method on object", e);
+    }
+    return ((Number) get(obj)).longValue();
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getBoolean(java.lang.Object)
+   */
+  @Override
+  public boolean getBoolean(Object obj) {
+    try {
+      if (booleanHandle != null)
+        return (boolean) booleanHandle.invokeExact(obj);
+    } catch (Throwable e) {
+      throw new DataException("Error invoking method on object", e);
+    }
+    return (Boolean) get(obj);
+  }
+
   /* (non-Javadoc)
    * @see repast.simphony.data2.DataSource#getSourceType()
    */
@@ -21,6 +21,9 @@ public class NonAggregateDataSet extends AbstractDataSet {
 
   private List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
   private Class<?> sourceType;
+  private List<BatchDataSink> batchSinks = new ArrayList<BatchDataSink>();
+  private List<DataSink> rowSinks = new ArrayList<DataSink>();
+  private RecordBatch batch;
 
   /**
    * Creates a NonAggregateDataSet with the specified sources and sinks.
@@ -41,6 +44,12 @@ public class NonAggregateDataSet extends AbstractDataSet {
         break;
       }
     }
+    
+    for (DataSink sink : sinks) {
+      if (sink instanceof BatchDataSink) batchSinks.add((BatchDataSink) sink);
+      else rowSinks.add(sink);
+    }
+    if (batchSinks.size() > 0) batch = new RecordBatch(this.sources);
   }
 
   /*
@@ -68,6 +77,11 @@ public class NonAggregateDataSet extends AbstractDataSet {
   @Override
   public void record(Map<Class<?>, SizedIterable<?>> objMap) {
     SizedIterable<?> objs = objMap.get(sourceType);
+    if (batch != null) {
+      recordBatch(objs);
+      return;
+    }
+    
     for (Object obj : objs) {
       for (DataSink sink : sinks) {
         sink.rowStarted();
@@ -91,6 +105,41 @@ public class NonAggregateDataSet extends AbstractDataSet {
     }
   }
 
+  // collects the data once into the reusable batch, then hands
+  // the whole batch to the batch sinks. Any remaining sinks get
+  // the batch row by row.
+  private void recordBatch(SizedIterable<?> objs) {
+    batch.fill(objs);
+    for (BatchDataSink sink : batchSinks) {
+      sink.append(batch);
+    }
+    
+    if (rowSinks.size() > 0) {
+      int columns = batch.getColumnCount();
+      for (int row = 0, n = batch.getRowCount(); row < n; row++) {
+        for (DataSink sink : rowSinks) {
+          sink.rowStarted();
+        }
+        
+        for (int col = 0; col < columns; col++) {
+          String id = batch.getId(col);
+          Object val = batch.getValue(col, row);
+          for (DataSink sink : rowSinks) {
+            sink.append(id, val);
+          }
+        }
+        
+        for (DataSink sink : rowSinks) {
+          sink.rowEnded();
+        }
+      }
+    }
+    
+    for (DataSink sink : sinks) {
+      sink.recordEnded();
+    }
+  }
+
   @Override
   public Iterable<Class<?>> getSourceTypes() {
     List<Class<?>> list = new ArrayList<Class<?>>();
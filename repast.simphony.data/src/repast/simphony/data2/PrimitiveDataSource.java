@@ -0,0 +1,52 @@
+/**
+ * 
+ */
+package repast.simphony.data2;
+
+/**
+ * A NonAggregateDataSource that can return its data as a primitive without
+ * boxing it. DataSets use the primitive getters to collect data into
+ * primitive {@link RecordBatch} columns.
+ * 
+ * @author Nick Collier
+ */
+public interface PrimitiveDataSource extends NonAggregateDataSource {
+
+  /**
+   * Gets the primitive type produced by this data source (e.g. double.class,
+   * int.class, boolean.class) or null if this source does not currently
+   * produce primitive data. If this returns null, the data will be retrieved
+   * via {@link #get(Object)}.
+   * 
+   * @return the primitive type produced by this data source or null.
+   */
+  Class<?> getPrimitiveType();
+
+  /**
+   * Gets data given the specified object as a double.
+   * 
+   * @param obj
+   *          an object to get the data from
+   * @return the retrieved data.
+   */
+  double getDouble(Object obj);
+
+  /**
+   * Gets data given the specified object as a long.
+   * 
+   * @param obj
+   *          an object to get the data from
+   * @return the retrieved data.
+   */
+  long getLong(Object obj);
+
+  /**
+   * Gets data given the specified object as a boolean.
+   * 
+   * @param obj
+   *          an object to get the data from
+   * @return the retrieved data.
+   */
+  boolean getBoolean(Object obj);
+
+}
@@ -0,0 +1,254 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column oriented container for all the rows recorded by a DataSet in a single
+ * record call. Data from {@link PrimitiveDataSource}s is stored in primitive
+ * arrays, everything else in Object arrays. The arrays are reused across record
+ * calls and only grow when the number of rows does, so they may be longer than
+ * the current row count.
+ *
+ * @author Nick Collier
+ */
+public class RecordBatch {
+
+  /**
+   * The kind of array a column is stored in.
+   */
+  public enum Kind {
+    DOUBLE, LONG, BOOLEAN, OBJECT
+  }
+
+  private List<String> ids = new ArrayList<String>();
+  private NonAggregateDataSource[] sources;
+  private PrimitiveDataSource[] primitives;
+  private Class<?>[] primitiveTypes;
+  private Kind[] kinds;
+  private Object[] columns;
+  private int capacity = 0;
+  private int rowCount = 0;
+
+  /**
+   * Creates a RecordBatch that will collect data from the specified sources.
+   *
+   * @param sources
+   *          the sources to collect data from.
+   */
+  public RecordBatch(List<? extends NonAggregateDataSource> sources) {
+    int n = sources.size();
+    this.sources = new NonAggregateDataSource[n];
+    primitives = new PrimitiveDataSource[n];
+    primitiveTypes = new Class<?>[n];
+    kinds = new Kind[n];
+    columns = new Object[n];
+
+    for (int i = 0; i < n; i++) {
+      NonAggregateDataSource source = sources.get(i);
+      this.sources[i] = source;
+      ids.add(source.getId());
+      kinds[i] = Kind.OBJECT;
+      if (source instanceof PrimitiveDataSource) {
+        PrimitiveDataSource pds = (PrimitiveDataSource) source;
+        Class<?> type = pds.getPrimitiveType();
+        Kind kind = kindFor(type);
+        if (kind != Kind.OBJECT) {
+          primitives[i] = pds;
+          primitiveTypes[i] = type;
+          kinds[i] = kind;
+        }
+      }
+    }
+  }
+
+  private static Kind kindFor(Class<?> type) {
+    if (type == null)
+      return Kind.OBJECT;
+    if (type.equals(double.class) || type.equals(float.class))
+      return Kind.DOUBLE;
+    if (type.equals(long.class) || type.equals(int.class) || type.equals(short.class)
+        || type.equals(byte.class))
+      return Kind.LONG;
+    if (type.equals(boolean.class))
+      return Kind.BOOLEAN;
+    return Kind.OBJECT;
+  }
+
+  private void ensureCapacity(int size) {
+    if (size <= capacity)
+      return;
+
+    int newCapacity = Math.max(size, capacity + (capacity >> 1));
+    for (int i = 0; i < columns.length; i++) {
+      switch (kinds[i]) {
+      case DOUBLE:
+        columns[i] = new double[newCapacity];
+        break;
+      case LONG:
+        columns[i] = new long[newCapacity];
+        break;
+      case BOOLEAN:
+        columns[i] = new boolean[newCapacity];
+        break;
+      default:
+        columns[i] = new Object[newCapacity];
+      }
+    }
+    capacity = newCapacity;
+  }
+
+  /**
+   * Fills this batch with the data from each of the specified objects, one row
+   * per object.
+   *
+   * @param objs
+   *          the objects to get the data from
+   */
+  public void fill(SizedIterable<?> objs) {
+    // release references from the previous record
+    for (int i = 0; i < columns.length; i++) {
+      if (kinds[i] == Kind.OBJECT && rowCount > 0)
+        Arrays.fill((Object[]) columns[i], 0, rowCount, null);
+    }
+
+    ensureCapacity(objs.size());
+    int row = 0;
+    for (Object obj : objs) {
+      if (row == capacity)
+        ensureCapacityCopy(row + 1);
+      for (int i = 0; i < columns.length; i++) {
+        switch (kinds[i]) {
+        case DOUBLE:
+          ((double[]) columns[i])[row] = primitives[i].getDouble(obj);
+          break;
+        case LONG:
+          ((long[]) columns[i])[row] = primitives[i].getLong(obj);
+          break;
+        case BOOLEAN:
+          ((boolean[]) columns[i])[row] = primitives[i].getBoolean(obj);
+          break;
+        default:
+          ((Object[]) columns[i])[row] = sources[i].get(obj);
+        }
+      }
+      row++;
+    }
+    rowCount = row;
+  }
+
+  // the iterable returned more elements than its size, so
+  // we need to keep what we have already collected.
+  private void ensureCapacityCopy(int size) {
+    Object[] old = columns.clone();
+    int oldCapacity = capacity;
+    ensureCapacity(size);
+    for (int i = 0; i < columns.length; i++) {
+      System.arraycopy(old[i], 0, columns[i], 0, oldCapacity);
+    }
+  }
+
+  /**
+   * Gets the number of rows in this batch.
+   *
+   * @return the number of rows in this batch.
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Gets the number of columns in this batch.
+   *
+   * @return the number of columns in this batch.
+   */
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * Gets the source ids of the columns, in column order.
+   *
+   * @return the source ids of the columns, in column order.
+   */
+  public List<String> getIds() {
+    return ids;
+  }
+
+  /**
+   * Gets the source id of the specified column.
+   *
+   * @param column
+   *          the column index
+   * @return the source id of the specified column.
+   */
+  public String getId(int column) {
+    return ids.get(column);
+  }
+
+  /**
+   * Gets the kind of array the specified column is stored in.
+   *
+   * @param column
+   *          the column index
+   * @return the kind of array the specified column is stored in.
+   */
+  public Kind getKind(int column) {
+    return kinds[column];
+  }
+
+  public double[] getDoubles(int column) {
+    return (double[]) columns[column];
+  }
+
+  public long[] getLongs(int column) {
+    return (long[]) columns[column];
+  }
+
+  public boolean[] getBooleans(int column) {
+    return (boolean[]) columns[column];
+  }
+
+  public Object[] getObjects(int column) {
+    return (Object[]) columns[column];
+  }
+
+  /**
+   * Gets the value at the specified column and row, boxed to the wrapper of
+   * the data source's primitive type. This is intended for sinks that work with
+   * rows of objects.
+   *
+   * @param column
+   *          the column index
+   * @param row
+   *          the row index
+   * @return the value at the specified column and row.
+   */
+  public Object getValue(int column, int row) {
+    Class<?> type = primitiveTypes[column];
+    switch (kinds[column]) {
+    case DOUBLE:
+      double dval = ((double[]) columns[column])[row];
+      if (type.equals(float.class))
+        return Float.valueOf((float) dval);
+      return Double.valueOf(dval);
+    case LONG:
+      long lval = ((long[]) columns[column])[row];
+      if (type.equals(int.class))
+        return Integer.valueOf((int) lval);
+      if (type.equals(short.class))
+        return Short.valueOf((short) lval);
+      if (type.equals(byte.class))
+        return Byte.valueOf((byte) lval);
+      return Long.valueOf(lval);
+    case BOOLEAN:
+      return Boolean.valueOf(((boolean[]) columns[column])[row]);
+    default:
+      return ((Object[]) columns[column])[row];
+    }
+  }
+}
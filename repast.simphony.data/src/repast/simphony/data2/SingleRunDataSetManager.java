@@ -61,6 +61,8 @@ public class SingleRunDataSetManager extends AbstractDataSetManager {
       for (DataSink sink : dataSet.sinks()) {
         if (sink instanceof FileDataSink) {
           registry.addFileDataSink((FileDataSink)sink);
+        } else if (sink instanceof ColumnarFileDataSink) {
+          registry.addColumnarFileDataSink((ColumnarFileDataSink)sink);
         }
       }
     }
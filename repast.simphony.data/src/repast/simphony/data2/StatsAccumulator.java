@@ -0,0 +1,293 @@
+/**
+ *
+ */
+package repast.simphony.data2;
+
+/**
+ * Mergeable accumulator of summary statistics. This produces the same
+ * statistics as commons-math's SummaryStatistics, but two accumulators that
+ * have seen disjoint parts of a collection can be merged, so the parts can be
+ * accumulated in parallel. If values are kept, the median of the accumulated
+ * values is available as well.
+ *
+ * @author Nick Collier
+ */
+public class StatsAccumulator {
+
+  private long n = 0;
+  private double sum, sumSq, sumLogs;
+  private double min = Double.NaN, max = Double.NaN;
+  // first moment (mean) and sum of the squared deviations from it
+  private double m1 = Double.NaN, m2 = Double.NaN;
+
+  private double[] values;
+  private boolean keepValues;
+  private double median = Double.NaN;
+  private boolean medianValid = false;
+
+  /**
+   * Creates a StatsAccumulator that doesn't keep the accumulated values.
+   */
+  public StatsAccumulator() {
+    this(false);
+  }
+
+  /**
+   * Creates a StatsAccumulator.
+   *
+   * @param keepValues
+   *          whether or not to keep the accumulated values in order to
+   *          calculate the median
+   */
+  public StatsAccumulator(boolean keepValues) {
+    setKeepValues(keepValues);
+  }
+
+  /**
+   * Sets whether or not to keep the accumulated values in order to calculate
+   * the median.
+   *
+   * @param keepValues
+   */
+  public void setKeepValues(boolean keepValues) {
+    this.keepValues = keepValues;
+    if (keepValues && values == null)
+      values = new double[16];
+  }
+
+  /**
+   * Gets whether or not this accumulator keeps the accumulated values.
+   *
+   * @return whether or not this accumulator keeps the accumulated values.
+   */
+  public boolean isKeepValues() {
+    return keepValues;
+  }
+
+  /**
+   * Adds the specified value to this accumulator.
+   *
+   * @param val
+   */
+  public void addValue(double val) {
+    if (keepValues) {
+      ensureCapacity((int) n + 1);
+      values[(int) n] = val;
+      medianValid = false;
+    }
+    accumulate(val);
+  }
+
+  // updates the moments, but does not store the value
+  void accumulate(double val) {
+    n++;
+    sum += val;
+    sumSq += val * val;
+    sumLogs += Math.log(val);
+    if (n == 1) {
+      min = max = m1 = val;
+      m2 = 0;
+    } else {
+      if (val < min || Double.isNaN(min))
+        min = val;
+      if (val > max || Double.isNaN(max))
+        max = val;
+      double dev = val - m1;
+      double nDev = dev / n;
+      m1 += nDev;
+      m2 += (n - 1) * dev * nDev;
+    }
+  }
+
+  /**
+   * Merges the moments of the specified accumulator into this one. Values kept
+   * by the other accumulator are not merged.
+   *
+   * @param other
+   */
+  public void merge(StatsAccumulator other) {
+    if (other.n == 0)
+      return;
+    if (n == 0) {
+      n = other.n;
+      sum = other.sum;
+      sumSq = other.sumSq;
+      sumLogs = other.sumLogs;
+      min = other.min;
+      max = other.max;
+      m1 = other.m1;
+      m2 = other.m2;
+      return;
+    }
+
+    long total = n + other.n;
+    double delta = other.m1 - m1;
+    m1 += delta * other.n / total;
+    m2 += other.m2 + delta * delta * n * other.n / total;
+    n = total;
+    sum += other.sum;
+    sumSq += other.sumSq;
+    sumLogs += other.sumLogs;
+    if (other.min < min || Double.isNaN(min))
+      min = other.min;
+    if (other.max > max || Double.isNaN(max))
+      max = other.max;
+  }
+
+  /**
+   * Gets the array that will hold the kept values, sized for at least the
+   * specified number of values. Parallel accumulation writes the values
+   * directly into this array.
+   */
+  double[] valuesArray(int size) {
+    ensureCapacity(size);
+    medianValid = false;
+    return values;
+  }
+
+  private void ensureCapacity(int size) {
+    if (values.length < size) {
+      double[] tmp = new double[Math.max(size, values.length + (values.length >> 1))];
+      System.arraycopy(values, 0, tmp, 0, (int) n);
+      values = tmp;
+    }
+  }
+
+  /**
+   * Clears this accumulator.
+   */
+  public void clear() {
+    n = 0;
+    sum = sumSq = sumLogs = 0;
+    min = max = m1 = m2 = Double.NaN;
+    median = Double.NaN;
+    medianValid = false;
+  }
+
+  public long getN() {
+    return n;
+  }
+
+  public double getSum() {
+    return sum;
+  }
+
+  public double getSumsq() {
+    return sumSq;
+  }
+
+  public double getSumOfLogs() {
+    return sumLogs;
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return m1;
+  }
+
+  public double getSecondMoment() {
+    return m2;
+  }
+
+  /**
+   * Gets the bias corrected sample variance.
+   *
+   * @return the bias corrected sample variance.
+   */
+  public double getVariance() {
+    if (n == 0)
+      return Double.NaN;
+    if (n == 1)
+      return 0;
+    return m2 / (n - 1);
+  }
+
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  public double getGeometricMean() {
+    if (n == 0)
+      return Double.NaN;
+    return Math.exp(sumLogs / n);
+  }
+
+  /**
+   * Gets the median of the accumulated values. For an even number of values
+   * this is the mean of the two middle values. The median is found by
+   * selection rather than sorting, and is NaN if the values are not kept.
+   *
+   * @return the median of the accumulated values.
+   */
+  public double getMedian() {
+    if (!keepValues || n == 0)
+      return Double.NaN;
+    if (!medianValid) {
+      int size = (int) n;
+      int k = size / 2;
+      double upper = select(values, size, k);
+      if (size % 2 == 0) {
+        // after selection everything below k is <= the kth value
+        double lower = values[0];
+        for (int i = 1; i < k; i++) {
+          if (values[i] > lower)
+            lower = values[i];
+        }
+        median = lower + (upper - lower) / 2;
+      } else {
+        median = upper;
+      }
+      medianValid = true;
+    }
+    return median;
+  }
+
+  // quickselect, partially reorders vals so that vals[k] is the kth smallest
+  private static double select(double[] vals, int size, int k) {
+    int left = 0, right = size - 1;
+    while (right > left) {
+      int mid = (left + right) >>> 1;
+      // median of three pivot
+      if (vals[mid] < vals[left])
+        swap(vals, mid, left);
+      if (vals[right] < vals[left])
+        swap(vals, right, left);
+      if (vals[right] < vals[mid])
+        swap(vals, right, mid);
+      double pivot = vals[mid];
+
+      int i = left, j = right;
+      while (i <= j) {
+        while (vals[i] < pivot)
+          i++;
+        while (vals[j] > pivot)
+          j--;
+        if (i <= j) {
+          swap(vals, i, j);
+          i++;
+          j--;
+        }
+      }
+      if (k <= j)
+        right = j;
+      else if (k >= i)
+        left = i;
+      else
+        break;
+    }
+    return vals[k];
+  }
+
+  private static void swap(double[] vals, int i, int j) {
+    double tmp = vals[i];
+    vals[i] = vals[j];
+    vals[j] = tmp;
+  }
+}
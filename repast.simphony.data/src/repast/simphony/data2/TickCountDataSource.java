@@ -11,7 +11,7 @@ import repast.simphony.engine.schedule.ISchedule;
  * @author Nick Collier
  */
 public class TickCountDataSource implements AggregateDataSource,
-    NonAggregateDataSource {
+    PrimitiveDataSource {
 
   public static final String ID = "tick";
 
@@ -63,12 +63,44 @@ public class TickCountDataSource implements AggregateDataSource,
    */
   @Override
   public Double get(Object obj) {
+    return getDouble(obj);
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getPrimitiveType()
+   */
+  @Override
+  public Class<?> getPrimitiveType() {
+    return double.class;
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getDouble(java.lang.Object)
+   */
+  @Override
+  public double getDouble(Object obj) {
     double val = schedule.getTickCount();
     if (val < 0)
       val = 0;
     return val;
   }
 
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getLong(java.lang.Object)
+   */
+  @Override
+  public long getLong(Object obj) {
+    return (long) getDouble(obj);
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getBoolean(java.lang.Object)
+   */
+  @Override
+  public boolean getBoolean(Object obj) {
+    throw new DataException("TickCountDataSource does not produce boolean data");
+  }
+
   /*
    * (non-Javadoc)
    * 
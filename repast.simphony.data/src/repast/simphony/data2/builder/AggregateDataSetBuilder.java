@@ -26,6 +26,7 @@ public class AggregateDataSetBuilder extends AbstractDataSetBuilder implements D
   
   private List<AggregateDataSource> dataSources = new ArrayList<AggregateDataSource>();
   private Map<MethodDataSource, AggregateDSCreator> fmBuilderMap = new HashMap<MethodDataSource, AggregateDSCreator>();
+  private boolean threadSafe = false;
   
 
   /**
@@ -57,6 +58,32 @@ public class AggregateDataSetBuilder extends AbstractDataSetBuilder implements D
     dataSources.add(dataSource);
   }
   
+  /**
+   * Sets whether or not the methods called by the method data sources defined
+   * by this builder can safely be called from multiple threads. If so, the
+   * data set may calculate the statistics for large collections in parallel.
+   * The default is false.
+   * 
+   * @param threadSafe
+   */
+  public void setThreadSafe(boolean threadSafe) {
+    this.threadSafe = threadSafe;
+    for (AggregateDSCreator creator : fmBuilderMap.values()) {
+      creator.setThreadSafe(threadSafe);
+    }
+  }
+  
+  /**
+   * Gets whether or not the methods called by the method data sources defined
+   * by this builder can safely be called from multiple threads.
+   * 
+   * @return whether or not the methods called by the method data sources
+   *         defined by this builder can safely be called from multiple threads.
+   */
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+  
   /*
    * (non-Javadoc)
    * 
@@ -85,6 +112,7 @@ public class AggregateDataSetBuilder extends AbstractDataSetBuilder implements D
     AggregateDSCreator creator = fmBuilderMap.get(mds);
     if (creator == null) {
       creator = new AggregateDSCreator(mds);
+      creator.setThreadSafe(threadSafe);
       fmBuilderMap.put(mds, creator);
     }
     
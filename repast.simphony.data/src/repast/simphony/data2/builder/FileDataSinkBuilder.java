@@ -10,6 +10,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import repast.simphony.data2.ColumnarFileDataSink;
 import repast.simphony.data2.DataSink;
 import repast.simphony.data2.DataSource;
 import repast.simphony.data2.FileDataSink;
@@ -20,7 +21,8 @@ import repast.simphony.data2.TabularFormatter;
 import repast.simphony.data2.util.DataUtilities;
 
 /**
- * DataSinkBuilder that can build FileDataSinks.
+ * DataSinkBuilder that can build FileDataSinks, or ColumnarFileDataSinks when
+ * the format type is COLUMNAR.
  * 
  * @author Nick Collier
  */
@@ -75,6 +77,11 @@ public class FileDataSinkBuilder implements SinkBuilder {
       selectedSources.addAll(sources);
     }
     
+    if (type == FormatType.COLUMNAR) {
+      return new ColumnarFileDataSink(name, new File(filename), selectedSources,
+          ColumnarFileDataSink.DEFAULT_BATCH_SIZE);
+    }
+    
     Formatter formatter = type == FormatType.TABULAR ? new TabularFormatter(selectedSources, delimiter)
         : new LineFormatter(selectedSources, delimiter);
     return new FileDataSink(name, new File(filename), formatter);
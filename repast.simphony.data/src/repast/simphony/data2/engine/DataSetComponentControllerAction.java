@@ -90,6 +90,7 @@ public class DataSetComponentControllerAction extends DefaultControllerAction im
 
   private AggregateDataSetBuilder createAggregateBuilder() throws ClassNotFoundException {
     AggregateDataSetBuilder builder = new AggregateDataSetBuilder(descriptor.getName());
+    builder.setThreadSafe(descriptor.isThreadSafe());
     for (MethodDataSourceDefinition def : descriptor.methodDataSources()) {
       Class<?> objType = Class.forName(def.getObjTargetClass(), false, this.getClass()
           .getClassLoader());
@@ -35,6 +35,7 @@ public class DataSetDescriptor extends AbstractDescriptor {
   private ScheduleParameters scheduleParams = ScheduleParameters.createRepeating(1, 1,
       ScheduleParameters.LAST_PRIORITY);
   private boolean atEnd = false;
+  private boolean threadSafe = false;
 
   private Map<String, MethodDataSourceDefinition> methodDataSources = new LinkedHashMap<String, MethodDataSourceDefinition>();
   private Map<String, CountSourceDefinition> countSources = new LinkedHashMap<String, CountSourceDefinition>();
@@ -229,6 +230,31 @@ public class DataSetDescriptor extends AbstractDescriptor {
     }
   }
 
+  /**
+   * Gets whether or not the methods of the aggregate method data sources can
+   * safely be called from multiple threads. If so, the statistics for large
+   * collections of agents may be calculated in parallel.
+   *
+   * @return whether or not the methods of the aggregate method data sources
+   *         can safely be called from multiple threads.
+   */
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+
+  /**
+   * Sets whether or not the methods of the aggregate method data sources can
+   * safely be called from multiple threads. The default is false.
+   *
+   * @param threadSafe
+   */
+  public void setThreadSafe(boolean threadSafe) {
+    if (this.threadSafe != threadSafe) {
+      this.threadSafe = threadSafe;
+      scs.fireScenarioChanged(this, "threadSafe");
+    }
+  }
+
   private void checkId(String id) {
     if (methodDataSources.containsKey(id) || countSources.containsKey(id))
       throw new IllegalArgumentException("Duplicate data source ids ('" + id
@@ -4,15 +4,17 @@
 package repast.simphony.data2.engine;
 
 import repast.simphony.data2.NonAggregateDataSource;
+import repast.simphony.data2.PrimitiveDataSource;
 
 /**
  * An NonAggregateDataSource implementation that delegates to 
  * a wrapped AggregateDataSource for all calls except getting
- * the id. 
+ * the id. If the wrapped source is a PrimitiveDataSource, the
+ * primitive getters delegate to it as well.
  * 
  * @author Nick Collier
  */
-public class NonAggregateDataSourceWrapper implements NonAggregateDataSource {
+public class NonAggregateDataSourceWrapper implements PrimitiveDataSource {
   
   private NonAggregateDataSource dataSource;
   private String id;
@@ -53,4 +55,44 @@ public class NonAggregateDataSourceWrapper implements NonAggregateDataSource {
   public Object get(Object obj) {
     return dataSource.get(obj);
   }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getPrimitiveType()
+   */
+  @Override
+  public Class<?> getPrimitiveType() {
+    if (dataSource instanceof PrimitiveDataSource)
+      return ((PrimitiveDataSource) dataSource).getPrimitiveType();
+    return null;
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getDouble(java.lang.Object)
+   */
+  @Override
+  public double getDouble(Object obj) {
+    if (dataSource instanceof PrimitiveDataSource)
+      return ((PrimitiveDataSource) dataSource).getDouble(obj);
+    return ((Number) dataSource.get(obj)).doubleValue();
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getLong(java.lang.Object)
+   */
+  @Override
+  public long getLong(Object obj) {
+    if (dataSource instanceof PrimitiveDataSource)
+      return ((PrimitiveDataSource) dataSource).getLong(obj);
+    return ((Number) dataSource.get(obj)).longValue();
+  }
+
+  /* (non-Javadoc)
+   * @see repast.simphony.data2.PrimitiveDataSource#getBoolean(java.lang.Object)
+   */
+  @Override
+  public boolean getBoolean(Object obj) {
+    if (dataSource instanceof PrimitiveDataSource)
+      return ((PrimitiveDataSource) dataSource).getBoolean(obj);
+    return (Boolean) dataSource.get(obj);
+  }
 }
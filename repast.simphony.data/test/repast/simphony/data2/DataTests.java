@@ -1,6 +1,7 @@
 package repast.simphony.data2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -9,18 +10,23 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.junit.Test;
 
 import repast.simphony.context.Context;
 import repast.simphony.context.DefaultContext;
+import repast.simphony.data2.builder.AggregateDataSetBuilder;
 import repast.simphony.data2.engine.DataInitActionCreator;
 import repast.simphony.data2.engine.DataSetComponentControllerAction;
 import repast.simphony.data2.engine.DataSetDescriptor;
@@ -56,6 +62,31 @@ public class DataTests {
     }
   };
 
+  /**
+   * Records whether or not its value is ever got while the aggregate
+   * statistics are calculated in parallel.
+   */
+  public static class ParallelObject {
+
+    static volatile boolean inParallelTask;
+
+    private double value;
+
+    public ParallelObject(double value) {
+      this.value = value;
+    }
+
+    public double getValue() {
+      if (!inParallelTask) {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+          if (element.getClassName().endsWith("AggregateCalculator$AccumulateTask"))
+            inParallelTask = true;
+        }
+      }
+      return value;
+    }
+  }
+
   class Sink implements DataSink {
 
     boolean opened = false, closed = false;
@@ -99,6 +130,22 @@ public class DataTests {
     }
   }
 
+  class BatchSink extends Sink implements BatchDataSink {
+
+    int batches = 0;
+
+    @Override
+    public void append(RecordBatch batch) {
+      batches++;
+      for (int row = 0; row < batch.getRowCount(); row++) {
+        rowStarted();
+        for (int col = 0; col < batch.getColumnCount(); col++) {
+          append(batch.getId(col), batch.getValue(col, row));
+        }
+      }
+    }
+  }
+
   class FormattingSink implements DataSink {
 
     TabularFormatter formatter;
@@ -240,6 +287,53 @@ public class DataTests {
     }
   }
 
+  @Test
+  public void testNonAggregateBatch() {
+    List<Object> objs = new ArrayList<Object>();
+    for (int i = 0; i < 3; i++) {
+      ObjectB b = new ObjectB();
+      b.setInt(i);
+      objs.add(b);
+    }
+
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    MethodDataSource dSource = new MethodDataSource("double", ObjectB.class, "getDouble");
+    MethodDataSource iSource = new MethodDataSource("int", ObjectB.class, "getInt");
+    sources.add(dSource);
+    sources.add(new MethodDataSource("object", ObjectB.class, "object"));
+    sources.add(iSource);
+
+    assertEquals(double.class, dSource.getPrimitiveType());
+    assertEquals(int.class, iSource.getPrimitiveType());
+    assertEquals(3.14, dSource.getDouble(objs.get(0)), 0);
+    assertEquals(2L, iSource.getLong(objs.get(2)));
+
+    BatchSink batchSink = new BatchSink();
+    Sink sink = new Sink();
+    List<Sink> sinks = new ArrayList<Sink>();
+    sinks.add(batchSink);
+    sinks.add(sink);
+
+    DataSet dataSet = new NonAggregateDataSet("ds1", sources, sinks);
+    dataSet.init();
+    for (int i = 0; i < 3; i++) {
+      dataSet.record(createRecordMap(objs, ObjectB.class));
+    }
+    dataSet.close();
+
+    // one batch per record
+    assertEquals(3, batchSink.batches);
+    for (Sink s : sinks) {
+      assertEquals(9, s.items.size());
+      for (int i = 0; i < s.items.size(); i++) {
+        Map<String, Object> map = s.items.get(i);
+        assertEquals(3.14, (Double) map.get("double"), .0001);
+        assertEquals(i % 3, ((Integer) map.get("int")).intValue());
+        assertEquals("hello", map.get("object"));
+      }
+    }
+  }
+
   @Test
   public void testAggregateDSBoolObj() {
     List<ObjectC> objs = new ArrayList<ObjectC>();
@@ -270,6 +364,40 @@ public class DataTests {
      */
   }
 
+  @Test
+  public void testAggregateNonNumericObj() {
+    List<ObjectC> objs = new ArrayList<ObjectC>();
+    ObjectC obj = new ObjectC();
+    obj.val = true;
+    objs.add(obj);
+    objs.add(new ObjectC());
+
+    List<AggregateDataSource> sources = new ArrayList<AggregateDataSource>();
+    AggregateDSCreator creator = new AggregateDSCreator(new MethodDataSource("string",
+        ObjectC.class, "getString"));
+    sources.add(creator.createSumSource("string_sum"));
+    creator = new AggregateDSCreator(new MethodDataSource("obj", ObjectC.class, "getObj"));
+    sources.add(creator.createSumSource("obj_sum"));
+    creator = new AggregateDSCreator(new MethodDataSource("bool", ObjectC.class, "getBool"));
+    sources.add(creator.createSumSource("bool_sum"));
+
+    Sink sink = new Sink();
+    List<Sink> sinks = new ArrayList<Sink>();
+    sinks.add(sink);
+    DataSet dataSet = new AggregateDataSet("ds1", sources, sinks);
+    dataSet.init();
+    dataSet.record(createRecordMap(objs, ObjectC.class));
+    dataSet.record(createRecordMap(objs, ObjectC.class));
+    dataSet.close();
+
+    // the non-numeric source is logged and doesn't affect the others
+    assertEquals(2, sink.items.size());
+    for (Map<String, Object> map : sink.items) {
+      assertEquals(6.0, (Double) map.get("obj_sum"), 0);
+      assertEquals(1.0, (Double) map.get("bool_sum"), 0);
+    }
+  }
+
   @Test
   public void testAggregateDS() {
     List<ObjectB> objs = new ArrayList<ObjectB>();
@@ -344,6 +472,106 @@ public class DataTests {
     }
   }
 
+  @Test
+  public void testParallelAggregate() {
+    // large enough to be split across the fork join pool
+    int count = AggregateCalculator.PARALLEL_THRESHOLD * 2 + 1;
+    List<ObjectB> objs = new ArrayList<ObjectB>();
+    SummaryStatistics stats = new SummaryStatistics();
+    DescriptiveStatistics dstats = new DescriptiveStatistics();
+    Random random = new Random(1);
+    double intSum = 0;
+    for (int i = 0; i < count; i++) {
+      ObjectB b = new ObjectB();
+      b.setDouble(random.nextDouble() * 100 + 1);
+      b.setInt(i % 7);
+      intSum += i % 7;
+      objs.add(b);
+      stats.addValue(b.getDouble());
+      dstats.addValue(b.getDouble());
+    }
+
+    List<AggregateDataSource> sources = new ArrayList<AggregateDataSource>();
+    AggregateDSCreator creator = new AggregateDSCreator(new MethodDataSource("double",
+        ObjectB.class, "getDouble"));
+    creator.setThreadSafe(true);
+    for (AggregateOp op : new AggregateOp[] { AggregateOp.SUM, AggregateOp.MEAN, AggregateOp.MIN,
+        AggregateOp.MAX, AggregateOp.VARIANCE, AggregateOp.GEO_MEAN, AggregateOp.SUM_SQRS,
+        AggregateOp.SECOND_MOMENT, AggregateOp.MEDIAN }) {
+      sources.add(creator.createDataSource(op.name(), op));
+    }
+    creator = new AggregateDSCreator(new MethodDataSource("int", ObjectB.class, "getInt"));
+    creator.setThreadSafe(true);
+    sources.add(creator.createSumSource("int_sum"));
+
+    Sink sink = new Sink();
+    List<Sink> sinks = new ArrayList<Sink>();
+    sinks.add(sink);
+    DataSet dataSet = new AggregateDataSet("ds1", sources, sinks);
+    dataSet.init();
+    dataSet.record(createRecordMap(objs, ObjectB.class));
+    dataSet.record(createRecordMap(objs, ObjectB.class));
+    dataSet.close();
+
+    assertEquals(2, sink.items.size());
+    for (Map<String, Object> map : sink.items) {
+      assertEquals(stats.getSum(), (Double) map.get("SUM"), 1E-6);
+      assertEquals(stats.getMean(), (Double) map.get("MEAN"), 1E-9);
+      assertEquals(stats.getMin(), (Double) map.get("MIN"), 0);
+      assertEquals(stats.getMax(), (Double) map.get("MAX"), 0);
+      assertEquals(stats.getVariance(), (Double) map.get("VARIANCE"), 1E-6);
+      assertEquals(stats.getGeometricMean(), (Double) map.get("GEO_MEAN"), 1E-6);
+      assertEquals(stats.getSumsq(), (Double) map.get("SUM_SQRS"), 1E-3);
+      assertEquals(stats.getSecondMoment(), (Double) map.get("SECOND_MOMENT"), 1E-3);
+      assertEquals(dstats.getPercentile(50), (Double) map.get("MEDIAN"), 0);
+      assertEquals(intSum, (Double) map.get("int_sum"), 0);
+    }
+  }
+
+  private Map<String, Object> recordWithBuilder(List<ParallelObject> objs, boolean threadSafe) {
+    AggregateDataSetBuilder builder = new AggregateDataSetBuilder("ds1");
+    builder.defineMethodDataSource("sum", AggregateOp.SUM, ParallelObject.class, "getValue");
+    builder.setThreadSafe(threadSafe);
+    // defined after the builder is made thread safe
+    builder.defineMethodDataSource("mean", AggregateOp.MEAN, ParallelObject.class, "getValue");
+    builder.defineCountDataSource("count", ParallelObject.class);
+    Sink sink = new Sink();
+    builder.addDataSink(sink);
+
+    ParallelObject.inParallelTask = false;
+    DataSet dataSet = builder.create();
+    dataSet.init();
+    dataSet.record(createRecordMap(objs, ParallelObject.class));
+    dataSet.close();
+    assertEquals(1, sink.items.size());
+    return sink.items.get(0);
+  }
+
+  @Test
+  public void testParallelAggregateBuilder() {
+    int count = AggregateCalculator.PARALLEL_THRESHOLD * 2 + 1;
+    List<ParallelObject> objs = new ArrayList<ParallelObject>();
+    SummaryStatistics stats = new SummaryStatistics();
+    Random random = new Random(1);
+    for (int i = 0; i < count; i++) {
+      ParallelObject obj = new ParallelObject(random.nextDouble() * 100);
+      objs.add(obj);
+      stats.addValue(obj.getValue());
+    }
+
+    Map<String, Object> serial = recordWithBuilder(objs, false);
+    assertFalse(ParallelObject.inParallelTask);
+    Map<String, Object> parallel = recordWithBuilder(objs, true);
+    // the common pool only splits the work when it has more than one thread
+    assertEquals(ForkJoinPool.getCommonPoolParallelism() > 1, ParallelObject.inParallelTask);
+
+    for (Map<String, Object> map : new Map[] { serial, parallel }) {
+      assertEquals(stats.getSum(), (Double) map.get("sum"), 1E-6);
+      assertEquals(stats.getMean(), (Double) map.get("mean"), 1E-9);
+      assertEquals(count, ((Number) map.get("count")).intValue());
+    }
+  }
+
   @Test
   public void testFormatter() {
 
@@ -417,6 +645,90 @@ public class DataTests {
     }
   }
 
+  @Test
+  public void testColumnarFileSink() throws IOException {
+
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(new MethodDataSource("double", ObjectB.class, "getDouble"));
+    sources.add(new MethodDataSource("object", ObjectB.class, "object"));
+    sources.add(new MethodDataSource("int", ObjectB.class, "getInt"));
+
+    File file = new File("./test_output/columnar_sink_test.bin");
+    // batch size of 2 so that we get more than one batch
+    ColumnarFileDataSink sink = new ColumnarFileDataSink("fs1", file, sources, 2);
+
+    sink.open(new ArrayList<String>());
+    String[] strs = { "hello", "bug", "hello" };
+    for (int i = 0; i < strs.length; i++) {
+      sink.rowStarted();
+      sink.append("double", 3.14 + i);
+      sink.append("object", strs[i]);
+      sink.append("int", 1000 + i);
+      sink.rowEnded();
+    }
+    sink.recordEnded();
+    sink.close();
+
+    ColumnarFileReader reader = new ColumnarFileReader(file);
+    try {
+      assertEquals("[double, object, int]", reader.getColumnNames().toString());
+      assertEquals(ColumnarFormat.ColumnType.DOUBLE, reader.getColumnType(0));
+      assertEquals(ColumnarFormat.ColumnType.STRING, reader.getColumnType(1));
+      assertEquals(ColumnarFormat.ColumnType.LONG, reader.getColumnType(2));
+
+      int row = 0;
+      ColumnarFileReader.Batch batch;
+      while ((batch = reader.nextBatch()) != null) {
+        for (int i = 0; i < batch.getRowCount(); i++) {
+          assertEquals(3.14 + row, batch.getDoubles(0)[i], 0);
+          assertEquals(strs[row], batch.getStrings(1)[i]);
+          assertEquals(1000 + row, batch.getLongs(2)[i]);
+          row++;
+        }
+      }
+      assertEquals(3, row);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testColumnarFileSinkLongStrings() throws IOException {
+    // longer than the 65535 bytes DataOutput.writeUTF can write
+    char[] chars = new char[70000];
+    Arrays.fill(chars, '\u00e9');
+    String value = new String(chars);
+    String id = value.substring(0, 40000);
+
+    List<NonAggregateDataSource> sources = new ArrayList<NonAggregateDataSource>();
+    sources.add(new MethodDataSource(id, ObjectB.class, "object"));
+    File file = new File("./test_output/columnar_long_strings_test.bin");
+    ColumnarFileDataSink sink = new ColumnarFileDataSink("fs1", file, sources, 2);
+
+    sink.open(new ArrayList<String>());
+    String[] strs = { value, "short", value };
+    for (String str : strs) {
+      sink.rowStarted();
+      sink.append(id, str);
+      sink.rowEnded();
+    }
+    sink.recordEnded();
+    sink.close();
+
+    ColumnarFileReader reader = new ColumnarFileReader(file);
+    try {
+      assertEquals(Arrays.asList(id), reader.getColumnNames());
+      List<String> vals = new ArrayList<String>();
+      ColumnarFileReader.Batch batch;
+      while ((batch = reader.nextBatch()) != null) {
+        vals.addAll(Arrays.asList(batch.getStrings(0)));
+      }
+      assertEquals(Arrays.asList(strs), vals);
+    } finally {
+      reader.close();
+    }
+  }
+
   private RunState createRunState(int runNum, RunState runState) {
     if (runState == null) {
       runState = RunState.init(new RunInfo("test", runNum, 1), new DefaultScheduleRegistry(),
@@ -6,7 +6,6 @@ import java.util.List;
 import javax.measure.unit.SI;
 
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.operation.DefaultCoordinateOperationFactory;
 import org.geotools.styling.SLD;
 import org.geotools.styling.Style;
 import org.opengis.feature.simple.SimpleFeature;
@@ -27,6 +26,7 @@ import cern.jet.random.Uniform;
 import cern.jet.random.engine.RandomEngine;
 import repast.simphony.random.RandomHelper;
 import repast.simphony.space.gis.Geography;
+import repast.simphony.space.gis.MathTransformCache;
 import repast.simphony.space.gis.UTMFinder;
 
 /**
@@ -37,8 +37,6 @@ import repast.simphony.space.gis.UTMFinder;
  */
 public class GeometryUtil {
 
-	private static DefaultCoordinateOperationFactory cFactory = new DefaultCoordinateOperationFactory();
-	
   public static enum GeometryType {
     POINT, LINE, POLYGON, OTHER
   }
@@ -135,14 +133,14 @@ public class GeometryUtil {
 			// convert p to UTM
 			if (convert) {
 				utm = UTMFinder.getUTMFor(geom, crs);
-				g2 = JTS.transform(geom, cFactory.createOperation(crs, utm).getMathTransform());
+				g2 = JTS.transform(geom, MathTransformCache.getTransform(crs, utm));
 			}
 
 			buffer = g2.buffer(distance);
 
 			// convert buffer back to geography's crs.
 			if (convert) {
-				buffer = JTS.transform(buffer, cFactory.createOperation(utm, crs).getMathTransform());
+				buffer = JTS.transform(buffer, MathTransformCache.getTransform(utm, crs));
 			}
 		} catch (FactoryException e) {
 			e.printStackTrace();
@@ -1,38 +1,64 @@
 package repast.simphony.query.space.gis;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.measure.unit.SI;
 import javax.measure.unit.Unit;
 
 import org.geotools.geometry.jts.JTS;
-import org.geotools.referencing.operation.DefaultCoordinateOperationFactory;
+import org.geotools.referencing.CRS;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.datum.Ellipsoid;
 import org.opengis.referencing.operation.TransformException;
 
 import repast.simphony.query.Query;
+import repast.simphony.query.QueryUtils;
 import repast.simphony.space.gis.Geography;
+import repast.simphony.space.gis.MathTransformCache;
 import repast.simphony.space.gis.UTMFinder;
+import repast.simphony.util.collections.FilteredIterator;
 import simphony.util.messages.MessageCenter;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
 
 /**
  * Query that returns items in a geography that are some specified distance from
  * another item or a geometry.  The distance is either calculated from the
  * center of a point, or from the buffer zone which is created around the line
  * or polygon feature, see {@link com.vividsolutions.jts.geom.Geometry} .buffer() 
+ * <p>
+ * If the source is a point in a geography whose coordinates are meters or
+ * (longitude, latitude), the distance to point items is calculated directly,
+ * in the latter case as the geodesic distance on the geography's ellipsoid,
+ * and only the items in an envelope around the source are tested. Other items
+ * are tested against the buffer zone.
  *
  * @author Nick Collier
  * @author Eric Tatara
  */
 public class GeographyWithin<T> implements Query<T> {
 
-  private static DefaultCoordinateOperationFactory cFactory = new DefaultCoordinateOperationFactory();
   private static final MessageCenter center = MessageCenter.getMessageCenter(GeographyWithin.class);
 
+  private static final int MAX_ITERATIONS = 100;
+
   private IntersectsQuery query;
   private Object sourceObject;
 
+  private Geography geography;
+  private double distance;
+  private Geometry geom;
+  // the fast point path is used if the envelope is not null
+  private Envelope envelope;
+  // null if the geography's coordinates are meters
+  private Ellipsoid ellipsoid;
+
 
   /**
    * Creates GeographyWithinQuery that returns items in a specified geography
@@ -89,9 +115,55 @@ public class GeographyWithin<T> implements Query<T> {
   }
 
   private void init(Geography geography, double distance, Geometry geom) {
+    this.geography = geography;
+    this.distance = distance;
+    this.geom = geom;
     // don't convert if we are already in a meter based crs
     boolean convert = !geography.getUnits(0).equals(SI.METER);
+    CoordinateReferenceSystem crs = geography.getCRS();
 
+    if (geom instanceof Point) {
+      Coordinate c = geom.getCoordinate();
+      if (!convert) {
+        envelope = new Envelope(c.x - distance, c.x + distance, c.y - distance, c.y + distance);
+        return;
+      }
+      if (crs instanceof GeographicCRS && CRS.getAxisOrder(crs) == CRS.AxisOrder.EAST_NORTH) {
+        ellipsoid = ((GeographicCRS) crs).getDatum().getEllipsoid();
+        if (ellipsoid.getAxisUnit().equals(SI.METER)) {
+          envelope = geodesicEnvelope(c.x, c.y, distance);
+          return;
+        }
+        ellipsoid = null;
+      }
+    }
+    query = createBufferQuery(geography, distance, geom);
+  }
+
+  // an envelope, in degrees, that contains all the points within
+  // the distance of lon, lat
+  private Envelope geodesicEnvelope(double lon, double lat, double distance) {
+    double a = ellipsoid.getSemiMajorAxis();
+    double f = 1 / ellipsoid.getInverseFlattening();
+    // the smallest radius of curvature along a meridian
+    double minRadius = a * (1 - f) * (1 - f);
+    double dLat = Math.toDegrees(distance / minRadius);
+    double maxLat = Math.abs(lat) + dLat;
+    if (maxLat >= 90) {
+      return new Envelope(-180, 180, lat - dLat, lat + dLat);
+    }
+    // the radius of a parallel is at least a * cos(lat)
+    double dLon = Math.toDegrees(distance / (a * Math.cos(Math.toRadians(maxLat))));
+    if (lon - dLon < -180 || lon + dLon > 180) {
+      // wraps around the antimeridian
+      return new Envelope(-180, 180, lat - dLat, lat + dLat);
+    }
+    return new Envelope(lon - dLon, lon + dLon, lat - dLat, lat + dLat);
+  }
+
+  private IntersectsQuery createBufferQuery(Geography geography, double distance, Geometry geom) {
+
+    boolean convert = !geography.getUnits(0).equals(SI.METER);
     CoordinateReferenceSystem utm = null;
     Geometry buffer = null;
     CoordinateReferenceSystem crs = geography.getCRS();
@@ -101,23 +173,88 @@ public class GeographyWithin<T> implements Query<T> {
       // convert p to UTM
       if (convert) {
         utm = UTMFinder.getUTMFor(geom, crs);
-        tempGeom = JTS.transform(geom, cFactory.createOperation(crs, utm).getMathTransform());
+        tempGeom = JTS.transform(geom, MathTransformCache.getTransform(crs, utm));
       }
 
       buffer = tempGeom.buffer(distance);
 
       // convert buffer back to geography's crs.
       if (convert) {
-        buffer = JTS.transform(buffer, cFactory.createOperation(utm, crs).getMathTransform());
+        buffer = JTS.transform(buffer, MathTransformCache.getTransform(utm, crs));
       }
     } catch (FactoryException e) {
       center.error("Error during crs transform", e);
     } catch (TransformException e) {
       center.error("Error during crs transform", e);
     }
-    query = new IntersectsQuery(geography, buffer);
+    IntersectsQuery query = new IntersectsQuery(geography, buffer);
     query.sourceObject = sourceObject;
     query.predicate = query.createPredicate();
+    return query;
+  }
+
+  private boolean isWithin(Point point) {
+    Coordinate c1 = geom.getCoordinate();
+    Coordinate c2 = point.getCoordinate();
+    if (ellipsoid == null) {
+      double dx = c2.x - c1.x;
+      double dy = c2.y - c1.y;
+      return dx * dx + dy * dy <= distance * distance;
+    }
+    return geodesicDistance(c1.x, c1.y, c2.x, c2.y) <= distance;
+  }
+
+  /**
+   * Calculates the distance in meters between two (longitude, latitude)
+   * locations on the ellipsoid, using Vincenty's inverse formula. If that does
+   * not converge, which can happen for nearly antipodal points, the haversine
+   * distance on a sphere of the ellipsoid's mean radius is returned.
+   */
+  private double geodesicDistance(double lon1, double lat1, double lon2, double lat2) {
+    double a = ellipsoid.getSemiMajorAxis();
+    double f = 1 / ellipsoid.getInverseFlattening();
+    double b = a * (1 - f);
+    double phi1 = Math.toRadians(lat1);
+    double phi2 = Math.toRadians(lat2);
+    double L = Math.toRadians(lon2 - lon1);
+
+    double u1 = Math.atan((1 - f) * Math.tan(phi1));
+    double u2 = Math.atan((1 - f) * Math.tan(phi2));
+    double sinU1 = Math.sin(u1), cosU1 = Math.cos(u1);
+    double sinU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+    double lambda = L;
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+      double t = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+      double sinSigma = Math.sqrt(cosU2 * sinLambda * cosU2 * sinLambda + t * t);
+      if (sinSigma == 0)
+        return 0;
+      double cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+      double sigma = Math.atan2(sinSigma, cosSigma);
+      double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+      double cosSqAlpha = 1 - sinAlpha * sinAlpha;
+      // on the equator cosSqAlpha is 0
+      double cos2SigmaM = cosSqAlpha == 0 ? 0 : cosSigma - 2 * sinU1 * sinU2 / cosSqAlpha;
+      double C = f / 16 * cosSqAlpha * (4 + f * (4 - 3 * cosSqAlpha));
+      double prev = lambda;
+      lambda = L + (1 - C) * f * sinAlpha
+          * (sigma + C * sinSigma * (cos2SigmaM + C * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+      if (Math.abs(lambda - prev) < 1e-12) {
+        double uSq = cosSqAlpha * (a * a - b * b) / (b * b);
+        double A = 1 + uSq / 16384 * (4096 + uSq * (-768 + uSq * (320 - 175 * uSq)));
+        double B = uSq / 1024 * (256 + uSq * (-128 + uSq * (74 - 47 * uSq)));
+        double deltaSigma = B * sinSigma
+            * (cos2SigmaM + B / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - B / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return b * A * (sigma - deltaSigma);
+      }
+    }
+
+    double sinDPhi = Math.sin((phi2 - phi1) / 2);
+    double sinDLambda = Math.sin(L / 2);
+    double h = sinDPhi * sinDPhi + Math.cos(phi1) * Math.cos(phi2) * sinDLambda * sinDLambda;
+    return 2 * (2 * a + b) / 3 * Math.asin(Math.min(1, Math.sqrt(h)));
   }
 
   /**
@@ -126,7 +263,25 @@ public class GeographyWithin<T> implements Query<T> {
    * @return an iterable over the objects that are the result of the query.
    */
   public Iterable<T> query() {
-    return query.query();
+    if (envelope == null)
+      return query.query();
+
+    List<T> items = new ArrayList<T>();
+    for (Object obj : geography.queryInexact(envelope)) {
+      if (obj.equals(sourceObject))
+        continue;
+      Geometry other = geography.getGeometry(obj);
+      if (other instanceof Point) {
+        if (isWithin((Point) other))
+          items.add((T) obj);
+      } else if (other != null) {
+        if (query == null)
+          query = createBufferQuery(geography, distance, geom);
+        if (query.geom != null && other.intersects(query.geom))
+          items.add((T) obj);
+      }
+    }
+    return items;
   }
 
   /**
@@ -139,6 +294,8 @@ public class GeographyWithin<T> implements Query<T> {
    *         and are in the passed in iterable.
    */
   public Iterable<T> query(Iterable<T> set) {
-    return query.query(set);
+    if (envelope == null)
+      return query.query(set);
+    return new FilteredIterator<T>(query().iterator(), QueryUtils.createContains(set));
   }
 }
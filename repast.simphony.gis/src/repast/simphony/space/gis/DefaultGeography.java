@@ -16,7 +16,6 @@ import java.util.Set;
 import javax.measure.unit.SI;
 import javax.measure.unit.Unit;
 
-import org.apache.commons.collections15.Predicate;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.CRS;
@@ -33,19 +32,19 @@ import org.opengis.referencing.operation.MathTransformFactory;
 import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateFilter;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.index.ItemVisitor;
 import com.vividsolutions.jts.index.SpatialIndex;
-import com.vividsolutions.jts.index.quadtree.Quadtree;
 
 import repast.simphony.query.space.projection.Within;
 import repast.simphony.space.projection.DefaultProjection;
 import repast.simphony.space.projection.ProjectionEvent;
 import repast.simphony.space.projection.ProjectionEvent.Type;
 import repast.simphony.space.projection.ProjectionPredicate;
-import repast.simphony.util.collections.FilteredIterator;
 import simphony.util.messages.MessageCenter;
 
 /**
@@ -69,12 +68,14 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
 
   private Map<T, GeomData> geomMap = new HashMap<T, GeomData>();
 
-  private SpatialIndex index = new Quadtree();
-
   private CoordinateReferenceSystem crs;
 
   private Map<String, Layer<T>> layerMap = new HashMap<String, Layer<T>>();
 
+  // layers by agent class, so that finding the layer of an object
+  // doesn't need to build its name
+  private Map<Class<?>, Layer<T>> classLayerMap = new HashMap<Class<?>, Layer<T>>();
+
   protected Map<String, GridCoverage2D> coverageMap = new HashMap<String, GridCoverage2D>();
   
   protected GISAdder<T> adder;
@@ -83,6 +84,9 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
 
   private GeodeticCalculator calc;
 
+  // transforms to and from WGS84, null if the crs is WGS84
+  private MathTransform toWGS84, fromWGS84;
+
   MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
 
   /**
@@ -138,22 +142,54 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    */
   protected void add(T object) {
     addedObjects.add(object);
-    if (!layerMap.containsKey(layerNameFor(object)))
-      createLayer(object);
+    layerFor(object);
   }
 
-  private String layerNameFor(T object) {
-    return object.getClass().getName() + ".FeatureType";
+  private Layer<T> createLayer(T object) {
+    return createLayer(object.getClass());
   }
 
-  private Layer<T> createLayer(T object) {
-    String name = layerNameFor(object);
+  private Layer<T> createLayer(Class<?> agentType) {
+    String name = agentType.getName() + ".FeatureType";
     Layer<T> layer = new Layer<T>(name);
-    layer.setAgentType((Class<? extends T>) object.getClass());
+    layer.setAgentType((Class<? extends T>) agentType);
     layerMap.put(name, layer);
+    classLayerMap.put(agentType, layer);
     return layer;
   }
 
+  private Layer<T> layerFor(T object) {
+    Layer<T> layer = classLayerMap.get(object.getClass());
+    if (layer == null)
+      layer = createLayer(object);
+    return layer;
+  }
+
+  /**
+   * Sets the spatial index used for the layer of the specified agent type.
+   * Objects of the type that are already located in this geography are moved
+   * to the new index. By default, each layer is indexed with a Quadtree.
+   * Layers of point agents whose locations change frequently should use a
+   * {@link PointHashGridIndex}, in which moving an agent is much cheaper.
+   * 
+   * @param agentType
+   *          the type of agents in the layer
+   * @param index
+   *          the index to use
+   */
+  public void setSpatialIndex(Class<?> agentType, SpatialIndex index) {
+    Layer<T> layer = classLayerMap.get(agentType);
+    if (layer == null)
+      layer = createLayer(agentType);
+    SpatialIndex old = layer.getIndex();
+    for (T object : layer.getAgentSet()) {
+      GeomData data = geomMap.get(object);
+      old.remove(data.envelope, object);
+      index.insert(data.envelope, object);
+    }
+    layer.setIndex(index);
+  }
+
   /**
    * Moves the specified object to the specified location. If the location is
    * null then the object remains "in" this projection but without a location.
@@ -168,9 +204,45 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    *          the location to move the object to
    */
   public void move(T object, Geometry geom) {
-    Layer<T> layer = layerMap.get(layerNameFor(object));
-    if (layer == null)
-      layer = createLayer(object);
+    if (moveInternal(layerFor(object), object, geom) && !listeners.isEmpty())
+      this.fireProjectionEvent(new ProjectionEvent(this, object, Type.OBJECT_MOVED));
+  }
+
+  /**
+   * Moves each of the specified objects to the geometry at the same position in
+   * the specified list. This is equivalent to calling move for each object,
+   * except that the move events are fired after all the objects have been
+   * moved, and a layer is only looked up when the type of object changes.
+   * Loaders use this to locate many objects at once.
+   * 
+   * @param objects
+   *          the objects to move
+   * @param geoms
+   *          the objects' new locations
+   */
+  public void moveAll(List<? extends T> objects, List<? extends Geometry> geoms) {
+    if (objects.size() != geoms.size())
+      throw new IllegalArgumentException("There must be a geometry for each object");
+
+    Layer<T> layer = null;
+    for (int i = 0, n = objects.size(); i < n; i++) {
+      T object = objects.get(i);
+      if (layer == null || layer.getAgentType() != object.getClass())
+        layer = layerFor(object);
+      moveInternal(layer, object, geoms.get(i));
+    }
+
+    if (!listeners.isEmpty()) {
+      for (int i = 0, n = objects.size(); i < n; i++) {
+        if (geoms.get(i) != null)
+          this.fireProjectionEvent(new ProjectionEvent(this, objects.get(i), Type.OBJECT_MOVED));
+      }
+    }
+  }
+
+  // returns whether or not the object was moved rather than removed
+  private boolean moveInternal(Layer<T> layer, T object, Geometry geom) {
+    SpatialIndex index = layer.getIndex();
 
     if (geom == null) {
       layer.getAgentSet().remove(object);
@@ -179,7 +251,7 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
       if (data != null){
         index.remove(data.envelope, object);
       }
-      return;
+      return false;
     }
 
     if (layer.getGeomType() == null) {
@@ -190,24 +262,33 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
     }
 
     GeomData geomData = geomMap.get(object);
-    if (geomData != null) {
-      index.remove(geomData.envelope, object);
-    } else {
+    boolean located = geomData != null;
+    if (!located) {
       geomData = new GeomData();
       geomMap.put(object, geomData);
     }
 
     geom.geometryChanged();
-    geomData.envelope = new Envelope(geom.getEnvelopeInternal());
     geomData.geom = geom;
+    if (index instanceof PointHashGridIndex) {
+      // the grid doesn't keep the envelope so it can be reused
+      if (located)
+        geomData.envelope.init(geom.getEnvelopeInternal());
+      else
+        geomData.envelope = new Envelope(geom.getEnvelopeInternal());
+      ((PointHashGridIndex) index).move(geomData.envelope, object);
+    } else {
+      if (located)
+        index.remove(geomData.envelope, object);
+      geomData.envelope = new Envelope(geom.getEnvelopeInternal());
+      index.insert(geomData.envelope, object);
+    }
 
-    index.insert(geomData.envelope, object);
-
-    addedObjects.remove(object);
-    if (!layer.getAgentSet().contains(object))
+    if (!located) {
+      addedObjects.remove(object);
       layer.getAgentSet().add(object);
-
-    this.fireProjectionEvent(new ProjectionEvent(this, object, Type.OBJECT_MOVED));
+    }
+    return true;
   }
 
   /**
@@ -254,7 +335,9 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    */
   public Iterable<T> getObjectsWithin(Envelope envelope) {
     WithinItemVisitor visitor = new WithinItemVisitor(envelope);
-    index.query(envelope, visitor);
+    for (Layer<T> layer : layerMap.values()) {
+      layer.getIndex().query(envelope, visitor);
+    }
     return visitor;
   }
 
@@ -269,7 +352,11 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    *         envelope.
    */
   public Iterable<T> queryInexact(Envelope envelope) {
-    return index.query(envelope);
+    List<T> items = new ArrayList<T>();
+    for (Layer<T> layer : layerMap.values()) {
+      items.addAll(layer.getIndex().query(envelope));
+    }
+    return items;
   }
 
   /**
@@ -284,9 +371,12 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    * @return an iterable over all the objects within the specified location.
    */
   public <X> Iterable<X> getObjectsWithin(Envelope envelope, Class<X> type) {
+    // a layer contains the objects of exactly one type
     WithinItemVisitor visitor = new WithinItemVisitor(envelope);
-    index.query(envelope, visitor);
-    return new FilteredIterator(visitor.iterator(), new TypePredicate(type));
+    Layer<T> layer = classLayerMap.get(type);
+    if (layer != null)
+      layer.getIndex().query(envelope, visitor);
+    return visitor;
   }
 
   /**
@@ -304,7 +394,11 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
    *         envelope.
    */
   public <X> Iterable<X> queryInexact(Envelope envelope, Class<X> type) {
-    return new FilteredIterator(index.query(envelope).iterator(), new TypePredicate(type));
+    // a layer contains the objects of exactly one type
+    Layer<T> layer = classLayerMap.get(type);
+    if (layer == null)
+      return Collections.emptyList();
+    return layer.getIndex().query(envelope);
   }
 
   /**
@@ -355,16 +449,27 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
   	// TODO GIS Transform coverage layers
   	
     calc = new GeodeticCalculator(crs);
+    try {
+      if (crs.equals(DefaultGeographicCRS.WGS84)) {
+        toWGS84 = fromWGS84 = null;
+      } else {
+        toWGS84 = MathTransformCache.getTransform(crs, DefaultGeographicCRS.WGS84);
+        fromWGS84 = MathTransformCache.getTransform(DefaultGeographicCRS.WGS84, crs);
+      }
+    } catch (FactoryException e) {
+      msg.error("Error setting CRS", e);
+    }
 
     if (this.crs == null) {
       this.crs = crs;
       return;
     }
     try {
-      MathTransform transform = CRS.findMathTransform(this.crs, crs);
+      MathTransform transform = MathTransformCache.getTransform(this.crs, crs);
       for (Entry<T, GeomData> entry : geomMap.entrySet()) {
         GeomData gd = entry.getValue();
         T key = entry.getKey();
+        SpatialIndex index = layerFor(key).getIndex();
         index.remove(gd.envelope, key);
         gd.geom = JTS.transform(gd.geom, transform);
         Envelope envelope = new Envelope(gd.geom.getEnvelopeInternal());
@@ -417,28 +522,34 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
       angleInDegrees = angleInDegrees - 360;
     }
     Coordinate coord = geom.getCoordinate();
-    AffineTransform transform;
 
     try {
-      if (!crs.equals(DefaultGeographicCRS.WGS84)) {
-        MathTransform crsTrans = CRS.findMathTransform(this.crs, DefaultGeographicCRS.WGS84);
+      if (toWGS84 != null) {
         Coordinate tmp = new Coordinate();
-        JTS.transform(coord, tmp, crsTrans);
+        JTS.transform(coord, tmp, toWGS84);
         calc.setStartingGeographicPoint(tmp.x, tmp.y);
       } else {
         calc.setStartingGeographicPoint(coord.x, coord.y);
       }
       calc.setDirection(angleInDegrees, distance);
       Point2D p = calc.getDestinationGeographicPoint();
-      if (!crs.equals(DefaultGeographicCRS.WGS84)) {
-        MathTransform crsTrans = CRS.findMathTransform(DefaultGeographicCRS.WGS84, this.crs);
-        JTS.transform(new Coordinate(p.getX(), p.getY()), coord, crsTrans);
+      Coordinate dest = new Coordinate(p.getX(), p.getY());
+      if (fromWGS84 != null) {
+        JTS.transform(dest, dest, fromWGS84);
       }
 
-      transform = AffineTransform.getTranslateInstance(p.getX() - coord.x, p.getY() - coord.y);
-
-      MathTransform mt = mtFactory.createAffineTransform(new GeneralMatrix(transform));
-      geom = JTS.transform(geom, mt);
+      // translate a copy of the geometry, rather than creating an
+      // affine MathTransform for every move
+      final double dx = dest.x - coord.x;
+      final double dy = dest.y - coord.y;
+      geom = (Geometry) geom.clone();
+      geom.apply(new CoordinateFilter() {
+        public void filter(Coordinate c) {
+          c.x += dx;
+          c.y += dy;
+        }
+      });
+      geom.geometryChanged();
     } catch (Exception ex) {
       msg.error("Error moving object by vector", ex);
     }
@@ -515,9 +626,9 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
   protected void remove(T object) {
     GeomData gd = geomMap.get(object);
     if (gd != null) {
-      index.remove(gd.envelope, object);
+      Layer<T> layer = layerFor(object);
+      layer.getIndex().remove(gd.envelope, object);
       geomMap.remove(object);
-      Layer<T> layer = layerMap.get(layerNameFor(object));
       layer.getAgentSet().remove(object);
     } else {
       addedObjects.remove(object);
@@ -579,33 +690,29 @@ public class DefaultGeography<T> extends DefaultProjection<T> implements Geograp
   	return false;
   }
 
-  private static class TypePredicate implements Predicate<Object> {
-
-    private Class<?> type;
-
-    public TypePredicate(Class<?> type) {
-      this.type = type;
-    }
-
-    public boolean evaluate(Object x) {
-      return x.getClass().equals(type);
-    }
-  }
-
   // visitor that does a within check
   private class WithinItemVisitor<T> implements ItemVisitor, Iterable {
 
     List<T> items = new ArrayList<T>();
+    Envelope envelope;
     Geometry env;
 
     public WithinItemVisitor(Envelope env) {
+      this.envelope = env;
       this.env = fac.toGeometry(env);
     }
 
     public void visitItem(Object o) {
       Geometry geo = geomMap.get(o).geom;
 
-      if (geo.within(env)) {
+      if (geo instanceof Point && envelope.getWidth() > 0 && envelope.getHeight() > 0) {
+        // a point is within a rectangle if it is in its interior
+        Coordinate c = ((Point) geo).getCoordinate();
+        if (c.x > envelope.getMinX() && c.x < envelope.getMaxX() && c.y > envelope.getMinY()
+            && c.y < envelope.getMaxY()) {
+          items.add((T) o);
+        }
+      } else if (geo.within(env)) {
         items.add((T) o);
       }
     }
@@ -4,6 +4,8 @@ import java.util.HashSet;
 import java.util.Set;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.SpatialIndex;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
 
 
 /**
@@ -16,6 +18,7 @@ public class Layer<T> {
 	private Class<? extends T> agentType;
 	private Class<? extends Geometry> geomType;
   private String name;
+  private SpatialIndex index = new Quadtree();
 
   /**
    * Creates a layer with no agent type and no geometry.
@@ -75,4 +78,18 @@ public class Layer<T> {
 		this.geomType = geomType;
 	}
 
+  /**
+   * Gets the spatial index of the locations of the agents in this layer.
+   * This defaults to a Quadtree.
+   *
+   * @return the spatial index of the locations of the agents in this layer.
+   */
+  public SpatialIndex getIndex() {
+    return index;
+  }
+
+  protected void setIndex(SpatialIndex index) {
+    this.index = index;
+  }
+
 }
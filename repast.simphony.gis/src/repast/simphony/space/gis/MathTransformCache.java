@@ -0,0 +1,83 @@
+package repast.simphony.space.gis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+/**
+ * Caches the MathTransforms between pairs of coordinate reference systems.
+ * Finding a transform is expensive, so code that transforms geometries on
+ * every agent step should get its transforms from here rather than from
+ * {@link CRS#findMathTransform(CoordinateReferenceSystem, CoordinateReferenceSystem)}.
+ *
+ * Transforms are keyed by the identity of the reference systems, which is
+ * cheap to compare, so callers should reuse their CoordinateReferenceSystem
+ * instances. The UTM zones returned by {@link UTMFinder} are reused in this
+ * way.
+ */
+public class MathTransformCache {
+
+  // bounds the cache if callers create new reference systems for every call
+  private static final int MAX_SIZE = 512;
+
+  private static class Key {
+    CoordinateReferenceSystem source, target;
+
+    Key(CoordinateReferenceSystem source, CoordinateReferenceSystem target) {
+      this.source = source;
+      this.target = target;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(source) + System.identityHashCode(target);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return source == other.source && target == other.target;
+    }
+  }
+
+  private static Map<Key, MathTransform> transforms = new ConcurrentHashMap<Key, MathTransform>();
+
+  /**
+   * Gets the transform from the source to the target coordinate reference
+   * system.
+   *
+   * @param source
+   *          the source coordinate reference system
+   * @param target
+   *          the target coordinate reference system
+   * @return the transform from the source to the target coordinate reference
+   *         system.
+   * @throws FactoryException
+   *           if the transform cannot be found
+   */
+  public static MathTransform getTransform(CoordinateReferenceSystem source,
+      CoordinateReferenceSystem target) throws FactoryException {
+    Key key = new Key(source, target);
+    MathTransform transform = transforms.get(key);
+    if (transform == null) {
+      transform = CRS.findMathTransform(source, target);
+      if (transforms.size() >= MAX_SIZE)
+        transforms.clear();
+      transforms.put(key, transform);
+    }
+    return transform;
+  }
+
+  /**
+   * Removes all the cached transforms.
+   */
+  public static void clear() {
+    transforms.clear();
+  }
+}
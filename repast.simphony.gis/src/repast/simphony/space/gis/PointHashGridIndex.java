@@ -0,0 +1,251 @@
+package repast.simphony.space.gis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.ArrayListVisitor;
+import com.vividsolutions.jts.index.ItemVisitor;
+import com.vividsolutions.jts.index.SpatialIndex;
+
+/**
+ * A spatial index for layers of point geometries whose locations change
+ * frequently. Points are hashed into a uniform grid of square cells, so moving
+ * a point is a constant time operation that, unlike removing it from and
+ * reinserting it into a tree, does not touch any other item. Items with non
+ * point envelopes are supported, but are kept in a list that every query
+ * scans.
+ *
+ * The cell size should be about the size of a typical query envelope, in the
+ * units of the geography's coordinate reference system. Queries return exactly
+ * the points within the query envelope.
+ *
+ * @see DefaultGeography#setSpatialIndex(Class, SpatialIndex)
+ */
+public class PointHashGridIndex implements SpatialIndex {
+
+  private static class Cell extends ArrayList<Entry> {
+    private static final long serialVersionUID = 1L;
+    long key;
+
+    Cell(long key) {
+      this.key = key;
+    }
+  }
+
+  private static class Entry {
+    Object item;
+    double x, y;
+    // null for non point entries
+    Cell cell;
+    // position in the cell, or in the extended list
+    int pos;
+    Envelope envelope;
+  }
+
+  private double cellSize;
+  private Map<Object, Entry> entries = new HashMap<Object, Entry>();
+  private Map<Long, Cell> cells = new HashMap<Long, Cell>();
+  private List<Entry> extended = new ArrayList<Entry>();
+
+  /**
+   * Creates a PointHashGridIndex with the specified cell size.
+   *
+   * @param cellSize
+   *          the width and height of the grid cells in the units of the
+   *          geography's coordinate reference system
+   */
+  public PointHashGridIndex(double cellSize) {
+    if (cellSize <= 0)
+      throw new IllegalArgumentException("Cell size must be greater than 0");
+    this.cellSize = cellSize;
+  }
+
+  /**
+   * Gets the width and height of the grid cells.
+   *
+   * @return the width and height of the grid cells.
+   */
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  /**
+   * Gets the number of items in this index.
+   *
+   * @return the number of items in this index.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private int cellCoord(double val) {
+    return (int) Math.floor(val / cellSize);
+  }
+
+  private static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  private static boolean isPoint(Envelope env) {
+    return env.getWidth() == 0 && env.getHeight() == 0 && !env.isNull();
+  }
+
+  private void attach(Entry entry, Envelope env) {
+    if (isPoint(env)) {
+      entry.x = env.getMinX();
+      entry.y = env.getMinY();
+      long key = key(cellCoord(entry.x), cellCoord(entry.y));
+      Cell cell = cells.get(key);
+      if (cell == null) {
+        cell = new Cell(key);
+        cells.put(key, cell);
+      }
+      entry.cell = cell;
+      entry.pos = cell.size();
+      cell.add(entry);
+    } else {
+      entry.envelope = new Envelope(env);
+      entry.pos = extended.size();
+      extended.add(entry);
+    }
+  }
+
+  private void detach(Entry entry) {
+    List<Entry> list = entry.cell == null ? extended : entry.cell;
+    Entry last = list.remove(list.size() - 1);
+    if (last != entry) {
+      list.set(entry.pos, last);
+      last.pos = entry.pos;
+    }
+    if (entry.cell != null && entry.cell.isEmpty()) {
+      cells.remove(entry.cell.key);
+    }
+    entry.cell = null;
+    entry.envelope = null;
+  }
+
+  /**
+   * Moves the specified item to the specified envelope, inserting it if it is
+   * not already in this index. If the item is a point that stays within the
+   * same cell only its coordinates are updated.
+   *
+   * @param env
+   *          the item's new envelope
+   * @param item
+   *          the item to move
+   */
+  public void move(Envelope env, Object item) {
+    Entry entry = entries.get(item);
+    if (entry == null) {
+      insert(env, item);
+    } else if (entry.cell != null && isPoint(env)
+        && entry.cell.key == key(cellCoord(env.getMinX()), cellCoord(env.getMinY()))) {
+      entry.x = env.getMinX();
+      entry.y = env.getMinY();
+    } else {
+      detach(entry);
+      attach(entry, env);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.vividsolutions.jts.index.SpatialIndex#insert(com.vividsolutions.jts.
+   * geom.Envelope, java.lang.Object)
+   */
+  @Override
+  public void insert(Envelope itemEnv, Object item) {
+    Entry entry = entries.get(item);
+    if (entry != null) {
+      detach(entry);
+    } else {
+      entry = new Entry();
+      entry.item = item;
+      entries.put(item, entry);
+    }
+    attach(entry, itemEnv);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.vividsolutions.jts.index.SpatialIndex#remove(com.vividsolutions.jts.
+   * geom.Envelope, java.lang.Object)
+   */
+  @Override
+  public boolean remove(Envelope itemEnv, Object item) {
+    Entry entry = entries.remove(item);
+    if (entry == null)
+      return false;
+    detach(entry);
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.vividsolutions.jts.index.SpatialIndex#query(com.vividsolutions.jts.geom
+   * .Envelope)
+   */
+  @Override
+  @SuppressWarnings("rawtypes")
+  public List query(Envelope searchEnv) {
+    ArrayListVisitor visitor = new ArrayListVisitor();
+    query(searchEnv, visitor);
+    return visitor.getItems();
+  }
+
+  private static void visit(List<Entry> list, Envelope searchEnv, ItemVisitor visitor) {
+    for (int i = 0, n = list.size(); i < n; i++) {
+      Entry entry = list.get(i);
+      if (searchEnv.contains(entry.x, entry.y))
+        visitor.visitItem(entry.item);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * com.vividsolutions.jts.index.SpatialIndex#query(com.vividsolutions.jts.geom
+   * .Envelope, com.vividsolutions.jts.index.ItemVisitor)
+   */
+  @Override
+  public void query(Envelope searchEnv, ItemVisitor visitor) {
+    if (searchEnv.isNull())
+      return;
+
+    long minX = cellCoord(searchEnv.getMinX());
+    long maxX = cellCoord(searchEnv.getMaxX());
+    long minY = cellCoord(searchEnv.getMinY());
+    long maxY = cellCoord(searchEnv.getMaxY());
+    // the count is a double because the cells of a huge envelope overflow a long
+    if ((double) (maxX - minX + 1) * (maxY - minY + 1) > cells.size()) {
+      // fewer occupied cells than cells in the envelope
+      for (Cell cell : cells.values()) {
+        visit(cell, searchEnv, visitor);
+      }
+    } else {
+      for (long cx = minX; cx <= maxX; cx++) {
+        for (long cy = minY; cy <= maxY; cy++) {
+          Cell cell = cells.get(key((int) cx, (int) cy));
+          if (cell != null)
+            visit(cell, searchEnv, visitor);
+        }
+      }
+    }
+
+    for (int i = 0, n = extended.size(); i < n; i++) {
+      Entry entry = extended.get(i);
+      if (searchEnv.intersects(entry.envelope))
+        visitor.visitItem(entry.item);
+    }
+  }
+}
@@ -0,0 +1,442 @@
+package repast.simphony.space.gis;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.awt.image.WritableRenderedImage;
+
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.opengis.coverage.PointOutsideCoverageException;
+import org.opengis.metadata.spatial.PixelOrientation;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.TransformException;
+
+import com.vividsolutions.jts.geom.Coordinate;
+
+/**
+ * Fast access to the samples of a WritableGridCoverage2D. The accessor
+ * resolves the coverage's world to grid transform and the tiles of its image
+ * once, and then reads and writes samples directly in the tiles' data buffers,
+ * without the position and array allocations of the GridCoverage2D evaluate
+ * methods. Locations are nearest neighbor, as with evaluate.
+ *
+ * Values written through the coverage's set methods are flushed before they are
+ * read here, and values written here are immediately visible to the coverage.
+ * Writing requires a writable coverage image, see {@link #isWritable()}, and
+ * checks out the image's writable tiles until {@link #dispose()} is called. An
+ * accessor can be shared by threads that read the coverage or that write
+ * different cells of it.
+ *
+ * @see RasterLayer#getAccessor()
+ */
+public class RasterAccessor {
+
+	// a tile's raster and, if its samples are laid out by component, the
+	// layout of its data buffer. The fields are final so that tiles can be
+	// safely read from the tile array without locking.
+	private static class Tile {
+		final int tileX, tileY;
+		final Raster raster;
+		final WritableRaster writable;
+		final DataBuffer buffer;
+		final int[] banks, offsets;
+		final int pixelStride, scanlineStride;
+		final int translateX, translateY;
+
+		Tile(int tileX, int tileY, Raster raster, WritableRaster writable) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+			this.raster = raster;
+			this.writable = writable;
+			if (raster.getSampleModel() instanceof ComponentSampleModel) {
+				ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+				buffer = raster.getDataBuffer();
+				banks = model.getBankIndices();
+				// the buffer adds its own bank offsets
+				offsets = model.getBandOffsets();
+				pixelStride = model.getPixelStride();
+				scanlineStride = model.getScanlineStride();
+				translateX = raster.getSampleModelTranslateX();
+				translateY = raster.getSampleModelTranslateY();
+			} else {
+				buffer = null;
+				banks = offsets = null;
+				pixelStride = scanlineStride = translateX = translateY = 0;
+			}
+		}
+
+		int index(int x, int y, int band) {
+			return (y - translateY) * scanlineStride + (x - translateX) * pixelStride + offsets[band];
+		}
+	}
+
+	private WritableGridCoverage2D coverage;
+	private RenderedImage image;
+	private boolean writable;
+	private int dataType;
+	private int numBands;
+
+	private int minX, minY, maxX, maxY;
+	private int tileWidth, tileHeight, tileGridX, tileGridY;
+	private int minTileX, minTileY, numXTiles;
+	private Tile[] tiles;
+
+	private double m00, m01, m02, m10, m11, m12;
+	// null if world to grid is affine
+	private MathTransform2D worldToGrid;
+
+	// returned by toGrid for locations outside the coverage. This is never a
+	// cell inside the coverage, whose x would have to be Integer.MIN_VALUE.
+	private static final long OUTSIDE = Long.MIN_VALUE;
+
+	/**
+	 * Creates a RasterAccessor for the specified coverage.
+	 *
+	 * @param coverage the coverage to access
+	 */
+	public RasterAccessor(WritableGridCoverage2D coverage) {
+		this.coverage = coverage;
+		image = coverage.getRenderedImage();
+		writable = image instanceof WritableRenderedImage;
+		dataType = image.getSampleModel().getDataType();
+		numBands = image.getSampleModel().getNumBands();
+
+		minX = image.getMinX();
+		minY = image.getMinY();
+		maxX = minX + image.getWidth();
+		maxY = minY + image.getHeight();
+		tileWidth = image.getTileWidth();
+		tileHeight = image.getTileHeight();
+		tileGridX = image.getTileGridXOffset();
+		tileGridY = image.getTileGridYOffset();
+		minTileX = image.getMinTileX();
+		minTileY = image.getMinTileY();
+		numXTiles = image.getNumXTiles();
+		tiles = new Tile[numXTiles * image.getNumYTiles()];
+
+		GridGeometry2D geometry = coverage.getGridGeometry();
+		MathTransform2D transform = geometry.getCRSToGrid2D(PixelOrientation.UPPER_LEFT);
+		if (transform instanceof AffineTransform) {
+			AffineTransform affine = (AffineTransform) transform;
+			m00 = affine.getScaleX();
+			m01 = affine.getShearX();
+			m02 = affine.getTranslateX();
+			m10 = affine.getShearY();
+			m11 = affine.getScaleY();
+			m12 = affine.getTranslateY();
+		} else {
+			worldToGrid = transform;
+		}
+	}
+
+	/**
+	 * Gets whether or not samples can be written through this accessor.
+	 *
+	 * @return true if samples can be written through this accessor, otherwise false.
+	 */
+	public boolean isWritable() {
+		return writable;
+	}
+
+	/**
+	 * Gets the number of bands in the coverage.
+	 *
+	 * @return the number of bands in the coverage.
+	 */
+	public int getNumBands() {
+		return numBands;
+	}
+
+	/**
+	 * Gets the DataBuffer type of the coverage's samples.
+	 *
+	 * @return the DataBuffer type of the coverage's samples.
+	 */
+	public int getDataType() {
+		return dataType;
+	}
+
+	private Tile tile(int x, int y) {
+		int tx = Math.floorDiv(x - tileGridX, tileWidth);
+		int ty = Math.floorDiv(y - tileGridY, tileHeight);
+		int i = (ty - minTileY) * numXTiles + tx - minTileX;
+		Tile tile = tiles[i];
+		if (tile == null) {
+			tile = loadTile(i, tx, ty);
+		}
+		return tile;
+	}
+
+	// gets the tile under the lock so that each writable tile is checked
+	// out only once
+	private synchronized Tile loadTile(int i, int tx, int ty) {
+		Tile tile = tiles[i];
+		if (tile == null) {
+			if (writable) {
+				WritableRaster raster = ((WritableRenderedImage) image).getWritableTile(tx, ty);
+				tile = new Tile(tx, ty, raster, raster);
+			} else {
+				tile = new Tile(tx, ty, image.getTile(tx, ty), null);
+			}
+			tiles[i] = tile;
+		}
+		return tile;
+	}
+
+	/**
+	 * Releases the writable tiles of the coverage image that this accessor has
+	 * checked out. The accessor can still be used afterwards, and checks the
+	 * tiles out again as it needs them.
+	 */
+	public synchronized void dispose() {
+		for (int i = 0; i < tiles.length; i++) {
+			Tile tile = tiles[i];
+			if (tile != null && tile.writable != null) {
+				((WritableRenderedImage) image).releaseWritableTile(tile.tileX, tile.tileY);
+			}
+			tiles[i] = null;
+		}
+	}
+
+	private boolean contains(int x, int y) {
+		return x >= minX && x < maxX && y >= minY && y < maxY;
+	}
+
+	private void checkBounds(int x, int y) {
+		if (!contains(x, y)) {
+			throw new PointOutsideCoverageException("Grid location [" + x + ", " + y +
+					"] is outside of the coverage");
+		}
+	}
+
+	// gets the cell at the world location, with the grid x in the high and
+	// the grid y in the low 32 bits, or OUTSIDE
+	private long toGrid(double x, double y) {
+		double gx, gy;
+		if (worldToGrid == null) {
+			gx = m00 * x + m01 * y + m02;
+			gy = m10 * x + m11 * y + m12;
+		} else {
+			double[] point = { x, y };
+			try {
+				worldToGrid.transform(point, 0, point, 0, 1);
+			} catch (TransformException e) {
+				return OUTSIDE;
+			}
+			gx = point[0];
+			gy = point[1];
+		}
+		int cx = (int) Math.floor(gx);
+		int cy = (int) Math.floor(gy);
+		return contains(cx, cy) ? (long) cx << 32 | (cy & 0xFFFFFFFFL) : OUTSIDE;
+	}
+
+	private static int cellX(long cell) {
+		return (int) (cell >> 32);
+	}
+
+	private static int cellY(long cell) {
+		return (int) cell;
+	}
+
+	private long checkWorld(double x, double y) {
+		long cell = toGrid(x, y);
+		if (cell == OUTSIDE) {
+			throw new PointOutsideCoverageException("Location [" + x + ", " + y +
+					"] is outside of the coverage");
+		}
+		return cell;
+	}
+
+	private double sample(int x, int y, int band) {
+		Tile tile = tile(x, y);
+		if (tile.buffer != null) {
+			return tile.buffer.getElemDouble(tile.banks[band], tile.index(x, y, band));
+		}
+		return tile.raster.getSampleDouble(x, y, band);
+	}
+
+	private int intSample(int x, int y, int band) {
+		Tile tile = tile(x, y);
+		if (tile.buffer != null) {
+			return tile.buffer.getElem(tile.banks[band], tile.index(x, y, band));
+		}
+		return tile.raster.getSample(x, y, band);
+	}
+
+	private void setSample(int x, int y, int band, double value) {
+		if (!writable) {
+			throw new UnsupportedOperationException("The coverage image is not writable");
+		}
+		Tile tile = tile(x, y);
+		boolean integral = dataType != DataBuffer.TYPE_FLOAT && dataType != DataBuffer.TYPE_DOUBLE;
+		if (tile.buffer != null) {
+			int index = tile.index(x, y, band);
+			if (integral) {
+				tile.buffer.setElem(tile.banks[band], index, (int) value);
+			} else {
+				tile.buffer.setElemDouble(tile.banks[band], index, value);
+			}
+		} else if (integral) {
+			tile.writable.setSample(x, y, band, (int) value);
+		} else {
+			tile.writable.setSample(x, y, band, value);
+		}
+	}
+
+	/**
+	 * Gets the value of the specified band at the specified grid location.
+	 *
+	 * @param x the grid x coordinate
+	 * @param y the grid y coordinate
+	 * @param band the band
+	 * @return the value of the specified band at the specified grid location.
+	 * @throws PointOutsideCoverageException if the location is outside the coverage
+	 */
+	public double getGridValue(int x, int y, int band) {
+		coverage.flushCache(true);
+		checkBounds(x, y);
+		return sample(x, y, band);
+	}
+
+	/**
+	 * Gets the value of the specified band at the specified grid location as an
+	 * int.
+	 *
+	 * @param x the grid x coordinate
+	 * @param y the grid y coordinate
+	 * @param band the band
+	 * @return the value of the specified band at the specified grid location.
+	 * @throws PointOutsideCoverageException if the location is outside the coverage
+	 */
+	public int getIntegerGridValue(int x, int y, int band) {
+		coverage.flushCache(true);
+		checkBounds(x, y);
+		return intSample(x, y, band);
+	}
+
+	/**
+	 * Gets the value of the specified band at the specified world location.
+	 *
+	 * @param x the world x coordinate
+	 * @param y the world y coordinate
+	 * @param band the band
+	 * @return the value of the specified band at the specified world location.
+	 * @throws PointOutsideCoverageException if the location is outside the coverage
+	 */
+	public double getWorldValue(double x, double y, int band) {
+		coverage.flushCache(true);
+		long cell = checkWorld(x, y);
+		return sample(cellX(cell), cellY(cell), band);
+	}
+
+	/**
+	 * Gets the value of the specified band at the specified world location as
+	 * an int.
+	 *
+	 * @param x the world x coordinate
+	 * @param y the world y coordinate
+	 * @param band the band
+	 * @return the value of the specified band at the specified world location.
+	 * @throws PointOutsideCoverageException if the location is outside the coverage
+	 */
+	public int getIntegerWorldValue(double x, double y, int band) {
+		coverage.flushCache(true);
+		long cell = checkWorld(x, y);
+		return intSample(cellX(cell), cellY(cell), band);
+	}
+
+	/**
+	 * Gets the values of the specified band at the specified world locations.
+	 * Values at locations outside the coverage are NaN.
+	 *
+	 * @param xs the world x coordinates
+	 * @param ys the world y coordinates
+	 * @param band the band
+	 * @param dest the array to put the values in, or null to create one
+	 * @return the values of the specified band at the specified world locations.
+	 */
+	public double[] getWorldValues(double[] xs, double[] ys, int band, double[] dest) {
+		if (dest == null) dest = new double[xs.length];
+		coverage.flushCache(true);
+		for (int i = 0; i < xs.length; i++) {
+			long cell = toGrid(xs[i], ys[i]);
+			dest[i] = cell == OUTSIDE ? Double.NaN : sample(cellX(cell), cellY(cell), band);
+		}
+		return dest;
+	}
+
+	/**
+	 * Gets the values of the specified band at the specified world locations.
+	 * Values at locations outside the coverage are NaN.
+	 *
+	 * @param coords the world locations
+	 * @param band the band
+	 * @param dest the array to put the values in, or null to create one
+	 * @return the values of the specified band at the specified world locations.
+	 */
+	public double[] getWorldValues(Coordinate[] coords, int band, double[] dest) {
+		if (dest == null) dest = new double[coords.length];
+		coverage.flushCache(true);
+		for (int i = 0; i < coords.length; i++) {
+			long cell = toGrid(coords[i].x, coords[i].y);
+			dest[i] = cell == OUTSIDE ? Double.NaN : sample(cellX(cell), cellY(cell), band);
+		}
+		return dest;
+	}
+
+	/**
+	 * Sets the value of the specified band at the specified grid location.
+	 * Values are cast to the coverage's data type.
+	 *
+	 * @param x the grid x coordinate
+	 * @param y the grid y coordinate
+	 * @param band the band
+	 * @param value the value
+	 * @throws PointOutsideCoverageException if the location is outside the coverage
+	 * @throws UnsupportedOperationException if the coverage is not writable
+	 */
+	public void setGridValue(int x, int y, int band, double value) {
+		coverage.flushCache(true);
+		checkBounds(x, y);
+		setSample(x, y, band, value);
+	}
+
+	/**
+	 * Sets the value of the specified band at the specified world location.
+	 * Values are cast to the coverage's data type.
+	 *
+	 * @param x the world x coordinate
+	 * @param y the world y coordinate
+	 * @param band the band
+	 * @param value the value
+	 * @throws PointOutsideCoverageException if the location is outside the coverage
+	 * @throws UnsupportedOperationException if the coverage is not writable
+	 */
+	public void setWorldValue(double x, double y, int band, double value) {
+		coverage.flushCache(true);
+		long cell = checkWorld(x, y);
+		setSample(cellX(cell), cellY(cell), band, value);
+	}
+
+	/**
+	 * Gets the grid location of the specified world location.
+	 *
+	 * @param x the world x coordinate
+	 * @param y the world y coordinate
+	 * @param dest the point to put the grid location in, or null to create one
+	 * @return the grid location, or null if the world location is outside the
+	 * coverage.
+	 */
+	public Point2D worldToGrid(double x, double y, Point2D dest) {
+		long cell = toGrid(x, y);
+		if (cell == OUTSIDE) return null;
+		if (dest == null) dest = new Point2D.Double();
+		dest.setLocation(cellX(cell), cellY(cell));
+		return dest;
+	}
+}
@@ -1,6 +1,5 @@
 package repast.simphony.space.gis;
 
-import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
@@ -41,6 +40,9 @@ public class RasterLayer {
 	
 	protected WritableGridCoverage2D gridCoverage;
 	
+	// created on first use, and whenever the coverage is replaced
+	private volatile RasterAccessor accessor;
+	
 	/**
 	 * Create the RasterLayer from the provided GridCoverage2D.  This is useful
 	 * when creating GridCoverage2D from other readers or data types.
@@ -146,6 +148,32 @@ public class RasterLayer {
 		Coverage cov = Operations.DEFAULT.resample(gridCoverage,crs);
 		
 		gridCoverage = new WritableGridCoverage2D((GridCoverage2D)cov);
+		RasterAccessor old = accessor;
+		accessor = null;
+		if (old != null)
+			old.dispose();
+	}
+	
+	/**
+	 * Gets the RasterAccessor used to read and write this layer's values.
+	 * Models that sample the layer frequently, or at many locations at once,
+	 * can use the accessor directly, and share it between threads. The accessor
+	 * changes when the layer's CRS is set.
+	 * 
+	 * @return the RasterAccessor used to read and write this layer's values.
+	 */
+	public RasterAccessor getAccessor() {
+		RasterAccessor result = accessor;
+		if (result == null) {
+			synchronized (this) {
+				result = accessor;
+				if (result == null) {
+					result = new RasterAccessor(gridCoverage);
+					accessor = result;
+				}
+			}
+		}
+		return result;
 	}
 	
 
@@ -167,57 +195,91 @@ public class RasterLayer {
 	}
 
 	public int getIntegerGridValue(int x, int y) {
-		return gridCoverage.evaluate(new GridCoordinates2D(x, y), 
-				new int[getNumBands()])[0];
+		return getAccessor().getIntegerGridValue(x, y, 0);
 	}
 	
 	public int getFloatGridValue(int x, int y) {
-		return gridCoverage.evaluate(new GridCoordinates2D(x, y), 
-				new int[getNumBands()])[0];
+		return getAccessor().getIntegerGridValue(x, y, 0);
 	}
 	
 	public int getDoubleGridValue(int x, int y) {
-		return gridCoverage.evaluate(new GridCoordinates2D(x, y), 
-				new int[getNumBands()])[0];
+		return getAccessor().getIntegerGridValue(x, y, 0);
 	}
 	
 	public int getIntegerWorldValue(double x, double y) {
-		return gridCoverage.evaluate(new Point2D.Double(x,y), new int[getNumBands()])[0];
+		return getAccessor().getIntegerWorldValue(x, y, 0);
 	}
 	
 	public float getFloatWorldValue(double x, double y) {
-		return gridCoverage.evaluate(new Point2D.Double(x,y), new float[getNumBands()])[0];
+		return (float) getAccessor().getWorldValue(x, y, 0);
 	}
 	
 	public double getDoubleWorldValue(double x, double y) {
-		return gridCoverage.evaluate(new Point2D.Double(x,y), new double[getNumBands()])[0];
+		return getAccessor().getWorldValue(x, y, 0);
+	}
+	
+	/**
+	 * Gets the values of the first band at the specified world locations.
+	 * Values at locations outside the layer are NaN.
+	 * 
+	 * @param xs the world x coordinates
+	 * @param ys the world y coordinates
+	 * @param dest the array to put the values in, or null to create one
+	 * @return the values at the specified world locations.
+	 */
+	public double[] getDoubleWorldValues(double[] xs, double[] ys, double[] dest) {
+		return getAccessor().getWorldValues(xs, ys, 0, dest);
 	}
 	
 	 
   public void setWorldValue(double x, double y, int value) {
-  	gridCoverage.setValue(new DirectPosition2D(
-  			gridCoverage.getCoordinateReferenceSystem(), x, y), value);
+  	RasterAccessor acc = getAccessor();
+  	if (acc.isWritable())
+  		acc.setWorldValue(x, y, 0, value);
+  	else
+  		gridCoverage.setValue(new DirectPosition2D(
+  				gridCoverage.getCoordinateReferenceSystem(), x, y), value);
   }
   
   public void setWorldValue(double x, double y, float value) {
-  	gridCoverage.setValue(new DirectPosition2D(
-  			gridCoverage.getCoordinateReferenceSystem(), x, y), value);
+  	RasterAccessor acc = getAccessor();
+  	if (acc.isWritable())
+  		acc.setWorldValue(x, y, 0, value);
+  	else
+  		gridCoverage.setValue(new DirectPosition2D(
+  				gridCoverage.getCoordinateReferenceSystem(), x, y), value);
   }
   
   public void setWorldValue(double x, double y, double value) {
-  	gridCoverage.setValue(new DirectPosition2D(
-  			gridCoverage.getCoordinateReferenceSystem(), x, y), value);
+  	RasterAccessor acc = getAccessor();
+  	if (acc.isWritable())
+  		acc.setWorldValue(x, y, 0, value);
+  	else
+  		gridCoverage.setValue(new DirectPosition2D(
+  				gridCoverage.getCoordinateReferenceSystem(), x, y), value);
   }
 
   public void setGridValue(int x, int y, int value) {
-  	gridCoverage.setValue(new GridCoordinates2D(x,y), value);
+  	RasterAccessor acc = getAccessor();
+  	if (acc.isWritable())
+  		acc.setGridValue(x, y, 0, value);
+  	else
+  		gridCoverage.setValue(new GridCoordinates2D(x,y), value);
   }
   
   public void setGridValue(int x, int y, float value) {
-  	gridCoverage.setValue(new GridCoordinates2D(x,y), value);
+  	RasterAccessor acc = getAccessor();
+  	if (acc.isWritable())
+  		acc.setGridValue(x, y, 0, value);
+  	else
+  		gridCoverage.setValue(new GridCoordinates2D(x,y), value);
   }
   
   public void setGridValue(int x, int y, double value) {
-  	gridCoverage.setValue(new GridCoordinates2D(x,y), value);
+  	RasterAccessor acc = getAccessor();
+  	if (acc.isWritable())
+  		acc.setGridValue(x, y, 0, value);
+  	else
+  		gridCoverage.setValue(new GridCoordinates2D(x,y), value);
   }
 }
@@ -14,6 +14,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.simple.SimpleFeatureIterator;
@@ -55,10 +57,45 @@ public class ShapefileLoader<T> {
     primToObject.put(char.class, Character.class);
   }
 
+  /**
+   * The number of features whose geometries are transformed by a single task
+   * when loading in parallel.
+   */
+  public static final int BATCH_SIZE = 512;
+
+  private class TransformTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<SimpleFeature> features;
+    private Geometry[] geoms;
+    private int start, end;
+
+    public TransformTask(List<SimpleFeature> features, Geometry[] geoms, int start, int end) {
+      this.features = features;
+      this.geoms = geoms;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= BATCH_SIZE) {
+        transform(features, geoms, start, end);
+      } else {
+        int mid = (start + end) >>> 1;
+        invokeAll(new TransformTask(features, geoms, start, mid), new TransformTask(features,
+            geoms, mid, end));
+      }
+    }
+  }
+
   private MathTransform transform;
   private Geography geography;
   private Context context;
-  private Map<String, Method> attributeMethodMap = new HashMap<String, Method>();
+  // feature attribute indices and the agent setters they are bound to
+  private int[] attributeIndices;
+  private Method[] attributeMethods;
   private Class agentClass;
 
   private Iterator<SimpleFeature>featureIterator;
@@ -102,6 +139,8 @@ public class ShapefileLoader<T> {
       initTransform(geography, type);
       
       // Loop over remaining type attributes
+      List<Integer> indices = new ArrayList<Integer>();
+      List<Method> methods = new ArrayList<Method>();
       for (int i = 1, n = schema.getAttributeCount(); i < n; i++) {
         type = schema.getType(i);
         name = type.getName().getLocalPart();
@@ -109,9 +148,17 @@ public class ShapefileLoader<T> {
         Method method = methodMap.get(name.toLowerCase());
         if (method == null) method = methodMap.get(name.replace("_", "").toLowerCase());
         if (method != null && isCompatible(method.getParameterTypes()[0], (type.getBinding()))) {
-            attributeMethodMap.put(name, method);  
+          // skip the access checks on every invoke
+          method.setAccessible(true);
+          indices.add(i);
+          methods.add(method);
         }
       }
+      attributeIndices = new int[indices.size()];
+      for (int i = 0; i < attributeIndices.length; i++) {
+        attributeIndices[i] = indices.get(i);
+      }
+      attributeMethods = methods.toArray(new Method[methods.size()]);
       iter = store.getFeatureSource().getFeatures().features();
 
       List<SimpleFeature> features = new ArrayList<SimpleFeature>();
@@ -158,10 +205,63 @@ public class ShapefileLoader<T> {
   /**
    * Creates all the agents for the shapefile features,
    * setting each agent's properteis to the value of a
-   * feature's relevant attributes.
+   * feature's relevant attributes. The feature geometries are
+   * transformed to the geography's CRS in parallel batches, and the agents
+   * are added to the context and then located in the geography together,
+   * once all of them have been created. A feature whose agent can't be
+   * created is logged and skipped.
    */
   public void load() {
-    while (hasNext()) next();
+    List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+    while (featureIterator.hasNext()) {
+      features.add(featureIterator.next());
+    }
+
+    Geometry[] geoms = new Geometry[features.size()];
+    if (features.size() > BATCH_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ForkJoinPool.commonPool().invoke(new TransformTask(features, geoms, 0, features.size()));
+    } else {
+      transform(features, geoms, 0, features.size());
+    }
+
+    List<T> agents = new ArrayList<T>(features.size());
+    List<Geometry> agentGeoms = new ArrayList<Geometry>(features.size());
+    for (int i = 0; i < geoms.length; i++) {
+      try {
+        agents.add(fillAgent(features.get(i), (T) agentClass.newInstance()));
+        agentGeoms.add(geoms[i]);
+      } catch (InstantiationException e) {
+        msg.error("Error creating agent instance from class", e);
+      } catch (IllegalAccessException e) {
+        msg.error("Error setting agent property from feature attribute", e);
+      } catch (InvocationTargetException e) {
+        msg.error("Error setting agent property from feature attribute", e);
+      }
+    }
+
+    for (T agent : agents) {
+      if (!context.contains(agent)) context.add(agent);
+    }
+    if (geography instanceof DefaultGeography) {
+      ((DefaultGeography) geography).moveAll(agents, agentGeoms);
+    } else if (geography != null) {
+      for (int i = 0; i < agentGeoms.size(); i++) {
+        if (agentGeoms.get(i) != null) geography.move(agents.get(i), agentGeoms.get(i));
+      }
+    }
+  }
+
+  // transforms the geometries of features start (inclusive) to end (exclusive)
+  // into geoms, leaving null where the transform fails
+  private void transform(List<SimpleFeature> features, Geometry[] geoms, int start, int end) {
+    if (geography == null) return;
+    for (int i = start; i < end; i++) {
+      try {
+        geoms[i] = JTS.transform((Geometry) features.get(i).getDefaultGeometry(), transform);
+      } catch (TransformException e) {
+        msg.error("Error transforming feature geometry to geography's CRS", e);
+      }
+    }
   }
 
   /**
@@ -280,10 +380,8 @@ public class ShapefileLoader<T> {
   }
 
   private T fillAgent(SimpleFeature feature, T agent) throws IllegalAccessException, InvocationTargetException {
-    for (String attribName : attributeMethodMap.keySet()) {
-      Object val = feature.getAttribute(attribName);
-      Method write = attributeMethodMap.get(attribName);
-      write.invoke(agent, val);
+    for (int i = 0; i < attributeIndices.length; i++) {
+      attributeMethods[i].invoke(agent, feature.getAttribute(attributeIndices[i]));
     }
     return agent;
   }
@@ -2,6 +2,7 @@ package repast.simphony.space.gis;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.geotools.geometry.jts.JTS;
 import org.geotools.referencing.ReferencingFactoryFinder;
@@ -18,14 +19,13 @@ import org.opengis.referencing.crs.GeographicCRS;
 import org.opengis.referencing.crs.ProjectedCRS;
 import org.opengis.referencing.cs.CartesianCS;
 import org.opengis.referencing.operation.Conversion;
-import org.opengis.referencing.operation.CoordinateOperation;
-import org.opengis.referencing.operation.CoordinateOperationFactory;
 import org.opengis.referencing.operation.MathTransformFactory;
 import org.opengis.referencing.operation.OperationMethod;
 import org.opengis.referencing.operation.TransformException;
 
 import simphony.util.messages.MessageCenter;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -40,6 +40,9 @@ public class UTMFinder {
   private static DefaultCoordinateOperationFactory cFactory = new DefaultCoordinateOperationFactory();
   private static CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
 
+  // zone CRSs are reused so that transforms to and from them can be cached
+  private static Map<Short, CoordinateReferenceSystem> zones = new ConcurrentHashMap<Short, CoordinateReferenceSystem>();
+
   /**
    * Determine the zone for the given lat/lon
    *
@@ -68,10 +71,11 @@ public class UTMFinder {
    * @return the appropriate UTM.
    */
   public static CoordinateReferenceSystem getUTMFor(Geometry geom, CoordinateReferenceSystem crs) {
+    Coordinate coord = geom.getCoordinate();
     try {
-      if (!crs.equals(wgs84)) {
-        CoordinateOperation op = cFactory.createOperation(crs, wgs84);
-        geom = JTS.transform(geom, op.getMathTransform());
+      if (crs != wgs84 && !crs.equals(wgs84)) {
+        // only the one coordinate is needed
+        coord = JTS.transform(coord, null, MathTransformCache.getTransform(crs, wgs84));
       }
     } catch (FactoryException e) {
       center.error("Error during crs conversion", e);
@@ -79,7 +83,7 @@ public class UTMFinder {
       center.error("Error during geometry transform", e);
     }
     // default wgs84 (lon, lat)
-    return getUTMfor(geom.getCoordinate().y, geom.getCoordinate().x);
+    return getUTMfor(coord.y, coord.x);
   }
 
   /**
@@ -94,7 +98,24 @@ public class UTMFinder {
   }
 
 
+  /**
+   * Gets the UTM CRS for the specified zone. Southern zones are negative. The
+   * same CRS instance is returned for every call with the same zone.
+   *
+   * @param zone the zone
+   * @return the UTM CRS for the specified zone.
+   */
   public static CoordinateReferenceSystem getUTMfor(short zone) {
+    CoordinateReferenceSystem utm = zones.get(zone);
+    if (utm == null) {
+      utm = createUTM(zone);
+      if (utm != null)
+        zones.put(zone, utm);
+    }
+    return utm;
+  }
+
+  private static CoordinateReferenceSystem createUTM(short zone) {
     GeographicCRS geoCRS = DefaultGeographicCRS.WGS84;
     MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
     CRSFactory crsFactory = ReferencingFactoryFinder.getCRSFactory(null);
@@ -1,10 +1,13 @@
 package repast.simphony.gis.io;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.simple.SimpleFeatureCollection;
@@ -178,4 +181,38 @@ public class LoaderTest {
     }
     fIterator.close();
   }
+
+  @Test
+  public void testLoad() throws IOException, FactoryException, TransformException {
+    File file = new File("./sampleData/states.shp");
+    ShapefileDataStore store = new ShapefileDataStore(file.toURL());
+    SimpleFeatureCollection collection = store.getFeatureSource().getFeatures();
+    MathTransform trans = CRS.findMathTransform(
+    		store.getFeatureSource().getSchema().getCoordinateReferenceSystem(),
+            geography.getCRS(), true);
+
+    ShapefileLoader<TestAgent> loader = new ShapefileLoader<TestAgent>(TestAgent.class, file.toURL(), geography, context);
+    loader.load();
+    assertFalse(loader.hasNext());
+
+    Map<String, TestAgent> agents = new HashMap<String, TestAgent>();
+    for (Object obj : context) {
+      TestAgent agent = (TestAgent) obj;
+      agents.put(agent.getStateName(), agent);
+    }
+
+    SimpleFeatureIterator fIterator = collection.features();
+    int count = 0;
+    while (fIterator.hasNext()) {
+      SimpleFeature feature = fIterator.next();
+      TestAgent agent = agents.get(feature.getAttribute("STATE_NAME"));
+      assertEquals(((Double)feature.getAttribute("AREA")).doubleValue(), agent.getArea(), 0);
+      assertEquals(feature.getAttribute("POP1999"), agent.getPop1999());
+      assertEquals(JTS.transform(((Geometry)feature.getDefaultGeometry()), trans).toText(),
+              geography.getGeometry(agent).toText());
+      count++;
+    }
+    fIterator.close();
+    assertEquals(count, context.size());
+  }
 }
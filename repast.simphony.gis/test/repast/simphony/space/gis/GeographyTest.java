@@ -29,6 +29,7 @@ import repast.simphony.space.projection.ProjectionEvent;
 import repast.simphony.space.projection.ProjectionListener;
 
 import java.awt.geom.Point2D;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -374,6 +375,47 @@ public class GeographyTest extends TestCase {
     assertEquals(0, expected.size());
   }
 
+  public void testWithinDistanceMixed() {
+    GeometryFactory fac = new GeometryFactory();
+    Shed billings = new Shed("Billings");
+    geography.move(billings, fac.createPoint(new Coordinate(-108.5333, 45.8)));
+    Shed bozeman = new Shed("bozeman");
+    geography.move(bozeman, fac.createPoint(new Coordinate(-111.15, 45.78333)));
+
+    // a small square ~100K east of billings
+    House house = houses[0];
+    Coordinate[] coords = new Coordinate[]{new Coordinate(-107.3, 45.7), new Coordinate(-107.2, 45.7),
+            new Coordinate(-107.2, 45.9), new Coordinate(-107.3, 45.9), new Coordinate(-107.3, 45.7)};
+    geography.move(house, fac.createPolygon(fac.createLinearRing(coords), null));
+
+    GeographyWithin within = new GeographyWithin(geography, 120 * 1000, billings);
+    Set<Object> expected = new HashSet<Object>();
+    expected.add(house);
+    for (Object obj : within.query()) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+
+    within = new GeographyWithin(geography, 220 * 1000, billings);
+    expected.add(house);
+    expected.add(bozeman);
+    for (Object obj : within.query()) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+
+    Set<Object> filterSet = new HashSet<Object>();
+    filterSet.add(bozeman);
+    expected.add(bozeman);
+    for (Object obj : within.query(filterSet)) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+
+    within = new GeographyWithin(geography, 90 * 1000, billings);
+    assertFalse(within.query().iterator().hasNext());
+  }
+
   public void testIntersectsQuery() {
     GeometryFactory fac = new GeometryFactory();
     int i = 0;
@@ -574,4 +616,64 @@ public class GeographyTest extends TestCase {
     assertEquals(car, listener.movedObj);
     assertEquals(geography, listener.proj);
   }
+
+  public void testPointHashGridIndex() {
+    GeometryFactory fac = new GeometryFactory();
+    for (int i = 0; i < 10; i++) {
+      geography.move(cars[i], fac.createPoint(new Coordinate(i, 0)));
+    }
+    geography.move(houses[0], fac.createPoint(new Coordinate(2, 0)));
+    ((DefaultGeography<Object>) geography).setSpatialIndex(Car.class, new PointHashGridIndex(2));
+    assertTrue(geography.getLayer(Car.class).getIndex() instanceof PointHashGridIndex);
+
+    // move the cars to (i, i), some within their cell and some not
+    for (int i = 0; i < 10; i++) {
+      geography.move(cars[i], fac.createPoint(new Coordinate(i, i)));
+    }
+
+    Set<Object> expected = new HashSet<Object>();
+    expected.add(cars[2]);
+    expected.add(cars[3]);
+    for (Object obj : geography.getObjectsWithin(new Envelope(1.5, 3.5, 1.5, 3.5), Car.class)) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+
+    expected.add(cars[1]);
+    expected.add(cars[2]);
+    expected.add(houses[0]);
+    for (Object obj : geography.queryInexact(new Envelope(1, 2, -1, 2))) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+
+    expected.add(cars[4]);
+    expected.add(cars[5]);
+    IntersectsQuery<Object> query = new IntersectsQuery<Object>(geography, fac.toGeometry(new Envelope(3.5,
+            5.5, 3.5, 5.5)));
+    for (Object obj : query.query()) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+
+    geography.move(cars[4], null);
+    town.remove(cars[5]);
+    assertFalse(geography.queryInexact(new Envelope(3.5, 5.5, 3.5, 5.5)).iterator().hasNext());
+  }
+
+  public void testPointHashGridIndexHugeEnvelope() {
+    GeometryFactory fac = new GeometryFactory();
+    ((DefaultGeography<Object>) geography).setSpatialIndex(Car.class, new PointHashGridIndex(2));
+    for (int i = 0; i < 10; i++) {
+      geography.move(cars[i], fac.createPoint(new Coordinate(i * 1000, -i * 1000)));
+    }
+
+    // an envelope spanning the whole int range of cells on both axes
+    Set<Object> expected = new HashSet<Object>(Arrays.asList(cars));
+    for (Object obj : geography.getObjectsWithin(new Envelope(-Double.MAX_VALUE, Double.MAX_VALUE,
+            -Double.MAX_VALUE, Double.MAX_VALUE), Car.class)) {
+      assertTrue(expected.remove(obj));
+    }
+    assertEquals(0, expected.size());
+  }
 }
@@ -4,23 +4,32 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.WritableRaster;
 import java.io.File;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 import javax.media.jai.PlanarImage;
 
+import org.geotools.coverage.grid.GridCoordinates2D;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.factory.Hints;
 import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.geometry.Envelope2D;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.coverage.PointOutsideCoverageException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
 import junit.framework.TestCase;
+import repast.simphony.space.gis.RasterAccessor;
 import repast.simphony.space.gis.RasterLayer;
 import repast.simphony.space.gis.RepastCoverageFactory;
 
@@ -316,4 +325,105 @@ public class RepastCoverageFactoryTests extends TestCase {
 		// TODO transform CRS
 		// TODO serialize
 	}
+	
+	/**
+	 * Compare the values read through a RasterAccessor with those returned by
+	 * the coverage's evaluate methods, and write through the accessor.
+	 */
+	public void testRasterAccessor() throws Exception {
+		File file = new File(GENERATED_GEOTIFF_GRAY);
+		RasterLayer[] layers = new RasterLayer[] {new RasterLayer(coverage1),
+				new RasterLayer(file.getName(), file, true)};
+
+		Random random = new Random(1);
+		for (RasterLayer layer : layers) {
+			GridCoverage2D coverage = layer.getGridCoverage();
+			Envelope2D env = coverage.getEnvelope2D();
+			RasterAccessor accessor = layer.getAccessor();
+			
+			double[] xs = new double[100];
+			double[] ys = new double[100];
+			for (int i = 0; i < xs.length; i++) {
+				xs[i] = env.getMinX() + random.nextDouble() * env.getWidth();
+				ys[i] = env.getMinY() + random.nextDouble() * env.getHeight();
+				double expected = coverage.evaluate(new Point2D.Double(xs[i], ys[i]), new double[1])[0];
+				assertEquals(expected, layer.getDoubleWorldValue(xs[i], ys[i]));
+				assertEquals(expected, accessor.getWorldValue(xs[i], ys[i], 0));
+			}
+			
+			double[] values = layer.getDoubleWorldValues(xs, ys, null);
+			for (int i = 0; i < xs.length; i++) {
+				assertEquals(accessor.getWorldValue(xs[i], ys[i], 0), values[i]);
+			}
+			
+			values = accessor.getWorldValues(new double[] {env.getMinX() - 1}, 
+					new double[] {env.getMinY()}, 0, null);
+			assertTrue(Double.isNaN(values[0]));
+			
+			try {
+				accessor.getWorldValue(env.getMaxX() + 1, env.getMinY(), 0);
+				fail();
+			} catch (PointOutsideCoverageException e) {
+			}
+			
+			if (accessor.isWritable()) {
+				layer.setWorldValue(xs[0], ys[0], 42);
+				assertEquals(42, layer.getIntegerWorldValue(xs[0], ys[0]));
+				assertEquals(42.0, coverage.evaluate(new Point2D.Double(xs[0], ys[0]), new double[1])[0]);
+				
+				layer.setGridValue(3, 4, 7);
+				assertEquals(7, layer.getIntegerGridValue(3, 4));
+				assertEquals(7, coverage.evaluate(new GridCoordinates2D(3, 4), new int[1])[0]);
+			}
+		}
+	}
+
+	/**
+	 * Read a layer through its shared RasterAccessor from several threads at
+	 * once, each of which gets the accessor itself.
+	 */
+	public void testRasterAccessorThreads() throws Exception {
+		final RasterLayer layer = new RasterLayer(coverage1);
+		GridCoverage2D coverage = layer.getGridCoverage();
+		Envelope2D env = coverage.getEnvelope2D();
+
+		Random random = new Random(1);
+		final double[] xs = new double[10000];
+		final double[] ys = new double[10000];
+		final double[] expected = new double[xs.length];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = env.getMinX() + random.nextDouble() * env.getWidth();
+			ys[i] = env.getMinY() + random.nextDouble() * env.getHeight();
+			expected[i] = coverage.evaluate(new Point2D.Double(xs[i], ys[i]), new double[1])[0];
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<?>[] futures = new Future<?>[8];
+			for (int t = 0; t < futures.length; t++) {
+				final int offset = t;
+				futures[t] = executor.submit(new Callable<Void>() {
+					public Void call() {
+						RasterAccessor accessor = layer.getAccessor();
+						for (int j = 0; j < xs.length; j++) {
+							int i = (j + offset * 1000) % xs.length;
+							assertEquals(expected[i], accessor.getWorldValue(xs[i], ys[i], 0));
+						}
+						return null;
+					}
+				});
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// the tiles are checked out again after they have been released
+		RasterAccessor accessor = layer.getAccessor();
+		accessor.dispose();
+		assertEquals(expected[0], accessor.getWorldValue(xs[0], ys[0], 0));
+		accessor.dispose();
+	}
 }
@@ -1,19 +1,49 @@
 package repast.simphony.relogo;
 
+import java.io.ObjectStreamException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import groovy.lang.Closure;
-import repast.simphony.random.RandomHelper;
 import repast.simphony.util.SimUtilities;
 
-public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<E> {
+/**
+ * An agentset that can read from a shared, never modified, array of agents
+ * until it is itself modified, at which point it copies the array into its own
+ * storage. This makes obtaining the agentset of all the turtles, links or
+ * agents of a breed constant time when the context hasn't changed, while the
+ * agentset still behaves as the independent copy it always was. The sharing is
+ * kept here rather than in a subclass so that agentsets remain instances of
+ * AgentSet itself, which Groovy's runtime dispatch relies on to prefer the
+ * AgentSet overloads, such as ask(AgentSet, Closure), over the Collection ones.
+ * The element type is left unbounded here so that the overridden mutators don't
+ * get bridge methods casting to ReLogoAgent, which would reject the non agent
+ * elements agentsets have always accepted.
+ *
+ * @see ContextAgentSets
+ */
+public abstract class AbstractAgentSet<E> extends ArrayList<E> {
 	
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1132438687545680786L;
 
+	private transient ContextAgentSets.Snapshot snapshot;
+	// the snapshot's agents, null unless the agentset reads from a snapshot
+	private transient Object[] shared;
+
 	public AbstractAgentSet(){
 		super();
 	}
@@ -21,6 +51,303 @@ public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<
 	public AbstractAgentSet(Collection<E> c){
 		super(c);
 	}
+
+	AbstractAgentSet(ContextAgentSets.Snapshot snapshot) {
+		super();
+		this.snapshot = snapshot;
+		this.shared = snapshot.agents;
+	}
+
+	/**
+	 * Gets the snapshot this agentset reads from.
+	 *
+	 * @return the snapshot this agentset reads from, or null if it doesn't read
+	 *         from one or has been modified since it was obtained.
+	 */
+	ContextAgentSets.Snapshot getSnapshot() {
+		return shared == null ? null : snapshot;
+	}
+
+	private void detach() {
+		Object[] s = shared;
+		if (s != null) {
+			shared = null;
+			snapshot = null;
+			super.addAll((List) Arrays.asList(s));
+		}
+	}
+
+	@Override
+	public int size() {
+		Object[] s = shared;
+		return s == null ? super.size() : s.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public E get(int index) {
+		Object[] s = shared;
+		if (s == null) return super.get(index);
+		if (index >= s.length) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + s.length);
+		return (E) s[index];
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		Object[] s = shared;
+		if (s == null) return super.indexOf(o);
+		for (int i = 0; i < s.length; i++) {
+			if (o == null ? s[i] == null : o.equals(s[i])) return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		Object[] s = shared;
+		if (s == null) return super.lastIndexOf(o);
+		for (int i = s.length - 1; i >= 0; i--) {
+			if (o == null ? s[i] == null : o.equals(s[i])) return i;
+		}
+		return -1;
+	}
+
+	@Override
+	public Object[] toArray() {
+		Object[] s = shared;
+		return s == null ? super.toArray() : s.clone();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] a) {
+		Object[] s = shared;
+		if (s == null) return super.toArray(a);
+		if (a.length < s.length) return (T[]) Arrays.copyOf(s, s.length, a.getClass());
+		System.arraycopy(s, 0, a, 0, s.length);
+		if (a.length > s.length) a[s.length] = null;
+		return a;
+	}
+
+	@Override
+	public void forEach(Consumer<? super E> action) {
+		Object[] s = shared;
+		if (s == null) {
+			super.forEach(action);
+		} else {
+			for (Object o : s) {
+				action.accept((E) o);
+			}
+		}
+	}
+
+	@Override
+	public Spliterator<E> spliterator() {
+		Object[] s = shared;
+		if (s == null) return super.spliterator();
+		return Spliterators.spliterator(s, Spliterator.ORDERED);
+	}
+
+	/**
+	 * Iterates by index so that the iterator stays valid when removing through
+	 * it copies the shared agents.
+	 */
+	private class Itr implements ListIterator<E> {
+		int cursor;
+		int lastRet = -1;
+
+		Itr(int index) {
+			cursor = index;
+		}
+
+		public boolean hasNext() {
+			return cursor < size();
+		}
+
+		public E next() {
+			if (cursor >= size()) throw new NoSuchElementException();
+			lastRet = cursor++;
+			return get(lastRet);
+		}
+
+		public boolean hasPrevious() {
+			return cursor > 0;
+		}
+
+		public E previous() {
+			if (cursor <= 0) throw new NoSuchElementException();
+			lastRet = --cursor;
+			return get(lastRet);
+		}
+
+		public int nextIndex() {
+			return cursor;
+		}
+
+		public int previousIndex() {
+			return cursor - 1;
+		}
+
+		public void remove() {
+			if (lastRet < 0) throw new IllegalStateException();
+			AbstractAgentSet.this.remove(lastRet);
+			cursor = lastRet;
+			lastRet = -1;
+		}
+
+		public void set(E e) {
+			if (lastRet < 0) throw new IllegalStateException();
+			AbstractAgentSet.this.set(lastRet, e);
+		}
+
+		public void add(E e) {
+			AbstractAgentSet.this.add(cursor++, e);
+			lastRet = -1;
+		}
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return shared == null ? super.iterator() : new Itr(0);
+	}
+
+	@Override
+	public ListIterator<E> listIterator() {
+		return listIterator(0);
+	}
+
+	@Override
+	public ListIterator<E> listIterator(int index) {
+		if (shared == null) return super.listIterator(index);
+		if (index < 0 || index > size()) throw new IndexOutOfBoundsException("Index: " + index);
+		return new Itr(index);
+	}
+
+	@Override
+	public List<E> subList(int fromIndex, int toIndex) {
+		// sub lists write through to the backing storage
+		detach();
+		return super.subList(fromIndex, toIndex);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		Object[] s = shared;
+		return s == null ? super.equals(o) : Arrays.asList(s).equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		Object[] s = shared;
+		return s == null ? super.hashCode() : Arrays.asList(s).hashCode();
+	}
+
+	// mutators copy the shared agents first
+
+	@Override
+	public boolean add(E e) {
+		detach();
+		return super.add(e);
+	}
+
+	@Override
+	public void add(int index, E element) {
+		detach();
+		super.add(index, element);
+	}
+
+	@Override
+	public E set(int index, E element) {
+		detach();
+		return super.set(index, element);
+	}
+
+	@Override
+	public E remove(int index) {
+		detach();
+		return super.remove(index);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		detach();
+		return super.remove(o);
+	}
+
+	@Override
+	public void clear() {
+		shared = null;
+		snapshot = null;
+		super.clear();
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends E> c) {
+		detach();
+		return super.addAll(c);
+	}
+
+	@Override
+	public boolean addAll(int index, Collection<? extends E> c) {
+		detach();
+		return super.addAll(index, c);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		detach();
+		return super.removeAll(c);
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		detach();
+		return super.retainAll(c);
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super E> filter) {
+		detach();
+		return super.removeIf(filter);
+	}
+
+	@Override
+	public void replaceAll(UnaryOperator<E> operator) {
+		detach();
+		super.replaceAll(operator);
+	}
+
+	@Override
+	public void sort(Comparator<? super E> c) {
+		detach();
+		super.sort(c);
+	}
+
+	@Override
+	public void ensureCapacity(int minCapacity) {
+		detach();
+		super.ensureCapacity(minCapacity);
+	}
+
+	@Override
+	public void trimToSize() {
+		detach();
+		super.trimToSize();
+	}
+
+	protected Object writeReplace() throws ObjectStreamException {
+		// the superclass writes its own storage
+		detach();
+		return this;
+	}
 	
 	/**
 	 * Ask agentset to execute commands in random order.
@@ -28,11 +355,25 @@ public abstract class AbstractAgentSet<E extends ReLogoAgent> extends ArrayList<
 	 */
 	public void askAgentSet(Closure cl){
 		cl.setResolveStrategy(Closure.DELEGATE_FIRST);
-		ArrayList<ReLogoAgent> temp = new ArrayList<ReLogoAgent>(this);
-		SimUtilities.shuffle(temp, RandomHelper.getUniform());
+		@SuppressWarnings("unchecked")
+		ArrayList<ReLogoAgent> temp = new ArrayList<ReLogoAgent>((Collection<? extends ReLogoAgent>) this);
+		SimUtilities.shuffle(temp, ConcurrentAsk.getUniform());
 		for (ReLogoAgent o : temp){
 			cl.setDelegate(o);
 			cl.call(o);
 		}
 	}
+
+	/**
+	 * Ask agentset to execute commands in random order, concurrently.
+	 * 
+	 * @param cl
+	 * @see ConcurrentAsk
+	 */
+	public void askAgentSetConcurrent(Closure cl){
+		@SuppressWarnings("unchecked")
+		ArrayList<ReLogoAgent> temp = new ArrayList<ReLogoAgent>((Collection<? extends ReLogoAgent>) this);
+		SimUtilities.shuffle(temp, ConcurrentAsk.getUniform());
+		ConcurrentAsk.ask(temp, cl);
+	}
 }
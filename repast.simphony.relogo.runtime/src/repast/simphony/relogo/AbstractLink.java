@@ -1,6 +1,7 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -385,7 +386,8 @@ public abstract class AbstractLink<T> extends Link<T> {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock) {
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : a) {
 				r.setMyself(this);
@@ -410,7 +412,8 @@ public abstract class AbstractLink<T> extends Link<T> {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : c) {
 				r.setMyself(this);
@@ -435,6 +438,28 @@ public abstract class AbstractLink<T> extends Link<T> {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : a) {
+			r.setMyself(this);
+		}
+		a.askAgentSetConcurrent(askBlock);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : c) {
+			r.setMyself(this);
+		}
+		ConcurrentAsk.ask(new ArrayList<ReLogoAgent>(c), askBlock);
+	}
+
 	/**
 	 * Executes a set of commands for a turtle.
 	 * 
@@ -443,7 +468,8 @@ public abstract class AbstractLink<T> extends Link<T> {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		t.setMyself(this);
 		t.askTurtle(askBlock);
 	}
@@ -456,7 +482,8 @@ public abstract class AbstractLink<T> extends Link<T> {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		p.setMyself(this);
 		p.askPatch(askBlock);
 	}
@@ -469,7 +496,8 @@ public abstract class AbstractLink<T> extends Link<T> {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Link l, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		l.setMyself(this);
 		l.askLink(askBlock);
 	}
@@ -1,6 +1,7 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 import groovy.util.ObservableMap;
 
 import java.beans.PropertyChangeEvent;
@@ -43,11 +44,28 @@ public abstract class AbstractObserver implements Observer {
 	}
 
 	public void setContext(Context context) {
+		if (contextAgentSets != null) {
+			contextAgentSets.dispose();
+		}
 		this.context = context;
+		this.contextAgentSets = context == null ? null : new ContextAgentSets(context);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public AgentSet getAgentSetOfClass(Class clazz) {
+		if (contextAgentSets == null) {
+			return Utility.agentSetFromIterable(context.getObjects(clazz));
+		}
+		return contextAgentSets.getAgentSet(clazz);
 	}
 
 	RLWorldDimensions rLWorldDimensions;
 	AgentSet<Patch> cachedPatches;
+	ContextAgentSets contextAgentSets;
+	Patch[][] patchArray;
+	int patchOriginX, patchOriginY;
 	String observerID;
 
 	public String getObserverID() {
@@ -73,7 +91,7 @@ public abstract class AbstractObserver implements Observer {
 		dpvs.add(var);
 		int xdim = this.worldWidth();
 		int ydim = this.worldHeight();
-		DenseDoubleMatrix2D ddm = new DenseDoubleMatrix2D(ydim, xdim);
+		DenseDoubleMatrix2D ddm = new PatchVariableMatrix(ydim, xdim);
 		for (int x = 0; x < xdim; x++) {
 			for (int y = 0; y < ydim; y++) {
 				ddm.setQuick(y, x, var.getDefaultValue());
@@ -102,6 +120,36 @@ public abstract class AbstractObserver implements Observer {
 		this.rLWorldDimensions = rLD;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void setPatchArray(Patch[][] patchArray) {
+		this.patchArray = patchArray;
+		this.patchOriginX = -rLWorldDimensions.getMinPxcor();
+		this.patchOriginY = -rLWorldDimensions.getMinPycor();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Patch getPatchAt(int x, int y) {
+		Patch[][] patches = patchArray;
+		if (patches == null) {
+			return Utility.getPatchOnGrid(new GridPoint(x, y), this);
+		}
+		int i = x + patchOriginX;
+		int j = y + patchOriginY;
+		if (i < 0 || i >= patches.length || j < 0 || j >= patches[i].length) {
+			// let the grid's borders wrap the location or throw a
+			// SpatialException
+			int[] loc = new int[2];
+			getGrid().getGridPointTranslator().transform(loc, x, y);
+			i = loc[0] + patchOriginX;
+			j = loc[1] + patchOriginY;
+		}
+		return patches[i][j];
+	}
+
 	public void projectionEventOccurred(ProjectionEvent p) {
 		if (p.getType() == ProjectionEvent.EDGE_REMOVED) {
 			context.remove(p.getSubject());
@@ -127,7 +175,8 @@ public abstract class AbstractObserver implements Observer {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock) {
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : a) {
 				r.setMyself(this);
@@ -153,7 +202,8 @@ public abstract class AbstractObserver implements Observer {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : c) {
 				r.setMyself(this);
@@ -178,6 +228,28 @@ public abstract class AbstractObserver implements Observer {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : a) {
+			r.setMyself(this);
+		}
+		a.askAgentSetConcurrent(askBlock);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : c) {
+			r.setMyself(this);
+		}
+		ConcurrentAsk.ask(new ArrayList<ReLogoAgent>(c), askBlock);
+	}
+
 	/**
 	 * Executes a set of commands for a turtle.
 	 * 
@@ -186,7 +258,8 @@ public abstract class AbstractObserver implements Observer {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		t.setMyself(this);
 		t.askTurtle(askBlock);
 	}
@@ -199,7 +272,8 @@ public abstract class AbstractObserver implements Observer {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		p.setMyself(this);
 		p.askPatch(askBlock);
 
@@ -213,7 +287,8 @@ public abstract class AbstractObserver implements Observer {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Link l, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		l.setMyself(this);
 		l.askLink(askBlock);
 
@@ -401,7 +476,8 @@ public abstract class AbstractObserver implements Observer {
 	 * 
 	 * @see #createTurtles(int, Closure)
 	 */
-	public AgentSet<Turtle> crt(int number, Closure closure) {
+	public AgentSet<Turtle> crt(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure) {
 		return crt(number, closure, "default");
 	}
 
@@ -419,7 +495,8 @@ public abstract class AbstractObserver implements Observer {
 	 * 
 	 * @see #createTurtles(int, Closure, String)
 	 */
-	public AgentSet<Turtle> crt(int number, Closure closure, String type) {
+	public AgentSet<Turtle> crt(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type) {
 		AgentSet newTurtles = new AgentSet();
 		for (int i = 0; i < number; i++) {
 			newTurtles.add(tf.createTurtle(type));
@@ -444,7 +521,8 @@ public abstract class AbstractObserver implements Observer {
 	 * 
 	 * @see #createTurtles(int, Closure, Class)
 	 */
-	public AgentSet<Turtle> crt(int number, Closure closure, Class type) {
+	public AgentSet<Turtle> crt(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type) {
 		return crt(number, closure, type.getSimpleName());
 	}
 
@@ -460,7 +538,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createTurtles(int number, Closure closure, String type) {
+	public AgentSet<Turtle> createTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type) {
 		return crt(number, closure, type);
 	}
 
@@ -476,7 +555,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createTurtles(int number, Closure closure, Class type) {
+	public AgentSet<Turtle> createTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type) {
 		return crt(number, closure, type.getSimpleName());
 	}
 
@@ -501,7 +581,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createTurtles(int number, Closure closure) {
+	public AgentSet<Turtle> createTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure) {
 		return crt(number, closure);
 	}
 
@@ -528,7 +609,8 @@ public abstract class AbstractObserver implements Observer {
 	 * @return created turtles
 	 * @see #createOrderedTurtles(int, Closure)
 	 */
-	public AgentSet<Turtle> cro(int number, Closure closure) {
+	public AgentSet<Turtle> cro(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure) {
 		return cro(number, closure, "default");
 	}
 
@@ -544,7 +626,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> cro(int number, Closure closure, String type) {
+	public AgentSet<Turtle> cro(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type) {
 		AgentSet<Turtle> newTurtles = new AgentSet<Turtle>();
 		double headingIncrement = 360.0 / ((double) number);
 
@@ -569,7 +652,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createOrderedTurtles(int number, Closure closure, String type) {
+	public AgentSet<Turtle> createOrderedTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type) {
 		return cro(number, closure, type);
 	}
 
@@ -585,7 +669,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createOrderedTurtles(int number, Closure closure, Class type) {
+	public AgentSet<Turtle> createOrderedTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type) {
 		return cro(number, closure, type);
 	}
 
@@ -601,7 +686,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> cro(int number, Closure closure, Class type) {
+	public AgentSet<Turtle> cro(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type) {
 		return cro(number, closure, type.getSimpleName());
 	}
 
@@ -626,7 +712,8 @@ public abstract class AbstractObserver implements Observer {
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createOrderedTurtles(int number, Closure closure) {
+	public AgentSet<Turtle> createOrderedTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure) {
 		return cro(number, closure);
 	}
 
@@ -880,16 +967,65 @@ public abstract class AbstractObserver implements Observer {
 	}
 
 	private void diff(String patchVariable, double number, boolean isMoore) {
-//		int possibleNumberOfNeighbors = isMoore ? 8 : 4;
-		// String neighborsString = isMoore ? "neighbors" : "neighbors4"
 		DenseDoubleMatrix2D ddm = getPatchVarMatrix(patchVariable);
-		DenseDoubleMatrix2D ddm2 = new DenseDoubleMatrix2D(ddm.rows(),
-				ddm.columns());
 		Grid grid = getGrid();
 		if (grid != null){
 			boolean isPeriodic = grid.isPeriodic();
-			JavaUtility.diffuse(ddm, ddm2, number, isMoore, isPeriodic);
-			setPatchVarMatrix(patchVariable, ddm2);
+			if (ddm instanceof PatchVariableMatrix) {
+				JavaUtility.diffuse(new PatchVariableMatrix[] { (PatchVariableMatrix) ddm },
+						new double[] { number }, isMoore, isPeriodic);
+			} else {
+				// a matrix set from elsewhere has no buffer
+				DenseDoubleMatrix2D ddm2 = new DenseDoubleMatrix2D(ddm.rows(),
+						ddm.columns());
+				JavaUtility.diffuse(ddm, ddm2, number, isMoore, isPeriodic);
+				setPatchVarMatrix(patchVariable, ddm2);
+			}
+		}
+	}
+
+	/**
+	 * Diffuses to the eight neighboring patches a fraction of each of a number
+	 * of patch variables. Diffusing the variables together takes a single pass
+	 * over the patches.
+	 * 
+	 * @param patchVariables
+	 *            a map from the names of diffusible patch variables to numbers
+	 *            in the range [0,1]
+	 */
+	public void diffuse(Map<String, ? extends Number> patchVariables) {
+		diff(patchVariables, true);
+	}
+
+	/**
+	 * Diffuses to the four neighboring patches a fraction of each of a number
+	 * of patch variables. Diffusing the variables together takes a single pass
+	 * over the patches.
+	 * 
+	 * @param patchVariables
+	 *            a map from the names of diffusible patch variables to numbers
+	 *            in the range [0,1]
+	 */
+	public void diffuse4(Map<String, ? extends Number> patchVariables) {
+		diff(patchVariables, false);
+	}
+
+	private void diff(Map<String, ? extends Number> patchVariables, boolean isMoore) {
+		List<PatchVariableMatrix> matrices = new ArrayList<PatchVariableMatrix>();
+		double[] numbers = new double[patchVariables.size()];
+		for (Map.Entry<String, ? extends Number> entry : patchVariables.entrySet()) {
+			DenseDoubleMatrix2D ddm = getPatchVarMatrix(entry.getKey());
+			if (ddm instanceof PatchVariableMatrix) {
+				numbers[matrices.size()] = entry.getValue().doubleValue();
+				matrices.add((PatchVariableMatrix) ddm);
+			} else {
+				diff(entry.getKey(), entry.getValue().doubleValue(), isMoore);
+			}
+		}
+		Grid grid = getGrid();
+		if (grid != null){
+			JavaUtility.diffuse(matrices.toArray(new PatchVariableMatrix[matrices.size()]),
+					numbers, isMoore, grid.isPeriodic());
 		}
 	}
 
@@ -1,27 +1,22 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.commons.collections15.Predicate;
-import org.apache.commons.collections15.PredicateUtils;
-
-import repast.simphony.query.QueryUtils;
-import repast.simphony.query.space.continuous.ContinuousWithin;
-import repast.simphony.query.space.grid.MooreQuery;
-import repast.simphony.query.space.grid.VNQuery;
 import repast.simphony.relogo.factories.PatchFactory;
+import repast.simphony.relogo.factories.RLWorldDimensions;
 import repast.simphony.space.SpatialException;
 import repast.simphony.space.continuous.NdPoint;
 import repast.simphony.space.grid.Grid;
 import repast.simphony.space.grid.GridPoint;
 import repast.simphony.ui.probe.ProbeID;
-import repast.simphony.util.collections.FilteredIterator;
 
 public abstract class AbstractPatch implements Patch {
 
@@ -416,15 +411,71 @@ public abstract class AbstractPatch implements Patch {
 		return this;
 	}
 
-	private AgentSet<Patch> mooreNeighbors2D(int... extents){
-		MooreQuery mq = new MooreQuery(getMyObserver().getGrid(), this, extents);
-		Iterable i = mq.query();
-		Predicate pr = PredicateUtils.andPredicate(PredicateUtils
-				.instanceofPredicate(Patch.class), PredicateUtils
-				.notPredicate(PredicateUtils.equalPredicate(this)));
-		FilteredIterator<Patch> patchesAt = new FilteredIterator<Patch>(
-				i.iterator(), pr);
-		return Utility.agentSetFromIterator(patchesAt);
+	// the extent 1 neighborhoods, which are the ones used by diffusion and
+	// most models, are cached as patches never move
+	private volatile Patch[] mooreNeighbors, vnNeighbors;
+
+	/**
+	 * Gets the patches in the Moore or von Neumann neighborhood of this patch
+	 * from the observer's patch array, in the same order as the corresponding
+	 * MooreQuery or VNQuery.
+	 */
+	private Patch[] neighborPatches(boolean moore, int extentX, int extentY){
+		Observer observer = getMyObserver();
+		GridPoint pt = getGridLocation();
+		if (pt == null) return new Patch[0];
+		int cx = pt.getX();
+		int cy = pt.getY();
+		int minX = cx - extentX, maxX = cx + extentX;
+		int minY = cy - extentY, maxY = cy + extentY;
+		if (!observer.getGrid().isPeriodic()){
+			RLWorldDimensions dims = observer.getRLDimensions();
+			minX = Math.max(minX, dims.getMinPxcor());
+			maxX = Math.min(maxX, dims.getMaxPxcor());
+			minY = Math.max(minY, dims.getMinPycor());
+			maxY = Math.min(maxY, dims.getMaxPycor());
+		}
+		List<Patch> result = new ArrayList<Patch>();
+		if (moore){
+			for (int x = minX; x <= maxX; x++){
+				for (int y = minY; y <= maxY; y++){
+					if (x != cx || y != cy){
+						addNeighbor(result, observer.getPatchAt(x, y));
+					}
+				}
+			}
+		}
+		else {
+			for (int x = minX; x <= maxX; x++){
+				if (x != cx) addNeighbor(result, observer.getPatchAt(x, cy));
+			}
+			for (int y = minY; y <= maxY; y++){
+				if (y != cy) addNeighbor(result, observer.getPatchAt(cx, y));
+			}
+		}
+		return result.toArray(new Patch[result.size()]);
+	}
+
+	private void addNeighbor(List<Patch> result, Patch patch){
+		// a wrapped neighborhood can reach back to this patch in small worlds
+		if (patch != null && !patch.equals(this)){
+			result.add(patch);
+		}
+	}
+
+	private AgentSet<Patch> mooreNeighbors2D(int extentX, int extentY){
+		Patch[] neighbors;
+		if (extentX == 1 && extentY == 1){
+			neighbors = mooreNeighbors;
+			if (neighbors == null){
+				neighbors = neighborPatches(true, 1, 1);
+				mooreNeighbors = neighbors;
+			}
+		}
+		else {
+			neighbors = neighborPatches(true, extentX, extentY);
+		}
+		return new AgentSet<Patch>(Arrays.asList(neighbors));
 	}
 	/**
 	 * Returns the agentset of the eight neighboring patches (Moore
@@ -450,15 +501,19 @@ public abstract class AbstractPatch implements Patch {
 		return mooreNeighbors2D(extentX,extentY);
 	}
 
-	private AgentSet<Patch> vnNeighbors2D(int... extents){
-		VNQuery mq = new VNQuery(getMyObserver().getGrid(), this, extents);
-		Iterable i = mq.query();
-		Predicate pr = PredicateUtils.andPredicate(PredicateUtils
-				.instanceofPredicate(Patch.class), PredicateUtils
-				.notPredicate(PredicateUtils.equalPredicate(this)));
-		FilteredIterator<Patch> patchesAt = new FilteredIterator<Patch>(
-				i.iterator(), pr);
-		return Utility.agentSetFromIterator(patchesAt);
+	private AgentSet<Patch> vnNeighbors2D(int extentX, int extentY){
+		Patch[] neighbors;
+		if (extentX == 1 && extentY == 1){
+			neighbors = vnNeighbors;
+			if (neighbors == null){
+				neighbors = neighborPatches(false, 1, 1);
+				vnNeighbors = neighbors;
+			}
+		}
+		else {
+			neighbors = neighborPatches(false, extentX, extentY);
+		}
+		return new AgentSet<Patch>(Arrays.asList(neighbors));
 	}
 	
 	/**
@@ -495,15 +550,11 @@ public abstract class AbstractPatch implements Patch {
 	 * @return agentset subset of collection a within a distance num of the caller
 	 */
 	public AgentSet inRadius(Collection a, Number num) {
-		ContinuousWithin cwq = new ContinuousWithin(getMyObserver().getSpace(),
-				this, num.doubleValue());
-		Predicate pr = QueryUtils.createContains(cwq.query());
-		FilteredIterator result = new FilteredIterator(a.iterator(), pr);
-		List temp = new ArrayList();
-		while (result.hasNext()) {
-			temp.add(result.next());
-		}
-		return new AgentSet(temp);
+		AgentSet result = Utility.inRadiusU(a, getMyObserver().getSpace()
+				.getLocation(this), num.doubleValue(), getMyObserver());
+		// the within query never included the patch itself
+		result.remove(this);
+		return result;
 	}
 
 	/**
@@ -666,7 +717,8 @@ public abstract class AbstractPatch implements Patch {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock) {
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : a) {
 				r.setMyself(this);
@@ -691,7 +743,8 @@ public abstract class AbstractPatch implements Patch {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : c) {
 				r.setMyself(this);
@@ -716,6 +769,28 @@ public abstract class AbstractPatch implements Patch {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : a) {
+			r.setMyself(this);
+		}
+		a.askAgentSetConcurrent(askBlock);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : c) {
+			r.setMyself(this);
+		}
+		ConcurrentAsk.ask(new ArrayList<ReLogoAgent>(c), askBlock);
+	}
+
 	/**
 	 * Executes a set of commands for a turtle.
 	 * 
@@ -724,7 +799,8 @@ public abstract class AbstractPatch implements Patch {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		t.setMyself(this);
 		t.askTurtle(askBlock);
 	}
@@ -737,7 +813,8 @@ public abstract class AbstractPatch implements Patch {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		p.setMyself(this);
 		p.askPatch(askBlock);
 	}
@@ -750,7 +827,8 @@ public abstract class AbstractPatch implements Patch {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Link l, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		l.setMyself(this);
 		l.askLink(askBlock);
 	}
@@ -785,7 +863,8 @@ public abstract class AbstractPatch implements Patch {
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> sprout(Number number, Closure closure) {
+	public AgentSet<Turtle> sprout(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure) {
 		return sprout(number, null, "default");
 	}
 
@@ -801,7 +880,8 @@ public abstract class AbstractPatch implements Patch {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> sprout(Number number, Closure closure, String turtleType) {
+	public AgentSet<Turtle> sprout(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String turtleType) {
 
 		AgentSet<Turtle> newTurtles = new AgentSet<Turtle>();
 
@@ -827,7 +907,8 @@ public abstract class AbstractPatch implements Patch {
 	 *            a turtle class
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> sprout(Number number, Closure closure, Class turtleType) {
+	public AgentSet<Turtle> sprout(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class turtleType) {
 		return sprout(number, closure, turtleType.getSimpleName());
 	}
 
@@ -1,6 +1,7 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -215,7 +216,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 *          a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> hatch(Number number, Closure closure) {
+	public AgentSet<Turtle> hatch(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure) {
 
 		AgentSet<Turtle> newTurtles = new AgentSet<Turtle>();
 		for (int i = 0; i < number.intValue(); i++) {
@@ -244,7 +246,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @return created turtles
 	 * 
 	 */
-	public AgentSet<Turtle> hatch(Number number, Closure closure, String childType) {
+	public AgentSet<Turtle> hatch(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String childType) {
 
 		AgentSet<Turtle> newTurtles = new AgentSet<Turtle>();
 		for (int i = 0; i < number.intValue(); i++) {
@@ -272,7 +275,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @param childType
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> hatch(Number number, Closure closure, Class childType) {
+	public AgentSet<Turtle> hatch(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class childType) {
 		return hatch(number, closure, childType.getSimpleName());
 	}
 
@@ -284,7 +288,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @param askBlock
 	 *          a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock) {
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : a) {
 				r.setMyself(this);
@@ -308,7 +313,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @param askBlock
 	 *          a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
 		try {
 			for (ReLogoAgent r : c) {
 				r.setMyself(this);
@@ -332,6 +338,28 @@ public abstract class AbstractTurtle implements Turtle {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : a) {
+			r.setMyself(this);
+		}
+		a.askAgentSetConcurrent(askBlock);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock) {
+		for (ReLogoAgent r : c) {
+			r.setMyself(this);
+		}
+		ConcurrentAsk.ask(new ArrayList<ReLogoAgent>(c), askBlock);
+	}
+
 	/**
 	 * Executes a set of commands for a turtle.
 	 * 
@@ -340,7 +368,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @param askBlock
 	 *          a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		t.setMyself(this);
 		t.askTurtle(askBlock);
 
@@ -354,7 +383,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @param askBlock
 	 *          a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		p.setMyself(this);
 		p.askPatch(askBlock);
 
@@ -368,7 +398,8 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @param askBlock
 	 *          a set of commands
 	 */
-	public void ask(Link l, Closure askBlock) {
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock) {
 		l.setMyself(this);
 		l.askLink(askBlock);
 
@@ -1492,16 +1523,7 @@ public abstract class AbstractTurtle implements Turtle {
 	 * @return agentset subset of collection a within a distance num of the caller
 	 */
 	public AgentSet inRadius(Collection a, Number num) {
-
-		ContinuousSpace space = getMyObserver().getSpace();
-		double distSq = num.doubleValue() * num.doubleValue();
-		AgentSet list = new AgentSet();
-		for (Object o : a) {
-			if (space.getDistanceSq(getTurtleLocation(), space.getLocation(o)) <= distSq) {
-				list.add(o);
-			}
-		}
-		return list;
+		return Utility.inRadiusU(a, getTurtleLocation(), num.doubleValue(), getMyObserver());
 	}
 
 	/**
@@ -1522,26 +1544,21 @@ public abstract class AbstractTurtle implements Turtle {
 		if (angle.doubleValue() >= 360) {
 			return inRadius(a, num);
 		}
-		ContinuousSpace space = getMyObserver().getSpace();
-		double distSq = num.doubleValue() * num.doubleValue();
 		AgentSet list = new AgentSet();
-		for (Object o : a) {
-			if (space.getDistanceSq(getTurtleLocation(), space.getLocation(o)) <= distSq) {
-				if (o instanceof Turtle) {
-					double candidateHeading = towards((Turtle) o);
-					if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
-							.doubleValue() / 2) {
-						list.add(o);
-					}
+		for (Object o : inRadius(a, num)) {
+			if (o instanceof Turtle) {
+				double candidateHeading = towards((Turtle) o);
+				if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
+						.doubleValue() / 2) {
+					list.add(o);
 				}
-				if (o instanceof Patch) {
-					double candidateHeading = towards((Patch) o);
-					if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
-							.doubleValue() / 2) {
-						list.add(o);
-					}
+			}
+			if (o instanceof Patch) {
+				double candidateHeading = towards((Patch) o);
+				if (Math.abs(Utility.subtractHeadings(getHeading(), candidateHeading)) < angle
+						.doubleValue() / 2) {
+					list.add(o);
 				}
-
 			}
 		}
 		return list;
@@ -8,6 +8,8 @@ package repast.simphony.relogo
  *
  */
 
+import groovy.transform.PackageScope
+
 import java.util.Collection
 
 public class AgentSet<E extends ReLogoAgent> extends AbstractAgentSet<E>{
@@ -19,6 +21,10 @@ public class AgentSet<E extends ReLogoAgent> extends AbstractAgentSet<E>{
 	public AgentSet(Collection<E> c){
 		super(c)
 	}
+
+	@PackageScope AgentSet(ContextAgentSets.Snapshot snapshot){
+		super(snapshot)
+	}
 	
 	/**
      * Reports a new agentset containing only those agents that have the minimum value of the given closure.
@@ -0,0 +1,151 @@
+package repast.simphony.relogo;
+
+import groovy.lang.Closure;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.random.RandomHelper;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * Executes ask blocks for agents concurrently on the common fork join pool.
+ * The agents are divided into chunks of a fixed size, and each chunk is asked
+ * with its own copy of the ask block and its own random stream, seeded from
+ * the current stream before any agent is asked. The ReLogo random primitives,
+ * such as random and randomFloat, draw from the chunk's stream, so a model
+ * whose concurrent ask blocks don't change shared state gets the same results
+ * whatever the number of threads.
+ *
+ * Only ask blocks that don't change any state other than that of the asked
+ * agent should be asked concurrently. Creating or removing agents, moving
+ * turtles and changing other agents are not safe.
+ */
+public class ConcurrentAsk {
+
+	// fixed so that the streams don't depend on the number of threads
+	static final int CHUNK_SIZE = 64;
+
+	// the pool the chunks are asked on, the common pool if null
+	static ForkJoinPool pool;
+
+	private static class Stream {
+		RandomEngine engine;
+		Uniform uniform;
+
+		Stream(int seed) {
+			engine = new MersenneTwister(seed);
+			uniform = new Uniform(engine);
+		}
+	}
+
+	private static final ThreadLocal<Stream> streams = new ThreadLocal<Stream>();
+
+	private static class AskTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		List<? extends ReLogoAgent> agents;
+		Closure cl;
+		int[] seeds;
+		int from, to;
+		boolean fork;
+
+		AskTask(List<? extends ReLogoAgent> agents, Closure cl, int[] seeds, int from, int to,
+				boolean fork) {
+			this.agents = agents;
+			this.cl = cl;
+			this.seeds = seeds;
+			this.from = from;
+			this.to = to;
+			this.fork = fork;
+		}
+
+		@Override
+		protected void compute() {
+			if (fork && to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new AskTask(agents, cl, seeds, from, mid, fork), new AskTask(agents, cl,
+						seeds, mid, to, fork));
+			} else {
+				for (int i = from; i < to; i++) {
+					askChunk(i);
+				}
+			}
+		}
+
+		private void askChunk(int chunk) {
+			Closure copy = (Closure) cl.clone();
+			copy.setResolveStrategy(Closure.DELEGATE_FIRST);
+			Stream previous = streams.get();
+			streams.set(new Stream(seeds[chunk]));
+			try {
+				int end = Math.min(agents.size(), (chunk + 1) * CHUNK_SIZE);
+				for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+					ReLogoAgent o = agents.get(i);
+					copy.setDelegate(o);
+					copy.call(o);
+				}
+			} finally {
+				if (previous == null) {
+					streams.remove();
+				} else {
+					streams.set(previous);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the uniform distribution that the ReLogo random primitives use on
+	 * the calling thread. This is the stream of the chunk being asked within a
+	 * concurrent ask, and RandomHelper's default uniform otherwise.
+	 *
+	 * @return the uniform distribution for the calling thread.
+	 */
+	public static Uniform getUniform() {
+		Stream stream = streams.get();
+		return stream == null ? RandomHelper.getUniform() : stream.uniform;
+	}
+
+	/**
+	 * Gets the random engine of the chunk being asked on the calling thread.
+	 *
+	 * @return the random engine of the chunk being asked, or null if the
+	 *         calling thread is not asking agents concurrently.
+	 */
+	public static RandomEngine getChunkRandomEngine() {
+		Stream stream = streams.get();
+		return stream == null ? null : stream.engine;
+	}
+
+	/**
+	 * Executes the ask block for each of the agents, concurrently and in no
+	 * particular order.
+	 *
+	 * @param agents
+	 *            the agents to ask
+	 * @param cl
+	 *            the ask block
+	 */
+	public static void ask(List<? extends ReLogoAgent> agents, Closure cl) {
+		int chunks = (agents.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int[] seeds = new int[chunks];
+		Uniform uniform = getUniform();
+		for (int i = 0; i < chunks; i++) {
+			// a zero seed degenerates the twister
+			seeds[i] = uniform.nextIntFromTo(1, Integer.MAX_VALUE);
+		}
+		ForkJoinPool forkPool = pool == null ? ForkJoinPool.commonPool() : pool;
+		boolean fork = chunks > 1 && forkPool.getParallelism() > 1;
+		AskTask task = new AskTask(agents, cl, seeds, 0, chunks, fork);
+		if (fork) {
+			forkPool.invoke(task);
+		} else {
+			task.compute();
+		}
+	}
+}
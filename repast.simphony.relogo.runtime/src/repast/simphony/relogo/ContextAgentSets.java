@@ -0,0 +1,178 @@
+package repast.simphony.relogo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import repast.simphony.context.Context;
+import repast.simphony.context.ContextEvent;
+import repast.simphony.context.ContextEvent.EventType;
+import repast.simphony.context.ContextListener;
+
+/**
+ * Keeps the agents of each class that an agentset has been asked for, such as
+ * the turtles, the links or the agents of a breed, up to date as agents are
+ * added to and removed from an observer's context. The agents are kept in the
+ * order the context returns them, and the agentsets returned share a snapshot
+ * of them until either the agentset or the context is modified.
+ */
+class ContextAgentSets implements ContextListener<Object> {
+
+	/**
+	 * The agents of a class at one point in time, shared by the agentsets
+	 * returned until the context changes.
+	 */
+	static class Snapshot {
+		final Object[] agents;
+		private Map<Object, Integer> positions;
+
+		Snapshot(Object[] agents) {
+			this.agents = agents;
+		}
+
+		/**
+		 * Gets the position of each agent in the snapshot.
+		 *
+		 * @return the position of each agent in the snapshot.
+		 */
+		synchronized Map<Object, Integer> getPositions() {
+			if (positions == null) {
+				Map<Object, Integer> map = new IdentityHashMap<Object, Integer>(agents.length);
+				for (int i = 0; i < agents.length; i++) {
+					map.put(agents[i], i);
+				}
+				positions = map;
+			}
+			return positions;
+		}
+	}
+
+	private static class Entry {
+		Class<?> clazz;
+		// the agents grouped by their class, in the order the context groups
+		// them. The context keeps each class's agents in the order they were
+		// added, so the groups are linked sets, which keep that order while
+		// removing an agent in constant time.
+		Map<Class<?>, Set<Object>> groups = new LinkedHashMap<Class<?>, Set<Object>>();
+		int size;
+		Snapshot snapshot;
+
+		Entry(Class<?> clazz) {
+			this.clazz = clazz;
+		}
+
+		void add(Object agent) {
+			Set<Object> group = groups.get(agent.getClass());
+			if (group == null) {
+				group = new LinkedHashSet<Object>();
+				groups.put(agent.getClass(), group);
+			}
+			group.add(agent);
+			size++;
+		}
+
+		void remove(Object agent) {
+			Set<Object> group = groups.get(agent.getClass());
+			if (group != null && group.remove(agent)) {
+				size--;
+				if (group.isEmpty()) groups.remove(agent.getClass());
+			}
+		}
+
+		Object[] toArray() {
+			Object[] array = new Object[size];
+			int i = 0;
+			for (Set<Object> group : groups.values()) {
+				for (Object agent : group) {
+					array[i++] = agent;
+				}
+			}
+			return array;
+		}
+	}
+
+	private Context<Object> context;
+	private Map<Class<?>, Entry> entries = new HashMap<Class<?>, Entry>();
+	// agents in sub contexts follow those in the context itself, which the
+	// groups can't mirror, so the snapshots are then taken from the context
+	private boolean mirrored;
+
+	ContextAgentSets(Context context) {
+		this.context = context;
+		mirrored = !context.hasSubContext();
+		context.addContextListener(this);
+	}
+
+	/**
+	 * Stops following the context.
+	 */
+	void dispose() {
+		context.removeContextListener(this);
+	}
+
+	/**
+	 * Gets an agentset of the agents of the specified class in the context.
+	 *
+	 * @param clazz
+	 * @return an agentset of the agents of the specified class in the context.
+	 */
+	synchronized <E extends ReLogoAgent> AgentSet<E> getAgentSet(Class<?> clazz) {
+		Entry entry = entries.get(clazz);
+		if (entry == null) {
+			entry = new Entry(clazz);
+			if (mirrored) {
+				for (Object agent : context.getObjects(clazz)) {
+					entry.add(agent);
+				}
+			}
+			entries.put(clazz, entry);
+		}
+		if (entry.snapshot == null) {
+			entry.snapshot = new Snapshot(mirrored ? entry.toArray() : fromContext(clazz));
+		}
+		return new AgentSet<E>(entry.snapshot);
+	}
+
+	private Object[] fromContext(Class<?> clazz) {
+		List<Object> agents = new ArrayList<Object>();
+		for (Object agent : context.getObjects(clazz)) {
+			agents.add(agent);
+		}
+		return agents.toArray();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * repast.simphony.context.ContextListener#eventOccured(repast.simphony.context
+	 * .ContextEvent)
+	 */
+	public synchronized void eventOccured(ContextEvent<Object> ev) {
+		EventType type = ev.getType();
+		if (type == EventType.SUBCONTEXT_ADDED || type == EventType.SUBCONTEXT_REMOVED) {
+			mirrored = false;
+			for (Entry entry : entries.values()) {
+				entry.groups.clear();
+				entry.size = 0;
+				entry.snapshot = null;
+			}
+		} else if (type == EventType.AGENT_ADDED || type == EventType.AGENT_REMOVED) {
+			Object agent = ev.getTarget();
+			for (Entry entry : entries.values()) {
+				if (entry.clazz.isInstance(agent)) {
+					entry.snapshot = null;
+					if (mirrored) {
+						if (type == EventType.AGENT_ADDED) entry.add(agent);
+						else entry.remove(agent);
+					}
+				}
+			}
+		}
+	}
+}
@@ -4,6 +4,8 @@ import groovy.lang.Closure;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import cern.colt.function.Double9Function;
 import cern.colt.matrix.DoubleFactory2D;
@@ -203,4 +205,196 @@ public class JavaUtility {
 		}
 	}
 
+	// the fewest cells a diffusion task is given before it is worth forking
+	private static final int MIN_TASK_CELLS = 1 << 14;
+
+	// the pool the bands are diffused on, the common pool if null
+	static ForkJoinPool pool;
+
+	private static class DiffuseTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		double[][] values, buffers;
+		double[] diffusionCoeffs;
+		int rows, columns, fromRow, toRow, bandRows;
+		boolean isMoore, isPeriodic;
+
+		DiffuseTask(double[][] values, double[][] buffers, double[] diffusionCoeffs, int rows,
+				int columns, boolean isMoore, boolean isPeriodic, int fromRow, int toRow, int bandRows) {
+			this.values = values;
+			this.buffers = buffers;
+			this.diffusionCoeffs = diffusionCoeffs;
+			this.rows = rows;
+			this.columns = columns;
+			this.isMoore = isMoore;
+			this.isPeriodic = isPeriodic;
+			this.fromRow = fromRow;
+			this.toRow = toRow;
+			this.bandRows = bandRows;
+		}
+
+		@Override
+		protected void compute() {
+			if (toRow - fromRow > bandRows) {
+				int mid = (fromRow + toRow) >>> 1;
+				invokeAll(new DiffuseTask(values, buffers, diffusionCoeffs, rows, columns, isMoore,
+						isPeriodic, fromRow, mid, bandRows), new DiffuseTask(values, buffers,
+						diffusionCoeffs, rows, columns, isMoore, isPeriodic, mid, toRow, bandRows));
+			} else {
+				for (int i = 0; i < values.length; i++) {
+					diffuseRows(values[i], buffers[i], rows, columns, diffusionCoeffs[i], isMoore,
+							isPeriodic, fromRow, toRow);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Diffuses each of the matrices by its diffusion coefficient in a single
+	 * pass. The new values are written into the matrices' buffers, which are
+	 * then swapped in, and large matrices are diffused in bands of rows on the
+	 * common fork join pool. Each value is computed from the previous values
+	 * alone, so the results don't depend on the number of threads.
+	 * 
+	 * @param matrices
+	 *            matrices of the same shape
+	 * @param diffusionCoeffs
+	 *            the diffusion coefficient of each matrix
+	 * @param isMoore
+	 *            diffuse to the eight rather than the four neighbors
+	 * @param isPeriodic
+	 *            whether the matrices wrap around at their edges
+	 */
+	public static void diffuse(PatchVariableMatrix[] matrices, double[] diffusionCoeffs,
+			boolean isMoore, boolean isPeriodic) {
+		if (matrices.length == 0) return;
+		int rows = matrices[0].rows();
+		int columns = matrices[0].columns();
+		double[][] values = new double[matrices.length][];
+		double[][] buffers = new double[matrices.length][];
+		for (int i = 0; i < matrices.length; i++) {
+			if (matrices[i].rows() != rows || matrices[i].columns() != columns) {
+				throw new IllegalArgumentException("Diffused matrices must have the same shape");
+			}
+			values[i] = matrices[i].getValues();
+			buffers[i] = matrices[i].getBuffer();
+		}
+		int bandRows = Math.max(1, MIN_TASK_CELLS / Math.max(1, columns * matrices.length));
+		ForkJoinPool forkPool = pool == null ? ForkJoinPool.commonPool() : pool;
+		boolean fork = rows > bandRows && forkPool.getParallelism() > 1;
+		DiffuseTask task = new DiffuseTask(values, buffers, diffusionCoeffs, rows, columns, isMoore,
+				isPeriodic, 0, rows, fork ? bandRows : rows);
+		if (fork) {
+			forkPool.invoke(task);
+		} else {
+			task.compute();
+		}
+		for (PatchVariableMatrix matrix : matrices) {
+			matrix.swap();
+		}
+	}
+
+	/**
+	 * Diffuses the rows fromRow (inclusive) to toRow (exclusive) of the row
+	 * major values into the buffer. A cell without a neighbor at an edge of a
+	 * non periodic matrix keeps the share it would have given that neighbor,
+	 * as in the matrix based diffusion.
+	 */
+	private static void diffuseRows(double[] values, double[] buffer, int rows, int columns,
+			double diffusionCoeff, boolean isMoore, boolean isPeriodic, int fromRow, int toRow) {
+		int totalPossibleNeighbors = isMoore ? 8 : 4;
+		double keep = 1 - diffusionCoeff;
+		for (int row = fromRow; row < toRow; row++) {
+			int up = row - 1;
+			int down = row + 1;
+			if (isPeriodic) {
+				if (up < 0) up = rows - 1;
+				if (down == rows) down = 0;
+			}
+			boolean hasUp = up >= 0;
+			boolean hasDown = down < rows;
+			int r = row * columns;
+			int u = up * columns;
+			int d = down * columns;
+			if (hasUp && hasDown && columns > 2) {
+				// the inner cells of the row have all their neighbors
+				if (isMoore) {
+					for (int col = 1; col < columns - 1; col++) {
+						buffer[r + col] = values[r + col] * keep
+								+ (values[u + col - 1] + values[u + col] + values[u + col + 1]
+										+ values[r + col - 1] + values[r + col + 1]
+										+ values[d + col - 1] + values[d + col] + values[d + col + 1])
+								* diffusionCoeff / 8.0;
+					}
+				} else {
+					for (int col = 1; col < columns - 1; col++) {
+						buffer[r + col] = values[r + col] * keep
+								+ (values[u + col] + values[r + col - 1] + values[r + col + 1] + values[d
+										+ col]) * diffusionCoeff / 4.0;
+					}
+				}
+				diffuseCell(values, buffer, columns, diffusionCoeff, isMoore, isPeriodic,
+						totalPossibleNeighbors, hasUp, hasDown, r, u, d, 0);
+				diffuseCell(values, buffer, columns, diffusionCoeff, isMoore, isPeriodic,
+						totalPossibleNeighbors, hasUp, hasDown, r, u, d, columns - 1);
+			} else {
+				for (int col = 0; col < columns; col++) {
+					diffuseCell(values, buffer, columns, diffusionCoeff, isMoore, isPeriodic,
+							totalPossibleNeighbors, hasUp, hasDown, r, u, d, col);
+				}
+			}
+		}
+	}
+
+	private static void diffuseCell(double[] values, double[] buffer, int columns,
+			double diffusionCoeff, boolean isMoore, boolean isPeriodic, int totalPossibleNeighbors,
+			boolean hasUp, boolean hasDown, int r, int u, int d, int col) {
+		int left = col - 1;
+		int right = col + 1;
+		if (isPeriodic) {
+			if (left < 0) left = columns - 1;
+			if (right == columns) right = 0;
+		}
+		boolean hasLeft = left >= 0;
+		boolean hasRight = right < columns;
+		double neighborTally = 0.0;
+		int numNeighbors = 0;
+		if (hasUp) {
+			if (isMoore && hasLeft) {
+				neighborTally += values[u + left];
+				numNeighbors++;
+			}
+			neighborTally += values[u + col];
+			numNeighbors++;
+			if (isMoore && hasRight) {
+				neighborTally += values[u + right];
+				numNeighbors++;
+			}
+		}
+		if (hasLeft) {
+			neighborTally += values[r + left];
+			numNeighbors++;
+		}
+		if (hasRight) {
+			neighborTally += values[r + right];
+			numNeighbors++;
+		}
+		if (hasDown) {
+			if (isMoore && hasLeft) {
+				neighborTally += values[d + left];
+				numNeighbors++;
+			}
+			neighborTally += values[d + col];
+			numNeighbors++;
+			if (isMoore && hasRight) {
+				neighborTally += values[d + right];
+				numNeighbors++;
+			}
+		}
+		buffer[r + col] = values[r + col]
+				* (1 - diffusionCoeff * numNeighbors / totalPossibleNeighbors) + neighborTally
+				* diffusionCoeff / totalPossibleNeighbors;
+	}
+
 }
@@ -1,6 +1,7 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import java.util.Collection;
 import java.util.List;
@@ -193,7 +194,8 @@ public abstract class Link<T> extends RepastEdge<T> implements
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public abstract void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock);
+	public abstract void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a collection of agents.
@@ -203,7 +205,36 @@ public abstract class Link<T> extends RepastEdge<T> implements
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public abstract void ask(Collection<? extends ReLogoAgent> c, Closure askBlock);
+	public abstract void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for an agentset in random order, asking the
+	 * agents concurrently. The commands must not change shared state, such as
+	 * other agents or the world.
+	 * 
+	 * @param a
+	 *            an agentset
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public abstract void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for a collection of agents, asking the agents
+	 * concurrently. The commands must not change shared state, such as other
+	 * agents or the world.
+	 * 
+	 * @param c
+	 *            a collection of agents
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public abstract void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a turtle.
@@ -213,7 +244,8 @@ public abstract class Link<T> extends RepastEdge<T> implements
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public abstract void ask(Turtle t, Closure askBlock);
+	public abstract void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a patch.
@@ -223,7 +255,8 @@ public abstract class Link<T> extends RepastEdge<T> implements
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public abstract void ask(Patch p, Closure askBlock);
+	public abstract void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a link.
@@ -233,7 +266,8 @@ public abstract class Link<T> extends RepastEdge<T> implements
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public abstract void ask(Link l, Closure askBlock);
+	public abstract void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	public abstract void askLink(Closure cl);
 
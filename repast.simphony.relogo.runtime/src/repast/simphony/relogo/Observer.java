@@ -1,9 +1,11 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import repast.simphony.context.Context;
 import repast.simphony.relogo.factories.RLWorldDimensions;
@@ -34,6 +36,41 @@ public interface Observer extends ProjectionListener {
 
 	public RLWorldDimensions getRLDimensions();
 
+	/**
+	 * Sets the patches of the world, indexed by their grid location offset by
+	 * the minimum pxcor and pycor.
+	 * 
+	 * @param patchArray
+	 *            the patches of the world
+	 * @exclude
+	 */
+	public void setPatchArray(Patch[][] patchArray);
+
+	/**
+	 * Returns the patch at the grid location (x, y), transforming the location
+	 * according to the borders of the world. Throws SpatialException if the
+	 * location is not allowed.
+	 * 
+	 * @param x
+	 *            an integer
+	 * @param y
+	 *            an integer
+	 * @return patch at the grid location (x, y)
+	 * @exclude
+	 */
+	public Patch getPatchAt(int x, int y);
+
+	/**
+	 * Returns an agentset of the agents of a class in the context. The
+	 * agentset is the caller's to modify.
+	 * 
+	 * @param clazz
+	 *            a class
+	 * @return agentset of the agents of class clazz
+	 * @exclude
+	 */
+	public AgentSet getAgentSetOfClass(Class clazz);
+
 	public void createPatchVar(DiffusiblePatchVariable var);
 
 	/**
@@ -58,6 +95,26 @@ public interface Observer extends ProjectionListener {
 	 */
 	public void diffuse4(String patchVariable, double number);
 
+	/**
+	 * Diffuses to the eight neighboring patches a fraction of each of a number
+	 * of patch variables.
+	 * 
+	 * @param patchVariables
+	 *            a map from the names of diffusible patch variables to numbers
+	 *            in the range [0,1]
+	 */
+	public void diffuse(Map<String, ? extends Number> patchVariables);
+
+	/**
+	 * Diffuses to the four neighboring patches a fraction of each of a number
+	 * of patch variables.
+	 * 
+	 * @param patchVariables
+	 *            a map from the names of diffusible patch variables to numbers
+	 *            in the range [0,1]
+	 */
+	public void diffuse4(Map<String, ? extends Number> patchVariables);
+
 	/**
 	 * Multiply a diffusible patch variable of all patches by a number.
 	 * 
@@ -156,7 +213,8 @@ public interface Observer extends ProjectionListener {
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createTurtles(int number, Closure closure);
+	public AgentSet<Turtle> createTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure);
 
 	/**
 	 * Makes a number of randomly oriented turtles of a specific type then
@@ -170,7 +228,8 @@ public interface Observer extends ProjectionListener {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createTurtles(int number, Closure closure, String type);
+	public AgentSet<Turtle> createTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type);
 
 	/**
 	 * Makes a number of randomly oriented turtles of a specific type then
@@ -184,7 +243,8 @@ public interface Observer extends ProjectionListener {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createTurtles(int number, Closure closure, Class type);
+	public AgentSet<Turtle> createTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type);
 
 	/**
 	 * Makes a number of randomly oriented turtles.
@@ -208,7 +268,8 @@ public interface Observer extends ProjectionListener {
 	 * 
 	 * @see #createTurtles(int, Closure)
 	 */
-	public AgentSet<Turtle> crt(int number, Closure closure);
+	public AgentSet<Turtle> crt(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure);
 
 	/**
 	 * Makes a number of randomly oriented turtles of a specific type then
@@ -224,7 +285,8 @@ public interface Observer extends ProjectionListener {
 	 * 
 	 * @see #createTurtles(int, Closure, String)
 	 */
-	public AgentSet<Turtle> crt(int number, Closure closure, String type);
+	public AgentSet<Turtle> crt(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type);
 
 	/**
 	 * Makes a number of randomly oriented turtles of a specific type then
@@ -240,7 +302,8 @@ public interface Observer extends ProjectionListener {
 	 * 
 	 * @see #createTurtles(int, Closure, Class)
 	 */
-	public AgentSet<Turtle> crt(int number, Closure closure, Class type);
+	public AgentSet<Turtle> crt(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type);
 
 	/**
 	 * Makes a number of uniformly fanned turtles.
@@ -272,7 +335,8 @@ public interface Observer extends ProjectionListener {
 	 * @return created turtles
 	 * @see #createOrderedTurtles(int, Closure)
 	 */
-	public AgentSet<Turtle> cro(int number, Closure closure);
+	public AgentSet<Turtle> cro(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure);
 
 	/**
 	 * Makes a number of uniformly fanned turtles then executes a set of
@@ -284,7 +348,8 @@ public interface Observer extends ProjectionListener {
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createOrderedTurtles(int number, Closure closure);
+	public AgentSet<Turtle> createOrderedTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure);
 
 	/**
 	 * Makes a number of uniformly fanned turtles of a specific type then
@@ -298,7 +363,8 @@ public interface Observer extends ProjectionListener {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> cro(int number, Closure closure, String type);
+	public AgentSet<Turtle> cro(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type);
 
 	/**
 	 * Makes a number of uniformly fanned turtles of a specific type then
@@ -312,7 +378,8 @@ public interface Observer extends ProjectionListener {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> cro(int number, Closure closure, Class type);
+	public AgentSet<Turtle> cro(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type);
 
 	/**
 	 * Makes a number of uniformly fanned turtles of a specific type then
@@ -326,7 +393,8 @@ public interface Observer extends ProjectionListener {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createOrderedTurtles(int number, Closure closure, String type);
+	public AgentSet<Turtle> createOrderedTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String type);
 
 	/**
 	 * Makes a number of uniformly fanned turtles of a specific type then
@@ -340,7 +408,8 @@ public interface Observer extends ProjectionListener {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> createOrderedTurtles(int number, Closure closure, Class type);
+	public AgentSet<Turtle> createOrderedTurtles(int number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class type);
 
 	/**
 	 * Executes a set of commands for an agentset in random order.
@@ -350,7 +419,8 @@ public interface Observer extends ProjectionListener {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock);
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a collection of agents.
@@ -360,7 +430,36 @@ public interface Observer extends ProjectionListener {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock);
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for an agentset in random order, asking the
+	 * agents concurrently. The commands must not change shared state, such as
+	 * other agents or the world.
+	 * 
+	 * @param a
+	 *            an agentset
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for a collection of agents, asking the agents
+	 * concurrently. The commands must not change shared state, such as other
+	 * agents or the world.
+	 * 
+	 * @param c
+	 *            a collection of agents
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a turtle.
@@ -370,7 +469,8 @@ public interface Observer extends ProjectionListener {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock);
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a patch.
@@ -380,7 +480,8 @@ public interface Observer extends ProjectionListener {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock);
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a link.
@@ -390,7 +491,8 @@ public interface Observer extends ProjectionListener {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Link l, Closure askBlock);
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	public String toString();
 
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.List;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import repast.simphony.space.continuous.NdPoint;
 import repast.simphony.space.grid.GridPoint;
@@ -288,7 +289,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock);
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a collection of agents.
@@ -298,7 +300,36 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock);
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for an agentset in random order, asking the
+	 * agents concurrently. The commands must not change shared state, such as
+	 * other agents or the world.
+	 * 
+	 * @param a
+	 *            an agentset
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for a collection of agents, asking the agents
+	 * concurrently. The commands must not change shared state, such as other
+	 * agents or the world.
+	 * 
+	 * @param c
+	 *            a collection of agents
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a turtle.
@@ -308,7 +339,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock);
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a patch.
@@ -318,7 +350,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock);
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a link.
@@ -328,7 +361,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Link l, Closure askBlock);
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * @exclude
@@ -354,7 +388,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> sprout(Number number, Closure closure);
+	public AgentSet<Turtle> sprout(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure);
 
 	/**
 	 * Makes a number of random new turtles of a specific type then executes a
@@ -368,7 +403,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 *            a turtle type
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> sprout(Number number, Closure closure, String turtleType);
+	public AgentSet<Turtle> sprout(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String turtleType);
 	
 	/**
 	 * Makes a number of random new turtles of a specific type then executes a
@@ -382,7 +418,8 @@ public interface Patch extends Comparable<Patch>, ReLogoAgent {
 	 *            a turtle class
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> sprout(Number number, Closure closure, Class turtleType);
+	public AgentSet<Turtle> sprout(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class turtleType);
 
 	/**
 	 * Prints value with agent identifier to current file with a newline.
@@ -0,0 +1,50 @@
+package repast.simphony.relogo;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * The values of a diffusible patch variable, one row per patch row. Besides
+ * the values the matrix keeps a second array of the same size that diffusion
+ * writes into, after which the two arrays are swapped, so that diffusing
+ * neither allocates nor replaces the matrix.
+ */
+public class PatchVariableMatrix extends DenseDoubleMatrix2D {
+
+	private static final long serialVersionUID = 6186478618240734127L;
+
+	private transient double[] buffer;
+
+	public PatchVariableMatrix(int rows, int columns) {
+		super(rows, columns);
+	}
+
+	/**
+	 * Gets the values in row major order.
+	 *
+	 * @return the values in row major order.
+	 */
+	double[] getValues() {
+		return elements;
+	}
+
+	/**
+	 * Gets the array the next values are written into, in row major order.
+	 *
+	 * @return the array the next values are written into.
+	 */
+	double[] getBuffer() {
+		if (buffer == null) {
+			buffer = new double[elements.length];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Makes the values written into the buffer the values of this matrix.
+	 */
+	void swap() {
+		double[] values = elements;
+		elements = getBuffer();
+		buffer = values;
+	}
+}
@@ -1,6 +1,7 @@
 package repast.simphony.relogo;
 
 import groovy.lang.Closure;
+import groovy.lang.DelegatesTo;
 
 import java.util.Collection;
 import java.util.List;
@@ -49,7 +50,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 *            a set of commands
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> hatch(Number number, Closure closure);
+	public AgentSet<Turtle> hatch(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure);
 
 	/**
 	 * Makes a number of new turtles of a specific type and then executes a set
@@ -68,7 +70,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @return created turtles
 	 * 
 	 */
-	public AgentSet<Turtle> hatch(Number number, Closure closure, String childType);
+	public AgentSet<Turtle> hatch(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, String childType);
 
 	/**
 	 * Makes a number of new turtles of a specific type and then executes a set
@@ -86,7 +89,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @param childType
 	 * @return created turtles
 	 */
-	public AgentSet<Turtle> hatch(Number number, Closure closure, Class childType);
+	public AgentSet<Turtle> hatch(Number number,
+			@DelegatesTo(value = Turtle.class, strategy = Closure.DELEGATE_FIRST) Closure closure, Class childType);
 
 	/**
 	 * Moves the turtle to the lowest value of a patch variable of eight
@@ -132,7 +136,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(AgentSet<? extends ReLogoAgent> a, Closure askBlock);
+	public void ask(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a collection of agents.
@@ -142,7 +147,36 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Collection<? extends ReLogoAgent> c, Closure askBlock);
+	public void ask(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for an agentset in random order, asking the
+	 * agents concurrently. The commands must not change shared state, such as
+	 * other agents or the world.
+	 * 
+	 * @param a
+	 *            an agentset
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(@DelegatesTo.Target AgentSet<? extends ReLogoAgent> a,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
+
+	/**
+	 * Executes a set of commands for a collection of agents, asking the agents
+	 * concurrently. The commands must not change shared state, such as other
+	 * agents or the world.
+	 * 
+	 * @param c
+	 *            a collection of agents
+	 * @param askBlock
+	 *            a set of commands
+	 * @see ConcurrentAsk
+	 */
+	public void askConcurrent(@DelegatesTo.Target Collection<? extends ReLogoAgent> c,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST, genericTypeIndex = 0) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a turtle.
@@ -152,7 +186,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Turtle t, Closure askBlock);
+	public void ask(@DelegatesTo.Target Turtle t,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a patch.
@@ -162,7 +197,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Patch p, Closure askBlock);
+	public void ask(@DelegatesTo.Target Patch p,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * Executes a set of commands for a link.
@@ -172,7 +208,8 @@ public interface Turtle extends Comparable<Turtle>, ReLogoAgent,
 	 * @param askBlock
 	 *            a set of commands
 	 */
-	public void ask(Link l, Closure askBlock);
+	public void ask(@DelegatesTo.Target Link l,
+			@DelegatesTo(strategy = Closure.DELEGATE_FIRST) Closure askBlock);
 
 	/**
 	 * @exclude
@@ -29,6 +29,7 @@ import org.apache.commons.collections15.functors.InstanceofPredicate;
 import org.apache.commons.collections15.functors.NotPredicate;
 
 import repast.simphony.context.Context;
+import repast.simphony.data2.ColumnarFileDataSink;
 import repast.simphony.data2.DataConstants;
 import repast.simphony.data2.DataSetRegistry;
 import repast.simphony.data2.FileDataSink;
@@ -37,6 +38,7 @@ import repast.simphony.engine.environment.RunState;
 import repast.simphony.query.PropertyEquals;
 import repast.simphony.query.Query;
 import repast.simphony.random.RandomHelper;
+import repast.simphony.relogo.factories.RLWorldDimensions;
 import repast.simphony.space.SpatialException;
 import repast.simphony.space.SpatialMath;
 import repast.simphony.space.continuous.ContinuousSpace;
@@ -47,6 +49,11 @@ import repast.simphony.space.grid.GridPoint;
 import repast.simphony.ui.RSApplication;
 import repast.simphony.util.SimUtilities;
 import repast.simphony.util.collections.FilteredIterator;
+import cern.jet.random.Exponential;
+import cern.jet.random.Gamma;
+import cern.jet.random.Normal;
+import cern.jet.random.Poisson;
+import cern.jet.random.engine.RandomEngine;
 
 /**
  * ReLogo Utility class.
@@ -70,8 +77,8 @@ public class Utility {
 	public static double randomFloat(Number num) {
 		if (num.doubleValue() == 0)
 			return 0.0;
-		return (num.doubleValue() > 0) ? RandomHelper.nextDoubleFromTo(0,
-				num.doubleValue()) : RandomHelper.nextDoubleFromTo(
+		return (num.doubleValue() > 0) ? ConcurrentAsk.getUniform().nextDoubleFromTo(0,
+				num.doubleValue()) : ConcurrentAsk.getUniform().nextDoubleFromTo(
 				num.doubleValue(), 0);
 	}
 
@@ -86,8 +93,8 @@ public class Utility {
 	public static int random(Number num) {
 		if (num.doubleValue() == 0)
 			return 0;
-		return (num.doubleValue() > 0) ? RandomHelper.nextIntFromTo(0,
-				num.intValue() - 1) : RandomHelper.nextIntFromTo(
+		return (num.doubleValue() > 0) ? ConcurrentAsk.getUniform().nextIntFromTo(0,
+				num.intValue() - 1) : ConcurrentAsk.getUniform().nextIntFromTo(
 				num.intValue() + 1, 0);
 	}
 
@@ -160,13 +167,13 @@ public class Utility {
 	}
 
 	public static double randomXcorU(Observer observer) {
-		return RandomHelper.nextDoubleFromTo(((double) observer
+		return ConcurrentAsk.getUniform().nextDoubleFromTo(((double) observer
 				.getRLDimensions().getMinPxcor()) - 0.5, ((double) observer
 				.getRLDimensions().getMaxPxcor()) + 0.5);
 	}
 
 	public static double randomYcorU(Observer observer) {
-		return RandomHelper.nextDoubleFromTo(((double) observer
+		return ConcurrentAsk.getUniform().nextDoubleFromTo(((double) observer
 				.getRLDimensions().getMinPycor()) - 0.5, ((double) observer
 				.getRLDimensions().getMaxPycor()) + 0.5);
 	}
@@ -180,7 +187,7 @@ public class Utility {
 	 * @return random x coordinate for patches
 	 */
 	public static int randomPxcorU(Observer observer) {
-		return RandomHelper.nextIntFromTo(observer.getRLDimensions()
+		return ConcurrentAsk.getUniform().nextIntFromTo(observer.getRLDimensions()
 				.getMinPxcor(), observer.getRLDimensions().getMaxPxcor());
 	}
 
@@ -193,7 +200,7 @@ public class Utility {
 	 * @return random y coordinate for patches
 	 */
 	public static int randomPycorU(Observer observer) {
-		return RandomHelper.nextIntFromTo(observer.getRLDimensions()
+		return ConcurrentAsk.getUniform().nextIntFromTo(observer.getRLDimensions()
 				.getMinPycor(), observer.getRLDimensions().getMaxPycor());
 	}
 
@@ -321,10 +328,102 @@ public class Utility {
 	public static AgentSet<Turtle> getTurtlesOnGridPoint(
 			GridPoint patchLocation, Observer observer) {
 		Grid grid = observer.getGrid();
-		Iterable objectsAt = grid.getObjectsAt(patchLocation.toIntArray(null));
-		FilteredIterator turtlesAt = new FilteredIterator(objectsAt.iterator(),
-				new InstanceofPredicate(Turtle.class));
-		return Utility.agentSetFromIterator(turtlesAt);
+		AgentSet<Turtle> a = new AgentSet<Turtle>();
+		for (Object o : grid.getObjectsAt(patchLocation.getX(), patchLocation.getY())) {
+			if (o instanceof Turtle) {
+				a.add((Turtle) o);
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * Returns the members of a collection within a distance of a point, in the
+	 * order of the collection. When the collection is an unmodified agentset
+	 * of all the turtles, patches or agents of a breed, only the agents on the
+	 * patches around the point are measured, rather than every member.
+	 * 
+	 * @param a
+	 *            a collection of agents
+	 * @param center
+	 *            a point in the continuous space
+	 * @param radius
+	 *            a distance
+	 * @param observer
+	 *            an observer
+	 * @return agentset subset of collection a within a distance radius of the
+	 *         point
+	 */
+	public static AgentSet inRadiusU(Collection a, NdPoint center, double radius,
+			Observer observer) {
+		ContinuousSpace space = observer.getSpace();
+		double distSq = radius * radius;
+		ContextAgentSets.Snapshot snapshot = a instanceof AbstractAgentSet ? ((AbstractAgentSet) a)
+				.getSnapshot() : null;
+		if (snapshot != null && radius >= 0) {
+			RLWorldDimensions dims = observer.getRLDimensions();
+			boolean periodic = observer.getGrid().isPeriodic();
+			// a turtle is on the patch its location rounds to. The bounds are
+			// limited to the world as doubles, so that huge radii can't
+			// overflow them.
+			double lowX = Math.floor(center.getX() - radius - 0.5);
+			double highX = Math.ceil(center.getX() + radius + 0.5);
+			double lowY = Math.floor(center.getY() - radius - 0.5);
+			double highY = Math.ceil(center.getY() + radius + 0.5);
+			if (periodic && highX - lowX + 1 >= dims.getXdim()) {
+				lowX = dims.getMinPxcor();
+				highX = dims.getMaxPxcor();
+			} else if (!periodic) {
+				lowX = Math.max(lowX, dims.getMinPxcor());
+				highX = Math.min(highX, dims.getMaxPxcor());
+			}
+			if (periodic && highY - lowY + 1 >= dims.getYdim()) {
+				lowY = dims.getMinPycor();
+				highY = dims.getMaxPycor();
+			} else if (!periodic) {
+				lowY = Math.max(lowY, dims.getMinPycor());
+				highY = Math.min(highY, dims.getMaxPycor());
+			}
+			int minX = (int) lowX;
+			int maxX = (int) highX;
+			int minY = (int) lowY;
+			int maxY = (int) highY;
+			long cells = (long) (maxX - minX + 1) * (maxY - minY + 1);
+			if (cells < snapshot.agents.length) {
+				Map<Object, Integer> positions = snapshot.getPositions();
+				Grid grid = observer.getGrid();
+				int[] found = new int[16];
+				int count = 0;
+				for (int x = minX; x <= maxX; x++) {
+					for (int y = minY; y <= maxY; y++) {
+						// the grid wraps the locations of periodic worlds
+						for (Object o : grid.getObjectsAt(x, y)) {
+							Integer pos = positions.get(o);
+							if (pos != null && space.getDistanceSq(center, space.getLocation(o)) <= distSq) {
+								if (count == found.length) {
+									found = Arrays.copyOf(found, count * 2);
+								}
+								found[count++] = pos;
+							}
+						}
+					}
+				}
+				Arrays.sort(found, 0, count);
+				AgentSet list = new AgentSet();
+				for (int i = 0; i < count; i++) {
+					list.add(snapshot.agents[found[i]]);
+				}
+				return list;
+			}
+		}
+
+		AgentSet list = new AgentSet();
+		for (Object o : a) {
+			if (space.getDistanceSq(center, space.getLocation(o)) <= distSq) {
+				list.add(o);
+			}
+		}
+		return list;
 	}
 
 	/**
@@ -372,6 +471,17 @@ public class Utility {
 	 */
 	public static Patch getPatchAtLocation(GridPoint gridPoint,
 			Observer observer) {
+		return observer.getPatchAt(gridPoint.getX(), gridPoint.getY());
+	}
+
+	/**
+	 * Returns the Patch object at the gridPoint location by searching the
+	 * objects on the grid. Throws SpatialException if location is not allowed.
+	 * 
+	 * @param gridPoint
+	 * @return
+	 */
+	static Patch getPatchOnGrid(GridPoint gridPoint, Observer observer) {
 		Grid grid = observer.getGrid();
 		Iterable objectsAt = grid.getObjectsAt(gridPoint.toIntArray(null));
 		// not instance of filter and then I want a predicate
@@ -925,7 +1035,7 @@ public class Utility {
 	 */
 	public static <E> ArrayList<E> shuffle(List<E> a) {
 		ArrayList<E> result = new ArrayList<E>(a);
-		SimUtilities.shuffle(result, RandomHelper.getUniform());
+		SimUtilities.shuffle(result, ConcurrentAsk.getUniform());
 		return result;
 	}
 
@@ -1129,7 +1239,7 @@ public class Utility {
 	 * @return number to seed the random number generator
 	 */
 	public static int newSeed() {
-		return RandomHelper.getUniform().nextIntFromTo(Integer.MIN_VALUE,
+		return ConcurrentAsk.getUniform().nextIntFromTo(Integer.MIN_VALUE,
 				Integer.MAX_VALUE);
 	}
 
@@ -1155,6 +1265,10 @@ public class Utility {
 	 *         mean)
 	 */
 	public static double randomExponential(Number mean) {
+		RandomEngine engine = ConcurrentAsk.getChunkRandomEngine();
+		if (engine != null) {
+			return new Exponential(mean.doubleValue(), engine).nextDouble();
+		}
 		return RandomHelper.createExponential(mean.doubleValue()).nextDouble();
 	}
 
@@ -1169,6 +1283,10 @@ public class Utility {
 	 *         alpha and lambda)
 	 */
 	public static double randomGamma(Number alpha, Number lambda) {
+		RandomEngine engine = ConcurrentAsk.getChunkRandomEngine();
+		if (engine != null) {
+			return new Gamma(alpha.doubleValue(), lambda.doubleValue(), engine).nextDouble();
+		}
 		return RandomHelper.createGamma(alpha.doubleValue(), lambda.doubleValue()).nextDouble();
 	}
 
@@ -1183,6 +1301,10 @@ public class Utility {
 	 *         and standard deviation standardDeviation)
 	 */
 	public static double randomNormal(Number mean, Number standardDeviation) {
+		RandomEngine engine = ConcurrentAsk.getChunkRandomEngine();
+		if (engine != null) {
+			return new Normal(mean.doubleValue(), standardDeviation.doubleValue(), engine).nextDouble();
+		}
 		return RandomHelper.createNormal(mean.doubleValue(), standardDeviation.doubleValue()).nextDouble();
 	}
 
@@ -1194,6 +1316,10 @@ public class Utility {
 	 * @return random integer (poisson distributed with mean mean)
 	 */
 	public static int randomPoisson(Number mean) {
+		RandomEngine engine = ConcurrentAsk.getChunkRandomEngine();
+		if (engine != null) {
+			return new Poisson(mean.doubleValue(), engine).nextInt();
+		}
 		return RandomHelper.createPoisson(mean.doubleValue()).nextInt();
 	}
 
@@ -1462,12 +1588,7 @@ public class Utility {
 	}
 
 	public static AgentSet getAgentSetOfClass(Class E, Observer observer) {
-		Context tpc = observer.getContext();
-		AgentSet a = new AgentSet();
-		for (Object e : tpc.getObjects(E)) {
-			a.add(e);
-		}
-		return a;
+		return observer.getAgentSetOfClass(E);
 	}
 
 	public static ArrayList getWayPoints(Observer observer) {
@@ -1512,7 +1633,7 @@ public class Utility {
 			System.err.println("minOneOf expects a collection of ReLogoAgents.");
 			return null;
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1562,7 +1683,7 @@ public class Utility {
 			System.err.println("minNOf expects a collection of ReLogoAgents.");
 			return new AgentSet();
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1612,7 +1733,7 @@ public class Utility {
 			System.err.println("maxOneOf expects a collection of ReLogoAgents.");
 			return null;
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1662,7 +1783,7 @@ public class Utility {
 			System.err.println("maxNOf expects a collection of ReLogoAgents.");
 			return new AgentSet();
 		}
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		if (caller != null) {
 			for (ReLogoAgent o : b) {
 				o.setMyself(caller);
@@ -1914,7 +2035,7 @@ public class Utility {
 			return a;
 		}
 		AgentSet<E> b = new AgentSet<E>(a);
-		SimUtilities.shuffle(b, RandomHelper.getUniform());
+		SimUtilities.shuffle(b, ConcurrentAsk.getUniform());
 		b.subList(number, size).clear();
 		return b;
 	}
@@ -1938,7 +2059,7 @@ public class Utility {
 		for (int i = 0; i < number; i++) {
 			indices.add(i);
 		}
-		SimUtilities.shuffle(indices, RandomHelper.getUniform());
+		SimUtilities.shuffle(indices, ConcurrentAsk.getUniform());
 		indices.subList(number, size).clear();
 		Collections.sort(indices);
 		ArrayList<E> result = new ArrayList<E>();
@@ -2008,7 +2129,7 @@ public class Utility {
 		if (c.size() == 0) {
 			return null;
 		}
-		int index = RandomHelper.nextIntFromTo(0, c.size() - 1);
+		int index = ConcurrentAsk.getUniform().nextIntFromTo(0, c.size() - 1);
 		return new ArrayList<X>(c).get(index);
 	}
 
@@ -2875,6 +2996,9 @@ public class Utility {
 		for ( FileDataSink fds : registry.fileSinks()){
 			fds.flush();
 		}
+		for ( ColumnarFileDataSink cfds : registry.columnarFileSinks()){
+			cfds.flush();
+		}
 	}
 	
 	/**
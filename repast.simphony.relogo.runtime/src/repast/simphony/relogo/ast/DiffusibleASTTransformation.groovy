@@ -48,7 +48,7 @@ import cern.colt.matrix.DoubleMatrix2D;
 @Log
 @GroovyASTTransformation(phase=CompilePhase.SEMANTIC_ANALYSIS)
 class DiffusibleASTTransformation implements ASTTransformation {
-	private final ClassNode diffusiblePatchVariable = ClassHelper.make('repast.simphony.relogo.DiffusiblePatchVariable')
+	private final ClassNode diffusiblePatchVariable = ClassHelper.make(DiffusiblePatchVariable)
 
 	public void visit(ASTNode[] nodes, SourceUnit sourceUnit) {
 		
@@ -8,6 +8,7 @@ import org.codehaus.groovy.ast.MethodNode
 import org.codehaus.groovy.ast.VariableScope 
 import org.codehaus.groovy.ast.builder.AstBuilder 
 import org.codehaus.groovy.ast.expr.ArgumentListExpression 
+import org.codehaus.groovy.ast.expr.CastExpression
 import org.codehaus.groovy.ast.expr.MethodCallExpression 
 import org.codehaus.groovy.ast.expr.VariableExpression 
 import org.codehaus.groovy.ast.stmt.BlockStatement 
@@ -18,10 +19,12 @@ import org.codehaus.groovy.runtime.MetaClassHelper
 import org.objectweb.asm.Opcodes 
 
 class PatchTypeClassInstrumentor {
+	private ClassNode patchClass;
 	private List<ClassNode> listOfUserTurtleClasses;
 	private List<FieldNode> listOfPublicFieldsAndProperties;
 	
-	public PatchTypeClassInstrumentor(List<ClassNode> listOfUserTurtleClasses, List<FieldNode> listOfPublicFieldsAndProperties){
+	public PatchTypeClassInstrumentor(ClassNode patchClass, List<ClassNode> listOfUserTurtleClasses, List<FieldNode> listOfPublicFieldsAndProperties){
+		this.patchClass = patchClass;
 		this.listOfUserTurtleClasses = listOfUserTurtleClasses;
 		this.listOfPublicFieldsAndProperties = listOfPublicFieldsAndProperties;
 	}
@@ -79,15 +82,23 @@ class PatchTypeClassInstrumentor {
 		return mn
 	}
 	
+	// the patch here cast to the class declaring the field, so that the
+	// accessors compile to direct calls in statically compiled turtles
+	private CastExpression patchHereExpression(){
+		return new CastExpression(patchClass,
+			new MethodCallExpression(
+				new VariableExpression("this"),
+				'patchHere',
+				new ArgumentListExpression()
+				)
+			)
+	}
+	
 	private BlockStatement createTurtleVarGetterCode(String fieldName){
 		
 		ReturnStatement rs = new ReturnStatement(
 			new MethodCallExpression(
-				new MethodCallExpression(
-					new VariableExpression("this"),
-					'patchHere',
-					new ArgumentListExpression()
-					),
+				patchHereExpression(),
 				'get' + MetaClassHelper.capitalize(fieldName),
 				new ArgumentListExpression()
 			)
@@ -100,11 +111,7 @@ class PatchTypeClassInstrumentor {
 		
 		ExpressionStatement es = new ExpressionStatement(
 			new MethodCallExpression(
-				new MethodCallExpression(
-					new VariableExpression("this"),
-					'patchHere',
-					new ArgumentListExpression()
-					),
+				patchHereExpression(),
 				'set' + MetaClassHelper.capitalize(fieldName),
 				new ArgumentListExpression(new VariableExpression('value'))
 			)
@@ -331,7 +331,7 @@ class ReLogoGlobalASTTransformation implements ASTTransformation {
 			// For the patch variables
 			if (mapOfPatchTypesAndFieldNames){
 				for (ClassNode patchType : mapOfPatchTypesAndFieldNames.keySet()){
-					PatchTypeClassInstrumentor ptci = new PatchTypeClassInstrumentor(listOfUserTurtleClasses, mapOfPatchTypesAndFieldNames.get(patchType));
+					PatchTypeClassInstrumentor ptci = new PatchTypeClassInstrumentor(patchType, listOfUserTurtleClasses, mapOfPatchTypesAndFieldNames.get(patchType));
 					ptci.instrument();
 				}
 			}
@@ -6,23 +6,31 @@ import java.text.SimpleDateFormat
 import java.util.List;
 
 import org.codehaus.groovy.ast.ASTNode;
+import org.codehaus.groovy.ast.AnnotationNode
 import org.codehaus.groovy.ast.ClassHelper 
 import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.CodeVisitorSupport
+import org.codehaus.groovy.ast.GenericsType
 import org.codehaus.groovy.ast.MethodNode 
 import org.codehaus.groovy.ast.ModuleNode 
 import org.codehaus.groovy.ast.Parameter 
 import org.codehaus.groovy.ast.VariableScope 
 import org.codehaus.groovy.ast.expr.ArgumentListExpression 
+import org.codehaus.groovy.ast.expr.CastExpression
+import org.codehaus.groovy.ast.expr.ClassExpression
 import org.codehaus.groovy.ast.expr.ConstantExpression 
 import org.codehaus.groovy.ast.expr.MethodCallExpression 
 import org.codehaus.groovy.ast.expr.VariableExpression 
 import org.codehaus.groovy.ast.stmt.BlockStatement 
 import org.codehaus.groovy.ast.stmt.ExpressionStatement 
+import org.codehaus.groovy.ast.stmt.ReturnStatement
 import org.codehaus.groovy.control.CompilationUnit 
 import org.codehaus.groovy.control.CompilePhase;
 import org.codehaus.groovy.control.CompilerConfiguration 
 import org.objectweb.asm.Opcodes 
 
+import repast.simphony.relogo.AgentSet
+
 class TurtleTypeClassInstrumentor {
 	private ClassNode turtleClass;
 	private List<ClassNode> listOfUserClasses;
@@ -111,7 +119,7 @@ class TurtleTypeClassInstrumentor {
 			List<MethodNode> patchMethodList = [
 				patchSproutTypesMethod(),
 				turtlePatchTypesHereMethod(),
-				turtlePatchTypesAtMethod(),
+				patchTypesAtMethod(),
 				tplTypesOnPMethod(),
 				tplTypesOnTMethod(),
 				tplTypesOnAMethod(),
@@ -154,10 +162,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(int number, Closure closure = null){
-						return this.crt(number,closure,'${pluralString}')
+						return (AgentSet) this.crt(number,closure,'${pluralString}')
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode observerCreateOrderedTypesMethod(){
@@ -165,10 +173,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(int number, Closure closure = null){
-						return this.cro(number,closure,'${pluralString}')
+						return (AgentSet) this.cro(number,closure,'${pluralString}')
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode turtleHatchTypesMethod(){
@@ -177,10 +185,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(int number, Closure closure = null){
-						return this.hatch(number,closure,'${pluralString}')
+						return (AgentSet) this.hatch(number,closure,'${pluralString}')
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode patchSproutTypesMethod(){
@@ -189,10 +197,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(int number, Closure closure = null){
-						return this.sprout(number,closure,'${pluralString}')
+						return (AgentSet) this.sprout(number,closure,'${pluralString}')
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode turtlePatchTypesHereMethod(){
@@ -205,10 +213,10 @@ class TurtleTypeClassInstrumentor {
 					public AgentSet ${methodName}(){
 						Grid grid = getMyObserver().getGrid();
 						GridPoint gridPoint = grid.getLocation(this);
-						return Utility.getTurtlesOnGridPoint(gridPoint,getMyObserver(),'${singularString}');
+						return (AgentSet) Utility.getTurtlesOnGridPoint(gridPoint,getMyObserver(),'${singularString}');
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode turtlePatchTypesAtMethod(){
@@ -224,14 +232,36 @@ class TurtleTypeClassInstrumentor {
 						double[] displacement = [dx,dy];
 						try{
 						GridPoint gridPoint = Utility.getGridPointAtDisplacement(getTurtleLocation(),displacement,getMyObserver());
-						return Utility.getTurtlesOnGridPoint(gridPoint,getMyObserver(),'${singularString}');
+						return (AgentSet) Utility.getTurtlesOnGridPoint(gridPoint,getMyObserver(),'${singularString}');
 						}
 						catch(SpatialException e){
 							return null;
 						}
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
+	}
+	
+	protected MethodNode patchTypesAtMethod(){
+		String methodName = Introspector.decapitalize(pluralString) + 'At'
+		String methodString = """
+					import repast.simphony.relogo.*
+					import repast.simphony.space.grid.GridPoint
+					import repast.simphony.space.SpatialException
+					public AgentSet ${methodName}(Number nX, Number nY){
+						double dx = nX.doubleValue()
+						double dy = nY.doubleValue()
+						double[] displacement = [dx,dy];
+						try{
+						GridPoint gridPoint = Utility.getGridPointAtDisplacement(getGridLocationAsNdPoint(),displacement,getMyObserver());
+						return (AgentSet) Utility.getTurtlesOnGridPoint(gridPoint,getMyObserver(),'${singularString}');
+						}
+						catch(SpatialException e){
+							return null;
+						}
+					}
+					"""
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode tplTypesOnPMethod(){
@@ -239,10 +269,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(Patch p){
-						return Utility.getTurtlesOnGridPoint(p.getGridLocation(),getMyObserver(),'${singularString}');
+						return (AgentSet) Utility.getTurtlesOnGridPoint(p.getGridLocation(),getMyObserver(),'${singularString}');
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode observerTypesOnPMethod(){
@@ -250,10 +280,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(Patch p){
-						return Utility.getTurtlesOnGridPoint(p.getGridLocation(),this,'${singularString}');
+						return (AgentSet) Utility.getTurtlesOnGridPoint(p.getGridLocation(),this,'${singularString}');
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode tplTypesOnTMethod(){
@@ -261,10 +291,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(Turtle t){
-						return Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(t.getTurtleLocation()),getMyObserver(),'${singularString}');
+						return (AgentSet) Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(t.getTurtleLocation()),getMyObserver(),'${singularString}');
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode observerTypesOnTMethod(){
@@ -272,10 +302,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(Turtle t){
-						return Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(t.getTurtleLocation()),this,'${singularString}');
+						return (AgentSet) Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(t.getTurtleLocation()),this,'${singularString}');
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode tplTypesOnAMethod(){
@@ -291,16 +321,16 @@ class TurtleTypeClassInstrumentor {
 						
 						Set total = new HashSet();
 						if (a.get(0) instanceof Turtle){
-							for (Turtle t : a){
-								NdPoint location = t.getTurtleLocation();
+							for (Object o : a){
+								NdPoint location = ((Turtle) o).getTurtleLocation();
 								AgentSet temp = Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(location),getMyObserver(),'${singularString}');
 								total.addAll(temp);
 							}
 							
 						}
 						else {
-							for (Patch p : a){
-								GridPoint location = p.getGridLocation();
+							for (Object o : a){
+								GridPoint location = ((Patch) o).getGridLocation();
 								AgentSet temp = Utility.getTurtlesOnGridPoint(location,getMyObserver(),'${singularString}');
 								total.addAll(temp);
 							}
@@ -309,7 +339,7 @@ class TurtleTypeClassInstrumentor {
 						return new AgentSet(total);
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode observerTypesOnAMethod(){
@@ -325,16 +355,16 @@ class TurtleTypeClassInstrumentor {
 						
 						Set total = new HashSet();
 						if (a.get(0) instanceof Turtle){
-							for (Turtle t : a){
-								NdPoint location = t.getTurtleLocation();
+							for (Object o : a){
+								NdPoint location = ((Turtle) o).getTurtleLocation();
 								AgentSet temp = Utility.getTurtlesOnGridPoint(Utility.ndPointToGridPoint(location),this,'${singularString}');
 								total.addAll(temp);
 							}
 							
 						}
 						else {
-							for (Patch p : a){
-								GridPoint location = p.getGridLocation();
+							for (Object o : a){
+								GridPoint location = ((Patch) o).getGridLocation();
 								AgentSet temp = Utility.getTurtlesOnGridPoint(location,this,'${singularString}');
 								total.addAll(temp);
 							}
@@ -343,7 +373,7 @@ class TurtleTypeClassInstrumentor {
 						return new AgentSet(total);
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode tplIsTypeQMethod(){
@@ -385,10 +415,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(){
-						return (Utility.getTurtleAgentSetOfType('${pluralString}',this.getMyObserver()))
+						return (AgentSet) (Utility.getTurtleAgentSetOfType('${pluralString}',this.getMyObserver()))
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode tplTypeMethod(){
@@ -404,7 +434,7 @@ class TurtleTypeClassInstrumentor {
 						return null
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningType(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode observerTypesMethod(){
@@ -412,10 +442,10 @@ class TurtleTypeClassInstrumentor {
 		String methodString = """
 					import repast.simphony.relogo.*
 					public AgentSet ${methodName}(){
-						return (Utility.getTurtleAgentSetOfType('${pluralString}',this))
+						return (AgentSet) (Utility.getTurtleAgentSetOfType('${pluralString}',this))
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningTypes(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode observerTypeMethod(){
@@ -431,13 +461,51 @@ class TurtleTypeClassInstrumentor {
 						return null
 					}
 					"""
-		return createMethodFromString(methodName,methodString)
+		return returningType(createMethodFromString(methodName,methodString))
 	}
 	
 	protected MethodNode createMethodFromString(String methodName, String methodString){
 		return (mfsc.createMethodFromString(methodName, methodString))
 	}
 		
+	/**
+	 * Declares the agentset returned by a generated method to hold turtles of
+	 * this type, and this type to be the delegate of the closure it takes, if
+	 * any, so that the method can be called from statically compiled classes.
+	 */
+	private MethodNode returningTypes(MethodNode mn){
+		if (mn){
+			ClassNode agentSet = ClassHelper.make(AgentSet).getPlainNodeReference()
+			agentSet.setGenericsTypes([new GenericsType(turtleClass)] as GenericsType[])
+			mn.setReturnType(agentSet)
+			for (Parameter p in mn.getParameters()){
+				if (p.getType().getName().equals(Closure.getName())){
+					AnnotationNode delegatesTo = new AnnotationNode(ClassHelper.make(DelegatesTo))
+					delegatesTo.addMember('value', new ClassExpression(turtleClass))
+					delegatesTo.addMember('strategy', new ConstantExpression(Closure.DELEGATE_FIRST))
+					p.addAnnotation(delegatesTo)
+				}
+			}
+		}
+		return mn
+	}
+	
+	/**
+	 * Declares a generated method to return a turtle of this type.
+	 */
+	private MethodNode returningType(MethodNode mn){
+		if (mn){
+			mn.setReturnType(turtleClass)
+			mn.getCode().visit(new CodeVisitorSupport(){
+				@Override
+				public void visitReturnStatement(ReturnStatement statement){
+					statement.setExpression(CastExpression.asExpression(turtleClass, statement.getExpression()))
+				}
+			})
+		}
+		return mn
+	}
+	
 	//Utility for capitalizing the first character of a string 
 	private String capitalize(String s){
 		String result = ''
@@ -21,6 +21,7 @@ public class ReLogoWorldFactory {
 	TurtleFactory turtleFactory;
 	PatchFactory patchFactory;
 	LinkFactory linkFactory;
+	Observer observer;
 	
 	public Context getContext(){
 		return context;
@@ -52,6 +53,7 @@ public class ReLogoWorldFactory {
 	}
 	
 	public void createWorld(Observer observer){
+		this.observer = observer;
 
 		turtleFactory.init(observer);
 		patchFactory.init(observer);
@@ -92,14 +94,22 @@ public class ReLogoWorldFactory {
 		
 		// Populate the world with Patch objects
 		// Iterate over the dimensions of the world grid
-		for (int i=rLWorldDimensions.getMinPxcor(); i<=rLWorldDimensions.getMaxPxcor(); i++){
-			for (int j=rLWorldDimensions.getMinPycor(); j<=rLWorldDimensions.getMaxPycor(); j++){
+		int minPxcor = rLWorldDimensions.getMinPxcor();
+		int minPycor = rLWorldDimensions.getMinPycor();
+		Patch[][] patchArray = new Patch[rLWorldDimensions.getXdim()][rLWorldDimensions.getYdim()];
+		for (int i=minPxcor; i<=rLWorldDimensions.getMaxPxcor(); i++){
+			for (int j=minPycor; j<=rLWorldDimensions.getMaxPycor(); j++){
 				Patch patch = patchFactory.createPatch();				// create a new Patch object patch
 				context.add(patch);								// add the patch to the root context
 				grid.moveTo(patch, i, j);				// move the patch to its position on the grid
 				space.moveTo(patch, i,j);				//  and to its position on the continuous space
+				patchArray[i - minPxcor][j - minPycor] = patch;
 			}
 		}
+		// patches never move, so the observer can look them up by location
+		if (observer != null){
+			observer.setPatchArray(patchArray);
+		}
 		
 	}
 
@@ -3,7 +3,16 @@
  */
 package repast.simphony.relogo
 
+import java.util.concurrent.ForkJoinPool
 
+import repast.simphony.context.DefaultContext
+import repast.simphony.random.RandomHelper
+import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
 
 /**
  * @author jozik
@@ -37,5 +46,160 @@ public class AgentSetTest extends GroovyTestCase{
 		assertTrue(result.grep(agentOne) == [] && result.grep(agentTwo) == [] && result.grep(agentThree) == [agentThree] && result.grep(agentFour) == [agentFour])
 	}
 	
+	private Observer createObserver(){
+		RLWorldDimensions dims = new RLWorldDimensions(-5, 5, -5, 5)
+		ReLogoWorldFactory wf = new ReLogoWorldFactory(new DefaultContext("root"), "w", dims,
+			new TurtleFactory(BaseTurtle), new PatchFactory(BasePatch), new LinkFactory(BaseLink))
+		return new ObserverFactory("o", BaseObserver, wf).createObserver()
+	}
+	
+	private List contextTurtles(Observer o){
+		List result = []
+		for (Object t : o.getContext().getObjects(Turtle)){
+			result << t
+		}
+		return result
+	}
+	
+	private String kind(AgentSet a){
+		return "AgentSet"
+	}
+	
+	private String kind(Collection c){
+		return "Collection"
+	}
+	
+	public void testAskShufflesSnapshot(){
+		Observer o = createObserver()
+		o.crt(50)
+		AgentSet a = o.turtles()
+		List before = new ArrayList(a)
+		List visited = []
+		o.ask(a){ visited << it }
+		// every turtle is asked once, in random order
+		assertEquals(50, visited.size())
+		assertEquals(new HashSet(before), new HashSet(visited))
+		assertFalse(before == visited)
+		// the agentset itself still reads from the unshuffled snapshot
+		assertNotNull(a.getSnapshot())
+		assertEquals(before, a)
+		assertEquals(before, o.turtles())
+	}
+	
+	public void testSnapshotMutationDetaches(){
+		Observer o = createObserver()
+		o.crt(10)
+		List expected = contextTurtles(o)
+		Turtle extra = o.turtles().get(0)
+		def mutations = [
+			add: { AgentSet a -> a.add(extra) },
+			remove: { AgentSet a -> a.remove(0) },
+			removeObject: { AgentSet a -> a.remove(extra) },
+			set: { AgentSet a -> a.set(1, extra) },
+			sort: { AgentSet a -> a.sort({ x, y -> y.getWho() <=> x.getWho() } as Comparator) },
+			subListClear: { AgentSet a -> a.subList(2, 5).clear() }
+		]
+		mutations.each { name, mutation ->
+			AgentSet a = o.turtles()
+			AgentSet other = o.turtles()
+			assertSame(a.getSnapshot(), other.getSnapshot())
+			mutation(a)
+			assertNull(name, a.getSnapshot())
+			assertFalse(name, a == expected)
+			// other holders of the snapshot are unaffected
+			assertNotNull(name, other.getSnapshot())
+			assertEquals(name, expected, other)
+			assertEquals(name, expected, o.turtles())
+		}
+	}
+	
+	public void testSnapshotFollowsContext(){
+		Observer o = createObserver()
+		o.crt(10)
+		AgentSet first = o.turtles()
+		assertEquals(contextTurtles(o), first)
+		
+		o.crt(5)
+		AgentSet second = o.turtles()
+		assertEquals(15, second.size())
+		assertEquals(contextTurtles(o), second)
+		
+		Turtle dead = second.get(3)
+		dead.die()
+		AgentSet third = o.turtles()
+		assertEquals(14, third.size())
+		assertFalse(third.contains(dead))
+		assertEquals(contextTurtles(o), third)
+		
+		// agentsets obtained earlier keep the agents they had
+		assertEquals(10, first.size())
+		assertEquals(15, second.size())
+		assertTrue(second.contains(dead))
+	}
+	
+	public void testSnapshotFollowsManyDeaths(){
+		Observer o = createObserver()
+		o.crt(2000)
+		o.turtles()
+		// remove from the middle, the ends and in no particular order
+		List dying = new ArrayList(o.turtles())
+		Collections.shuffle(dying, new Random(7))
+		dying.subList(0, 1500).each { it.die() }
+		AgentSet turtles = o.turtles()
+		assertEquals(500, turtles.size())
+		assertEquals(contextTurtles(o), turtles)
+		
+		o.crt(10)
+		turtles = o.turtles()
+		assertEquals(510, turtles.size())
+		assertEquals(contextTurtles(o), turtles)
+		o.turtles().each { it.die() }
+		assertTrue(o.turtles().isEmpty())
+	}
+	
+	public void testAgentSetDispatch(){
+		Observer o = createObserver()
+		o.crt(5)
+		assertTrue(o.turtles() instanceof AgentSet)
+		assertSame(AgentSet, o.turtles().getClass())
+		assertEquals("AgentSet", kind(o.turtles()))
+		assertEquals("AgentSet", kind(o.turtles().with { true }))
+		assertEquals("Collection", kind(new ArrayList(o.turtles())))
+	}
+	
+	/**
+	 * Asks the turtles of an agentset and a collection of the patches
+	 * concurrently on a pool of the specified parallelism, drawing random
+	 * numbers in the ask blocks, and returns the values set along with the
+	 * next number drawn afterwards.
+	 */
+	private List askConcurrentResults(int parallelism){
+		ConcurrentAsk.pool = new ForkJoinPool(parallelism)
+		try {
+			RandomHelper.setSeed(42)
+			Observer o = createObserver()
+			o.crt(1000)
+			o.askConcurrent(o.turtles()){ Turtle t ->
+				t.setHeading(Utility.random(360) + Utility.randomNormal(0, 1))
+			}
+			o.askConcurrent(new ArrayList(o.patches())){ AbstractPatch p ->
+				p.pcolor = Utility.randomFloat(140) + Utility.randomExponential(2)
+			}
+			List result = o.turtles().collect { it.getHeading() }
+			result.addAll(o.patches().collect { it.pcolor })
+			result << RandomHelper.nextIntFromTo(0, 1000000)
+			return result
+		} finally {
+			ConcurrentAsk.pool.shutdown()
+			ConcurrentAsk.pool = null
+		}
+	}
+	
+	public void testAskConcurrentParallelism(){
+		List sequential = askConcurrentResults(1)
+		assertEquals(sequential, askConcurrentResults(4))
+		assertEquals(sequential, askConcurrentResults(7))
+	}
+	
 	//TODO: create a test for the "of" method
 }
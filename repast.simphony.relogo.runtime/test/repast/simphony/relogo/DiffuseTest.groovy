@@ -6,7 +6,15 @@ package repast.simphony.relogo
 import cern.colt.matrix.DoubleFactory2D;
 import cern.colt.matrix.DoubleMatrix2D
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import java.util.concurrent.ForkJoinPool
+import repast.simphony.context.DefaultContext
 import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.RLWorldDimensions.WorldType
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
 import static repast.simphony.relogo.Utility.*
 import static repast.simphony.relogo.UtilityG.*
 import static java.lang.Math.*
@@ -384,6 +392,120 @@ public class DiffuseTest extends GroovyTestCase{
 		  DoubleMatrix2D expected = new DenseDoubleMatrix2D(sde)
 		  assertEquals(expected,JavaUtility.bufferMatrix1(ddm))
 	  }
-	
+	  
+		/**
+		 * Creates a matrix of each shape, filled with random values.
+		 */
+		private PatchVariableMatrix[] randomMatrices(int count, int rows, int columns, Random random){
+			PatchVariableMatrix[] matrices = new PatchVariableMatrix[count]
+			for (int i = 0; i < count; i++){
+				matrices[i] = new PatchVariableMatrix(rows, columns)
+				matrices[i].assign({random.nextDouble() * 100} as cern.colt.function.DoubleFunction)
+			}
+			return matrices
+		}
+		
+		/**
+		 * Diffuses the matrices a few times with the PatchVariableMatrix diffusion
+		 * and, from copies, with the matrix based diffusion, checking that the
+		 * results agree.
+		 */
+		private void checkAgainstMatrixDiffuse(PatchVariableMatrix[] matrices, double[] diffusionCoeffs, boolean isMoore, boolean isPeriodic){
+			DoubleMatrix2D[] copies = matrices.collect {it.copy()}
+			for (int step = 0; step < 3; step++){
+				JavaUtility.diffuse(matrices, diffusionCoeffs, isMoore, isPeriodic)
+				for (int i = 0; i < copies.length; i++){
+					DoubleMatrix2D next = new DenseDoubleMatrix2D(copies[i].rows(), copies[i].columns())
+					JavaUtility.diffuse(copies[i], next, diffusionCoeffs[i], isMoore, isPeriodic)
+					copies[i] = next
+					assertMatrixEquals(copies[i], matrices[i])
+				}
+			}
+		}
+		
+		private void assertMatrixEquals(DoubleMatrix2D expected, DoubleMatrix2D actual){
+			assertEquals(expected.rows(), actual.rows())
+			assertEquals(expected.columns(), actual.columns())
+			for (int row = 0; row < expected.rows(); row++){
+				for (int col = 0; col < expected.columns(); col++){
+					assertEquals(expected.getQuick(row, col), actual.getQuick(row, col), 1e-9)
+				}
+			}
+		}
+		
+		/**
+		 * The PatchVariableMatrix diffusion matches the matrix based one with and
+		 * without Moore neighborhoods and periodic edges, including in worlds of
+		 * one or two rows or columns.
+		 */
+		public void testPatchVariableMatrixDiffuse(){
+			Random random = new Random(1)
+			def shapes = [[1, 1], [1, 2], [2, 1], [2, 2], [1, 7], [7, 1], [2, 7], [7, 2], [3, 3], [6, 9]]
+			for (boolean isMoore : [true, false]){
+				for (boolean isPeriodic : [true, false]){
+					for (def shape : shapes){
+						checkAgainstMatrixDiffuse(randomMatrices(1, shape[0], shape[1], random), [0.3] as double[], isMoore, isPeriodic)
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Diffusing several matrices together, in bands of rows forked on a pool,
+		 * matches diffusing each by itself with the matrix based diffusion.
+		 */
+		public void testForkedDiffuse(){
+			Random random = new Random(2)
+			JavaUtility.pool = new ForkJoinPool(4)
+			try {
+				for (boolean isMoore : [true, false]){
+					for (boolean isPeriodic : [true, false]){
+						// 3 matrices of 100 columns are diffused in bands of 54 rows
+						checkAgainstMatrixDiffuse(randomMatrices(3, 301, 100, random), [0.3, 0.6, 1] as double[], isMoore, isPeriodic)
+					}
+				}
+			} finally {
+				JavaUtility.pool.shutdown()
+				JavaUtility.pool = null
+			}
+		}
+		
+		/**
+		 * Diffusing a map of patch variables in a single pass matches diffusing
+		 * each of them on its own through the matrix based path.
+		 */
+		public void testDiffuseMap(){
+			for (WorldType worldType : [WorldType.WRAP, WorldType.BOUNCY]){
+				for (boolean isMoore : [true, false]){
+					RLWorldDimensions dims = new RLWorldDimensions(-10, 10, -8, 12, worldType)
+					ReLogoWorldFactory wf = new ReLogoWorldFactory(new DefaultContext("root"), "w", dims, new TurtleFactory(BaseTurtle), new PatchFactory(BasePatch), new LinkFactory(BaseLink))
+					AbstractObserver o = new ObserverFactory("o", BaseObserver, wf).createObserver()
+					Random random = new Random(3)
+					["a", "b", "c", "d"].each {o.createPatchVar(new DiffusiblePatchVariable(it, 0))}
+					for (def pair : [["a", "c"], ["b", "d"]]){
+						DoubleMatrix2D values = o.getPatchVarMatrix(pair[0])
+						values.assign({random.nextDouble() * 100} as cern.colt.function.DoubleFunction)
+						// a matrix that isn't a PatchVariableMatrix takes the matrix based path
+						o.setPatchVarMatrix(pair[1], new DenseDoubleMatrix2D(values.toArray()))
+					}
+					DoubleMatrix2D a = o.getPatchVarMatrix("a")
+					for (int step = 0; step < 3; step++){
+						if (isMoore){
+							o.diffuse(a: 0.3, b: 0.6)
+							o.diffuse("c", 0.3)
+							o.diffuse("d", 0.6)
+						} else {
+							o.diffuse4(a: 0.3, b: 0.6)
+							o.diffuse4("c", 0.3)
+							o.diffuse4("d", 0.6)
+						}
+						assertMatrixEquals(o.getPatchVarMatrix("c"), o.getPatchVarMatrix("a"))
+						assertMatrixEquals(o.getPatchVarMatrix("d"), o.getPatchVarMatrix("b"))
+					}
+					// the values are diffused in place
+					assertSame(a, o.getPatchVarMatrix("a"))
+				}
+			}
+		}
 	
 }
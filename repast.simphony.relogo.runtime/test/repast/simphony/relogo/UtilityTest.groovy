@@ -3,7 +3,20 @@
  */
 package repast.simphony.relogo
 
+import repast.simphony.context.DefaultContext
+import repast.simphony.query.space.grid.MooreQuery
+import repast.simphony.query.space.grid.VNQuery
+import repast.simphony.random.RandomHelper
 import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.RLWorldDimensions.WorldType
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
+import repast.simphony.space.SpatialException
+import repast.simphony.space.continuous.NdPoint
+import repast.simphony.space.grid.GridPoint
 import static repast.simphony.relogo.Utility.*
 import static repast.simphony.relogo.UtilityG.*
 import static java.lang.Math.*
@@ -1189,4 +1202,98 @@ public class UtilityTest extends GroovyTestCase{
 		assertTrue(scaleColor(color,2,r1,r2) == 29.9999)
 	}
 	
+	private Observer createObserver(WorldType worldType){
+		return createObserver(-10, 10, -8, 12, worldType)
+	}
+	
+	private Observer createObserver(int minX, int maxX, int minY, int maxY, WorldType worldType){
+		RLWorldDimensions dims = new RLWorldDimensions(minX, maxX, minY, maxY, worldType)
+		ReLogoWorldFactory wf = new ReLogoWorldFactory(new DefaultContext("root"), "w", dims,
+			new TurtleFactory(BaseTurtle), new PatchFactory(BasePatch), new LinkFactory(BaseLink))
+		return new ObserverFactory("o", BaseObserver, wf).createObserver()
+	}
+	
+	/**
+	 * The patches around the center are searched for the members of an
+	 * unmodified agentset, and every member of other collections is measured.
+	 * Both must find the same agents, in the same order, including for radii
+	 * far larger than the world.
+	 */
+	public void testInRadiusU(){
+		for (WorldType worldType in [WorldType.WRAP, WorldType.BOUNCY]){
+			Observer o = createObserver(worldType)
+			RandomHelper.setSeed(7)
+			// more turtles than patches, so that even the whole world is searched
+			// by patch
+			o.crt(500)
+			for (Turtle t in o.turtles()){
+				t.setxy(randomXcorU(o), randomYcorU(o))
+			}
+			assertNotNull(o.turtles().getSnapshot())
+			
+			int k = 0
+			for (double radius in [0, 0.5, 1.7, 3, 6.2, 12, 40, 1e9, 1e12, Double.MAX_VALUE]){
+				for (Turtle t in o.turtles()){
+					if (k++ % 25 != 0) continue
+					NdPoint center = o.getSpace().getLocation(t)
+					AgentSet byPatch = inRadiusU(o.turtles(), center, radius, o)
+					AgentSet linear = inRadiusU(new ArrayList(o.turtles()), center, radius, o)
+					assertEquals("$worldType $radius", linear, byPatch)
+					assertEquals("$worldType $radius", inRadiusU(new ArrayList(o.patches()), center, radius, o),
+						inRadiusU(o.patches(), center, radius, o))
+				}
+			}
+			assertEquals(500, inRadiusU(o.turtles(), new NdPoint(0, 0), Double.MAX_VALUE, o).size())
+		}
+	}
+	
+	/**
+	 * The patches other than p that a Moore or von Neumann query around p
+	 * finds, in the query's order.
+	 */
+	private List queryNeighbors(def query, Patch p){
+		return query.query().findAll {it instanceof Patch && !it.is(p)}
+	}
+	
+	private Object patchOrError(Closure lookup){
+		try {
+			return lookup()
+		} catch (SpatialException e){
+			return "outside"
+		}
+	}
+	
+	/**
+	 * Patches are looked up in the patch array as they are found on the grid,
+	 * and their neighbors come in the order of MooreQuery and VNQuery, in
+	 * wrapping and bounded worlds, including ones a patch or two wide.
+	 */
+	public void testPatchLookupAndNeighbors(){
+		for (WorldType worldType in [WorldType.WRAP, WorldType.BOUNCY, WorldType.STICKY]){
+			for (def d in [[-2, 2, -1, 2], [0, 0, 0, 1], [-1, 0, -3, 3]]){
+				Observer o = createObserver(d[0], d[1], d[2], d[3], worldType)
+				for (Patch p in o.patches()){
+					String msg = "$worldType $d $p"
+					assertEquals(msg, queryNeighbors(new MooreQuery(o.getGrid(), p, 1, 1), p), p.neighbors())
+					// twice, as the extent 1 neighborhoods are cached
+					assertEquals(msg, queryNeighbors(new MooreQuery(o.getGrid(), p, 1, 1), p), p.neighbors())
+					assertEquals(msg, queryNeighbors(new MooreQuery(o.getGrid(), p, 2, 2), p), p.neighbors(2))
+					assertEquals(msg, queryNeighbors(new MooreQuery(o.getGrid(), p, 1, 3), p), p.neighbors(1, 3))
+					assertEquals(msg, queryNeighbors(new VNQuery(o.getGrid(), p, 1, 1), p), p.neighbors4())
+					assertEquals(msg, queryNeighbors(new VNQuery(o.getGrid(), p, 1, 1), p), p.neighbors4())
+					assertEquals(msg, queryNeighbors(new VNQuery(o.getGrid(), p, 2, 1), p), p.neighbors4(2, 1))
+					
+					GridPoint location = o.getGrid().getLocation(p)
+					for (int dx = -7; dx <= 7; dx++){
+						for (int dy = -7; dy <= 7; dy++){
+							GridPoint point = new GridPoint(location.getX() + dx, location.getY() + dy)
+							assertSame("$msg $point", patchOrError {getPatchOnGrid(point, o)},
+								patchOrError {getPatchAtLocation(point, o)})
+						}
+					}
+				}
+			}
+		}
+	}
+	
 }
@@ -18,6 +18,8 @@ import junit.framework.Assert;
 import org.codehaus.groovy.ast.builder.*
 
 import groovy.util.GroovyTestCase;
+import repast.simphony.relogo.Observer
+import repast.simphony.relogo.Patch
 
 class AstTransformTest extends GroovyTestCase {
 	
@@ -71,5 +73,57 @@ class AstTransformTest extends GroovyTestCase {
 		assertTrue(true)
 	}
 	
+	private Observer createBenchObserver(String packageName, String annotation){
+		return CompileStaticBench.createObserver(CompileStaticBench.compile(CompileStaticBench.model(packageName, annotation)), packageName)
+	}
+	
+	/**
+	 * The location, heading and load of each ant, and the chemical on the
+	 * patches.
+	 */
+	private List benchState(Observer observer){
+		List state = observer.turtles().collect { [it.getXcor(), it.getYcor(), it.getHeading(), it.carried] }
+		state << observer.getPatchVarMatrix('chemical').toArray().collect { it as List }
+		return state
+	}
+	
+	/**
+	 * The benchmark model behaves the same compiled dynamically and with
+	 * CompileStatic.
+	 */
+	public void testCompileStaticModel(){
+		Observer dynamic = createBenchObserver('ast.dynamic.relogo', '')
+		Observer statics = createBenchObserver('ast.statics.relogo', '@CompileStatic')
+		CompileStaticBench.run(dynamic, 20)
+		CompileStaticBench.run(statics, 20)
+		List dynamicState = benchState(dynamic)
+		assertEquals(2001, dynamicState.size())
+		assertEquals(dynamicState, benchState(statics))
+		assertEquals(CompileStaticBench.carried(dynamic), CompileStaticBench.carried(statics), 0)
+	}
+	
+	/**
+	 * The <breeds>At method generated for patches finds the turtles of the
+	 * breed on the patch at the displacement, in both compilation modes.
+	 */
+	public void testBreedsAtOnPatches(){
+		for (String annotation in ['', '@CompileStatic']){
+			Observer observer = createBenchObserver(annotation ? 'ast.statics.relogo' : 'ast.dynamic.relogo', annotation)
+			CompileStaticBench.run(observer, 1)
+			Map antsByPatch = observer.turtles().groupBy { it.patchHere() }
+			int k = 0
+			int found = 0
+			for (Patch p in observer.patches()){
+				if (k++ % 97 != 0) continue
+				for (List d in [[0, 0], [1, 0], [-2, 3], [50, -50]]){
+					Patch other = p.patchAt(d[0], d[1])
+					Set expected = (antsByPatch[other] ?: []) as Set
+					assertEquals("$annotation $p $d", expected, p.antsAt(d[0], d[1]) as Set)
+					found += expected.size()
+				}
+			}
+			assertTrue(found > 0)
+		}
+	}
 	
 }
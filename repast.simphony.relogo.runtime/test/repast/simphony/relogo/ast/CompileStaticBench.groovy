@@ -0,0 +1,143 @@
+package repast.simphony.relogo.ast
+
+import org.codehaus.groovy.control.CompilerConfiguration
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer
+
+import repast.simphony.context.DefaultContext
+import repast.simphony.random.RandomHelper
+import repast.simphony.relogo.BaseLink
+import repast.simphony.relogo.Observer
+import repast.simphony.relogo.factories.LinkFactory
+import repast.simphony.relogo.factories.ObserverFactory
+import repast.simphony.relogo.factories.PatchFactory
+import repast.simphony.relogo.factories.RLWorldDimensions
+import repast.simphony.relogo.factories.ReLogoWorldFactory
+import repast.simphony.relogo.factories.TurtleFactory
+import repast.simphony.relogo.factories.RLWorldDimensions.WorldType
+
+/**
+ * A benchmark comparing the same ReLogo model compiled dynamically and with
+ * CompileStatic. Not a unit test.
+ */
+class CompileStaticBench {
+
+	static String model(String packageName, String annotation) {
+		"""
+package ${packageName}
+
+import groovy.transform.CompileStatic
+import repast.simphony.relogo.*
+import repast.simphony.relogo.ast.Diffusible
+import static repast.simphony.relogo.Utility.*
+import static repast.simphony.relogo.UtilityG.*
+
+${annotation}
+class UserPatch extends BasePatch {
+	double food = 0
+	@Diffusible
+	double chemical = 0
+}
+
+${annotation}
+class Ant extends BaseTurtle {
+	double carried = 0
+
+	void step() {
+		fd(1)
+		rt(randomFloat(40) - 20)
+		if (food > 0.1d) {
+			food = food - 0.1d
+			carried += 0.1d
+		}
+		for (Ant other : antsHere()) {
+			if (!other.is(this) && other.carried < carried) {
+				other.carried += 0.01d
+				carried -= 0.01d
+			}
+		}
+	}
+}
+
+${annotation}
+class UserObserver extends BaseObserver {
+	void setup() {
+		clearTurtles()
+		createAnts(2000) {
+			setxy(randomXcor(), randomYcor())
+		}
+		for (Patch p : patches()) {
+			((UserPatch) p).food = 1
+			((UserPatch) p).chemical = p.getPxcor() == 0 ? 100d : 0d
+		}
+	}
+
+	void go() {
+		ask(ants()) {
+			step()
+		}
+		diffuse('chemical', 0.5d)
+	}
+}
+"""
+	}
+
+	static GroovyClassLoader compile(String source) {
+		// the customizer applies a global transformation once, so each model
+		// gets its own
+		CompilerConfiguration config = new CompilerConfiguration()
+		config.addCompilationCustomizers(new ASTTransformationCustomizer(new ReLogoGlobalASTTransformation()))
+		GroovyClassLoader loader = new GroovyClassLoader(CompileStaticBench.classLoader, config)
+		loader.parseClass(source, 'Model.groovy')
+		return loader
+	}
+
+	static Observer createObserver(GroovyClassLoader loader, String packageName) {
+		Class turtle = loader.loadClass(packageName + '.Ant')
+		Class patch = loader.loadClass(packageName + '.UserPatch')
+		Class observer = loader.loadClass(packageName + '.UserObserver')
+		RLWorldDimensions dims = new RLWorldDimensions(-50, 50, -50, 50, WorldType.WRAP)
+		ReLogoWorldFactory wf = new ReLogoWorldFactory(new DefaultContext('root'), 'world', dims,
+				new TurtleFactory(turtle, [turtle]), new PatchFactory(patch), new LinkFactory(BaseLink))
+		return new ObserverFactory('default_observer', observer, wf).createObserver()
+	}
+
+	static long run(Observer observer, int ticks) {
+		RandomHelper.setSeed(1)
+		observer.setup()
+		long start = System.nanoTime()
+		for (int i = 0; i < ticks; i++) {
+			observer.go()
+		}
+		return System.nanoTime() - start
+	}
+
+	static double carried(Observer observer) {
+		List<Double> values = []
+		for (def ant : observer.turtles()) {
+			values.add(ant.carried)
+		}
+		Collections.sort(values)
+		double total = 0
+		for (double value : values) {
+			total += value
+		}
+		return total
+	}
+
+	public static void main(String[] args) {
+		Observer dynamic = createObserver(compile(model('bench.dynamic.relogo', '')), 'bench.dynamic.relogo')
+		Observer statics = createObserver(compile(model('bench.statics.relogo', '@CompileStatic')), 'bench.statics.relogo')
+		// warm up
+		run(dynamic, 50)
+		run(statics, 50)
+		int ticks = 200
+		long dynamicTime = 0
+		long staticTime = 0
+		for (int i = 0; i < 3; i++) {
+			dynamicTime += run(dynamic, ticks)
+			staticTime += run(statics, ticks)
+		}
+		println "Dynamic: " + dynamicTime / 3E9 + "s per ${ticks} ticks, carried: " + carried(dynamic)
+		println "CompileStatic: " + staticTime / 3E9 + "s per ${ticks} ticks, carried: " + carried(statics)
+	}
+}
@@ -0,0 +1,220 @@
+package repast.simphony.ws;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects data set rows into columns, one per source id, and encodes them as
+ * a single binary message. The column arrays and the encoding buffer are
+ * reused from batch to batch, so collecting rows creates no garbage beyond
+ * the boxed values handed to the data sink.
+ *
+ * A batch is encoded as the message type
+ * ({@link MessageConstants#DATA_BATCH_UPDATE}), the data set name, the row
+ * count (int) and the column count (short), followed by each column: its
+ * source id, its type (byte, {@link #NUMERIC} or {@link #STRING}) and its
+ * values. Numeric values are doubles, booleans being 1 or 0. Strings, including
+ * the names, are an int byte length followed by the UTF-8 bytes. A value
+ * missing from a row, or null, is NaN in a numeric column and an empty string
+ * in a string column. A column is numeric if its first value is a number or a
+ * boolean. If a later value is neither, the column becomes a string column,
+ * and the numbers already collected become their string forms.
+ *
+ * @author nick
+ */
+public class ColumnBatchEncoder {
+
+    public static final byte NUMERIC = 0;
+    public static final byte STRING = 1;
+
+    private static final int INITIAL_ROWS = 64;
+
+    private static class Column {
+        byte[] name;
+        // -1 until the first value is seen
+        byte type = -1;
+        double[] numbers;
+        String[] strings;
+
+        Column(String name) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+        }
+
+        void ensureCapacity(int rows) {
+            if (type == NUMERIC && numbers.length < rows) {
+                numbers = Arrays.copyOf(numbers, Math.max(rows, numbers.length * 2));
+            } else if (type == STRING && strings.length < rows) {
+                strings = Arrays.copyOf(strings, Math.max(rows, strings.length * 2));
+            }
+        }
+
+        void set(int row, Object value) {
+            if (value == null) {
+                clear(row);
+                return;
+            }
+            boolean numeric = value instanceof Number || value instanceof Boolean;
+            if (type == NUMERIC && !numeric) {
+                toStrings(row);
+            }
+            if (type == -1) {
+                if (numeric) {
+                    type = NUMERIC;
+                    numbers = new double[Math.max(INITIAL_ROWS, row + 1)];
+                    Arrays.fill(numbers, 0, row, Double.NaN);
+                } else {
+                    type = STRING;
+                    strings = new String[Math.max(INITIAL_ROWS, row + 1)];
+                }
+            }
+            ensureCapacity(row + 1);
+
+            if (type == NUMERIC) {
+                if (value instanceof Number) {
+                    numbers[row] = ((Number) value).doubleValue();
+                } else {
+                    numbers[row] = ((Boolean) value) ? 1 : 0;
+                }
+            } else {
+                strings[row] = String.valueOf(value);
+            }
+        }
+
+        // makes this a string column, keeping the numbers of the rows before
+        // the specified one
+        void toStrings(int row) {
+            strings = new String[numbers.length];
+            for (int i = 0; i < row; i++) {
+                strings[i] = Double.isNaN(numbers[i]) ? null : String.valueOf(numbers[i]);
+            }
+            numbers = null;
+            type = STRING;
+        }
+
+        void clear(int row) {
+            if (type == NUMERIC) {
+                ensureCapacity(row + 1);
+                numbers[row] = Double.NaN;
+            } else if (type == STRING) {
+                ensureCapacity(row + 1);
+                strings[row] = null;
+            }
+        }
+    }
+
+    private byte[] dataSet;
+    private Column[] columns;
+    private Map<String, Integer> columnIndices = new HashMap<>();
+    // the number of ended rows in the current batch
+    private int rowCount = 0;
+    private boolean[] rowSet;
+    private ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+
+    /**
+     * Creates a ColumnBatchEncoder for the specified data set and source ids.
+     *
+     * @param dataSet
+     *            the name of the data set
+     * @param sourceIds
+     *            the source ids of the data set's columns
+     */
+    public ColumnBatchEncoder(String dataSet, List<String> sourceIds) {
+        this.dataSet = dataSet.getBytes(StandardCharsets.UTF_8);
+        columns = new Column[sourceIds.size()];
+        rowSet = new boolean[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(sourceIds.get(i));
+            columnIndices.put(sourceIds.get(i), i);
+        }
+    }
+
+    /**
+     * Sets the value of the specified source id in the current row. Values of
+     * unknown source ids are ignored.
+     *
+     * @param sourceId
+     * @param value
+     */
+    public void append(String sourceId, Object value) {
+        Integer index = columnIndices.get(sourceId);
+        if (index != null) {
+            columns[index].set(rowCount, value);
+            rowSet[index] = true;
+        }
+    }
+
+    /**
+     * Ends the current row.
+     */
+    public void rowEnded() {
+        for (int i = 0; i < columns.length; i++) {
+            if (!rowSet[i]) {
+                columns[i].clear(rowCount);
+            }
+            rowSet[i] = false;
+        }
+        ++rowCount;
+    }
+
+    /**
+     * Gets the number of rows in the current batch.
+     *
+     * @return the number of rows in the current batch.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer tmp = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            tmp.put(buffer);
+            buffer = tmp;
+        }
+    }
+
+    private void putString(byte[] bytes) {
+        ensureCapacity(Integer.BYTES + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Encodes the current batch and starts a new one.
+     *
+     * @return the encoded batch.
+     */
+    public byte[] finish() {
+        buffer.clear();
+        buffer.putInt(MessageConstants.DATA_BATCH_UPDATE);
+        putString(dataSet);
+        ensureCapacity(Integer.BYTES + Short.BYTES);
+        buffer.putInt(rowCount);
+        buffer.putShort((short) columns.length);
+        for (Column column : columns) {
+            putString(column.name);
+            ensureCapacity(1 + rowCount * Double.BYTES);
+            if (column.type == STRING) {
+                buffer.put(STRING);
+                for (int i = 0; i < rowCount; i++) {
+                    String val = column.strings[i];
+                    putString(val == null ? new byte[0] : val.getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                buffer.put(NUMERIC);
+                for (int i = 0; i < rowCount; i++) {
+                    buffer.putDouble(column.type == NUMERIC ? column.numbers[i] : Double.NaN);
+                }
+            }
+        }
+        rowCount = 0;
+        // the socket keeps the array until it is sent, so the pooled
+        // buffer can't be handed over directly
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
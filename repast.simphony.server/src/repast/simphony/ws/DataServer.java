@@ -10,8 +10,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import repast.simphony.data2.DataSink;
 import simphony.util.messages.MessageCenter;
 
+/**
+ * DataSink that streams data set rows to the web client. Rows are batched and
+ * sent at most once every batching window, either as JSON or as binary column
+ * batches, see {@link ColumnBatchEncoder}. This can be configured with the
+ * following system properties:
+ * 
+ * <ul>
+ * <li>repast.simphony.ws.data.format: "json" or "binary". Defaults to json.</li>
+ * <li>repast.simphony.ws.data.interval: the batching window in milliseconds.
+ * Defaults to 250.</li>
+ * </ul>
+ * 
+ * @author nick
+ */
 public class DataServer implements DataSink {
 
+    public static final String FORMAT_PROPERTY = "repast.simphony.ws.data.format";
+    public static final String INTERVAL_PROPERTY = "repast.simphony.ws.data.interval";
+
     private static final int UPDATE_INTERVAL = 250;
     private static final MessageCenter LOG = MessageCenter.getMessageCenter(DataServer.class);
 
@@ -32,10 +49,34 @@ public class DataServer implements DataSink {
     private long lastUpdateTS = 0;
     private boolean firstRowItem, firstRow;
     private boolean updatesPending = false;
+    private long updateInterval;
+    // null when sending json
+    private ColumnBatchEncoder encoder;
+    private boolean binary;
 
     public DataServer(String outgoingAddr, String dataSet) {
+        this(outgoingAddr, dataSet, "binary".equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY)),
+                Long.getLong(INTERVAL_PROPERTY, UPDATE_INTERVAL));
+    }
+
+    /**
+     * Creates a DataServer.
+     * 
+     * @param outgoingAddr
+     *            the address of the socket to send the rows to
+     * @param dataSet
+     *            the name of the data set
+     * @param binary
+     *            whether to send the rows as binary column batches rather than
+     *            as json
+     * @param updateInterval
+     *            the batching window in milliseconds
+     */
+    public DataServer(String outgoingAddr, String dataSet, boolean binary, long updateInterval) {
         this.outgoingAddr = outgoingAddr;
         this.dataSet = dataSet;
+        this.binary = binary;
+        this.updateInterval = updateInterval;
     }
 
     /*
@@ -45,7 +86,11 @@ public class DataServer implements DataSink {
     public void open(List<String> sourceIds) {
     	LOG.info("Remote Data Sink Opened");
         outgoing = new OutgoingMessageSocket(outgoingAddr);
-        resetRowBuilder();
+        if (binary) {
+            encoder = new ColumnBatchEncoder(dataSet, sourceIds);
+        } else {
+            resetRowBuilder();
+        }
     }
 
     /*
@@ -55,6 +100,9 @@ public class DataServer implements DataSink {
      */
     @Override
     public void rowStarted() {
+        if (encoder != null) {
+            return;
+        }
         firstRowItem = true;
         if (!firstRow) {
             rowBuilder.append(",");
@@ -78,6 +126,11 @@ public class DataServer implements DataSink {
      */
     @Override
     public void append(String key, Object value) {
+        if (encoder != null) {
+            encoder.append(key, value);
+            updatesPending = true;
+            return;
+        }
         // TODO use a formatter to format the object correctly
         if ((value instanceof Double) && Double.isNaN((Double) value)) {
             value = 0.0;
@@ -98,17 +151,27 @@ public class DataServer implements DataSink {
      */
     @Override
     public void rowEnded() {
-        rowBuilder.append("}");
+        if (encoder != null) {
+            encoder.rowEnded();
+        } else {
+            rowBuilder.append("}");
+        }
         sendUpdate(false);
     }
 
     public void sendUpdate(boolean force) {
         long ts = System.currentTimeMillis();
-        if (force || ts - lastUpdateTS > UPDATE_INTERVAL) {
-            rowBuilder.append("]}");
-            outgoing.send(rowBuilder.toString());
+        if (force || ts - lastUpdateTS > updateInterval) {
+            if (encoder != null) {
+                if (encoder.getRowCount() > 0) {
+                    outgoing.send(encoder.finish());
+                }
+            } else {
+                rowBuilder.append("]}");
+                outgoing.send(rowBuilder.toString());
+                resetRowBuilder();
+            }
             lastUpdateTS = ts;
-            resetRowBuilder();
             updatesPending = false;
         }
     }
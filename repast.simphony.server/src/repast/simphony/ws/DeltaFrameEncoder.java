@@ -0,0 +1,274 @@
+package repast.simphony.ws;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import repast.simphony.visualization.Box;
+
+/**
+ * Encodes 2D display updates as binary frames that contain only the agents
+ * whose color or location has changed since the previous frame. The encoder
+ * writes into a buffer that is reused from frame to frame.
+ *
+ * A frame consists of a header followed by a payload. The header is the
+ * message type ({@link MessageConstants#TWO_D_DISPLAY_DELTA_UPDATE}), the
+ * display id and the frame flags, followed by the quantization origin and step
+ * (4 floats: min x, min y, x step, y step) if the frame is {@link #QUANTIZED}.
+ * If the frame is {@link #COMPRESSED} the payload is zlib deflated. The payload
+ * is the layer count, followed by, for each layer, the layer id, the number of
+ * removed agents and their ids, the number of updated agents and their
+ * records, and the number of added agents and their records. A record is the
+ * agent id, a byte mask of {@link #COLOR_CHANGED} and {@link #LOCATION_CHANGED},
+ * then the color as 3 unsigned bytes if the color changed, and the location as
+ * 2 floats, or as 2 unsigned shorts if quantized, if the location changed.
+ * Added agents always have both.
+ *
+ * In a {@link #KEY_FRAME}, every agent is sent with its color and location, so
+ * that clients that have missed frames can catch up.
+ *
+ * @author nick
+ */
+public class DeltaFrameEncoder {
+
+    /**
+     * Frame flag: locations are quantized to unsigned shorts.
+     */
+    public static final int QUANTIZED = 1;
+
+    /**
+     * Frame flag: the payload is zlib deflated.
+     */
+    public static final int COMPRESSED = 2;
+
+    /**
+     * Frame flag: every agent's color and location is sent.
+     */
+    public static final int KEY_FRAME = 4;
+
+    /**
+     * Record mask bit: the record contains the color.
+     */
+    public static final int COLOR_CHANGED = 1;
+
+    /**
+     * Record mask bit: the record contains the location.
+     */
+    public static final int LOCATION_CHANGED = 2;
+
+    /**
+     * The maximum size in bytes of a single agent record.
+     */
+    public static final int MAX_RECORD_SIZE = Integer.BYTES + 1 + 3 + Float.BYTES * 2;
+
+    // payloads smaller than this are not worth compressing
+    private static final int COMPRESS_THRESHOLD = 1024;
+
+    private static final int QUANTIZED_MAX = 0xFFFF;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private byte[] deflated = new byte[0];
+    private Deflater deflater;
+    private boolean quantize;
+    private boolean keyFrame;
+    private int payloadStart;
+
+    private float minX, minY, stepX, stepY;
+    private boolean boxSet = false;
+
+    /**
+     * Creates a DeltaFrameEncoder.
+     *
+     * @param quantize
+     *            whether or not to quantize locations to 16 bits within the
+     *            display's bounding box
+     * @param compress
+     *            whether or not to compress large frames
+     */
+    public DeltaFrameEncoder(boolean quantize, boolean compress) {
+        this.quantize = quantize;
+        if (compress) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * Starts a new frame. If the quantization box has changed since the
+     * previous frame, the frame becomes a key frame.
+     *
+     * @param displayId
+     *            the id of the display
+     * @param box
+     *            the bounding box of the display's layout
+     * @param keyFrame
+     *            whether or not the frame should be a key frame
+     * @param layerCount
+     *            the number of layers in the frame
+     */
+    public void begin(int displayId, Box box, boolean keyFrame, int layerCount) {
+        buffer.clear();
+        buffer.putInt(MessageConstants.TWO_D_DISPLAY_DELTA_UPDATE);
+        buffer.putInt(displayId);
+
+        if (quantize) {
+            float x = box.getLower().x;
+            float y = box.getLower().y;
+            float sx = box.getWidth() > 0 ? box.getWidth() / QUANTIZED_MAX : 1;
+            float sy = box.getHeight() > 0 ? box.getHeight() / QUANTIZED_MAX : 1;
+            if (!boxSet || x != minX || y != minY || sx != stepX || sy != stepY) {
+                // previously sent locations were quantized against a different box
+                keyFrame = true;
+                minX = x;
+                minY = y;
+                stepX = sx;
+                stepY = sy;
+                boxSet = true;
+            }
+        }
+
+        this.keyFrame = keyFrame;
+        buffer.putInt((quantize ? QUANTIZED : 0) | (keyFrame ? KEY_FRAME : 0));
+        if (quantize) {
+            buffer.putFloat(minX);
+            buffer.putFloat(minY);
+            buffer.putFloat(stepX);
+            buffer.putFloat(stepY);
+        }
+        payloadStart = buffer.position();
+        buffer.putInt(layerCount);
+    }
+
+    /**
+     * Gets whether or not the current frame is a key frame.
+     *
+     * @return true if the current frame is a key frame, otherwise false.
+     */
+    public boolean isKeyFrame() {
+        return keyFrame;
+    }
+
+    /**
+     * Makes sure that the specified number of bytes can be written to the
+     * buffer.
+     *
+     * @param bytes
+     */
+    public void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = buffer.capacity();
+            while (capacity - buffer.position() < bytes) {
+                capacity *= 2;
+            }
+            ByteBuffer tmp = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            tmp.put(buffer);
+            buffer = tmp;
+        }
+    }
+
+    /**
+     * Gets the buffer that the current frame is written to. The buffer may
+     * change when {@link #ensureCapacity(int)} is called.
+     *
+     * @return the buffer that the current frame is written to.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Encodes an x coordinate as it will be sent. Encoded values can be
+     * compared to determine whether or not the location has changed as seen
+     * by the client.
+     *
+     * @param x
+     * @return the encoded coordinate.
+     */
+    public int encodeX(float x) {
+        return quantize ? quantize(x, minX, stepX) : Float.floatToIntBits(x);
+    }
+
+    /**
+     * Encodes a y coordinate as it will be sent.
+     *
+     * @param y
+     * @return the encoded coordinate.
+     * @see #encodeX(float)
+     */
+    public int encodeY(float y) {
+        return quantize ? quantize(y, minY, stepY) : Float.floatToIntBits(y);
+    }
+
+    private int quantize(float val, float min, float step) {
+        int q = Math.round((val - min) / step);
+        return q < 0 ? 0 : q > QUANTIZED_MAX ? QUANTIZED_MAX : q;
+    }
+
+    /**
+     * Writes a record to the buffer.
+     *
+     * @param id
+     *            the agent's id
+     * @param mask
+     *            which of the color and location to write
+     * @param rgb
+     *            the agent's color as 0xRRGGBB
+     * @param x
+     *            the encoded x coordinate
+     * @param y
+     *            the encoded y coordinate
+     */
+    public void putRecord(int id, int mask, int rgb, int x, int y) {
+        buffer.putInt(id);
+        buffer.put((byte) mask);
+        if ((mask & COLOR_CHANGED) != 0) {
+            buffer.put((byte) (rgb >> 16));
+            buffer.put((byte) (rgb >> 8));
+            buffer.put((byte) rgb);
+        }
+        if ((mask & LOCATION_CHANGED) != 0) {
+            if (quantize) {
+                buffer.putShort((short) x);
+                buffer.putShort((short) y);
+            } else {
+                buffer.putInt(x);
+                buffer.putInt(y);
+            }
+        }
+    }
+
+    /**
+     * Finishes the current frame, compressing it if compression is on and the
+     * frame is large enough.
+     *
+     * @return the frame's bytes.
+     */
+    public byte[] finish() {
+        int length = buffer.position();
+        byte[] array = buffer.array();
+        int payloadLength = length - payloadStart;
+        if (deflater != null && payloadLength >= COMPRESS_THRESHOLD) {
+            if (deflated.length < payloadLength) {
+                deflated = new byte[payloadLength];
+            }
+            deflater.reset();
+            deflater.setInput(array, payloadStart, payloadLength);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished() && size < payloadLength) {
+                size += deflater.deflate(deflated, size, payloadLength - size);
+            }
+            if (deflater.finished() && size < payloadLength) {
+                byte[] frame = new byte[payloadStart + size];
+                System.arraycopy(array, 0, frame, 0, payloadStart);
+                // flags follow the message type and display id
+                frame[Integer.BYTES * 3 - 1] |= COMPRESSED;
+                System.arraycopy(deflated, 0, frame, payloadStart, size);
+                return frame;
+            }
+        }
+        // the socket keeps the array until it is sent, so the pooled
+        // buffer can't be handed over directly
+        return Arrays.copyOf(array, length);
+    }
+}
@@ -0,0 +1,183 @@
+package repast.simphony.ws;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ.Socket;
+import org.zeromq.ZMsg;
+
+/**
+ * Small local client for the 2D display delta frames sent by
+ * {@link DisplayServer2D}. The client decodes the frames into the current
+ * state of each display, so it can be used to check the frames produced by a
+ * model without a browser. Run from the command line, it binds a PULL socket to
+ * the specified address, in place of the web server, and prints the size of
+ * each frame and the number of agents it changed.
+ *
+ * @author nick
+ */
+public class DisplayFrameClient {
+
+    /**
+     * The state of an agent in a display as seen by the client.
+     */
+    public static class Agent {
+        public int rgb;
+        public float x, y;
+    }
+
+    private Map<Integer, Map<Integer, Agent>> displays = new HashMap<>();
+    private Inflater inflater = new Inflater();
+    private int lastChangeCount;
+
+    /**
+     * Gets the agents of the specified display, keyed by agent id.
+     *
+     * @param displayId
+     * @return the agents of the specified display.
+     */
+    public Map<Integer, Agent> getAgents(int displayId) {
+        return displays.computeIfAbsent(displayId, k -> new HashMap<>());
+    }
+
+    /**
+     * Gets the number of agent records in the last decoded frame.
+     *
+     * @return the number of agent records in the last decoded frame.
+     */
+    public int getLastChangeCount() {
+        return lastChangeCount;
+    }
+
+    /**
+     * Decodes the specified frame, applying it to the state of its display. A
+     * key frame replaces the state of its display.
+     *
+     * @param frame
+     * @return the id of the frame's display, or -1 if the frame is not a 2D
+     *         display delta frame.
+     */
+    public int decode(byte[] frame) throws DataFormatException {
+        ByteBuffer bb = ByteBuffer.wrap(frame);
+        if (bb.getInt() != MessageConstants.TWO_D_DISPLAY_DELTA_UPDATE) {
+            return -1;
+        }
+        int displayId = bb.getInt();
+        int flags = bb.getInt();
+        boolean quantized = (flags & DeltaFrameEncoder.QUANTIZED) != 0;
+        float minX = 0, minY = 0, stepX = 0, stepY = 0;
+        if (quantized) {
+            minX = bb.getFloat();
+            minY = bb.getFloat();
+            stepX = bb.getFloat();
+            stepY = bb.getFloat();
+        }
+        if ((flags & DeltaFrameEncoder.COMPRESSED) != 0) {
+            inflater.reset();
+            inflater.setInput(frame, bb.position(), bb.remaining());
+            byte[] payload = new byte[Math.max(bb.remaining() * 4, 1024)];
+            int size = 0;
+            while (!inflater.finished()) {
+                if (size == payload.length) {
+                    byte[] tmp = new byte[payload.length * 2];
+                    System.arraycopy(payload, 0, tmp, 0, size);
+                    payload = tmp;
+                }
+                int n = inflater.inflate(payload, size, payload.length - size);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated display frame");
+                }
+                size += n;
+            }
+            bb = ByteBuffer.wrap(payload, 0, size);
+        }
+
+        Map<Integer, Agent> agents = getAgents(displayId);
+        Map<Integer, Agent> previous = null;
+        if ((flags & DeltaFrameEncoder.KEY_FRAME) != 0) {
+            // a key frame contains every agent, so any agent that is not in it
+            // was removed in a frame the client missed
+            previous = agents;
+            agents = new HashMap<>();
+            displays.put(displayId, agents);
+        }
+        lastChangeCount = 0;
+        int layerCount = bb.getInt();
+        for (int i = 0; i < layerCount; i++) {
+            // layer id
+            bb.getInt();
+            int count = bb.getInt();
+            for (int j = 0; j < count; j++) {
+                agents.remove(bb.getInt());
+            }
+            // updated then added records
+            for (int k = 0; k < 2; k++) {
+                count = bb.getInt();
+                lastChangeCount += count;
+                for (int j = 0; j < count; j++) {
+                    int id = bb.getInt();
+                    Agent agent = agents.get(id);
+                    if (agent == null) {
+                        agent = previous == null ? null : previous.get(id);
+                        if (agent == null) {
+                            agent = new Agent();
+                        }
+                        agents.put(id, agent);
+                    }
+                    int mask = bb.get();
+                    if ((mask & DeltaFrameEncoder.COLOR_CHANGED) != 0) {
+                        agent.rgb = (bb.get() & 0xFF) << 16 | (bb.get() & 0xFF) << 8 | (bb.get() & 0xFF);
+                    }
+                    if ((mask & DeltaFrameEncoder.LOCATION_CHANGED) != 0) {
+                        if (quantized) {
+                            agent.x = minX + (bb.getShort() & 0xFFFF) * stepX;
+                            agent.y = minY + (bb.getShort() & 0xFFFF) * stepY;
+                        } else {
+                            agent.x = bb.getFloat();
+                            agent.y = bb.getFloat();
+                        }
+                    }
+                }
+            }
+        }
+        return displayId;
+    }
+
+    /**
+     * Binds a PULL socket to the address given as the first argument, e.g.
+     * tcp://*:5556, and prints a line for each display frame received.
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws DataFormatException {
+        if (args.length != 1) {
+            System.err.println("usage: DisplayFrameClient <address>");
+            return;
+        }
+        DisplayFrameClient client = new DisplayFrameClient();
+        try (ZContext ctx = new ZContext()) {
+            Socket socket = ctx.createSocket(SocketType.PULL);
+            socket.bind(args[0]);
+            while (!Thread.currentThread().isInterrupted()) {
+                ZMsg msg = ZMsg.recvMsg(socket);
+                if (msg == null) {
+                    break;
+                }
+                if (msg.popString().equals("binary")) {
+                    byte[] frame = msg.getLast().getData();
+                    int displayId = client.decode(frame);
+                    if (displayId != -1) {
+                        System.out.printf("display %d: %d bytes, %d changed, %d agents%n", displayId,
+                                frame.length, client.getLastChangeCount(), client.getAgents(displayId).size());
+                    }
+                }
+                msg.destroy();
+            }
+        }
+    }
+}
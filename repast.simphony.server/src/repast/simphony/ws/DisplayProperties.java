@@ -8,10 +8,6 @@ import java.awt.Color;
  */
 public class DisplayProperties <T> {
 
-	// TODO - implement a comparable and/or clone function that will take an existing
-	//        properties and a new properties and return the difference that will
-	//        be used to only send property changes to the display.
-	
 	public T agent;
 	public int id;
 	public String shape;						// A well-known text (e.g. circle) representation of the shape
@@ -24,9 +20,37 @@ public class DisplayProperties <T> {
 	public String fillOpacity;   // handle via Color alpha?
 	public double rotation;
 	public double size = 1;
+	
+	// The color and the encoded location last sent to the display, used
+	// to send only the properties that have changed.
+	private int sentRGB;
+	private int sentX, sentY;
 
 	public DisplayProperties(int id, T agent) {
 		this.agent = agent;
 		this.id = id;
 	}
+	
+	/**
+	 * Gets which of the specified values differ from those last sent to the
+	 * display, and records them as sent.
+	 * 
+	 * @param rgb the current color as 0xRRGGBB
+	 * @param x the current encoded x coordinate
+	 * @param y the current encoded y coordinate
+	 * @return a mask of DeltaFrameEncoder.COLOR_CHANGED and DeltaFrameEncoder.LOCATION_CHANGED.
+	 */
+	public int updateSent(int rgb, int x, int y) {
+		int mask = 0;
+		if (rgb != sentRGB) {
+			mask |= DeltaFrameEncoder.COLOR_CHANGED;
+			sentRGB = rgb;
+		}
+		if (x != sentX || y != sentY) {
+			mask |= DeltaFrameEncoder.LOCATION_CHANGED;
+			sentX = x;
+			sentY = y;
+		}
+		return mask;
+	}
 }
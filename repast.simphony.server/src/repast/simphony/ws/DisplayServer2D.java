@@ -1,7 +1,6 @@
 package repast.simphony.ws;
 
 import java.awt.Color;
-import java.nio.ByteBuffer;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,11 +19,36 @@ import repast.simphony.visualization.engine.DisplayDescriptor;
 import repast.simphony.visualizationOGL2D.EdgeStyleOGL2D;
 import repast.simphony.visualizationOGL2D.StyleOGL2D;
 
+/**
+ * Display server for 2D displays. Updates are sent as binary delta frames,
+ * see {@link DeltaFrameEncoder}. The encoding can be configured with the
+ * following system properties:
+ * 
+ * <ul>
+ * <li>repast.simphony.ws.display.quantize: if true, locations are quantized to
+ * 16 bits within the display's bounding box. Defaults to false.</li>
+ * <li>repast.simphony.ws.display.compress: if true, large frames are deflated.
+ * Defaults to false.</li>
+ * <li>repast.simphony.ws.display.keyframe: every this many frames a key frame
+ * containing every agent is sent. 0 means only the first frame is a key frame.
+ * Defaults to 100.</li>
+ * </ul>
+ * 
+ * @author nick
+ */
 public class DisplayServer2D extends DisplayServer {
 
+    public static final String QUANTIZE_PROPERTY = "repast.simphony.ws.display.quantize";
+    public static final String COMPRESS_PROPERTY = "repast.simphony.ws.display.compress";
+    public static final String KEY_FRAME_PROPERTY = "repast.simphony.ws.display.keyframe";
+
     private Map<Class<?>, StyledLayer> classStyleMap = new HashMap<>();
     private Map<Network<?>, StyledLayer> networkStyleMap = new HashMap<>();
     private int layeridx = 0;
+    private DeltaFrameEncoder encoder = new DeltaFrameEncoder(Boolean.getBoolean(QUANTIZE_PROPERTY),
+            Boolean.getBoolean(COMPRESS_PROPERTY));
+    private int keyFrameInterval = Integer.getInteger(KEY_FRAME_PROPERTY, 100);
+    private long frameCount = 0;
 
     public DisplayServer2D(String outgoingAddr, DisplayData<?> data, DisplayDescriptor descriptor,
             Layout layout, int id) {
@@ -214,24 +238,14 @@ public class DisplayServer2D extends DisplayServer {
 //    }
     
     public void doUpdate() {
-        int bytes = 0;
-        for (StyledLayer layer : classStyleMap.values()) {
-            bytes += layer.getSizeInBytes();
-        }
-        
-        // 1 for message type id, 1 for display id, 1 for layer count
-        bytes += Integer.BYTES * 3;
-        
-        ByteBuffer bb = ByteBuffer.allocate(bytes);
-        bb.putInt(MessageConstants.TWO_D_DISPLAY_UPDATE);
-        bb.putInt(id);
-        bb.putInt(classStyleMap.size());
+        boolean keyFrame = frameCount == 0 || (keyFrameInterval > 0 && frameCount % keyFrameInterval == 0);
+        ++frameCount;
         
+        encoder.begin(id, layout.getBoundingBox(), keyFrame, classStyleMap.size());
         for (StyledLayer layer : classStyleMap.values()) {
-            layer.update(bb, layout);
+            layer.update(encoder, layout);
         }
-        bb.rewind();
-        outgoing.send(bb.array());
+        outgoing.send(encoder.finish());
     }
     
     public List<Pair<Integer,Object>> getAgents(List<Integer> ids) {
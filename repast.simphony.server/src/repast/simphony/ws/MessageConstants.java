@@ -4,5 +4,7 @@ public interface MessageConstants {
     
     static final int TWO_D_DISPLAY_UPDATE = 0;
     static final int TICK_COUNT_UPDATE = 1;
+    static final int TWO_D_DISPLAY_DELTA_UPDATE = 2;
+    static final int DATA_BATCH_UPDATE = 3;
 
 }
@@ -8,7 +8,6 @@ import java.util.Map;
 import java.util.Set;
 
 import repast.simphony.util.collections.Pair;
-import repast.simphony.visualization.Box;
 import repast.simphony.visualization.Layout;
 import repast.simphony.visualizationOGL2D.StyleOGL2D;
 
@@ -67,7 +66,9 @@ public class StyledLayer {
 //        toBeRemoved.clear();
 //    }
     
-    private void processRemoved(ByteBuffer bb) {
+    private void processRemoved(DeltaFrameEncoder encoder) {
+        encoder.ensureCapacity(Integer.BYTES * (toBeRemoved.size() + 1));
+        ByteBuffer bb = encoder.getBuffer();
         bb.putInt(toBeRemoved.size());
         for (Object obj : toBeRemoved) {
             DisplayProperties props = objMap.remove(obj);
@@ -149,47 +150,47 @@ public class StyledLayer {
 //    }
 //    
    
-    private void updateExisting(ByteBuffer bb, Layout layout) {
-        Box box = layout.getBoundingBox();
-        //float hOffset = box.getHeight() / 2f;
-        //float wOffset = box.getWidth() / 2f;
-        
-        bb.putInt(objMap.size());
-        float[] rgb = new float[3];
+    private boolean putRecord(DeltaFrameEncoder encoder, DisplayProperties props, Layout layout, boolean all) {
+        props.color = style.getColor(props.agent);
+        float[] location = layout.getLocation(props.agent);
+        int rgb = props.color.getRGB() & 0xFFFFFF;
+        int x = encoder.encodeX(location[0]);
+        int y = encoder.encodeY(location[1]);
+        int mask = props.updateSent(rgb, x, y);
+        if (all) {
+            mask = DeltaFrameEncoder.COLOR_CHANGED | DeltaFrameEncoder.LOCATION_CHANGED;
+        }
+        if (mask == 0) {
+            return false;
+        }
+        encoder.putRecord(props.id, mask, rgb, x, y);
+        return true;
+    }
+
+    private void updateExisting(DeltaFrameEncoder encoder, Layout layout) {
+        encoder.ensureCapacity(Integer.BYTES + objMap.size() * DeltaFrameEncoder.MAX_RECORD_SIZE);
+        ByteBuffer bb = encoder.getBuffer();
+        // only the changed agents are sent, so the count is
+        // filled in afterwards
+        int countPos = bb.position();
+        bb.putInt(0);
+        int count = 0;
+        boolean keyFrame = encoder.isKeyFrame();
         for (DisplayProperties props : objMap.values()) {
-            bb.putInt(props.id);
-            props.color = style.getColor(props.agent);
-            float[] location = layout.getLocation(props.agent);
-            props.color.getRGBColorComponents(rgb);
-            bb.putFloat(rgb[0]);
-            bb.putFloat(rgb[1]);
-            bb.putFloat(rgb[2]);
-            bb.putFloat(location[0]);// - wOffset);
-            bb.putFloat(location[1]); // - hOffset);
-            bb.putFloat(0f);
+            if (putRecord(encoder, props, layout, keyFrame)) {
+                ++count;
+            }
         }
+        bb.putInt(countPos, count);
     }
     
-    private void processAdded(ByteBuffer bb, Layout layout) {
-        Box box = layout.getBoundingBox();
-        //float hOffset = box.getHeight() / 2f;
-        //float wOffset = box.getWidth() / 2f;
-        
-        bb.putInt(toBeAdded.size());
-        float[] rgb = new float[3];
+    private void processAdded(DeltaFrameEncoder encoder, Layout layout) {
+        encoder.ensureCapacity(Integer.BYTES + toBeAdded.size() * DeltaFrameEncoder.MAX_RECORD_SIZE);
+        encoder.getBuffer().putInt(toBeAdded.size());
         for (DisplayProperties props : toBeAdded.values()) {
             objMap.put(props.agent, props);
             idMap.put(props.id, props.agent);
-            bb.putInt(props.id);
-            props.color = style.getColor(props.agent);
-            float[] location = layout.getLocation(props.agent);
-            props.color.getRGBColorComponents(rgb);
-            bb.putFloat(rgb[0]);
-            bb.putFloat(rgb[1]);
-            bb.putFloat(rgb[2]);
-            bb.putFloat(location[0]); // - wOffset);
-            bb.putFloat(location[1]); // - hOffset);
-            bb.putFloat(0f);
+            putRecord(encoder, props, layout, true);
         }
         toBeAdded.clear();
     }
@@ -216,29 +217,25 @@ public class StyledLayer {
 //        builder.append("}}");
 //    }
     
-    public void update(ByteBuffer bb, Layout<?, ?> layout) {
-        bb.putInt(layerid);
-        processRemoved(bb);
-        updateExisting(bb, layout);
-        processAdded(bb, layout);
+    /**
+     * Writes the changes to this layer since the last update to the
+     * specified encoder's current frame.
+     * 
+     * @param encoder
+     * @param layout
+     */
+    public void update(DeltaFrameEncoder encoder, Layout<?, ?> layout) {
+        encoder.ensureCapacity(Integer.BYTES);
+        encoder.getBuffer().putInt(layerid);
+        processRemoved(encoder);
+        updateExisting(encoder, layout);
+        processAdded(encoder, layout);
     }
 
     public void setStyle(StyleOGL2D<?> style) {
         this.style = style;
     }
     
-    public int getSizeInBytes() {
-        // 4 = layer id, length of added, removed, updated
-        return Integer.BYTES * 4 + 
-                // added - id, 3 floats for position, 3 floats for color
-                toBeAdded.size() * Integer.BYTES + (toBeAdded.size() * Float.BYTES * 3) + (toBeAdded.size() * Float.BYTES * 3) +
-                // removed
-                toBeRemoved.size() * Integer.BYTES +
-                // updated - id, 3 floats for position, 3 floats for color
-                objMap.size() * Integer.BYTES + (objMap.size() * Float.BYTES * 3) + (objMap.size() * Float.BYTES * 3);
-                
-    }
-    
     public String getName() {
     	return layerName;
     }
@@ -0,0 +1,140 @@
+package repast.simphony.ws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the batches written by ColumnBatchEncoder, decoded here as the
+ * web client decodes them.
+ */
+public class ColumnBatchEncoderTest {
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // decodes a batch into a map of source id to the column's values, a
+    // double[] for a numeric column and a String[] for a string column
+    private Map<String, Object> decode(String dataSet, byte[] batch) {
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        assertEquals(MessageConstants.DATA_BATCH_UPDATE, buffer.getInt());
+        assertEquals(dataSet, getString(buffer));
+        int rows = buffer.getInt();
+        int count = buffer.getShort();
+        Map<String, Object> columns = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = getString(buffer);
+            byte type = buffer.get();
+            if (type == ColumnBatchEncoder.NUMERIC) {
+                double[] values = new double[rows];
+                for (int j = 0; j < rows; j++) {
+                    values[j] = buffer.getDouble();
+                }
+                columns.put(name, values);
+            } else {
+                assertEquals(ColumnBatchEncoder.STRING, type);
+                String[] values = new String[rows];
+                for (int j = 0; j < rows; j++) {
+                    values[j] = getString(buffer);
+                }
+                columns.put(name, values);
+            }
+        }
+        assertEquals(0, buffer.remaining());
+        return columns;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ColumnBatchEncoder encoder = new ColumnBatchEncoder("ds", Arrays.asList("tick", "count", "flag", "name"));
+        for (int i = 0; i < 100; i++) {
+            encoder.append("tick", (double) i);
+            if (i % 3 != 0) {
+                encoder.append("count", i);
+            }
+            encoder.append("flag", i % 2 == 0);
+            encoder.append("name", "agent " + i);
+            encoder.append("unknown", i);
+            encoder.rowEnded();
+        }
+        assertEquals(100, encoder.getRowCount());
+
+        Map<String, Object> columns = decode("ds", encoder.finish());
+        assertEquals(Arrays.asList("tick", "count", "flag", "name"), Arrays.asList(columns.keySet().toArray()));
+        double[] tick = (double[]) columns.get("tick");
+        double[] count = (double[]) columns.get("count");
+        double[] flag = (double[]) columns.get("flag");
+        String[] name = (String[]) columns.get("name");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, tick[i], 0);
+            assertEquals(i % 3 != 0 ? i : Double.NaN, count[i], 0);
+            assertEquals(i % 2 == 0 ? 1 : 0, flag[i], 0);
+            assertEquals("agent " + i, name[i]);
+        }
+
+        // the next batch starts empty
+        assertEquals(0, encoder.getRowCount());
+        encoder.append("tick", 100.0);
+        encoder.rowEnded();
+        columns = decode("ds", encoder.finish());
+        assertArrayEquals(new double[] { 100 }, (double[]) columns.get("tick"), 0);
+        assertArrayEquals(new double[] { Double.NaN }, (double[]) columns.get("count"), 0);
+        assertArrayEquals(new String[] { "" }, (String[]) columns.get("name"));
+    }
+
+    @Test
+    public void testLongStrings() {
+        char[] chars = new char[70000];
+        Arrays.fill(chars, '\u00e9');
+        String value = new String(chars);
+        String id = value.substring(0, 40000);
+        ColumnBatchEncoder encoder = new ColumnBatchEncoder("ds", Arrays.asList(id));
+        encoder.append(id, value);
+        encoder.rowEnded();
+        encoder.append(id, "short");
+        encoder.rowEnded();
+
+        Map<String, Object> columns = decode("ds", encoder.finish());
+        assertArrayEquals(new String[] { value, "short" }, (String[]) columns.get(id));
+    }
+
+    @Test
+    public void testNonNumericValues() {
+        ColumnBatchEncoder encoder = new ColumnBatchEncoder("ds", Arrays.asList("a", "b"));
+        // nulls are missing values, and don't decide the type of a column
+        encoder.append("a", null);
+        encoder.append("b", null);
+        encoder.rowEnded();
+        encoder.append("a", 1.5);
+        encoder.append("b", 2);
+        encoder.rowEnded();
+        encoder.rowEnded();
+        encoder.append("a", "high");
+        encoder.append("b", null);
+        encoder.rowEnded();
+        encoder.append("a", 3);
+        encoder.rowEnded();
+
+        Map<String, Object> columns = decode("ds", encoder.finish());
+        // a numeric column that gets a string becomes a string column
+        assertArrayEquals(new String[] { "", "1.5", "", "high", "3" }, (String[]) columns.get("a"));
+        assertArrayEquals(new double[] { Double.NaN, 2, Double.NaN, Double.NaN, Double.NaN },
+                (double[]) columns.get("b"), 0);
+
+        // and stays one
+        encoder.append("a", 4.0);
+        encoder.rowEnded();
+        columns = decode("ds", encoder.finish());
+        assertArrayEquals(new String[] { "4.0" }, (String[]) columns.get("a"));
+    }
+}
@@ -0,0 +1,123 @@
+package repast.simphony.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.jogamp.vecmath.Point3f;
+import org.junit.Test;
+
+import repast.simphony.visualization.Box;
+
+/**
+ * Round trip tests for the frames written by DeltaFrameEncoder and decoded by
+ * DisplayFrameClient.
+ */
+public class DeltaFrameEncoderTest {
+
+    private static final int DISPLAY = 3;
+    private static final int LAYER = 7;
+
+    private Box box = new Box(new Point3f(-10, -10, 0), new Point3f(10, 10, 0));
+
+    // writes a single layer frame with the specified removed ids, updated
+    // records and added records, where a record is {id, mask, rgb, x, y}
+    private byte[] encode(DeltaFrameEncoder encoder, boolean keyFrame, int[] removed, float[][] updated,
+            float[][] added) {
+        encoder.begin(DISPLAY, box, keyFrame, 1);
+        encoder.ensureCapacity(Integer.BYTES * (4 + removed.length)
+                + (updated.length + added.length) * DeltaFrameEncoder.MAX_RECORD_SIZE);
+        encoder.getBuffer().putInt(LAYER);
+        encoder.getBuffer().putInt(removed.length);
+        for (int id : removed) {
+            encoder.getBuffer().putInt(id);
+        }
+        for (float[][] records : new float[][][] { updated, added }) {
+            encoder.getBuffer().putInt(records.length);
+            for (float[] r : records) {
+                encoder.putRecord((int) r[0], (int) r[1], (int) r[2], encoder.encodeX(r[3]), encoder.encodeY(r[4]));
+            }
+        }
+        return encoder.finish();
+    }
+
+    private static float[] full(int id, int rgb, float x, float y) {
+        return new float[] { id, DeltaFrameEncoder.COLOR_CHANGED | DeltaFrameEncoder.LOCATION_CHANGED, rgb, x, y };
+    }
+
+    private void assertAgent(DisplayFrameClient client, int id, int rgb, float x, float y, float delta) {
+        DisplayFrameClient.Agent agent = client.getAgents(DISPLAY).get(id);
+        assertEquals(rgb, agent.rgb);
+        assertEquals(x, agent.x, delta);
+        assertEquals(y, agent.y, delta);
+    }
+
+    private void roundTrip(boolean quantize, boolean compress) throws Exception {
+        float delta = quantize ? 20f / 0xFFFF : 0;
+        DeltaFrameEncoder encoder = new DeltaFrameEncoder(quantize, compress);
+        DisplayFrameClient client = new DisplayFrameClient();
+
+        byte[] frame = encode(encoder, true, new int[0], new float[0][],
+                new float[][] { full(1, 0xFF0000, 1, 2), full(2, 0x00FF00, -3, 4), full(3, 0x0000FF, 5, -6) });
+        assertEquals(DISPLAY, client.decode(frame));
+        assertEquals(3, client.getAgents(DISPLAY).size());
+        assertAgent(client, 1, 0xFF0000, 1, 2, delta);
+        assertAgent(client, 2, 0x00FF00, -3, 4, delta);
+        assertAgent(client, 3, 0x0000FF, 5, -6, delta);
+
+        // remove 2, move 1, recolor 3 and add 4
+        frame = encode(encoder, false, new int[] { 2 },
+                new float[][] { { 1, DeltaFrameEncoder.LOCATION_CHANGED, 0, 7, 8 },
+                        { 3, DeltaFrameEncoder.COLOR_CHANGED, 0x123456, 0, 0 } },
+                new float[][] { full(4, 0xABCDEF, -9, -9) });
+        client.decode(frame);
+        assertEquals(3, client.getLastChangeCount());
+        assertEquals(3, client.getAgents(DISPLAY).size());
+        assertFalse(client.getAgents(DISPLAY).containsKey(2));
+        assertAgent(client, 1, 0xFF0000, 7, 8, delta);
+        assertAgent(client, 3, 0x123456, 5, -6, delta);
+        assertAgent(client, 4, 0xABCDEF, -9, -9, delta);
+
+        // the frame that removes 3 is missed, so the key frame after it
+        // must drop 3
+        encode(encoder, false, new int[] { 3 }, new float[0][], new float[0][]);
+        frame = encode(encoder, true, new int[0],
+                new float[][] { full(1, 0xFF0000, 7, 8), full(4, 0xABCDEF, -9, -9) }, new float[0][]);
+        client.decode(frame);
+        Map<Integer, DisplayFrameClient.Agent> agents = client.getAgents(DISPLAY);
+        assertEquals(2, agents.size());
+        assertTrue(agents.containsKey(1));
+        assertTrue(agents.containsKey(4));
+        assertAgent(client, 1, 0xFF0000, 7, 8, delta);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        roundTrip(false, false);
+    }
+
+    @Test
+    public void testQuantizedRoundTrip() throws Exception {
+        roundTrip(true, false);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        DeltaFrameEncoder encoder = new DeltaFrameEncoder(true, true);
+        DisplayFrameClient client = new DisplayFrameClient();
+        // enough agents for the frame to be compressed
+        float[][] added = new float[1000][];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = full(i, i * 31, i % 20 - 10, i / 100f);
+        }
+        byte[] frame = encode(encoder, true, new int[0], new float[0][], added);
+        assertTrue((frame[Integer.BYTES * 3 - 1] & DeltaFrameEncoder.COMPRESSED) != 0);
+        client.decode(frame);
+        assertEquals(added.length, client.getAgents(DISPLAY).size());
+        for (int i = 0; i < added.length; i++) {
+            assertAgent(client, i, i * 31, i % 20 - 10, i / 100f, 20f / 0xFFFF);
+        }
+    }
+}
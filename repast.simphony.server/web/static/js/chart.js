@@ -143,6 +143,28 @@ export class TSChart {
         this.chart.update(0);
     }
 
+    // Adds the values of a binary data batch, a map of source id
+    // to column values. A column missing from the batch gets a NaN
+    // per row, so that its dataset stays aligned with the labels.
+    updateColumns(columns) {
+        let rows = 0;
+        columns.forEach((column) => {
+            rows = Math.max(rows, column.length);
+        });
+        this.ids.forEach((val, i) => {
+            let column = columns.get(val);
+            let data = this.chart_data.datasets[i].data;
+            for (let j = 0; j < rows; ++j) {
+                data.push(column ? column[j] : NaN);
+            }
+        });
+        let ticks = columns.get("tick");
+        for (let j = 0; j < rows; ++j) {
+            this.chart_data.labels.push(ticks ? ticks[j] : NaN);
+        }
+        this.chart.update(0);
+    }
+
     clear() {
         this.chart_data.labels = [];
         this.chart_data.datasets.forEach((ds) => {
@@ -13,6 +13,9 @@ let display_data = new Array();
 let socket = null;
 let tick_span = null;
 let display_updates = new Map();
+// display frames only contain changes so they must be applied
+// in order, even when some of them need to be decompressed
+let frame_chain = Promise.resolve();
 
 var runner = (function() {
     // Structure is a JS module organization pattern
@@ -182,29 +185,89 @@ var runner = (function() {
 
 
 
+// flags in the header of a 2D display frame
+const QUANTIZED = 1;
+const COMPRESSED = 2;
+const KEY_FRAME = 4;
+
+async function handleBinary(buffer) {
+    let dv = new DataViewWrapper(new DataView(buffer), 0);
+    let msg_type = dv.getInt32();
+    if (msg_type === 2) {
+        let display_id = dv.getInt32();
+        let flags = dv.getInt32();
+        let quant = null;
+        if (flags & QUANTIZED) {
+            quant = {minX: dv.getFloat32(), minY: dv.getFloat32(),
+                stepX: dv.getFloat32(), stepY: dv.getFloat32()};
+        }
+        if (flags & COMPRESSED) {
+            let stream = new Blob([buffer.slice(dv.offset)]).stream()
+                .pipeThrough(new DecompressionStream('deflate'));
+            let payload = await new Response(stream).arrayBuffer();
+            dv = new DataViewWrapper(new DataView(payload), 0);
+        }
+        let frame = {dv: dv, quant: quant, keyFrame: (flags & KEY_FRAME) !== 0};
+        if (displays.has(display_id)) {
+            displays.get(display_id).updateBinary(frame);
+        } else {
+            if (!display_updates.has(display_id)) {
+                display_updates.set(display_id, []);
+            }
+            display_updates.get(display_id).push(frame);
+        }
+    } else if (msg_type === 1) {
+        let tick = dv.getFloat64().toFixed(4);
+        tick_span.textContent = tick.toString();
+    } else if (msg_type === 3) {
+        let batch = decodeDataBatch(dv);
+        let chart_list = charts.get(batch.dataset);
+        if (chart_list) {
+            chart_list.forEach( (chart) => {
+                chart.updateColumns(batch.columns);
+            });
+        }
+    }
+}
+
+const utf8 = new TextDecoder();
+
+function getString(dv) {
+    let length = dv.getInt32();
+    let str = utf8.decode(new Uint8Array(dv.dv.buffer, dv.dv.byteOffset + dv.offset, length));
+    dv.offset += length;
+    return str;
+}
+
+// Decodes a binary data batch into a map of source id to the column's
+// values. Numeric columns are Float64Arrays.
+function decodeDataBatch(dv) {
+    let dataset = getString(dv);
+    let rows = dv.getInt32();
+    let count = dv.getUint16();
+    let columns = new Map();
+    for (let i = 0; i < count; ++i) {
+        let name = getString(dv);
+        let type = dv.getUint8();
+        let values = type === 0 ? new Float64Array(rows) : new Array(rows);
+        for (let j = 0; j < rows; ++j) {
+            values[j] = type === 0 ? dv.getFloat64() : getString(dv);
+        }
+        columns.set(name, values);
+    }
+    return {dataset: dataset, columns: columns};
+}
+
 function initSocket() {
     //var socket = io.connect('http://localhost:5000');
     socket = new WebSocket('ws://localhost:5000/simphony/simsocket');
 
     socket.onmessage = function(evt) {
         if (evt.data instanceof Blob) {
-            let fr = new FileReader();
-            fr.onload = function(evt) {
-                let dv = new DataViewWrapper(new DataView(fr.result), 0);
-                let msg_type = dv.getInt32();
-                if (msg_type === 0) {
-                    let display_id = dv.getInt32();
-                    if (displays.has(display_id)) {
-                        displays.get(display_id).updateBinary(dv);
-                    } else {
-                        display_updates.set(display_id, dv);
-                    }
-                } else if (msg_type === 1) {
-                    let tick = dv.getFloat64().toFixed(4);
-                    tick_span.textContent = tick.toString();
-                }
-            };
-            fr.readAsArrayBuffer(evt.data);
+            let blob = evt.data;
+            frame_chain = frame_chain.then(() => blob.arrayBuffer())
+                .then(handleBinary)
+                .catch(err => console.log(err));
         
         } else {
             let msg = JSON.parse(evt.data);
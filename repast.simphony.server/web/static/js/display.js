@@ -289,67 +289,86 @@ export class Display2D {
 
     remove(objid) {
         let item = this.objectMap.get(objid);
+        if (item === undefined) {
+            return;
+        }
         this.objGroup.remove(item);
         this.objectMap.delete(objid);
         item.material.dispose();
         item = null;
     }
 
-    updateBinary(dv) {
+    // Applies a delta frame. Records of agents that are not in the display
+    // create them: these are either added agents or agents sent in full in
+    // a key frame after frames were missed. A key frame contains every
+    // agent, so agents that are not in it are removed.
+    updateBinary(frame) {
+        let dv = frame.dv;
+        let seen = frame.keyFrame ? new Set() : null;
         let layerCount = dv.getInt32();
         for (let i = 0; i < layerCount; ++i) {
             let layerid = dv.getInt32();
-            //console.log("layer id: " + layerid);
             let creator = this.layers.get(layerid);
             // remove is first
             let numToRemove = dv.getInt32();
-            //console.log("To remove: " + numToRemove);
             for (let j = 0; j < numToRemove; ++j) {
                 this.remove(dv.getInt32());
             }
 
-            let numToUpdate = dv.getInt32();
-            // console.log("To update: " + numToUpdate);
-            // id (int), location (3 float32), color (4 int)
-            for (let j = 0; j < numToUpdate; ++j) {
-                let objid = dv.getInt32();
-                let r = dv.getFloat32();
-                let g = dv.getFloat32();
-                let b = dv.getFloat32();
-                let x = dv.getFloat32();
-                let y = dv.getFloat32();
-                let z = dv.getFloat32();
-                var item = this.objectMap.get(objid);
-                // TODO proper location scaling
-                item.position.set(x, y, z);
-                creator.update(item, r, g, b);
-                //console.log(`obj id: ${objid}, location: ${x}, ${y}, ${z}, color: ${r}, ${g}, ${b}`);
+            // updated and then added records
+            for (let k = 0; k < 2; ++k) {
+                let count = dv.getInt32();
+                for (let j = 0; j < count; ++j) {
+                    let objid = this.applyRecord(dv, frame.quant, creator);
+                    if (seen) {
+                        seen.add(objid);
+                    }
+                }
             }
+        }
 
-            let numToAdd = dv.getInt32();
-            //console.log("To add: " + numToAdd);
-            // id (int), location (3 float32), color (3 float)
-            for (let j = 0; j < numToAdd; ++j) {
-                let objid = dv.getInt32();
-                let r = dv.getFloat32();
-                let g = dv.getFloat32();
-                let b = dv.getFloat32();
+        if (seen) {
+            for (let objid of Array.from(this.objectMap.keys())) {
+                if (!seen.has(objid)) {
+                    this.remove(objid);
+                }
+            }
+        }
+        this.render();
+    }
+
+    // id (int32), mask (uint8), color if mask & 1 (3 uint8),
+    // location if mask & 2 (2 float32, or 2 uint16 if quantized).
+    // Returns the record's agent id.
+    applyRecord(dv, quant, creator) {
+        let objid = dv.getInt32();
+        let mask = dv.getUint8();
+        let item = this.objectMap.get(objid);
+        if (item === undefined) {
+            item = creator.create();
+            this.objectMap.set(objid, item);
+            item.userData = objid;
+            this.objGroup.add(item);
+        }
+        if (mask & 1) {
+            let r = dv.getUint8() / 255;
+            let g = dv.getUint8() / 255;
+            let b = dv.getUint8() / 255;
+            creator.update(item, r, g, b);
+        }
+        if (mask & 2) {
+            // TODO proper location scaling
+            if (quant) {
+                let x = quant.minX + dv.getUint16() * quant.stepX;
+                let y = quant.minY + dv.getUint16() * quant.stepY;
+                item.position.set(x, y, 0);
+            } else {
                 let x = dv.getFloat32();
                 let y = dv.getFloat32();
-                let z = dv.getFloat32();
-                let item = creator.create();
-                // TODO proper location scaling
-                item.position.set(x, y, z);
-                creator.update(item, r, g, b);
-                this.objectMap.set(objid, item);
-                item.userData = objid;
-                this.objGroup.add(item);
-                //console.log(`obj id: ${objid}, location: ${x}, ${y}, ${z}, color: ${r}, ${g}, ${b}`);
+                item.position.set(x, y, 0);
             }
         }
-        this.render();
-        //var box = new THREE.Box3().setFromObject(this.objGroup);
-        //console.log(box);
+        return objid;
     }
 
     update(msg) {
@@ -213,9 +213,9 @@ function createDisplays(display_data, display_updates, on_picked, parents) {
             display.picked = on_picked;
             Promise.all(promises).then(() => {
                 if (display_updates.has(disp_id)) {
-                    let dv = display_updates.get(disp_id);
+                    let frames = display_updates.get(disp_id);
                     display_updates.delete(disp_id);
-                    display.updateBinary(dv);
+                    frames.forEach(frame => display.updateBinary(frame));
                 }
             });
         }
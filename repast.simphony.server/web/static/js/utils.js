@@ -21,6 +21,18 @@ export class DataViewWrapper {
         return v;
     }
 
+    getUint8() {
+        let v = this.dv.getUint8(this.offset);
+        this.offset += 1;
+        return v;
+    }
+
+    getUint16() {
+        let v = this.dv.getUint16(this.offset);
+        this.offset += 2;
+        return v;
+    }
+
     getFloat32() {
         let v = this.dv.getFloat32(this.offset);
         this.offset += 4;
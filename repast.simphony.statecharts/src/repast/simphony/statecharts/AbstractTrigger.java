@@ -18,6 +18,46 @@ public abstract class AbstractTrigger<T> implements Trigger {
 		this.agent = agent;
 	}
 
+	/**
+	 * Gets whether a polling time has passed at now, which it has if it is
+	 * before now, or at now and the statecharts have already been resolved at
+	 * now.
+	 */
+	static boolean hasPassed(double time, double now) {
+		int compare = Double.compare(time, now);
+		return compare < 0
+				|| (compare == 0 && StateChartScheduler.INSTANCE.isResolved(now));
+	}
+
+	/**
+	 * Gets the number of intervals after start of the first polling time that
+	 * hasn't passed at now. This is at least 1, and found by division rather
+	 * than by stepping through the polling times one at a time.
+	 */
+	static double getPollingSteps(double start, double interval, double now) {
+		double steps = Math.max(1, Math.ceil((now - start) / interval));
+		// the division may be off by one either way
+		while (hasPassed(start + steps * interval, now)) {
+			steps++;
+		}
+		while (steps > 1 && !hasPassed(start + (steps - 1) * interval, now)) {
+			steps--;
+		}
+		return steps;
+	}
+
+	/**
+	 * Checks that a polling time is positive, as a trigger that isn't polling
+	 * has to advance through the polling times to the next one.
+	 */
+	static void checkPollingTime(double pollingTime) {
+		if (!(pollingTime > 0)) {
+			throw new IllegalArgumentException(
+					"The polling time of a trigger that isn't polling must be positive: "
+							+ pollingTime);
+		}
+	}
+
 	protected T getAgent() {
 		if (agent == null) {
 			if (transition == null) {
@@ -0,0 +1,221 @@
+package repast.simphony.statecharts;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.random.RandomHelper;
+import cern.jet.random.Exponential;
+import cern.jet.random.Uniform;
+import cern.jet.random.engine.MersenneTwister;
+import cern.jet.random.engine.RandomEngine;
+
+/**
+ * Resolves thread safe statecharts concurrently on the common fork join pool.
+ * The statecharts are divided into chunks of a fixed size, and each chunk is
+ * resolved in order with its own random stream, seeded from the current
+ * stream before any statechart is resolved. The random numbers the
+ * statecharts draw themselves, such as for probability triggers or for
+ * choosing between transitions, come from the chunk's stream. The changes to
+ * the scheduled resolve times made while resolving a chunk are recorded and
+ * applied once all the chunks have been resolved, in the order the
+ * statecharts would have been resolved serially. The results then don't
+ * depend on the number of threads.
+ *
+ * Statechart actions, guards and conditions that draw random numbers
+ * themselves should draw them from {@link #getUniform()} and
+ * {@link #getExponential()}, rather than from RandomHelper's defaults.
+ *
+ * @see DefaultStateChart#isThreadSafe()
+ */
+public class ConcurrentResolve {
+
+	// fixed so that the streams don't depend on the number of threads
+	static final int CHUNK_SIZE = 64;
+
+	/**
+	 * The random stream of a chunk, and the resolve times scheduled and
+	 * removed while resolving it.
+	 */
+	static class Chunk {
+		RandomEngine engine;
+		Uniform uniform;
+		Exponential exponential;
+
+		double[] times = new double[16];
+		StateChart<?>[] charts = new StateChart<?>[16];
+		boolean[] scheduled = new boolean[16];
+		int size;
+
+		Chunk(int seed) {
+			engine = new MersenneTwister(seed);
+			uniform = new Uniform(engine);
+		}
+
+		void record(double time, StateChart<?> sc, boolean schedule) {
+			if (size == times.length) {
+				int capacity = size * 2;
+				times = Arrays.copyOf(times, capacity);
+				charts = Arrays.copyOf(charts, capacity);
+				scheduled = Arrays.copyOf(scheduled, capacity);
+			}
+			times[size] = time;
+			charts[size] = sc;
+			scheduled[size] = schedule;
+			size++;
+		}
+
+		void apply(StateChartScheduler scheduler) {
+			for (int i = 0; i < size; i++) {
+				if (scheduled[i]) {
+					scheduler.scheduleResolveTime(times[i], charts[i]);
+				} else {
+					scheduler.removeResolveTime(times[i], charts[i]);
+				}
+			}
+		}
+	}
+
+	// the pool the chunks are resolved on, the common pool if null
+	static ForkJoinPool pool;
+
+	private static final ThreadLocal<Chunk> chunks = new ThreadLocal<Chunk>();
+	// whether chunks are being resolved, so that the scheduler only looks up
+	// the calling thread's chunk while they are
+	private static volatile boolean resolving;
+
+	private static class ResolveTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		StateChart<?>[] charts;
+		Chunk[] chunks;
+		// the statecharts resolved are those from start to end
+		int start, end;
+		// the chunks resolved by this task
+		int from, to;
+		boolean fork;
+
+		ResolveTask(StateChart<?>[] charts, Chunk[] chunks, int start, int end, int from,
+				int to, boolean fork) {
+			this.charts = charts;
+			this.chunks = chunks;
+			this.start = start;
+			this.end = end;
+			this.from = from;
+			this.to = to;
+			this.fork = fork;
+		}
+
+		@Override
+		protected void compute() {
+			if (fork && to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ResolveTask(charts, chunks, start, end, from, mid, fork),
+						new ResolveTask(charts, chunks, start, end, mid, to, fork));
+			} else {
+				for (int i = from; i < to; i++) {
+					resolveChunk(i);
+				}
+			}
+		}
+
+		private void resolveChunk(int chunk) {
+			ConcurrentResolve.chunks.set(chunks[chunk]);
+			try {
+				int first = start + chunk * CHUNK_SIZE;
+				int last = Math.min(first + CHUNK_SIZE, end);
+				for (int i = first; i < last; i++) {
+					charts[i].resolve();
+				}
+			} finally {
+				ConcurrentResolve.chunks.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets the uniform distribution statecharts draw from on the calling
+	 * thread. This is the stream of the chunk being resolved, and
+	 * RandomHelper's default uniform otherwise.
+	 *
+	 * @return the uniform distribution for the calling thread.
+	 */
+	public static Uniform getUniform() {
+		Chunk chunk = resolving ? chunks.get() : null;
+		return chunk == null ? RandomHelper.getUniform() : chunk.uniform;
+	}
+
+	/**
+	 * Gets the exponential distribution statecharts draw from on the calling
+	 * thread. This is one over the stream of the chunk being resolved, and
+	 * RandomHelper's default exponential, which may be null, otherwise.
+	 *
+	 * @return the exponential distribution for the calling thread.
+	 */
+	public static Exponential getExponential() {
+		Chunk chunk = resolving ? chunks.get() : null;
+		if (chunk == null) {
+			return RandomHelper.getExponential();
+		}
+		if (chunk.exponential == null) {
+			chunk.exponential = new Exponential(1, chunk.engine);
+		}
+		return chunk.exponential;
+	}
+
+	/**
+	 * Records a change to the scheduled resolve times, if the calling thread is
+	 * resolving a chunk.
+	 *
+	 * @param time
+	 * @param sc
+	 * @param schedule
+	 *            whether the time is scheduled or removed
+	 * @return true if the change was recorded, false if it should be made now.
+	 */
+	static boolean record(double time, StateChart<?> sc, boolean schedule) {
+		if (!resolving) {
+			return false;
+		}
+		Chunk chunk = chunks.get();
+		if (chunk == null) {
+			return false;
+		}
+		chunk.record(time, sc, schedule);
+		return true;
+	}
+
+	/**
+	 * Resolves the statecharts from index from to index to concurrently.
+	 *
+	 * @param charts
+	 * @param from
+	 * @param to
+	 */
+	static void resolve(StateChart<?>[] charts, int from, int to) {
+		int count = (to - from + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		Chunk[] chunks = new Chunk[count];
+		Uniform uniform = getUniform();
+		for (int i = 0; i < count; i++) {
+			// a zero seed degenerates the twister
+			chunks[i] = new Chunk(uniform.nextIntFromTo(1, Integer.MAX_VALUE));
+		}
+		ForkJoinPool forkPool = pool == null ? ForkJoinPool.commonPool() : pool;
+		boolean fork = count > 1 && forkPool.getParallelism() > 1;
+		ResolveTask task = new ResolveTask(charts, chunks, from, to, 0, count, fork);
+		resolving = true;
+		try {
+			if (fork) {
+				forkPool.invoke(task);
+			} else {
+				task.compute();
+			}
+		} finally {
+			resolving = false;
+			for (Chunk chunk : chunks) {
+				chunk.apply(StateChartScheduler.INSTANCE);
+			}
+		}
+	}
+}
@@ -11,6 +11,11 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 	private double initializedTickCount;
 	private ConditionTriggerCondition<T> condition;
 	private Parameters params;
+	private boolean polling;
+	// whether the condition is to be evaluated at the next polling time, when
+	// not polling
+	private boolean invalidated;
+	private double invalidatedTime;
 
 	protected Parameters getParams() {
 		if (params == null) {
@@ -24,9 +29,33 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 
 	public ConditionTrigger(ConditionTriggerCondition<T> condition,
 			double pollingTime) {
+		this(condition, pollingTime, true);
+	}
+
+	/**
+	 * Creates a ConditionTrigger whose condition is either evaluated every
+	 * pollingTime ticks or, when not polling, only at the polling time
+	 * following an invalidation of the statechart's conditions. The condition
+	 * is also evaluated when its state is entered.
+	 * 
+	 * @param condition
+	 * @param pollingTime
+	 * @param polling
+	 *            false if the statechart's conditions are invalidated whenever
+	 *            what this condition depends on changes
+	 * @throws IllegalArgumentException
+	 *             if not polling and the polling time isn't positive
+	 * @see DefaultStateChart#invalidateConditions()
+	 */
+	public ConditionTrigger(ConditionTriggerCondition<T> condition,
+			double pollingTime, boolean polling) {
+		if (!polling) {
+			checkPollingTime(pollingTime);
+		}
 		this.pollingTime = pollingTime;
 		nextPollingTime = pollingTime;
 		this.condition = condition;
+		this.polling = polling;
 	}
 
 	public ConditionTrigger(ConditionTriggerCondition<T> condition) {
@@ -43,6 +72,9 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 	}
 	
 	public void setInterval(double interval){
+		if (!polling) {
+			checkPollingTime(interval);
+		}
 		nextPollingTime = interval;
 	}
 
@@ -50,11 +82,59 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 		pollingTime = nextPollingTime;
 		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
 		initializedTickCount = schedule.getTickCount();
+		invalidated = false;
+	}
+
+	/**
+	 * Gets whether the condition is evaluated every polling time, rather than
+	 * only after the statechart's conditions are invalidated.
+	 * 
+	 * @return whether the condition is evaluated every polling time.
+	 */
+	public boolean isPolling() {
+		return polling;
 	}
 
+	/**
+	 * Marks the condition, when not polling, to be evaluated at the time a
+	 * polling condition would next be evaluated.
+	 * 
+	 * @return true if the condition wasn't already marked, in which case the
+	 *         next time now needs to be scheduled.
+	 */
+	protected boolean invalidate() {
+		if (polling || invalidated) {
+			return false;
+		}
+		double now = RunEnvironment.getInstance().getCurrentSchedule()
+				.getTickCount();
+		// advances the polling times the way evaluating the condition at each
+		// of them would have, so that they are the same as when polling. The
+		// first step takes the polling time from before any setInterval, and
+		// the later ones are all the current polling time apart.
+		double next = initializedTickCount + pollingTime;
+		if (hasPassed(next, now)) {
+			pollingTime = nextPollingTime;
+			double steps = getPollingSteps(next, pollingTime, now);
+			initializedTickCount = next + (steps - 1) * pollingTime;
+			next = next + steps * pollingTime;
+		}
+		invalidated = true;
+		invalidatedTime = next;
+		return true;
+	}
+
+	/**
+	 * Gets the next time the condition is evaluated. This is infinite when not
+	 * polling and the condition hasn't been invalidated since it was last
+	 * evaluated.
+	 */
 	@Override
 	public double getNextTime() {
-		return initializedTickCount + pollingTime;
+		if (polling) {
+			return initializedTickCount + pollingTime;
+		}
+		return invalidated ? invalidatedTime : Double.POSITIVE_INFINITY;
 	}
 
 	public boolean isTriggered() {
@@ -77,7 +157,8 @@ public class ConditionTrigger<T> extends AbstractTrigger<T> {
 	}
 
 	public String toString() {
-		return "ConditionTrigger with pollingTime: " + pollingTime;
+		return "ConditionTrigger with pollingTime: " + pollingTime
+				+ (polling ? "" : ", evaluated on invalidation");
 	}
 
 	@Override
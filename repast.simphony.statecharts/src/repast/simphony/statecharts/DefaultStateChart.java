@@ -1,11 +1,12 @@
 package repast.simphony.statecharts;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -14,11 +15,8 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 
-import org.apache.commons.collections15.ListUtils;
-
 import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.parameter.Parameters;
-import repast.simphony.random.RandomHelper;
 import repast.simphony.util.SimUtilities;
 import cern.jet.random.Uniform;
 
@@ -57,6 +55,20 @@ public class DefaultStateChart<T> implements StateChart<T> {
 	protected List<Transition<T>> selfTransitions = new ArrayList<Transition<T>>();
 	protected List<Transition<T>> activeSelfTransitions = new ArrayList<Transition<T>>();
 
+	// The active transitions partitioned into queue consuming and non queue
+	// consuming, in the order of the active lists. These are replaced rather
+	// than modified when the active transitions change, so that a resolution
+	// still iterating over them is unaffected.
+	private List<Transition<T>> activeSelfQueueConsuming, activeSelfNonQueueConsuming;
+	private List<Transition<T>> activeRegularQueueConsuming, activeRegularNonQueueConsuming;
+	private boolean activeTransitionsPartitioned;
+
+	// Lists reused for the intermediate results of resolving and initializing
+	// states. They are borrowed in stack order, so that a transition made
+	// while the lists are in use gets lists of its own.
+	private List<List<Transition<T>>> scratch = new ArrayList<List<Transition<T>>>();
+	private int scratchTop;
+
 	protected SimpleState<T> currentSimpleState;
 
 	private Map<AbstractState<T>, String> stateUuidMap;
@@ -117,6 +129,39 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		}
 	}
 
+	private void partitionActiveTransitions() {
+		if (!activeTransitionsPartitioned) {
+			activeSelfQueueConsuming = new ArrayList<Transition<T>>();
+			activeSelfNonQueueConsuming = new ArrayList<Transition<T>>();
+			partitionQueueConsuming(activeSelfTransitions, activeSelfQueueConsuming,
+					activeSelfNonQueueConsuming);
+			activeRegularQueueConsuming = new ArrayList<Transition<T>>();
+			activeRegularNonQueueConsuming = new ArrayList<Transition<T>>();
+			partitionQueueConsuming(activeRegularTransitions,
+					activeRegularQueueConsuming, activeRegularNonQueueConsuming);
+			activeTransitionsPartitioned = true;
+		}
+	}
+
+	/**
+	 * Borrows an empty scratch list. The lists borrowed since a mark must be
+	 * returned with {@link #returnScratch(int)}.
+	 */
+	private List<Transition<T>> borrowScratch() {
+		if (scratchTop == scratch.size()) {
+			scratch.add(new ArrayList<Transition<T>>());
+		}
+		List<Transition<T>> list = scratch.get(scratchTop++);
+		list.clear();
+		return list;
+	}
+
+	private void returnScratch(int mark) {
+		while (scratchTop > mark) {
+			scratch.get(--scratchTop).clear();
+		}
+	}
+
 	private void stateInit(List<AbstractState<T>> statesToEnter) {
 
 		currentSimpleState = (SimpleState<T>) statesToEnter.get(statesToEnter
@@ -131,6 +176,7 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		for (Transition<T> st : selfTransitions) {
 			if (statesToEnter.contains(st.getSource())) {
 				activeSelfTransitions.add(st);
+				activeTransitionsPartitioned = false;
 				st.initialize(this);
 			}
 		}
@@ -138,175 +184,175 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		if (currentSimpleState instanceof FinalState) {
 			clearTransitions(null);
 		} else {
-
-			Transition<T> validBranchTransition = null;
-			// This will hold any branch state outgoing transitions for
-			// special treatment
-			List<Transition<T>> transitionsToIgnore = new ArrayList<Transition<T>>();
-
-			if (currentSimpleState instanceof BranchState) {
-				List<Transition<T>> branchCandidateTransitions = new ArrayList<Transition<T>>();
-				for (Transition<T> t : regularTransitions) {
-					if (currentSimpleState == t.getSource()) {
-						branchCandidateTransitions.add(t);
-					}
-				}
-				transitionsToIgnore.addAll(branchCandidateTransitions);
-
-				Transition<T> defaultTransition = null;
-				List<Transition<T>> trueBranchTransitions = new ArrayList<Transition<T>>();
-				for (Transition<T> t : branchCandidateTransitions) {
-					if (t.getTrigger() instanceof AlwaysTrigger) {
-						defaultTransition = t;
-					} else {
-						// Check of transition condition
-						// (should not be checked again below)
-						if (t.isTransitionConditionTrue()) {
-							trueBranchTransitions.add(t);
-						}
+			int mark = scratchTop;
+			try {
+				Transition<T> t = chooseZeroTimeTransition(statesToEnter);
+				// If a zero time transition was found, make that transition
+				if (t != null) {
+					// if chosen one is queue consuming
+					if (t.isTriggerQueueConsuming()) {
+						queue.poll();
 					}
+					makeRegularTransition(t);
 				}
-				if (defaultTransition == null) {
-					throw new IllegalStateException(
-							"All branch states must define at least one default transition");
-				}
-				Transition<T> t = chooseOneTransition(trueBranchTransitions);
-				if (t == null)
-					validBranchTransition = defaultTransition;
-				// makeRegularTransition(defaultTransition);
-				else
-					validBranchTransition = t;
-				// makeRegularTransition(t);
-
+			} finally {
+				returnScratch(mark);
 			}
-			// Get all new candidate transitions
-			List<Transition<T>> newTransitionsToActivate = new ArrayList<Transition<T>>();
+		}
+	}
+
+	/**
+	 * Activates the regular transitions out of the entered states and chooses
+	 * the transition, if any, to make without time passing.
+	 */
+	private Transition<T> chooseZeroTimeTransition(
+			List<AbstractState<T>> statesToEnter) {
+		Transition<T> validBranchTransition = null;
+		// This will hold any branch state outgoing transitions for
+		// special treatment
+		List<Transition<T>> transitionsToIgnore = borrowScratch();
+
+		if (currentSimpleState instanceof BranchState) {
 			for (Transition<T> t : regularTransitions) {
-				if (!transitionsToIgnore.contains(t)
-						&& statesToEnter.contains(t.getSource())) {
-					newTransitionsToActivate.add(t);
+				if (currentSimpleState == t.getSource()) {
+					transitionsToIgnore.add(t);
 				}
 			}
 
-			// List of zero time new candidate transitions
-			List<Transition<T>> newTransitionsToActivateZeroTime = new ArrayList<Transition<T>>();
-			// for new candidate transitions find all zeroTimeTransitions
-			for (Transition<T> tt : newTransitionsToActivate) {
-				if (tt.canTransitionZeroTime())
-					newTransitionsToActivateZeroTime.add(tt);
-			}
-
-			// Partition new candidate zero time transitions into queue
-			// consuming and non queue consuming
-			List<Transition<T>> newTransitionsToActivateZeroTimeQueueConsuming = new ArrayList<Transition<T>>();
-			List<Transition<T>> newTransitionsToActivateZeroTimeNonQueueConsuming = new ArrayList<Transition<T>>();
-			partitionQueueConsuming(newTransitionsToActivateZeroTime,
-					newTransitionsToActivateZeroTimeQueueConsuming,
-					newTransitionsToActivateZeroTimeNonQueueConsuming);
-
-			// Partition active regular transitions into queue
-			// consuming and non queue consuming
-			List<Transition<T>> activeRegularQueueConsuming = new ArrayList<Transition<T>>();
-			List<Transition<T>> activeRegularNonQueueConsuming = new ArrayList<Transition<T>>();
-			partitionQueueConsuming(activeRegularTransitions,
-					activeRegularQueueConsuming, activeRegularNonQueueConsuming);
-
-			// The triggered non queue consuming transitions
-			// Include:
-			// valid branch transition,
-			// triggered non queue consuming active transitions,
-			// true non queue consuming new transitions
-			List<Transition<T>> nonQueueConsumingValid = new ArrayList<Transition<T>>();
-			// Add the branch transition if found above
-			if (validBranchTransition != null) {
-				nonQueueConsumingValid.add(validBranchTransition);
-			}
-			// Add triggered non queue consuming active transitions
-			for (Transition<T> t : activeRegularNonQueueConsuming) {
-				if (t.isTransitionTriggered()) {
-					nonQueueConsumingValid.add(t);
+			Transition<T> defaultTransition = null;
+			List<Transition<T>> trueBranchTransitions = borrowScratch();
+			for (Transition<T> t : transitionsToIgnore) {
+				if (t.getTrigger() instanceof AlwaysTrigger) {
+					defaultTransition = t;
+				} else {
+					// Check of transition condition
+					// (should not be checked again below)
+					if (t.isTransitionConditionTrue()) {
+						trueBranchTransitions.add(t);
+					}
 				}
 			}
-			// Add true non queue consuming new transitions
-			for (Transition<T> t : newTransitionsToActivateZeroTimeNonQueueConsuming) {
-				if (t.isTransitionConditionTrue()) {
-					nonQueueConsumingValid.add(t);
+			if (defaultTransition == null) {
+				throw new IllegalStateException(
+						"All branch states must define at least one default transition");
+			}
+			Transition<T> t = chooseOneTransition(trueBranchTransitions);
+			if (t == null)
+				validBranchTransition = defaultTransition;
+			else
+				validBranchTransition = t;
+
+		}
+		// Get all new candidate transitions, and partition the zero time ones
+		// into queue consuming and non queue consuming
+		List<Transition<T>> newTransitionsToActivate = borrowScratch();
+		List<Transition<T>> newTransitionsToActivateZeroTimeQueueConsuming = borrowScratch();
+		List<Transition<T>> newTransitionsToActivateZeroTimeNonQueueConsuming = borrowScratch();
+		for (Transition<T> t : regularTransitions) {
+			if (!transitionsToIgnore.contains(t)
+					&& statesToEnter.contains(t.getSource())) {
+				newTransitionsToActivate.add(t);
+				if (t.canTransitionZeroTime()) {
+					if (t.isTriggerQueueConsuming())
+						newTransitionsToActivateZeroTimeQueueConsuming.add(t);
+					else
+						newTransitionsToActivateZeroTimeNonQueueConsuming.add(t);
 				}
 			}
+		}
 
-			// collect all relevant regular transitions and initialize
-			activeRegularTransitions.addAll(newTransitionsToActivate);
-			for (Transition<T> ct : newTransitionsToActivate) {
-				ct.initialize(this);
+		// The previously active regular transitions, partitioned into queue
+		// consuming and non queue consuming
+		partitionActiveTransitions();
+		List<Transition<T>> activeRegularQueueConsuming = this.activeRegularQueueConsuming;
+		List<Transition<T>> activeRegularNonQueueConsuming = this.activeRegularNonQueueConsuming;
+
+		// The triggered non queue consuming transitions, followed by the valid
+		// queue consuming ones
+		// Include:
+		// valid branch transition,
+		// triggered non queue consuming active transitions,
+		// true non queue consuming new transitions
+		List<Transition<T>> candidates = borrowScratch();
+		// Add the branch transition if found above
+		if (validBranchTransition != null) {
+			candidates.add(validBranchTransition);
+		}
+		// Add triggered non queue consuming active transitions
+		for (Transition<T> t : activeRegularNonQueueConsuming) {
+			if (t.isTransitionTriggered()) {
+				candidates.add(t);
 			}
+		}
+		// Add true non queue consuming new transitions
+		for (Transition<T> t : newTransitionsToActivateZeroTimeNonQueueConsuming) {
+			if (t.isTransitionConditionTrue()) {
+				candidates.add(t);
+			}
+		}
 
-			// Combine all queueConsuming candidates
-			List<Transition<T>> allQueueConsuming = ListUtils.union(
-					newTransitionsToActivateZeroTimeQueueConsuming,
-					activeRegularQueueConsuming);
-
-			// Valid queue consuming transitions
-			List<Transition<T>> queueConsumingValid = new ArrayList<Transition<T>>();
+		// collect all relevant regular transitions and initialize
+		if (!newTransitionsToActivate.isEmpty()) {
+			activeRegularTransitions.addAll(newTransitionsToActivate);
+			activeTransitionsPartitioned = false;
+		}
+		for (Transition<T> ct : newTransitionsToActivate) {
+			ct.initialize(this);
+		}
 
-			// if there are no queue consuming
-			if (allQueueConsuming.isEmpty()) {
-				// clear queue
-				queue.clear();
-			} else {
-				boolean foundIsResolveNow = false;
-				// Look for active regular queue consuming that
-				// should resolve now
-				for (Transition<T> t : activeRegularQueueConsuming) {
-					if (t.isResolveNow()) {
-						foundIsResolveNow = true;
-						break;
+		// if there are no queue consuming
+		if (newTransitionsToActivateZeroTimeQueueConsuming.isEmpty()
+				&& activeRegularQueueConsuming.isEmpty()) {
+			// clear queue
+			queue.clear();
+		} else {
+			// If found "resolve now" active regular queue consuming
+			// or if there are queue consuming new transitions then
+			// consume queue
+			if (isAnyResolveNow(activeRegularQueueConsuming)
+					|| !newTransitionsToActivateZeroTimeQueueConsuming.isEmpty()) {
+
+				// Find queue consuming candidate transitions
+				int size = candidates.size();
+				while (true) {
+					discardUnmatchable(newTransitionsToActivateZeroTimeQueueConsuming,
+							activeRegularQueueConsuming);
+					// For the newly activated, check that the condition is
+					// true
+					for (Transition<T> tt : newTransitionsToActivateZeroTimeQueueConsuming) {
+						if (tt.isTransitionConditionTrue())
+							candidates.add(tt);
 					}
-				}
-				// If found "resolve now" active regular queue consuming
-				// or if there are queue consuming new transitions then
-				// consume queue
-				if (foundIsResolveNow
-						|| !newTransitionsToActivateZeroTimeQueueConsuming.isEmpty()) {
-
-					// Find queue consuming candidate transitions
-					while (true) {
-						// For the newly activated, check that the condition is
-						// true
-						for (Transition<T> tt : newTransitionsToActivateZeroTimeQueueConsuming) {
-							if (tt.isTransitionConditionTrue())
-								queueConsumingValid.add(tt);
-						}
-						// For the previously active transitions, check that
-						// they are triggered
-						for (Transition<T> tt : activeRegularQueueConsuming) {
-							if (tt.isTransitionTriggered())
-								queueConsumingValid.add(tt);
-						}
-						if (queueConsumingValid.isEmpty()) {
-							queue.poll();
-							if (queue.isEmpty())
-								break;
-						} else {
+					// For the previously active transitions, check that
+					// they are triggered
+					for (Transition<T> tt : activeRegularQueueConsuming) {
+						if (tt.isTransitionTriggered())
+							candidates.add(tt);
+					}
+					if (candidates.size() == size) {
+						queue.poll();
+						if (queue.isEmpty())
 							break;
-						}
+					} else {
+						break;
 					}
 				}
 			}
+		}
 
-			// Concatenate queue and non queue consuming candidates and choose
-			// one
-			Transition<T> t = chooseOneTransition(ListUtils.union(
-					nonQueueConsumingValid, queueConsumingValid));
-			// If a zero time transition was found, make that transition
-			if (t != null) {
-				// if chosen one is queue consuming
-				if (t.isTriggerQueueConsuming()) {
-					queue.poll();
-				}
-				makeRegularTransition(t);
-			}
+		// choose one of the queue and non queue consuming candidates
+		return chooseOneTransition(candidates);
+	}
+
+	// indexed rather than iterated, as these run on every resolution
 
+	private boolean isAnyResolveNow(List<Transition<T>> transitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			if (transitions.get(i).isResolveNow()) {
+				return true;
+			}
 		}
+		return false;
 	}
 
 	private void clearTransitions(AbstractState<T> as) {
@@ -317,27 +363,23 @@ public class DefaultStateChart<T> implements StateChart<T> {
 
 	private void deactivateTransitions(AbstractState<T> as,
 			List<Transition<T>> transitions) {
-		List<Transition<T>> candidateTransitions = new ArrayList<Transition<T>>();
-		if (as == null) {
-			candidateTransitions = transitions;
-		} else {
-			for (Transition<T> t : transitions) {
-				if (t.getSource().getId().equals(as.getId())) {
-					candidateTransitions.add(t);
-				}
-			}
-		}
+		if (transitions.isEmpty())
+			return;
 		double now = RunEnvironment.getInstance().getCurrentSchedule()
 				.getTickCount();
-		for (Transition<T> t : candidateTransitions) {
-			// if trigger's next time is after now,
-			Trigger tr = t.getTrigger();
-			double nextTime = tr.getNextTime();
-			if (Double.compare(nextTime, now) > 0) {
-				removeResolveTime(nextTime);
+		for (Iterator<Transition<T>> it = transitions.iterator(); it.hasNext();) {
+			Transition<T> t = it.next();
+			if (as == null || t.getSource().getId().equals(as.getId())) {
+				// if trigger's next time is after now,
+				Trigger tr = t.getTrigger();
+				double nextTime = tr.getNextTime();
+				if (Double.compare(nextTime, now) > 0) {
+					removeResolveTime(nextTime);
+				}
+				it.remove();
+				activeTransitionsPartitioned = false;
 			}
 		}
-		transitions.removeAll(candidateTransitions);
 	}
 
 	protected void addState(AbstractState<T> state) {
@@ -452,9 +494,9 @@ public class DefaultStateChart<T> implements StateChart<T> {
 	// private List<Transition>
 
 	private List<Transition<T>> getTriggeredTransitions(
-			List<Transition<T>> transitions) {
-		List<Transition<T>> triggeredTransitions = new ArrayList<Transition<T>>();
-		for (Transition<T> t : transitions) {
+			List<Transition<T>> transitions, List<Transition<T>> triggeredTransitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			Transition<T> t = transitions.get(i);
 			if (t.isTransitionTriggered())
 				triggeredTransitions.add(t);
 		}
@@ -462,35 +504,38 @@ public class DefaultStateChart<T> implements StateChart<T> {
 	}
 
 	public void resolve() {
-		// Partition active self transitions into queue consuming and non queue
-		// consuming
-		List<Transition<T>> queueConsumingActiveSelfTransitions = new ArrayList<Transition<T>>();
-		List<Transition<T>> nonQueueConsumingActiveSelfTransitions = new ArrayList<Transition<T>>();
-		partitionQueueConsuming(activeSelfTransitions,
-				queueConsumingActiveSelfTransitions,
-				nonQueueConsumingActiveSelfTransitions);
-
-		// Execute all non queue consuming active self transitions
-		for (Transition<T> t : getTriggeredTransitions(nonQueueConsumingActiveSelfTransitions)) {
-			t.onTransition();
+		int mark = scratchTop;
+		try {
+			resolveTransitions();
+		} finally {
+			returnScratch(mark);
 		}
+	}
 
-		// Partition active regular transitions into queue consuming and non
+	private void resolveTransitions() {
+		// Active self transitions partitioned into queue consuming and non
 		// queue consuming
-		List<Transition<T>> queueConsumingActiveRegularTransitions = new ArrayList<Transition<T>>();
-		List<Transition<T>> nonQueueConsumingActiveRegularTransitions = new ArrayList<Transition<T>>();
-		partitionQueueConsuming(activeRegularTransitions,
-				queueConsumingActiveRegularTransitions,
-				nonQueueConsumingActiveRegularTransitions);
+		partitionActiveTransitions();
+		List<Transition<T>> queueConsumingActiveSelfTransitions = activeSelfQueueConsuming;
+		List<Transition<T>> nonQueueConsumingActiveSelfTransitions = activeSelfNonQueueConsuming;
 
-		// Find non queue consuming candidate regular transitions
-		List<Transition<T>> nonQueueConsumingRegularCandidates = getTriggeredTransitions(nonQueueConsumingActiveRegularTransitions);
+		// Execute all non queue consuming active self transitions
+		List<Transition<T>> triggeredSelfTransitions = getTriggeredTransitions(
+				nonQueueConsumingActiveSelfTransitions, borrowScratch());
+		for (int i = 0; i < triggeredSelfTransitions.size(); i++) {
+			triggeredSelfTransitions.get(i).onTransition();
+		}
 
-		List<Transition<T>> queueConsumingRegularCandidates = new ArrayList<Transition<T>>();
+		// Active regular transitions partitioned into queue consuming and non
+		// queue consuming
+		partitionActiveTransitions();
+		List<Transition<T>> queueConsumingActiveRegularTransitions = activeRegularQueueConsuming;
+		List<Transition<T>> nonQueueConsumingActiveRegularTransitions = activeRegularNonQueueConsuming;
 
-		List<Transition<T>> allQueueConsumingActiveTransitions = ListUtils.union(
-				queueConsumingActiveSelfTransitions,
-				queueConsumingActiveRegularTransitions);
+		// Find non queue consuming candidate regular transitions, which are
+		// followed by the queue consuming ones found below
+		List<Transition<T>> candidates = getTriggeredTransitions(
+				nonQueueConsumingActiveRegularTransitions, borrowScratch());
 
 		// This is for the corner case when there is a self transition
 		// and a regular transition that both are valid based on the same
@@ -501,30 +546,32 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		boolean queueConsumingSelfTransitionFollowed = false;
 
 		// Are there no active self or regular queue consuming transitions?
-		if (allQueueConsumingActiveTransitions.isEmpty()) {
+		if (queueConsumingActiveSelfTransitions.isEmpty()
+				&& queueConsumingActiveRegularTransitions.isEmpty()) {
 			queue.clear();
 		} else {
-			boolean foundIsResolveNow = false;
-			for (Transition<T> t : allQueueConsumingActiveTransitions) {
-				if (t.isResolveNow()) {
-					foundIsResolveNow = true;
-					break;
-				}
-			}
-			if (foundIsResolveNow) {
+			if (isAnyResolveNow(queueConsumingActiveSelfTransitions)
+					|| isAnyResolveNow(queueConsumingActiveRegularTransitions)) {
+				int size = candidates.size();
 				while (true) {
+					discardUnmatchable(queueConsumingActiveSelfTransitions,
+							queueConsumingActiveRegularTransitions);
 					queueConsumingSelfTransitionFollowed = false;
 					// Execute all queue consuming active self transitions
-					for (Transition<T> t : getTriggeredTransitions(queueConsumingActiveSelfTransitions)) {
-						t.onTransition();
+					triggeredSelfTransitions.clear();
+					getTriggeredTransitions(queueConsumingActiveSelfTransitions,
+							triggeredSelfTransitions);
+					for (int i = 0; i < triggeredSelfTransitions.size(); i++) {
+						triggeredSelfTransitions.get(i).onTransition();
 						queueConsumingSelfTransitionFollowed = true;
 					}
 
 					// Look for queue consuming regular candidates for current
 					// queue
 					// state
-					queueConsumingRegularCandidates = getTriggeredTransitions(queueConsumingActiveRegularTransitions);
-					if (queueConsumingRegularCandidates.isEmpty()) {
+					getTriggeredTransitions(queueConsumingActiveRegularTransitions,
+							candidates);
+					if (candidates.size() == size) {
 						queue.poll();
 						if (queue.isEmpty())
 							break;
@@ -534,9 +581,8 @@ public class DefaultStateChart<T> implements StateChart<T> {
 				}
 			}
 		}
-		// Concatenate queue and non queue consuming candidates and choose one
-		Transition<T> t = chooseOneTransition(ListUtils.union(
-				nonQueueConsumingRegularCandidates, queueConsumingRegularCandidates));
+		// Choose one of the queue and non queue consuming candidates
+		Transition<T> t = chooseOneTransition(candidates);
 
 		// reschedule selfTransitions
 		rescheduleTransitions(activeSelfTransitions, false);
@@ -570,12 +616,12 @@ public class DefaultStateChart<T> implements StateChart<T> {
 			return transitions.get(0);
 		case PRIORITY:
 			List<Transition<T>> temp = new ArrayList<Transition<T>>(transitions);
-			SimUtilities.shuffle(temp, RandomHelper.getUniform());
+			SimUtilities.shuffle(temp, ConcurrentResolve.getUniform());
 			Collections.sort(temp, pComp);
 			return temp.get(0);
 		case RANDOM:
 			int size = transitions.size();
-			Uniform defaultUniform = RandomHelper.getUniform();
+			Uniform defaultUniform = ConcurrentResolve.getUniform();
 			int index = defaultUniform.nextIntFromTo(0, size - 1);
 			return transitions.get(index);
 		default:
@@ -590,13 +636,13 @@ public class DefaultStateChart<T> implements StateChart<T> {
 				.getTickCount();
 		// for each active transition
 		if (regular) {
-			for (Transition<T> t : activeTransitions) {
-				t.rescheduleRegularTransition(this, currentTime);
+			for (int i = 0, n = activeTransitions.size(); i < n; i++) {
+				activeTransitions.get(i).rescheduleRegularTransition(this, currentTime);
 
 			}
 		} else {
-			for (Transition<T> t : activeTransitions) {
-				t.rescheduleSelfTransition(this, currentTime);
+			for (int i = 0, n = activeTransitions.size(); i < n; i++) {
+				activeTransitions.get(i).rescheduleSelfTransition(this, currentTime);
 			}
 		}
 	}
@@ -615,23 +661,155 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		}
 	}
 
+	// an infinite time is that of a trigger that isn't waiting for any time,
+	// such as a condition trigger that isn't polling, and is never scheduled
 	protected void scheduleResolveTime(double nextTime) {
-		StateChartScheduler.INSTANCE.scheduleResolveTime(nextTime, this);
+		if (nextTime != Double.POSITIVE_INFINITY) {
+			StateChartScheduler.INSTANCE.scheduleResolveTime(nextTime, this);
+		}
 	}
 
 	protected void removeResolveTime(double nextTime) {
-		StateChartScheduler.INSTANCE.removeResolveTime(nextTime, this);
+		if (nextTime != Double.POSITIVE_INFINITY) {
+			StateChartScheduler.INSTANCE.removeResolveTime(nextTime, this);
+		}
+	}
+
+	/**
+	 * Invalidates the conditions of the active condition triggers that aren't
+	 * polling, so that they are evaluated at their next polling time. This is
+	 * to be called whenever something those conditions depend on changes, for
+	 * example from the setters of the agent's fields or from a watcher.
+	 * 
+	 * @see ConditionTrigger#ConditionTrigger(ConditionTriggerCondition, double,
+	 *      boolean)
+	 */
+	public void invalidateConditions() {
+		invalidateConditions(activeRegularTransitions);
+		invalidateConditions(activeSelfTransitions);
+	}
+
+	private void invalidateConditions(List<Transition<T>> transitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			Trigger trigger = transitions.get(i).getTrigger();
+			if (trigger instanceof ConditionTrigger
+					&& ((ConditionTrigger<?>) trigger).invalidate()) {
+				scheduleResolveTime(trigger.getNextTime());
+			}
+		}
 	}
 
-	private Queue<Object> queue = new ArrayDeque<Object>();
+	private MessageQueue queue = new MessageQueue();
 
 	protected Queue<Object> getQueue() {
 		return queue;
 	}
 
+	/**
+	 * Queues the message. Message triggers that aren't polling check the queue
+	 * at their next polling time, which is scheduled once for all the messages
+	 * received until then.
+	 */
 	@Override
 	public void receiveMessage(Object message) {
 		queue.add(message);
+		messageReceived(activeRegularTransitions);
+		messageReceived(activeSelfTransitions);
+	}
+
+	private void messageReceived(List<Transition<T>> transitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			Trigger trigger = transitions.get(i).getTrigger();
+			if (trigger instanceof MessageTrigger
+					&& ((MessageTrigger<?>) trigger).messageReceived()) {
+				scheduleResolveTime(trigger.getNextTime());
+			}
+		}
+	}
+
+	// a marker for a message checker that can't be matched by value
+	private static final Object ANY_VALUE = new Object();
+	// the message classes, and the values for equality, that the message
+	// checkers of the queue consuming transitions can match
+	private Class<?>[] matchClasses = new Class<?>[4];
+	private Object[] matchValues = new Object[4];
+	private int matchCount;
+
+	/**
+	 * Discards the messages at the head of the queue that none of the message
+	 * checkers of the specified transitions can match, without running the
+	 * checkers on each of them. Nothing is discarded if any of the checkers
+	 * isn't known.
+	 */
+	private void discardUnmatchable(List<Transition<T>> first,
+			List<Transition<T>> second) {
+		if (queue.isEmpty()) {
+			return;
+		}
+		matchCount = 0;
+		if (!addMatches(first) || !addMatches(second)) {
+			return;
+		}
+		boolean queued = false;
+		for (int i = 0; i < matchCount && !queued; i++) {
+			queued = queue.containsInstanceOf(matchClasses[i]);
+		}
+		if (!queued) {
+			queue.clear();
+			return;
+		}
+		while (!queue.isEmpty()) {
+			Object message = queue.peek();
+			for (int i = 0; i < matchCount; i++) {
+				if (matchClasses[i].isInstance(message)
+						&& (matchValues[i] == ANY_VALUE || message
+								.equals(matchValues[i]))) {
+					return;
+				}
+			}
+			queue.poll();
+		}
+	}
+
+	// false if a checker isn't known
+	private boolean addMatches(List<Transition<T>> transitions) {
+		for (int i = 0, n = transitions.size(); i < n; i++) {
+			Trigger trigger = transitions.get(i).getTrigger();
+			if (!(trigger instanceof MessageTrigger)) {
+				return false;
+			}
+			MessageChecker mc = ((MessageTrigger<?>) trigger).getMessageChecker();
+			Class<?> messageClass;
+			Object value = ANY_VALUE;
+			if (mc instanceof UnconditionalMessageChecker) {
+				messageClass = Object.class;
+			} else if (mc instanceof UnconditionalByClassMessageChecker) {
+				messageClass = ((UnconditionalByClassMessageChecker) mc)
+						.getMessageClass();
+			} else if (mc instanceof MessageConditionMessageChecker) {
+				messageClass = ((MessageConditionMessageChecker<?, ?>) mc)
+						.getMessageClass();
+			} else if (mc instanceof MessageEqualsMessageChecker) {
+				MessageEqualsMessageChecker<?, ?> mec = (MessageEqualsMessageChecker<?, ?>) mc;
+				messageClass = mec.getMessageClass();
+				try {
+					value = mec.getMessageValue();
+				} catch (Exception e) {
+					// left to the checker to report
+					return false;
+				}
+			} else {
+				return false;
+			}
+			if (matchCount == matchClasses.length) {
+				matchClasses = Arrays.copyOf(matchClasses, matchCount * 2);
+				matchValues = Arrays.copyOf(matchValues, matchCount * 2);
+			}
+			matchClasses[matchCount] = messageClass;
+			matchValues[matchCount] = value;
+			matchCount++;
+		}
+		return true;
 	}
 
 	private double priority = 0;
@@ -644,6 +822,31 @@ public class DefaultStateChart<T> implements StateChart<T> {
 		this.priority = priority;
 	}
 
+	private boolean threadSafe = false;
+
+	/**
+	 * Gets whether this statechart can be resolved concurrently with other
+	 * thread safe statecharts of the same priority. This is the case when its
+	 * actions, guards and trigger conditions only modify its own agent, and
+	 * neither schedule actions nor send messages. Concurrently resolved
+	 * statecharts draw their random numbers from their own streams, so the
+	 * results are reproducible, though different from those of resolving them
+	 * one after the other. Actions, guards and conditions that draw random
+	 * numbers themselves must draw them from
+	 * {@link ConcurrentResolve#getUniform()} or
+	 * {@link ConcurrentResolve#getExponential()}, not from RandomHelper's
+	 * defaults, which are neither thread safe nor reproducible when shared.
+	 * 
+	 * @return whether this statechart can be resolved concurrently.
+	 */
+	public boolean isThreadSafe() {
+		return threadSafe;
+	}
+
+	protected void setThreadSafe(boolean threadSafe) {
+		this.threadSafe = threadSafe;
+	}
+
 	private T agent;
 
 	public T getAgent() {
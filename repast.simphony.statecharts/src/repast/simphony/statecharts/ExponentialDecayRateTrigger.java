@@ -54,7 +54,7 @@ public class ExponentialDecayRateTrigger<T> extends AbstractTrigger<T> {
 	public void initialize() {
 		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
 		initializedTickCount = schedule.getTickCount();
-		Exponential exp = RandomHelper.getExponential();
+		Exponential exp = ConcurrentResolve.getExponential();
 		if (exp == null){
 			exp = RandomHelper.createExponential(1);
 		}
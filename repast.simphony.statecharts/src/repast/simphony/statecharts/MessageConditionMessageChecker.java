@@ -27,6 +27,10 @@ public class MessageConditionMessageChecker<T, U> extends
 		this.messageClass = messageClass;
 	}
 
+	public Class<? extends U> getMessageClass() {
+		return messageClass;
+	}
+
 	@Override
 	public boolean checkMessage(Object message) {
 		boolean result = false;
@@ -42,14 +42,22 @@ public class MessageEqualsMessageChecker<T, U> extends
 		}, messageClass);
 	}
 
+	public Class<? extends U> getMessageClass() {
+		return messageClass;
+	}
+
+	// the value messages are compared to, for the current state of the agent
+	protected Object getMessageValue() throws Exception {
+		return messageEquals.messageValue(getAgent(), transition, getParams());
+	}
+
 	@Override
 	public boolean checkMessage(Object message) {
 		boolean result = false;
 
 		if (messageClass.isInstance(message)) {
 			try {
-				result = message.equals(messageEquals.messageValue(getAgent(),
-						transition, getParams()));
+				result = message.equals(getMessageValue());
 			} catch (Exception e) {
 				MessageCenter.getMessageCenter(getClass()).error(
 						"Error encountered when calling message equals in: "
@@ -0,0 +1,112 @@
+package repast.simphony.statecharts;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The message queue of a statechart. Besides the messages in the order they
+ * were received, it counts the queued messages of each class, so that a
+ * statechart can tell whether any queued message could match its transitions
+ * without checking each message.
+ */
+class MessageQueue extends AbstractQueue<Object> {
+
+	private ArrayDeque<Object> messages = new ArrayDeque<Object>();
+	// the counts are mutable so that queueing a message doesn't box
+	private Map<Class<?>, int[]> counts = new HashMap<Class<?>, int[]>();
+
+	@Override
+	public boolean offer(Object message) {
+		messages.add(message);
+		int[] count = counts.get(message.getClass());
+		if (count == null) {
+			count = new int[1];
+			counts.put(message.getClass(), count);
+		}
+		count[0]++;
+		return true;
+	}
+
+	@Override
+	public Object poll() {
+		Object message = messages.poll();
+		if (message != null) {
+			uncount(message);
+		}
+		return message;
+	}
+
+	private void uncount(Object message) {
+		int[] count = counts.get(message.getClass());
+		if (--count[0] == 0) {
+			counts.remove(message.getClass());
+		}
+	}
+
+	@Override
+	public Object peek() {
+		return messages.peek();
+	}
+
+	@Override
+	public int size() {
+		return messages.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return messages.isEmpty();
+	}
+
+	@Override
+	public void clear() {
+		messages.clear();
+		counts.clear();
+	}
+
+	/**
+	 * Gets whether any queued message is an instance of the specified class.
+	 *
+	 * @param clazz
+	 * @return whether any queued message is an instance of the specified class.
+	 */
+	public boolean containsInstanceOf(Class<?> clazz) {
+		if (counts.containsKey(clazz)) {
+			return true;
+		}
+		for (Class<?> queued : counts.keySet()) {
+			if (clazz.isAssignableFrom(queued)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<Object> iterator() {
+		final Iterator<Object> it = messages.iterator();
+		return new Iterator<Object>() {
+			private Object last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public Object next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				it.remove();
+				uncount(last);
+			}
+		};
+	}
+}
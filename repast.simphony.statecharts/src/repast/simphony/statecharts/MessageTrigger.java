@@ -38,6 +38,11 @@ public class MessageTrigger<T> extends AbstractTrigger<T>{
 	private double pollingTime, nextPollingTime;
 	private double initializedTickCount;
 	private MessageChecker messageChecker;
+	private boolean polling = true;
+	// whether the queue is to be checked at the next polling time, when not
+	// polling
+	private boolean pending;
+	private double pendingTime;
 		
 	protected MessageTrigger(Queue<Object> queue, MessageChecker messageChecker, double pollingTime){
 		this.queue = queue;
@@ -68,6 +73,38 @@ public class MessageTrigger<T> extends AbstractTrigger<T>{
 		this(null, messageChecker, 1);		
 	}
 	
+	/**
+	 * Creates a MessageTrigger whose queue is either checked every pollingTime
+	 * ticks or, when not polling, only at the polling time following the
+	 * receipt of messages. All the messages received before that time are
+	 * checked by the one resolution.
+	 * @param messageChecker
+	 * @param pollingTime
+	 * @param polling
+	 * @throws IllegalArgumentException if not polling and the polling time
+	 * isn't positive
+	 */
+	public MessageTrigger(MessageChecker messageChecker, double pollingTime, boolean polling){
+		this(null, messageChecker, pollingTime);
+		if (!polling){
+			checkPollingTime(pollingTime);
+		}
+		this.polling = polling;
+	}
+	
+	protected MessageChecker getMessageChecker(){
+		return messageChecker;
+	}
+	
+	/**
+	 * Gets whether the queue is checked every polling time, rather than only
+	 * after messages are received.
+	 * @return whether the queue is checked every polling time.
+	 */
+	public boolean isPolling(){
+		return polling;
+	}
+	
 	@Override
 	public boolean isRecurring() {
 		return true;
@@ -79,6 +116,9 @@ public class MessageTrigger<T> extends AbstractTrigger<T>{
 	
 	@Override
 	public void setInterval(double interval) {
+		if (!polling){
+			checkPollingTime(interval);
+		}
 		nextPollingTime = interval;
 	}
 	
@@ -86,11 +126,48 @@ public class MessageTrigger<T> extends AbstractTrigger<T>{
 		pollingTime = nextPollingTime;
 		ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
 		initializedTickCount = schedule.getTickCount();
+		// messages left in the queue are checked at the next polling time
+		pending = !polling && !getQueue().isEmpty();
+		if (pending){
+			pendingTime = initializedTickCount + pollingTime;
+		}
+	}
+	
+	/**
+	 * Marks the queue, when not polling, to be checked at the time a polling
+	 * trigger would next check it.
+	 * @return true if the queue wasn't already marked, in which case the next
+	 * time now needs to be scheduled.
+	 */
+	protected boolean messageReceived(){
+		if (polling || pending) return false;
+		double now = RunEnvironment.getInstance().getCurrentSchedule().getTickCount();
+		// advances the polling times the way checking the queue at each of
+		// them would have, so that they are the same as when polling. The
+		// first step takes the polling time from before any setInterval, and
+		// the later ones are all the current polling time apart.
+		double next = initializedTickCount + pollingTime;
+		if (hasPassed(next, now)){
+			pollingTime = nextPollingTime;
+			double steps = getPollingSteps(next, pollingTime, now);
+			initializedTickCount = next + (steps - 1) * pollingTime;
+			next = next + steps * pollingTime;
+		}
+		pending = true;
+		pendingTime = next;
+		return true;
 	}
 	
+	/**
+	 * Gets the next time the queue is checked. This is infinite when not
+	 * polling and no messages have been received since it was last checked.
+	 */
 	@Override
 	public double getNextTime() {
-		return initializedTickCount + pollingTime;
+		if (polling){
+			return initializedTickCount + pollingTime;
+		}
+		return pending ? pendingTime : Double.POSITIVE_INFINITY;
 	}
 		
 	public boolean isTriggered(){
@@ -106,7 +183,8 @@ public class MessageTrigger<T> extends AbstractTrigger<T>{
 	}
 	
 	public String toString(){
-		return "MessageTrigger with pollingTime: " + pollingTime;
+		return "MessageTrigger with pollingTime: " + pollingTime
+				+ (polling ? "" : ", checked on receipt");
 	}
 
 	@Override
@@ -3,7 +3,6 @@ package repast.simphony.statecharts;
 import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.parameter.Parameters;
-import repast.simphony.random.RandomHelper;
 import simphony.util.messages.MessageCenter;
 
 public class ProbabilityTrigger<T> extends AbstractTrigger<T> {
@@ -86,7 +85,7 @@ public class ProbabilityTrigger<T> extends AbstractTrigger<T> {
 	}
 
 	public boolean isTriggerConditionTrue() {
-		double rand = RandomHelper.nextDouble();
+		double rand = ConcurrentResolve.getUniform().nextDouble();
 		try {
 			return tdf.value(getAgent(), transition, getParams()) > rand;
 		} catch (Exception e) {
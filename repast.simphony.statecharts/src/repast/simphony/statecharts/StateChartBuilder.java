@@ -12,6 +12,7 @@ import java.util.Map.Entry;
 
 public class StateChartBuilder<T> {
 	private double priority = 0;
+	private boolean threadSafe = false;
 	private TransitionResolutionStrategy trs = TransitionResolutionStrategy.PRIORITY;
 
 	private List<BranchState<T>> branches = new ArrayList<BranchState<T>>();
@@ -41,6 +42,18 @@ public class StateChartBuilder<T> {
 		this.priority = priority;
 	}
 
+	/**
+	 * Declares whether the statechart's actions, guards and trigger conditions
+	 * are thread safe, so that it can be resolved concurrently with other
+	 * thread safe statecharts of the same priority.
+	 * 
+	 * @param threadSafe
+	 * @see DefaultStateChart#isThreadSafe()
+	 */
+	public void setThreadSafe(boolean threadSafe) {
+		this.threadSafe = threadSafe;
+	}
+
 	protected void registerEntryState(AbstractState<T> entryState, String uuid) {
 		this.entryState = entryState;
 		addStateToStates(entryState, uuid);
@@ -104,6 +117,8 @@ public class StateChartBuilder<T> {
 
 		// set priority
 		stateChart.setPriority(priority);
+		// set thread safety
+		stateChart.setThreadSafe(threadSafe);
 		// set trs
 		stateChart.setTransitionResolutionStrategy(trs);
 
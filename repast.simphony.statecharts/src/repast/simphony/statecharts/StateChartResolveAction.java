@@ -1,38 +1,42 @@
 package repast.simphony.statecharts;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
 import repast.simphony.engine.schedule.IAction;
 import repast.simphony.random.RandomHelper;
-import repast.simphony.util.SimUtilities;
+import cern.jet.random.Uniform;
 
 public class StateChartResolveAction implements IAction {
 
-	Map<StateChart<?>,Long> scCountsMap = new LinkedHashMap<StateChart<?>,Long>();
+	// the counts are mutable so that registering a listener again doesn't box
+	Map<StateChart<?>,Count> scCountsMap = new LinkedHashMap<StateChart<?>,Count>();
+
+	static class Count {
+		long value;
+	}
 
 	// register listeners
 	public void registerListener(StateChart<?> sc){
-		if (!scCountsMap.containsKey(sc)){
-			scCountsMap.put(sc, 0l);
+		Count count = scCountsMap.get(sc);
+		if (count == null){
+			count = new Count();
+			scCountsMap.put(sc, count);
 		}
-		long l = scCountsMap.get(sc);
-		scCountsMap.put(sc, l + 1);
+		count.value++;
 	}
 	
 	// remove listeners
 	public void removeListener(StateChart<?> sc){
-		if (scCountsMap.containsKey(sc)){
-			long l = scCountsMap.get(sc);
-			if (l <= 1){
+		Count count = scCountsMap.get(sc);
+		if (count != null){
+			if (count.value <= 1){
 				scCountsMap.remove(sc);
 			}
 			else {
-				scCountsMap.put(sc, l - 1);
+				count.value--;
 			}
 		}
 		
@@ -61,22 +65,66 @@ public class StateChartResolveAction implements IAction {
 	
 	// notify listeners
 	protected void notifyListeners(){
-		List<StateChart<?>> temp = new ArrayList<StateChart<?>>(scCountsMap.keySet());
-		SimUtilities.shuffle(temp, RandomHelper.getUniform());
-		Collections.sort(temp,pComp);
+		int size = scCountsMap.size();
+		StateChart<?>[] temp = scCountsMap.keySet().toArray(new StateChart<?>[size]);
+		shuffle(temp, RandomHelper.getUniform());
+		// the sort is stable, so it would leave the shuffled order as it is
+		// when all the priorities are equal
+		if (!isPriorityUniform(temp)){
+			Arrays.sort(temp, pComp);
+		}
 		
-		for(StateChart<?> sc : temp){
-			sc.resolve();
+		int i = 0;
+		while (i < size){
+			// runs of thread safe statecharts of equal priority can be resolved
+			// concurrently
+			int end = i + 1;
+			if (temp[i] instanceof DefaultStateChart && ((DefaultStateChart<?>) temp[i]).isThreadSafe()){
+				double priority = temp[i].getPriority();
+				while (end < size && temp[end] instanceof DefaultStateChart
+						&& ((DefaultStateChart<?>) temp[end]).isThreadSafe()
+						&& temp[end].getPriority() == priority){
+					end++;
+				}
+			}
+			if (end - i > 1){
+				ConcurrentResolve.resolve(temp, i, end);
+			}
+			else {
+				temp[i].resolve();
+			}
+			i = end;
 		}
 		scCountsMap.clear();
 	}
 	
+	// draws the same numbers, and so gives the same order, as
+	// SimUtilities.shuffle does for a list
+	private static void shuffle(Object[] array, Uniform uniform){
+		for (int i = array.length; i > 1; i--){
+			int j = uniform.nextIntFromTo(0, i - 1);
+			Object tmp = array[i - 1];
+			array[i - 1] = array[j];
+			array[j] = tmp;
+		}
+	}
+	
+	private static boolean isPriorityUniform(StateChart<?>[] charts){
+		for (int i = 1; i < charts.length; i++){
+			if (charts[i].getPriority() != charts[0].getPriority()){
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	public boolean hasListeners(){
 		return !scCountsMap.isEmpty();
 	}
 	
 	@Override
 	public void execute() {
+		StateChartScheduler.INSTANCE.startResolving();
 		notifyListeners();
 		StateChartScheduler.INSTANCE.clearOldResolveActions();
 	}
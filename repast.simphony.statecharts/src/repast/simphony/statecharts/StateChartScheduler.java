@@ -1,10 +1,5 @@
 package repast.simphony.statecharts;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.IAction;
 import repast.simphony.engine.schedule.ISchedulableAction;
@@ -25,9 +20,11 @@ public enum StateChartScheduler {
 	INSTANCE;
 
 	private final static long MAX_BEFOFE_CLEAR = 100;
-	protected Map<Double, ResolveActionsMapValue> resolveActions = new HashMap<Double, ResolveActionsMapValue>();
+	// keyed by the primitive tick so that scheduling a resolve time doesn't box
+	// the tick
+	protected TickMap<ResolveActionsMapValue> resolveActions = new TickMap<ResolveActionsMapValue>();
 
-	protected Map<Double, BeginActionsMapValue> beginActions = new HashMap<Double, BeginActionsMapValue>();
+	protected TickMap<BeginActionsMapValue> beginActions = new TickMap<BeginActionsMapValue>();
 	protected DefaultIntegrator integrator = new DefaultIntegrator();
 
 	/**
@@ -114,6 +111,7 @@ public enum StateChartScheduler {
 		shouldInitialize = false;
 		resolveClearCounter = 0;
 		beginClearCounter = 0;
+		lastResolveTime = Double.NEGATIVE_INFINITY;
 
 		// remove resolveActions from schedule
 		for (ResolveActionsMapValue ramv : resolveActions.values()) {
@@ -138,6 +136,26 @@ public enum StateChartScheduler {
 
 	long resolveClearCounter = 0;
 	long beginClearCounter = 0;
+	private double lastResolveTime = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Gets whether the statecharts have been, or are being, resolved at the
+	 * specified time.
+	 * 
+	 * @param time
+	 * @return whether the statecharts have been, or are being, resolved at the
+	 *         specified time.
+	 */
+	protected boolean isResolved(double time) {
+		return Double.compare(lastResolveTime, time) >= 0;
+	}
+
+	// called by StateChartResolveAction before notifying listeners, so that
+	// resolve times scheduled while resolving are after the current time
+	protected void startResolving() {
+		lastResolveTime = RunEnvironment.getInstance().getCurrentSchedule()
+				.getTickCount();
+	}
 
 	// called by StateChartResolveAction after notifying listeners
 	// this allows for the rTime.compareTo(time) <= 0 expression
@@ -147,14 +165,7 @@ public enum StateChartScheduler {
 		if (resolveClearCounter > MAX_BEFOFE_CLEAR) {
 			double time = RunEnvironment.getInstance().getCurrentSchedule()
 					.getTickCount();
-			List<Double> keysToRemove = new ArrayList<Double>();
-			for (Double rTime : resolveActions.keySet()) {
-				if (rTime.compareTo(time) <= 0)
-					keysToRemove.add(rTime);
-			}
-			for (Double key : keysToRemove) {
-				resolveActions.remove(key);
-			}
+			resolveActions.removeAtOrBefore(time);
 			resolveClearCounter = 0;
 		}
 	}
@@ -164,14 +175,7 @@ public enum StateChartScheduler {
 		if (beginClearCounter > MAX_BEFOFE_CLEAR) {
 			double time = RunEnvironment.getInstance().getCurrentSchedule()
 					.getTickCount();
-			List<Double> keysToRemove = new ArrayList<Double>();
-			for (Double rTime : beginActions.keySet()) {
-				if (rTime.compareTo(time) <= 0)
-					keysToRemove.add(rTime);
-			}
-			for (Double key : keysToRemove) {
-				beginActions.remove(key);
-			}
+			beginActions.removeAtOrBefore(time);
 			beginClearCounter = 0;
 		}
 	}
@@ -179,6 +183,9 @@ public enum StateChartScheduler {
 	private boolean shouldInitialize = true;
 
 	protected void scheduleResolveTime(double nextTime, StateChart<?> sc) {
+		if (ConcurrentResolve.record(nextTime, sc, true)) {
+			return;
+		}
 		if (shouldInitialize) {
 			initialize();
 		}
@@ -304,8 +311,11 @@ public enum StateChartScheduler {
 
 	// Called from deactivation of transitions in StateChart
 	protected void removeResolveTime(double nextTime, StateChart<?> sc) {
-		if (resolveActions.containsKey(nextTime)) {
-			ResolveActionsMapValue ramv = resolveActions.get(nextTime);
+		if (ConcurrentResolve.record(nextTime, sc, false)) {
+			return;
+		}
+		ResolveActionsMapValue ramv = resolveActions.get(nextTime);
+		if (ramv != null) {
 			ramv.removeListener(sc);
 			if (ramv.toRemove())
 				resolveActions.remove(nextTime);
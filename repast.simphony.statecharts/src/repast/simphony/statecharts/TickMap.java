@@ -0,0 +1,154 @@
+package repast.simphony.statecharts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A map from tick times to values, keyed by the primitive times so that
+ * looking up the actions of a tick doesn't box the tick. Times are equal when
+ * their bits are, as for Double keys.
+ */
+class TickMap<V> {
+
+	private static final int MIN_CAPACITY = 16;
+
+	// open addressing with linear probing, a null value marks an empty slot
+	private long[] keys = new long[MIN_CAPACITY];
+	private Object[] values = new Object[MIN_CAPACITY];
+	private int size;
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// the hash of a key, whose low bits are the key's home slot
+	static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int indexOf(long key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	public boolean containsKey(double time) {
+		return values[indexOf(Double.doubleToLongBits(time))] != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(double time) {
+		return (V) values[indexOf(Double.doubleToLongBits(time))];
+	}
+
+	public void put(double time, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("TickMap values cannot be null");
+		}
+		long key = Double.doubleToLongBits(time);
+		int i = indexOf(key);
+		if (values[i] == null) {
+			if (2 * (size + 1) > keys.length) {
+				resize(keys.length * 2);
+				i = indexOf(key);
+			}
+			size++;
+		}
+		keys[i] = key;
+		values[i] = value;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(double time) {
+		int i = indexOf(Double.doubleToLongBits(time));
+		Object value = values[i];
+		if (value != null) {
+			removeAt(i);
+		}
+		return (V) value;
+	}
+
+	/**
+	 * Removes the entries for the specified time and all earlier times.
+	 *
+	 * @param time
+	 */
+	public void removeAtOrBefore(double time) {
+		int i = 0;
+		while (i < values.length) {
+			// removing shifts a later entry into i, which is then checked again
+			if (values[i] != null && Double.compare(Double.longBitsToDouble(keys[i]), time) <= 0) {
+				removeAt(i);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	// shifts back the entries that probed past the removed one
+	private void removeAt(int i) {
+		int mask = keys.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (values[j] == null) {
+				break;
+			}
+			int home = hash(keys[j]) & mask;
+			// move j to i unless its home lies cyclically in (i, j]
+			if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		size--;
+	}
+
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(values, null);
+			size = 0;
+		}
+	}
+
+	/**
+	 * Gets the values in no particular order.
+	 *
+	 * @return the values in no particular order.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> list = new ArrayList<V>(size);
+		for (Object value : values) {
+			if (value != null) {
+				list.add((V) value);
+			}
+		}
+		return list;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new long[capacity];
+		values = new Object[capacity];
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = indexOf(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+}
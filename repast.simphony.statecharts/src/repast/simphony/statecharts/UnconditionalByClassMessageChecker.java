@@ -13,5 +13,9 @@ public class UnconditionalByClassMessageChecker implements MessageChecker {
 		return messageClass.isInstance(message);
 	}
 
+	public Class<?> getMessageClass() {
+		return messageClass;
+	}
+
 
 }
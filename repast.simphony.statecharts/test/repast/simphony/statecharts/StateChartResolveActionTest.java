@@ -1,7 +1,10 @@
 package repast.simphony.statecharts;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -12,6 +15,7 @@ import repast.simphony.engine.environment.RunEnvironment;
 import repast.simphony.engine.schedule.ISchedule;
 import repast.simphony.engine.schedule.Schedule;
 import repast.simphony.engine.schedule.ScheduleParameters;
+import repast.simphony.random.RandomHelper;
 
 public class StateChartResolveActionTest {
 
@@ -50,6 +54,52 @@ public class StateChartResolveActionTest {
 	private static class TestClass {
 		public boolean resolved;
 	}
+	
+	// draws from the concurrent resolve stream when resolved
+	private static class ThreadSafeStateChart extends DefaultStateChart<Object> {
+		
+		double[] draws;
+		int index;
+		
+		public ThreadSafeStateChart(double[] draws, int index){
+			super(null);
+			this.draws = draws;
+			this.index = index;
+			setThreadSafe(true);
+		}
+		
+		@Override
+		public void resolve() {
+			double sum = 0;
+			for (int i = 0; i < 10; i++) {
+				sum += ConcurrentResolve.getUniform().nextDouble();
+			}
+			draws[index] = sum;
+		}
+	}
+	
+	// resolves many thread safe statecharts on a pool with the specified
+	// parallelism and returns the numbers they drew
+	private double[] resolveThreadSafe(int parallelism) {
+		RunEnvironment.init(new Schedule(), null, null, false);
+		RandomHelper.setSeed(42);
+		double[] draws = new double[1000];
+		StateChartResolveAction scra = new StateChartResolveAction();
+		for (int i = 0; i < draws.length; i++) {
+			scra.registerListener(new ThreadSafeStateChart(draws, i));
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		ConcurrentResolve.pool = pool;
+		try {
+			ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+			schedule.schedule(ScheduleParameters.createOneTime(1), scra);
+			schedule.execute();
+		} finally {
+			ConcurrentResolve.pool = null;
+			pool.shutdown();
+		}
+		return draws;
+	}
 
 	@Test
 	public void testRegisterStateChartListener() {
@@ -126,6 +176,15 @@ public class StateChartResolveActionTest {
 		assertEquals(false, tc1.resolved);
 		assertEquals(true, tc2.resolved);
 	}
-
+	
+	@Test
+	public void testThreadSafeParallelism() {
+		double[] serial = resolveThreadSafe(1);
+		for (double draw : serial) {
+			assertEquals(true, draw > 0);
+		}
+		assertArrayEquals(serial, resolveThreadSafe(4), 0);
+		assertArrayEquals(serial, resolveThreadSafe(7), 0);
+	}
 
 }
@@ -1,6 +1,7 @@
 package repast.simphony.statecharts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -652,6 +653,254 @@ public class StateChartTest {
 
   }
 
+  /**
+   * For testing condition triggers evaluated on invalidation.
+   */
+  private static class MyStateChart5b extends DefaultStateChart<MyAgent5b> {
+
+    public MyStateChart5b(final MyAgent5b a) {
+      super(a);
+      SimpleState<MyAgent5b> one = new SimpleStateBuilder<MyAgent5b>("one").build();
+      this.registerEntryState(one);
+      SimpleState<MyAgent5b> two = new SimpleStateBuilder<MyAgent5b>("two").build();
+      Trigger tr1 = new ConditionTrigger<MyAgent5b>(new ConditionTriggerCondition<MyAgent5b>() {
+
+        @Override
+        public boolean condition(MyAgent5b agent, Transition<MyAgent5b> transition,
+            Parameters params) throws Exception {
+          a.evaluations++;
+          return a.isTrue;
+        }
+
+      }, a.pollingTime, false);
+      TransitionBuilder<MyAgent5b> tb = new TransitionBuilder<MyAgent5b>(one, two);
+      tb.addTrigger(tr1);
+      this.addRegularTransition(tb.build());
+    }
+  }
+
+  private static class MyAgent5b {
+
+    public boolean isTrue = false;
+    public int evaluations = 0;
+    public double pollingTime = 2;
+    public DefaultStateChart<MyAgent5b> st;
+
+    @SuppressWarnings("unused")
+    public void setup() {
+      st = new MyStateChart5b(this);
+      st.begin(new Integrator());
+    }
+
+    @SuppressWarnings("unused")
+    public void step() {
+    }
+
+    @SuppressWarnings("unused")
+    public void setTrue() {
+      isTrue = true;
+      st.invalidateConditions();
+    }
+  }
+
+  /**
+   * The condition is only evaluated on entering the state and at the polling
+   * time following an invalidation.
+   */
+  @Test
+  public void myStateChart5bScenario1() {
+    MyAgent5b a = new MyAgent5b();
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.schedule(ScheduleParameters.createRepeating(2, 1), a, "step");
+    schedule.schedule(ScheduleParameters.createOneTime(4), a, "setTrue");
+    for (int i = 0; i < 3; i++) {
+      schedule.execute();
+      assertEquals("one", a.st.getCurrentSimpleState().getId());
+      assertEquals(1, a.evaluations);
+    }
+    assertEquals(3, schedule.getTickCount(), 0.0001);
+    schedule.execute();
+    assertEquals(4, schedule.getTickCount(), 0.0001);
+    assertEquals("one", a.st.getCurrentSimpleState().getId());
+    schedule.execute();
+    assertEquals(5, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+    assertEquals(2, a.evaluations);
+  }
+
+  /**
+   * An invalidation at a polling time, before the statecharts are resolved,
+   * is evaluated at that time.
+   */
+  @Test
+  public void myStateChart5bScenario2() {
+    MyAgent5b a = new MyAgent5b();
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.schedule(ScheduleParameters.createRepeating(2, 1), a, "step");
+    schedule.schedule(ScheduleParameters.createOneTime(3), a, "setTrue");
+    schedule.execute();
+    schedule.execute();
+    assertEquals("one", a.st.getCurrentSimpleState().getId());
+    schedule.execute();
+    assertEquals(3, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+    assertEquals(2, a.evaluations);
+  }
+
+  /**
+   * An invalidation many polling times after the state was entered is
+   * evaluated at the following polling time.
+   */
+  @Test
+  public void myStateChart5bScenario3() {
+    MyAgent5b a = new MyAgent5b();
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.schedule(ScheduleParameters.createOneTime(1000000.5), a, "setTrue");
+    schedule.execute();
+    schedule.execute();
+    assertEquals(1000000.5, schedule.getTickCount(), 0.0001);
+    assertEquals("one", a.st.getCurrentSimpleState().getId());
+    schedule.execute();
+    assertEquals(1000001, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+    assertEquals(2, a.evaluations);
+  }
+
+  /**
+   * As above, with a polling time that isn't a whole number of ticks.
+   */
+  @Test
+  public void myStateChart5bScenario4() {
+    MyAgent5b a = new MyAgent5b();
+    a.pollingTime = 0.3;
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.schedule(ScheduleParameters.createOneTime(100.05), a, "setTrue");
+    schedule.execute();
+    schedule.execute();
+    assertEquals("one", a.st.getCurrentSimpleState().getId());
+    schedule.execute();
+    assertEquals(100.3, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+    assertEquals(2, a.evaluations);
+  }
+
+  /**
+   * Triggers that aren't polling need a positive polling time.
+   */
+  @Test
+  public void nonPollingTriggerPollingTimes() {
+    for (double pollingTime : new double[] { 0, -1, Double.NaN }) {
+      try {
+        new ConditionTrigger<MyAgent5b>(null, pollingTime, false);
+        fail();
+      } catch (IllegalArgumentException e) {
+      }
+      try {
+        new MessageTrigger<MyAgent5c>(null, pollingTime, false);
+        fail();
+      } catch (IllegalArgumentException e) {
+      }
+      ConditionTrigger<MyAgent5b> ct = new ConditionTrigger<MyAgent5b>(null, 1, false);
+      try {
+        ct.setInterval(pollingTime);
+        fail();
+      } catch (IllegalArgumentException e) {
+      }
+    }
+    // polling triggers are unchanged
+    new ConditionTrigger<MyAgent5b>(null, 0, true).setInterval(0);
+    new MessageTrigger<MyAgent5c>(null, 0, true).setInterval(0);
+  }
+
+  /**
+   * For testing message triggers checked on receipt.
+   */
+  private static class MyStateChart5c extends DefaultStateChart<MyAgent5c> {
+
+    public MyStateChart5c(final MyAgent5c a) {
+      super(a);
+      SimpleState<MyAgent5c> one = new SimpleStateBuilder<MyAgent5c>("one").build();
+      this.registerEntryState(one);
+      SimpleState<MyAgent5c> two = new SimpleStateBuilder<MyAgent5c>("two").build();
+      Trigger tr1 = new MessageTrigger<MyAgent5c>(new MessageEqualsMessageChecker<MyAgent5c, String>(
+          "go", String.class), 2, false);
+      TransitionBuilder<MyAgent5c> tb = new TransitionBuilder<MyAgent5c>(one, two);
+      tb.addTrigger(tr1);
+      this.addRegularTransition(tb.build());
+    }
+  }
+
+  private static class MyAgent5c {
+
+    public DefaultStateChart<MyAgent5c> st;
+
+    @SuppressWarnings("unused")
+    public void setup() {
+      st = new MyStateChart5c(this);
+      st.begin(new Integrator());
+    }
+
+    @SuppressWarnings("unused")
+    public void step() {
+    }
+
+    @SuppressWarnings("unused")
+    public void send() {
+      st.receiveMessage(1);
+      st.receiveMessage("stay");
+      st.receiveMessage("go");
+    }
+  }
+
+  /**
+   * The messages received are checked together at the following polling
+   * time.
+   */
+  @Test
+  public void myStateChart5cScenario1() {
+    MyAgent5c a = new MyAgent5c();
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.schedule(ScheduleParameters.createRepeating(2, 1), a, "step");
+    schedule.schedule(ScheduleParameters.createOneTime(4), a, "send");
+    for (int i = 0; i < 4; i++) {
+      schedule.execute();
+      assertEquals("one", a.st.getCurrentSimpleState().getId());
+    }
+    assertEquals(4, schedule.getTickCount(), 0.0001);
+    assertEquals(3, a.st.getQueue().size());
+    assertEquals(true, StateChartScheduler.INSTANCE.resolveActions.containsKey(5d));
+    schedule.execute();
+    assertEquals(5, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+    assertEquals(true, a.st.getQueue().isEmpty());
+  }
+
+  /**
+   * Messages received many polling times after the state was entered are
+   * checked at the following polling time.
+   */
+  @Test
+  public void myStateChart5cScenario2() {
+    MyAgent5c a = new MyAgent5c();
+    ISchedule schedule = RunEnvironment.getInstance().getCurrentSchedule();
+    schedule.schedule(ScheduleParameters.createOneTime(1), a, "setup");
+    schedule.schedule(ScheduleParameters.createOneTime(1000000.5), a, "send");
+    schedule.execute();
+    schedule.execute();
+    assertEquals(1000000.5, schedule.getTickCount(), 0.0001);
+    assertEquals("one", a.st.getCurrentSimpleState().getId());
+    assertEquals(true, StateChartScheduler.INSTANCE.resolveActions.containsKey(1000001d));
+    schedule.execute();
+    assertEquals(1000001, schedule.getTickCount(), 0.0001);
+    assertEquals("two", a.st.getCurrentSimpleState().getId());
+    assertEquals(true, a.st.getQueue().isEmpty());
+  }
+
   /**
    * For testing branching transitions.
    * 
@@ -0,0 +1,127 @@
+package repast.simphony.statecharts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TickMapTest {
+
+	// the capacity of a new TickMap, which holds up to half as many entries
+	// without resizing
+	private static final int CAPACITY = 16;
+
+	// finds times whose home slot in a new TickMap is the specified slot
+	private List<Double> timesWithHome(int home, int count, double start) {
+		List<Double> times = new ArrayList<Double>();
+		for (double time = start; times.size() < count; time += 0.5) {
+			if ((TickMap.hash(Double.doubleToLongBits(time)) & (CAPACITY - 1)) == home) {
+				times.add(time);
+			}
+		}
+		return times;
+	}
+
+	private void assertSameEntries(Map<Double, String> expected, TickMap<String> map) {
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Double, String> entry : expected.entrySet()) {
+			assertTrue(map.containsKey(entry.getKey()));
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		assertEquals(expected.size(), map.values().size());
+		assertTrue(map.values().containsAll(expected.values()));
+	}
+
+	@Test
+	public void testRemoveFromWrappedCluster() {
+		// a cluster that starts in the last slot and wraps around to the first
+		// ones, followed by an entry whose home is the first slot
+		List<Double> last = timesWithHome(CAPACITY - 1, 4, 1);
+		List<Double> first = timesWithHome(0, 2, 1);
+		List<Double> times = new ArrayList<Double>(last);
+		times.addAll(first);
+
+		for (int removed = 0; removed < times.size(); removed++) {
+			TickMap<String> map = new TickMap<String>();
+			Map<Double, String> expected = new HashMap<Double, String>();
+			for (double time : times) {
+				map.put(time, "v" + time);
+				expected.put(time, "v" + time);
+			}
+			assertSameEntries(expected, map);
+
+			// removing shifts back the entries after it, across the wrap
+			double time = times.get(removed);
+			assertEquals("v" + time, map.remove(time));
+			expected.remove(time);
+			assertFalse(map.containsKey(time));
+			assertNull(map.get(time));
+			assertSameEntries(expected, map);
+
+			// and the remaining entries can still be removed one by one
+			for (Iterator<Double> iter = expected.keySet().iterator(); iter.hasNext();) {
+				double next = iter.next();
+				assertEquals("v" + next, map.remove(next));
+				iter.remove();
+				assertSameEntries(expected, map);
+			}
+			assertTrue(map.isEmpty());
+		}
+	}
+
+	@Test
+	public void testRemoveAtOrBeforeWrappedCluster() {
+		List<Double> times = new ArrayList<Double>(timesWithHome(CAPACITY - 1, 4, 1));
+		times.addAll(timesWithHome(0, 2, 1));
+		times.addAll(timesWithHome(1, 2, 1));
+
+		List<Double> sorted = new ArrayList<Double>(times);
+		Collections.sort(sorted);
+		for (int k = 0; k <= sorted.size(); k++) {
+			// remove at or before each of the times in turn, and before all of them
+			double limit = k < sorted.size() ? sorted.get(k) : sorted.get(0) - 1;
+			TickMap<String> map = new TickMap<String>();
+			Map<Double, String> expected = new HashMap<Double, String>();
+			for (double time : times) {
+				map.put(time, "v" + time);
+				if (time > limit) {
+					expected.put(time, "v" + time);
+				}
+			}
+			map.removeAtOrBefore(limit);
+			assertSameEntries(expected, map);
+		}
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		Random random = new Random(1);
+		TickMap<String> map = new TickMap<String>();
+		Map<Double, String> expected = new HashMap<Double, String>();
+		for (int i = 0; i < 20000; i++) {
+			// few distinct times so that there are many collisions
+			double time = random.nextInt(64) / 2.0;
+			int op = random.nextInt(10);
+			if (op < 5) {
+				map.put(time, "v" + i);
+				expected.put(time, "v" + i);
+			} else if (op < 9) {
+				assertEquals(expected.remove(time), map.remove(time));
+			} else {
+				map.removeAtOrBefore(time);
+				expected.keySet().removeIf(t -> t <= time);
+			}
+			assertSameEntries(expected, map);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ *
+ */
+package repast.simphony.visualization;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import repast.simphony.valueLayer.GridValueLayer;
+import repast.simphony.valueLayer.ValueLayer;
+
+/**
+ * Repaints the cells of a 2D value layer display whose values have changed
+ * since the previous repaint. If the layer is a GridValueLayer and its style is
+ * an {@link IncrementalValueLayerStyle}, only the cells in the layer's changed
+ * tiles are repainted, unless most of the tiles have changed, in which case the
+ * whole layer is repainted in parallel. Otherwise every cell is repainted on
+ * every refresh.
+ * <p>
+ * Cells are identified by their x, y location counted from the layer's origin,
+ * that is, the location of a cell in the layer's coordinates plus the origin.
+ *
+ * @author Nick Collier
+ */
+public class DirtyTileRefresher {
+
+  /**
+   * Paints a single cell of a value layer display.
+   */
+  public interface CellPainter {
+
+    /**
+     * Paints the cell at the specified location. When painting in parallel this
+     * is called concurrently for different cells.
+     *
+     * @param x
+     *          the x location of the cell counted from the origin of the layer
+     * @param y
+     *          the y location of the cell counted from the origin of the layer
+     */
+    void paint(int x, int y);
+  }
+
+  /**
+   * Layers with at least this many cells are fully repainted in parallel.
+   */
+  public static final int PARALLEL_THRESHOLD = 4096;
+
+  // the number of cells painted by a single task
+  private static final int CHUNK_SIZE = 2048;
+
+  private class PaintTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private CellPainter painter;
+    private int start, end;
+
+    public PaintTask(CellPainter painter, int start, int end) {
+      this.painter = painter;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if ((end - start) * yDim <= CHUNK_SIZE || end - start == 1) {
+        paint(painter, start, end, 0, yDim);
+      } else {
+        int mid = (start + end) >>> 1;
+        invokeAll(new PaintTask(painter, start, mid), new PaintTask(painter, mid, end));
+      }
+    }
+  }
+
+  // null if changes are not tracked
+  private GridValueLayer gridLayer;
+  private int xDim, yDim;
+  private boolean incremental;
+  private long lastCount = -1;
+  private int[] dirtyTiles;
+
+  /**
+   * Creates a DirtyTileRefresher for a display of the specified size.
+   *
+   * @param layer
+   *          the displayed layer
+   * @param style
+   *          the style of the displayed layer
+   * @param xDim
+   *          the number of cells in the x dimension of the display
+   * @param yDim
+   *          the number of cells in the y dimension of the display
+   */
+  public DirtyTileRefresher(ValueLayer layer, Object style, int xDim, int yDim) {
+    this.xDim = xDim;
+    this.yDim = yDim;
+    incremental = style instanceof IncrementalValueLayerStyle;
+    if (incremental && layer instanceof GridValueLayer) {
+      gridLayer = (GridValueLayer) layer;
+    }
+  }
+
+  /**
+   * Repaints the cells that have changed since the previous refresh. The first
+   * refresh repaints every cell.
+   *
+   * @param painter
+   *          the painter used to paint the cells
+   * @return true if any cells were repainted, otherwise false.
+   */
+  public boolean refresh(CellPainter painter) {
+    long count = gridLayer == null ? -1 : gridLayer.getModificationCount();
+    if (count < 0 || lastCount < 0) {
+      paintAll(painter);
+    } else if (count == lastCount) {
+      return false;
+    } else {
+      int tileCountX = gridLayer.getTileCountX();
+      int tileCountY = gridLayer.getTileCountY();
+      if (dirtyTiles == null)
+        dirtyTiles = new int[tileCountX * tileCountY];
+      int dirtyCount = 0;
+      for (int tx = 0; tx < tileCountX; tx++) {
+        for (int ty = 0; ty < tileCountY; ty++) {
+          if (gridLayer.getTileModificationCount(tx, ty) > lastCount) {
+            dirtyTiles[dirtyCount++] = tx * tileCountY + ty;
+          }
+        }
+      }
+
+      if (dirtyCount * 2 > dirtyTiles.length) {
+        paintAll(painter);
+      } else {
+        int size = GridValueLayer.TILE_SIZE;
+        for (int i = 0; i < dirtyCount; i++) {
+          int x = dirtyTiles[i] / tileCountY * size;
+          int y = dirtyTiles[i] % tileCountY * size;
+          paint(painter, x, Math.min(x + size, xDim), y, Math.min(y + size, yDim));
+        }
+      }
+    }
+    lastCount = count;
+    return true;
+  }
+
+  /**
+   * Marks every cell as changed so that the next refresh repaints all of them.
+   */
+  public void invalidate() {
+    lastCount = -1;
+  }
+
+  private void paintAll(CellPainter painter) {
+    if (incremental && xDim * yDim >= PARALLEL_THRESHOLD
+        && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ForkJoinPool.commonPool().invoke(new PaintTask(painter, 0, xDim));
+    } else {
+      paint(painter, 0, xDim, 0, yDim);
+    }
+  }
+
+  private void paint(CellPainter painter, int xStart, int xEnd, int yStart, int yEnd) {
+    for (int x = xStart; x < xEnd; x++) {
+      for (int y = yStart; y < yEnd; y++) {
+        painter.paint(x, y);
+      }
+    }
+  }
+}
@@ -0,0 +1,21 @@
+/**
+ *
+ */
+package repast.simphony.visualization;
+
+/**
+ * Marker interface for value layer styles whose color for a cell depends only
+ * on that cell's value, and whose color methods are thread safe. Displays cache
+ * the colors of such styles, and on update recompute only the colors of cells
+ * that a GridValueLayer reports as changed since the previous update. When most
+ * of the layer has changed the colors are recomputed in parallel.
+ * <p>
+ * Styles whose colors depend on anything else, for example on the tick count,
+ * on the values of neighboring cells or on another layer, must not implement
+ * this, as their colors would not be recomputed when that changes.
+ *
+ * @author Nick Collier
+ */
+public interface IncrementalValueLayerStyle {
+
+}
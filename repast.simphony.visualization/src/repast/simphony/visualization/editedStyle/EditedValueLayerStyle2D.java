@@ -3,6 +3,7 @@ package repast.simphony.visualization.editedStyle;
 import java.awt.Paint;
 
 import repast.simphony.valueLayer.ValueLayer;
+import repast.simphony.visualization.IncrementalValueLayerStyle;
 import repast.simphony.visualization.visualization2D.style.ValueLayerStyle;
 
 /**
@@ -10,7 +11,7 @@ import repast.simphony.visualization.visualization2D.style.ValueLayerStyle;
  * @author Eric Tatara
  *
  */
-public class EditedValueLayerStyle2D implements ValueLayerStyle {
+public class EditedValueLayerStyle2D implements ValueLayerStyle, IncrementalValueLayerStyle {
 	protected ValueLayer layer;
 	protected EditedValueLayerStyleData innerStyle;
 
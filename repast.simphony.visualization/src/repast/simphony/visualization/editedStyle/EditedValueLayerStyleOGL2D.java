@@ -6,6 +6,7 @@ package repast.simphony.visualization.editedStyle;
 import java.awt.Color;
 
 import repast.simphony.valueLayer.ValueLayer;
+import repast.simphony.visualization.IncrementalValueLayerStyle;
 import repast.simphony.visualizationOGL2D.ValueLayerStyleOGL;
 
 /**
@@ -13,7 +14,7 @@ import repast.simphony.visualizationOGL2D.ValueLayerStyleOGL;
  * 
  * @author Nick Collier
  */
-public class EditedValueLayerStyleOGL2D implements ValueLayerStyleOGL {
+public class EditedValueLayerStyleOGL2D implements ValueLayerStyleOGL, IncrementalValueLayerStyle {
 
   private ValueLayer valueLayer;
   private EditedValueLayerStyleData data;
@@ -15,8 +15,11 @@ import repast.simphony.engine.environment.RunState;
 import repast.simphony.engine.schedule.IAction;
 import repast.simphony.engine.schedule.ISchedulableAction;
 import repast.simphony.engine.schedule.NonModelAction;
+import repast.simphony.engine.schedule.ScheduleParameters;
 import repast.simphony.parameter.Parameters;
 import repast.simphony.visualization.IDisplay;
+import repast.simphony.visualization.offscreen.FrameSink;
+import repast.simphony.visualization.offscreen.OffscreenSettings;
 import simphony.util.messages.MessageCenter;
 
 /**
@@ -128,6 +131,48 @@ public class DisplayComponentControllerAction extends DefaultControllerAction im
       } catch (Exception ex) {
         msg.error("Error while creating displays", ex);
       }
+    } else {
+      initializeOffscreen(runState, contextId);
+    }
+  }
+
+  // creates an offscreen display for batch runs if offscreen
+  // rendering has been turned on
+  private void initializeOffscreen(RunState runState, Object contextId) {
+    if (!descriptor.getDisplayType().equals(DisplayType.TWO_D))
+      return;
+
+    OffscreenSettings settings;
+    try {
+      settings = OffscreenSettings.fromSystemProperties();
+    } catch (IllegalArgumentException ex) {
+      msg.error("Invalid offscreen display settings", ex);
+      return;
+    }
+    if (settings == null)
+      return;
+
+    FrameSink sink = null;
+    try {
+      sink = settings.createSink(descriptor.getName(), runState.getRunInfo());
+      IDisplay display = new DisplayProducer(contextId, runState, descriptor).createOffscreenDisplay(
+          sink, settings.getWidth(), settings.getHeight());
+      display.init();
+      ScheduleParameters params = descriptor.getScheduleParameters();
+      if (settings.getInterval() > 0)
+        params = ScheduleParameters.createRepeating(params.getStart(), settings.getInterval(),
+            params.getPriority());
+      DisplayUpdater updater = new DisplayUpdater(display);
+      displayUpdate = runState.getScheduleRegistry().getModelSchedule().schedule(params, updater);
+      displays.add(updater);
+    } catch (Exception ex) {
+      msg.error("Error while creating offscreen displays", ex);
+      if (sink != null && displays.isEmpty()) {
+        try {
+          sink.close();
+        } catch (Exception e) {
+        }
+      }
     }
   }
 
@@ -64,6 +64,7 @@ public class DisplayCreatorOGL2D extends AbstractCartesianDisplayCreator {
         layout = new NullLayout();
 
       final DisplayOGL2D display = new DisplayOGL2D(data, layout);
+      display.setAsynchronous(Boolean.getBoolean(DisplayOGL2D.ASYNC_PROPERTY));
 
      
       // do vl style first so its at the back
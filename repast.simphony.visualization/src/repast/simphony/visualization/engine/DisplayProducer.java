@@ -6,6 +6,7 @@ import java.lang.reflect.InvocationTargetException;
 import repast.simphony.context.Context;
 import repast.simphony.engine.environment.RunState;
 import repast.simphony.visualization.IDisplay;
+import repast.simphony.visualization.offscreen.FrameSink;
 import simphony.util.messages.MessageCenter;
 
 /**
@@ -72,4 +73,26 @@ public class DisplayProducer {
     
     return null;
   }
+
+  /**
+   * Creates an offscreen display that renders the descriptor's display to the
+   * specified sink. Only 2D displays can be rendered offscreen.
+   *
+   * @param sink
+   *          the sink to write the rendered frames to
+   * @param width
+   *          the width of the rendered frames
+   * @param height
+   *          the height of the rendered frames
+   * @return the created display, or null if the descriptor's display type
+   *         cannot be rendered offscreen.
+   * @throws DisplayCreationException
+   */
+  public IDisplay createOffscreenDisplay(FrameSink sink, int width, int height)
+      throws DisplayCreationException {
+    if (displayDescriptor.getDisplayType().equals(DisplayType.TWO_D))
+      return new OffscreenDisplayCreatorOGL2D(context,
+          (CartesianDisplayDescriptor) displayDescriptor, sink, width, height).createDisplay();
+    return null;
+  }
 }
\ No newline at end of file
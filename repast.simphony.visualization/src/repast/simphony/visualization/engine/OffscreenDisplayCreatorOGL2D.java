@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package repast.simphony.visualization.engine;
+
+import java.awt.Color;
+
+import repast.simphony.context.Context;
+import repast.simphony.space.graph.Network;
+import repast.simphony.valueLayer.ValueLayer;
+import repast.simphony.visualization.DefaultDisplayData;
+import repast.simphony.visualization.IDisplay;
+import repast.simphony.visualization.Layout;
+import repast.simphony.visualization.NullLayout;
+import repast.simphony.visualization.offscreen.FrameSink;
+import repast.simphony.visualization.offscreen.OffscreenDisplayOGL2D;
+import repast.simphony.visualizationOGL2D.EdgeStyleOGL2D;
+import repast.simphony.visualizationOGL2D.StyleOGL2D;
+import repast.simphony.visualizationOGL2D.ValueLayerStyleOGL;
+
+/**
+ * Creator for offscreen 2D displays. The display is created from the same
+ * descriptor and styles as the DisplayOGL2D created by DisplayCreatorOGL2D, but
+ * renders to a FrameSink rather than to the screen. Projection decorators are
+ * not rendered.
+ *
+ * @author Nick Collier
+ */
+public class OffscreenDisplayCreatorOGL2D extends AbstractCartesianDisplayCreator {
+
+  private FrameSink sink;
+  private int width, height;
+
+  /**
+   * @param context
+   * @param descriptor
+   * @param sink
+   *          the sink the display will write its frames to
+   * @param width
+   *          the width of the rendered frames
+   * @param height
+   *          the height of the rendered frames
+   */
+  public OffscreenDisplayCreatorOGL2D(Context<?> context, CartesianDisplayDescriptor descriptor,
+      FrameSink sink, int width, int height) {
+    super(context, descriptor);
+    this.sink = sink;
+    this.width = width;
+    this.height = height;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.engine.DisplayCreator#createDisplay()
+   */
+  public IDisplay createDisplay() throws DisplayCreationException {
+    try {
+      DefaultDisplayData<?> data = createDisplayData();
+      Layout<?, ?> layout = null;
+      if (data.getProjectionCount() > 0) {
+        String layoutProj = descriptor.getLayoutProjection();
+        ProjectionDescriptor projDesc = descriptor.getProjectionDescriptor(layoutProj);
+        String layoutClassName = projDesc.getImpliedLayout2D();
+        layout = createLayout(layoutClassName);
+      } else
+        layout = new NullLayout();
+
+      final OffscreenDisplayOGL2D display = new OffscreenDisplayOGL2D(data, layout, sink, width,
+          height);
+
+      // do vl style first so its at the back
+      VLStyleRegistrarOGL2D vlReg = new VLStyleRegistrarOGL2D();
+      vlReg.registerValueLayerStyle(new VLStyleRegistrar.Registrar<ValueLayerStyleOGL>() {
+        public void register(ValueLayerStyleOGL style, ValueLayer layer) {
+          display.registerValueLayerStyle(layer, style);
+        }
+      }, descriptor, context);
+
+      StyleRegistrarOGL2D styleReg = new StyleRegistrarOGL2D();
+      styleReg.registerStyles(new StyleRegistrar.Registrar<StyleOGL2D<?>>() {
+        public void register(Class<?> agentClass, StyleOGL2D<?> style) {
+          display.registerStyle(agentClass, style);
+        }
+      }, descriptor);
+
+      NetworkStyleRegistrarOGL2D netReg = new NetworkStyleRegistrarOGL2D();
+      netReg.registerNetworkStyles(new NetworkStyleRegistrar.Registrar<EdgeStyleOGL2D>() {
+        public void register(Network<?> network, EdgeStyleOGL2D style) {
+          display.registerNetworkStyle(network, style);
+        }
+      }, descriptor, context);
+
+      display.setLayoutFrequency(descriptor.getLayoutFrqeuency(), descriptor.getLayoutInterval());
+      Color color = descriptor.getBackgroundColor();
+      if (color != null)
+        display.setBackgroundColor(color);
+      return display;
+    } catch (Exception ex) {
+      throw new DisplayCreationException(ex);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package repast.simphony.visualization.offscreen;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Receives the frames rendered by an offscreen display. Frames are written from
+ * the display's render thread, one at a time and in tick order, and the image is
+ * reused for the next frame once writeFrame returns.
+ *
+ * @author Nick Collier
+ */
+public interface FrameSink {
+
+  /**
+   * Writes the specified frame.
+   *
+   * @param image
+   *          the rendered frame
+   * @param tick
+   *          the tick at which the frame was captured
+   * @throws IOException
+   *           if there is an error while writing the frame
+   */
+  void writeFrame(BufferedImage image, double tick) throws IOException;
+
+  /**
+   * Closes this sink, finishing any output. No frames will be written after
+   * this is called.
+   *
+   * @throws IOException
+   *           if there is an error while finishing the output
+   */
+  void close() throws IOException;
+}
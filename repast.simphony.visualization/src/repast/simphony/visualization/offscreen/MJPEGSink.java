@@ -0,0 +1,258 @@
+/**
+ *
+ */
+package repast.simphony.visualization.offscreen;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * FrameSink that writes the frames as a motion jpeg avi movie. Each frame is
+ * jpeg compressed with the standard ImageIO writer, so no native codecs are
+ * required. The frames must all be the same size.
+ *
+ * @author Nick Collier
+ */
+public class MJPEGSink implements FrameSink {
+
+  private static final int AVIF_HASINDEX = 0x10;
+  private static final int AVIIF_KEYFRAME = 0x10;
+
+  // offsets of the fields that are filled in on close
+  private static final int RIFF_SIZE_OFFSET = 4;
+  private static final int AVIH_FRAMES_OFFSET = 48;
+  private static final int AVIH_BUFFER_OFFSET = 60;
+  private static final int STRH_LENGTH_OFFSET = 140;
+  private static final int STRH_BUFFER_OFFSET = 144;
+  private static final int MOVI_SIZE_OFFSET = 216;
+  private static final int MOVI_START = 220;
+
+  private RandomAccessFile out;
+  private int fps;
+  private float quality;
+  private int width = -1, height = -1;
+  private int frames = 0, maxFrameSize = 0;
+  private long moviEnd = MOVI_START + 4;
+
+  // index entries, 4 ints per frame
+  private ByteBuffer index = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+  private ImageWriter writer;
+  private ImageWriteParam param;
+  private ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+
+  /**
+   * Creates a MJPEGSink that writes a movie with the specified frame rate to
+   * the specified file.
+   *
+   * @param file
+   *          the file to write to
+   * @param fps
+   *          the frame rate of the movie
+   * @param quality
+   *          the jpeg compression quality, between 0 and 1
+   * @throws IOException
+   *           if the file cannot be created
+   */
+  public MJPEGSink(File file, int fps, float quality) throws IOException {
+    if (fps < 1)
+      throw new IllegalArgumentException("Frame rate must be at least 1");
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.exists() && !parent.mkdirs())
+      throw new IOException("Unable to create movie directory '" + parent + "'");
+
+    Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpeg");
+    if (!iter.hasNext())
+      throw new IOException("No jpeg writer available");
+    writer = iter.next();
+    param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(quality);
+
+    this.fps = fps;
+    this.quality = quality;
+    out = new RandomAccessFile(file, "rw");
+    out.setLength(0);
+  }
+
+  /**
+   * Gets the jpeg compression quality.
+   *
+   * @return the jpeg compression quality.
+   */
+  public float getQuality() {
+    return quality;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.visualization.offscreen.FrameSink#writeFrame(java.awt.image
+   * .BufferedImage, double)
+   */
+  public void writeFrame(BufferedImage image, double tick) throws IOException {
+    if (width == -1) {
+      width = image.getWidth();
+      height = image.getHeight();
+      writeHeader();
+    } else if (image.getWidth() != width || image.getHeight() != height) {
+      throw new IOException("Movie frames must all be " + width + "x" + height);
+    }
+
+    jpeg.reset();
+    ImageOutputStream ios = new MemoryCacheImageOutputStream(jpeg);
+    writer.setOutput(ios);
+    writer.write(null, new IIOImage(image, null, null), param);
+    ios.close();
+
+    int size = jpeg.size();
+    out.seek(moviEnd);
+    out.write(fourCC("00dc"));
+    out.write(le(size));
+    jpeg.writeTo(new RandomAccessFileStream(out));
+    if (size % 2 == 1)
+      out.write(0);
+
+    if (index.remaining() < 16) {
+      ByteBuffer tmp = ByteBuffer.allocate(index.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+      index.flip();
+      tmp.put(index);
+      index = tmp;
+    }
+    index.put(fourCC("00dc"));
+    index.putInt(AVIIF_KEYFRAME);
+    // offset is relative to the 'movi' list type
+    index.putInt((int) (moviEnd - MOVI_START));
+    index.putInt(size);
+
+    moviEnd += 8 + size + (size % 2);
+    maxFrameSize = Math.max(maxFrameSize, size);
+    frames++;
+  }
+
+  private void writeHeader() throws IOException {
+    ByteBuffer buf = ByteBuffer.allocate(MOVI_START + 4).order(ByteOrder.LITTLE_ENDIAN);
+    buf.put(fourCC("RIFF")).putInt(0).put(fourCC("AVI "));
+
+    buf.put(fourCC("LIST")).putInt(192).put(fourCC("hdrl"));
+    buf.put(fourCC("avih")).putInt(56);
+    buf.putInt(1000000 / fps); // microseconds per frame
+    buf.putInt(0); // max bytes per second
+    buf.putInt(0); // padding granularity
+    buf.putInt(AVIF_HASINDEX);
+    buf.putInt(0); // total frames
+    buf.putInt(0); // initial frames
+    buf.putInt(1); // streams
+    buf.putInt(0); // suggested buffer size
+    buf.putInt(width).putInt(height);
+    buf.putInt(0).putInt(0).putInt(0).putInt(0);
+
+    buf.put(fourCC("LIST")).putInt(116).put(fourCC("strl"));
+    buf.put(fourCC("strh")).putInt(56);
+    buf.put(fourCC("vids")).put(fourCC("MJPG"));
+    buf.putInt(0); // flags
+    buf.putShort((short) 0).putShort((short) 0); // priority, language
+    buf.putInt(0); // initial frames
+    buf.putInt(1).putInt(fps); // scale and rate
+    buf.putInt(0); // start
+    buf.putInt(0); // length
+    buf.putInt(0); // suggested buffer size
+    buf.putInt(-1); // quality
+    buf.putInt(0); // sample size
+    buf.putShort((short) 0).putShort((short) 0).putShort((short) width)
+        .putShort((short) height);
+
+    buf.put(fourCC("strf")).putInt(40);
+    buf.putInt(40).putInt(width).putInt(height);
+    buf.putShort((short) 1).putShort((short) 24);
+    buf.put(fourCC("MJPG"));
+    buf.putInt(width * height * 3);
+    buf.putInt(0).putInt(0).putInt(0).putInt(0);
+
+    buf.put(fourCC("LIST")).putInt(0).put(fourCC("movi"));
+    out.seek(0);
+    out.write(buf.array());
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.offscreen.FrameSink#close()
+   */
+  public void close() throws IOException {
+    if (out == null)
+      return;
+    try {
+      if (frames > 0) {
+        out.seek(moviEnd);
+        out.write(fourCC("idx1"));
+        out.write(le(index.position()));
+        out.write(index.array(), 0, index.position());
+        long end = out.getFilePointer();
+
+        patch(RIFF_SIZE_OFFSET, (int) (end - 8));
+        patch(AVIH_FRAMES_OFFSET, frames);
+        patch(AVIH_BUFFER_OFFSET, maxFrameSize);
+        patch(STRH_LENGTH_OFFSET, frames);
+        patch(STRH_BUFFER_OFFSET, maxFrameSize);
+        patch(MOVI_SIZE_OFFSET, (int) (moviEnd - MOVI_START));
+      }
+    } finally {
+      writer.dispose();
+      out.close();
+      out = null;
+    }
+  }
+
+  private void patch(long offset, int val) throws IOException {
+    out.seek(offset);
+    out.write(le(val));
+  }
+
+  private static byte[] le(int val) {
+    return new byte[] { (byte) val, (byte) (val >>> 8), (byte) (val >>> 16), (byte) (val >>> 24) };
+  }
+
+  private static byte[] fourCC(String code) {
+    byte[] bytes = new byte[4];
+    for (int i = 0; i < 4; i++) {
+      bytes[i] = (byte) code.charAt(i);
+    }
+    return bytes;
+  }
+
+  // adapts the random access file so the jpeg buffer can be written
+  // to it without copying
+  private static class RandomAccessFileStream extends java.io.OutputStream {
+
+    private RandomAccessFile file;
+
+    public RandomAccessFileStream(RandomAccessFile file) {
+      this.file = file;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      file.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      file.write(b, off, len);
+    }
+  }
+}
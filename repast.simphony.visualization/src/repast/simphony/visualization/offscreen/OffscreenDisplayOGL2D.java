@@ -0,0 +1,915 @@
+/**
+ *
+ */
+package repast.simphony.visualization.offscreen;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JPanel;
+import javax.swing.JToolBar;
+
+import repast.simphony.engine.environment.RunEnvironment;
+import repast.simphony.engine.schedule.ISchedule;
+import repast.simphony.space.graph.Network;
+import repast.simphony.space.graph.RepastEdge;
+import repast.simphony.space.projection.Projection;
+import repast.simphony.space.projection.ProjectionEvent;
+import repast.simphony.space.projection.ProjectionListener;
+import repast.simphony.valueLayer.ValueLayer;
+import repast.simphony.visualization.AddedRemovedLayoutUpdater;
+import repast.simphony.visualization.Box;
+import repast.simphony.visualization.DisplayData;
+import repast.simphony.visualization.DisplayEditorLifecycle;
+import repast.simphony.visualization.DisplayListener;
+import repast.simphony.visualization.IDisplay;
+import repast.simphony.visualization.IntervalLayoutUpdater;
+import repast.simphony.visualization.Layout;
+import repast.simphony.visualization.LayoutUpdater;
+import repast.simphony.visualization.MovedLayoutUpdater;
+import repast.simphony.visualization.ProbeListener;
+import repast.simphony.visualization.UpdateLayoutUpdater;
+import repast.simphony.visualizationOGL2D.EdgeStyleOGL2D;
+import repast.simphony.visualizationOGL2D.StyleOGL2D;
+import repast.simphony.visualizationOGL2D.ValueLayerStyleOGL;
+import saf.v3d.picking.BoundingSphere;
+import saf.v3d.render.Texture2D;
+import saf.v3d.scene.Position;
+import saf.v3d.scene.VImage2D;
+import saf.v3d.scene.VShape;
+import saf.v3d.scene.VSpatial;
+import simphony.util.messages.MessageCenter;
+
+/**
+ * Display that renders the same styles as DisplayOGL2D into an offscreen
+ * image without opengl or a window, so that snapshots and movies can be made
+ * of batch runs on headless machines.
+ *
+ * The display state is captured on the thread that calls update, that is, the
+ * schedule thread. The captured frame is then rasterized with java2D into a
+ * reusable BufferedImage and passed to a FrameSink on a separate render
+ * thread. Two frames are pooled so that capture of the next frame can proceed
+ * while the previous one is rendered and encoded. If the render thread falls
+ * further behind, update blocks until a frame is free.
+ *
+ * @author Nick Collier
+ */
+public class OffscreenDisplayOGL2D implements IDisplay, ProjectionListener<Object> {
+
+  private static MessageCenter msg = MessageCenter.getMessageCenter(OffscreenDisplayOGL2D.class);
+
+  private static final int FRAME_COUNT = 2;
+
+  // an object displayed by a style layer
+  private static class Agent {
+    VSpatial spatial;
+    float x, y;
+    boolean located;
+  }
+
+  private static class StyleLayer {
+    StyleOGL2D<Object> style;
+    Map<Object, Agent> agents = new LinkedHashMap<Object, Agent>();
+
+    StyleLayer(StyleOGL2D<Object> style) {
+      this.style = style;
+    }
+  }
+
+  private static class ValueLayerEntry {
+    ValueLayer layer;
+    ValueLayerStyleOGL style;
+    int xDim, yDim;
+    int[] origin;
+
+    ValueLayerEntry(ValueLayer layer, ValueLayerStyleOGL style) {
+      this.layer = layer;
+      this.style = style;
+      int[] dims = layer.getDimensions().toIntArray(null);
+      origin = layer.getDimensions().originToIntArray(null);
+      xDim = dims[0];
+      yDim = dims.length > 1 ? dims[1] : 1;
+    }
+  }
+
+  // the captured state of an agent
+  private static class Item {
+    VSpatial spatial;
+    float x, y, rotation, scale;
+    Color color, borderColor;
+    int borderSize;
+    String label;
+    Font labelFont;
+    Color labelColor;
+    Position labelPosition;
+    float labelXOffset, labelYOffset;
+  }
+
+  // the captured state of an edge
+  private static class EdgeItem {
+    float x1, y1, x2, y2, targetRadius;
+    Color color;
+    int width;
+    boolean directed;
+  }
+
+  // the captured state of a value layer
+  private static class CellItem {
+    int xDim, yDim;
+    float cellSize;
+    int[] argb;
+    BufferedImage image;
+  }
+
+  private static class Frame {
+    double tick;
+    float minX, minY, maxX, maxY;
+    List<Item> items = new ArrayList<Item>();
+    int itemCount;
+    List<EdgeItem> edges = new ArrayList<EdgeItem>();
+    int edgeCount;
+    List<CellItem> cells = new ArrayList<CellItem>();
+    int cellCount;
+
+    Item nextItem() {
+      if (itemCount == items.size())
+        items.add(new Item());
+      return items.get(itemCount++);
+    }
+
+    EdgeItem nextEdge() {
+      if (edgeCount == edges.size())
+        edges.add(new EdgeItem());
+      return edges.get(edgeCount++);
+    }
+
+    CellItem nextCells() {
+      if (cellCount == cells.size())
+        cells.add(new CellItem());
+      return cells.get(cellCount++);
+    }
+  }
+
+  private DisplayData<?> displayData;
+  private Layout<?, ?> layout;
+  private LayoutUpdater layoutUpdater;
+  private RecordingShapeFactory2D shapeFactory = new RecordingShapeFactory2D();
+
+  private Map<Class<?>, StyleLayer> classStyleMap = new LinkedHashMap<Class<?>, StyleLayer>();
+  private Map<Network<?>, EdgeStyleOGL2D> networkStyleMap = new LinkedHashMap<Network<?>, EdgeStyleOGL2D>();
+  private Map<ValueLayer, ValueLayerEntry> valueLayerStyleMap = new LinkedHashMap<ValueLayer, ValueLayerEntry>();
+
+  private Color backgroundColor = Color.WHITE;
+  private FrameSink sink;
+  private BufferedImage image;
+  private BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<Frame>(FRAME_COUNT);
+  private ExecutorService renderer;
+  private boolean destroyed = false;
+
+  /**
+   * Creates an OffscreenDisplayOGL2D that renders images of the specified size
+   * and writes them to the specified sink.
+   *
+   * @param data
+   *          the data to display
+   * @param layout
+   *          the layout that locates the displayed objects
+   * @param sink
+   *          the sink to write the rendered frames to
+   * @param width
+   *          the width of the rendered images
+   * @param height
+   *          the height of the rendered images
+   */
+  public OffscreenDisplayOGL2D(DisplayData<?> data, Layout<?, ?> layout, FrameSink sink,
+      int width, int height) {
+    this.displayData = data;
+    this.layout = layout;
+    this.sink = sink;
+    layoutUpdater = new UpdateLayoutUpdater(layout);
+    // RGB rather than ARGB so that the image can be jpeg encoded as is
+    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int i = 0; i < FRAME_COUNT; i++) {
+      freeFrames.add(new Frame());
+    }
+
+    renderer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Offscreen Display Renderer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Gets the image that frames are rendered into. This is only valid on the
+   * render thread, i.e. from within a FrameSink.
+   *
+   * @return the image that frames are rendered into.
+   */
+  public BufferedImage getImage() {
+    return image;
+  }
+
+  /**
+   * Sets the background color of this display.
+   *
+   * @param color
+   *          the new background color
+   */
+  public void setBackgroundColor(Color color) {
+    this.backgroundColor = color;
+  }
+
+  /**
+   * Gets the background color of this display.
+   *
+   * @return the background color.
+   */
+  public Color getBackgroundColor() {
+    return backgroundColor;
+  }
+
+  /**
+   * Register the specified style for the specified class. All objects of that
+   * class will be styled using that style.
+   *
+   * @param clazz
+   *          the class to register the style for
+   * @param style
+   *          the style to register
+   */
+  @SuppressWarnings("unchecked")
+  public void registerStyle(Class<?> clazz, StyleOGL2D<?> style) {
+    style.init(shapeFactory);
+    StyleLayer layer = classStyleMap.get(clazz);
+    if (layer == null) {
+      classStyleMap.put(clazz, new StyleLayer((StyleOGL2D<Object>) style));
+    } else {
+      layer.style = (StyleOGL2D<Object>) style;
+    }
+  }
+
+  /**
+   * Registers the specified style for the specified network.
+   *
+   * @param network
+   *          the network
+   * @param style
+   */
+  public void registerNetworkStyle(Network<?> network, EdgeStyleOGL2D style) {
+    networkStyleMap.put(network, style);
+  }
+
+  /**
+   * Registers the specified style and layer for display.
+   *
+   * @param layer
+   *          the layer to display
+   * @param style
+   *          the styling info for displaying the layer
+   */
+  public void registerValueLayerStyle(ValueLayer layer, ValueLayerStyleOGL style) {
+    style.init(layer);
+    int[] dims = layer.getDimensions().toIntArray(null);
+    if (dims.length > 3 || (dims.length == 3 && dims[2] != 0)) {
+      msg.error("Error while creating display for value error", new IllegalArgumentException(
+          "Value Layers with more than 2 dimensions are unsupported"));
+      return;
+    }
+    valueLayerStyleMap.put(layer, new ValueLayerEntry(layer, style));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#init()
+   */
+  public void init() {
+    for (Projection<?> proj : displayData.getProjections()) {
+      proj.addProjectionListener(this);
+    }
+
+    for (Object obj : displayData.objects()) {
+      addObject(obj);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.space.projection.ProjectionListener#projectionEventOccurred
+   * (repast.simphony.space.projection.ProjectionEvent)
+   */
+  public void projectionEventOccurred(ProjectionEvent<Object> evt) {
+    if (evt.getType() == ProjectionEvent.OBJECT_ADDED) {
+      addObject(evt.getSubject());
+    } else if (evt.getType() == ProjectionEvent.OBJECT_REMOVED) {
+      removeObject(evt.getSubject());
+    } else if (evt.getType() == ProjectionEvent.OBJECT_MOVED) {
+      layoutUpdater.addTriggerCondition(LayoutUpdater.Condition.MOVED);
+    }
+  }
+
+  private void addObject(Object obj) {
+    StyleLayer layer = findLayer(obj);
+    if (layer != null && !layer.agents.containsKey(obj)) {
+      layer.agents.put(obj, new Agent());
+      layoutUpdater.addTriggerCondition(LayoutUpdater.Condition.ADDED);
+    }
+  }
+
+  private void removeObject(Object obj) {
+    StyleLayer layer = findLayer(obj);
+    if (layer != null && layer.agents.remove(obj) != null) {
+      layoutUpdater.addTriggerCondition(LayoutUpdater.Condition.REMOVED);
+    }
+  }
+
+  /**
+   * Finds the layer associated with this object. This will return the layer
+   * explicitly associated with the object. If that is not found then this will
+   * return the first layer associated with the objects parent classes or
+   * interface.
+   *
+   * @param obj
+   *          the object to find the layer for
+   *
+   * @return the layer that best matches the object
+   */
+  private StyleLayer findLayer(Object obj) {
+    Class<?> objClass = obj.getClass();
+    StyleLayer layer = classStyleMap.get(objClass);
+    if (layer == null) {
+      for (Map.Entry<Class<?>, StyleLayer> entry : classStyleMap.entrySet()) {
+        if (entry.getKey().isAssignableFrom(objClass)) {
+          layer = entry.getValue();
+          break;
+        }
+      }
+    }
+    return layer;
+  }
+
+  private Agent findAgent(Object obj) {
+    StyleLayer layer = findLayer(obj);
+    return layer == null ? null : layer.agents.get(obj);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#update()
+   */
+  public void update() {
+    if (destroyed)
+      return;
+    layoutUpdater.update();
+
+    final Frame frame;
+    try {
+      frame = freeFrames.take();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    try {
+      capture(frame);
+    } catch (RuntimeException ex) {
+      freeFrames.add(frame);
+      throw ex;
+    }
+
+    renderer.execute(new Runnable() {
+      public void run() {
+        try {
+          rasterize(frame);
+          sink.writeFrame(image, frame.tick);
+        } catch (Exception ex) {
+          msg.error("Error while rendering offscreen display frame", ex);
+        } finally {
+          freeFrames.add(frame);
+        }
+      }
+    });
+  }
+
+  private void capture(Frame frame) {
+    ISchedule schedule = RunEnvironment.getInstance() == null ? null : RunEnvironment
+        .getInstance().getCurrentSchedule();
+    frame.tick = schedule == null ? 0 : schedule.getTickCount();
+    frame.itemCount = frame.edgeCount = frame.cellCount = 0;
+
+    float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+    float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+
+    for (ValueLayerEntry entry : valueLayerStyleMap.values()) {
+      CellItem cells = frame.nextCells();
+      if (cells.argb == null || cells.xDim != entry.xDim || cells.yDim != entry.yDim) {
+        cells.xDim = entry.xDim;
+        cells.yDim = entry.yDim;
+        cells.argb = new int[entry.xDim * entry.yDim];
+        cells.image = new BufferedImage(entry.xDim, entry.yDim, BufferedImage.TYPE_INT_ARGB);
+      }
+      cells.cellSize = entry.style.getCellSize();
+      for (int y = 0; y < entry.yDim; y++) {
+        // image rows run top down, value layer rows bottom up
+        int row = (entry.yDim - 1 - y) * entry.xDim;
+        for (int x = 0; x < entry.xDim; x++) {
+          Color color = entry.style.getColor(x - entry.origin[0], y - entry.origin[1]);
+          cells.argb[row + x] = color == null ? 0 : color.getRGB();
+        }
+      }
+      minX = Math.min(minX, 0);
+      minY = Math.min(minY, 0);
+      maxX = Math.max(maxX, entry.xDim * cells.cellSize);
+      maxY = Math.max(maxY, entry.yDim * cells.cellSize);
+    }
+
+    boolean updateLocations = layoutUpdater.getUpdateItemsLocation();
+    for (StyleLayer layer : classStyleMap.values()) {
+      StyleOGL2D<Object> style = layer.style;
+      for (Map.Entry<Object, Agent> entry : layer.agents.entrySet()) {
+        Object obj = entry.getKey();
+        Agent agent = entry.getValue();
+        VSpatial spatial = style.getVSpatial(obj, agent.spatial);
+        if (spatial != null)
+          agent.spatial = spatial;
+        if (agent.spatial == null)
+          continue;
+
+        if (updateLocations || !agent.located) {
+          float[] location = layoutUpdater.getLayout().getLocation(obj);
+          agent.x = location[0];
+          agent.y = location[1];
+          agent.located = true;
+        }
+        if (Float.isInfinite(agent.x) || Float.isInfinite(agent.y))
+          continue;
+
+        Item item = frame.nextItem();
+        item.spatial = agent.spatial;
+        item.x = agent.x;
+        item.y = agent.y;
+        item.color = style.getColor(obj);
+        item.rotation = style.getRotation(obj);
+        item.scale = style.getScale(obj);
+        item.borderSize = style.getBorderSize(obj);
+        item.borderColor = item.borderSize > 0 ? style.getBorderColor(obj) : null;
+        item.label = style.getLabel(obj);
+        if (item.label != null && item.label.length() > 0) {
+          item.labelFont = style.getLabelFont(obj);
+          item.labelColor = style.getLabelColor(obj);
+          item.labelPosition = style.getLabelPosition(obj);
+          item.labelXOffset = style.getLabelXOffset(obj);
+          item.labelYOffset = style.getLabelYOffset(obj);
+        } else {
+          item.label = null;
+        }
+
+        float radius = radius(item.spatial) * item.scale;
+        minX = Math.min(minX, item.x - radius);
+        minY = Math.min(minY, item.y - radius);
+        maxX = Math.max(maxX, item.x + radius);
+        maxY = Math.max(maxY, item.y + radius);
+      }
+    }
+
+    for (Map.Entry<Network<?>, EdgeStyleOGL2D> entry : networkStyleMap.entrySet()) {
+      Network<?> net = entry.getKey();
+      EdgeStyleOGL2D style = entry.getValue();
+      boolean directed = net.isDirected();
+      for (RepastEdge<?> edge : net.getEdges()) {
+        Agent source = findAgent(edge.getSource());
+        Agent target = findAgent(edge.getTarget());
+        if (source == null || target == null || !source.located || !target.located)
+          continue;
+        EdgeItem item = frame.nextEdge();
+        item.x1 = source.x;
+        item.y1 = source.y;
+        item.x2 = target.x;
+        item.y2 = target.y;
+        item.targetRadius = target.spatial == null ? 0 : radius(target.spatial);
+        item.color = style.getColor(edge);
+        item.width = style.getLineWidth(edge);
+        item.directed = directed;
+      }
+    }
+
+    Box box = layout.getBoundingBox();
+    if (box != null && box.getWidth() > 0) {
+      frame.minX = box.getLower().x;
+      frame.minY = box.getLower().y;
+      frame.maxX = box.getUpper().x;
+      frame.maxY = box.getUpper().y;
+    } else if (minX <= maxX) {
+      frame.minX = minX;
+      frame.minY = minY;
+      frame.maxX = maxX;
+      frame.maxY = maxY;
+    } else {
+      frame.minX = frame.minY = 0;
+      frame.maxX = frame.maxY = 1;
+    }
+  }
+
+  private static float radius(VSpatial spatial) {
+    BoundingSphere sphere = spatial.getLocalBoundingSphere();
+    return sphere == null ? 0 : sphere.getRadius();
+  }
+
+  // called on the render thread
+  private void rasterize(Frame frame) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+          RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.setColor(backgroundColor);
+      g.fillRect(0, 0, width, height);
+
+      // fit the world bounds into the image, preserving the aspect ratio,
+      // and flip y so that it runs up as it does in the opengl display
+      float worldWidth = Math.max(frame.maxX - frame.minX, Float.MIN_VALUE);
+      float worldHeight = Math.max(frame.maxY - frame.minY, Float.MIN_VALUE);
+      double pixelScale = Math.min(width / worldWidth, height / worldHeight);
+      AffineTransform world = new AffineTransform();
+      world.translate((width - worldWidth * pixelScale) / 2, (height + worldHeight * pixelScale) / 2);
+      world.scale(pixelScale, -pixelScale);
+      world.translate(-frame.minX, -frame.minY);
+
+      drawCells(g, frame, world);
+      drawItems(g, frame, world, pixelScale);
+      drawEdges(g, frame, world, pixelScale);
+      drawLabels(g, frame, world, pixelScale);
+    } finally {
+      g.dispose();
+    }
+  }
+
+  private void drawCells(Graphics2D g, Frame frame, AffineTransform world) {
+    Object interpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+        RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+    for (int i = 0; i < frame.cellCount; i++) {
+      CellItem cells = frame.cells.get(i);
+      cells.image.setRGB(0, 0, cells.xDim, cells.yDim, cells.argb, 0, cells.xDim);
+      Point2D topLeft = world.transform(new Point2D.Float(0, cells.yDim * cells.cellSize), null);
+      Point2D bottomRight = world.transform(new Point2D.Float(cells.xDim * cells.cellSize, 0),
+          null);
+      g.setTransform(new AffineTransform());
+      g.drawImage(cells.image, (int) Math.round(topLeft.getX()), (int) Math.round(topLeft.getY()),
+          (int) Math.round(bottomRight.getX() - topLeft.getX()),
+          (int) Math.round(bottomRight.getY() - topLeft.getY()), null);
+    }
+    if (interpolation != null)
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+  }
+
+  private void drawItems(Graphics2D g, Frame frame, AffineTransform world, double pixelScale) {
+    for (int i = 0; i < frame.itemCount; i++) {
+      Item item = frame.items.get(i);
+      g.setTransform(world);
+      g.translate(item.x, item.y);
+      // rotate2D rotates clockwise
+      g.rotate(-Math.toRadians(item.rotation));
+      g.scale(item.scale, item.scale);
+      float onePixel = (float) (1 / (pixelScale * item.scale));
+
+      List<RecordingShapeFactory2D.ShapePart> parts = RecordingShapeFactory2D
+          .getParts(item.spatial);
+      if (item.spatial instanceof VImage2D) {
+        Texture2D texture = ((VImage2D) item.spatial).getTextureData();
+        BufferedImage img = texture.getImage();
+        float w = texture.getWidth();
+        float h = texture.getHeight();
+        AffineTransform trans = AffineTransform.getScaleInstance(1, -1);
+        trans.translate(-w / 2, -h / 2);
+        trans.scale(w / img.getWidth(), h / img.getHeight());
+        g.drawImage(img, trans, null);
+
+      } else if (parts != null) {
+        g.setStroke(new BasicStroke(onePixel));
+        for (RecordingShapeFactory2D.ShapePart part : parts) {
+          Color color = part.getColor() == null ? item.color : part.getColor();
+          if (color == null)
+            continue;
+          g.setColor(color);
+          if (part.isFill())
+            g.fill(part.getShape());
+          else
+            g.draw(part.getShape());
+        }
+
+        if (item.borderSize > 0 && item.borderColor != null && item.spatial instanceof VShape) {
+          g.setColor(item.borderColor);
+          g.setStroke(new BasicStroke(item.borderSize * onePixel));
+          for (RecordingShapeFactory2D.ShapePart part : parts) {
+            g.draw(part.getShape());
+          }
+        }
+
+      } else if (item.color != null) {
+        // not created by the factory so the best we can do is its bounds
+        float radius = radius(item.spatial);
+        g.setColor(item.color);
+        g.fill(new Ellipse2D.Float(-radius, -radius, radius * 2, radius * 2));
+      }
+    }
+  }
+
+  private void drawEdges(Graphics2D g, Frame frame, AffineTransform world, double pixelScale) {
+    g.setTransform(new AffineTransform());
+    Point2D.Double p1 = new Point2D.Double();
+    Point2D.Double p2 = new Point2D.Double();
+    for (int i = 0; i < frame.edgeCount; i++) {
+      EdgeItem edge = frame.edges.get(i);
+      if (edge.color == null)
+        continue;
+      p1.setLocation(edge.x1, edge.y1);
+      p2.setLocation(edge.x2, edge.y2);
+      world.transform(p1, p1);
+      world.transform(p2, p2);
+      g.setColor(edge.color);
+      g.setStroke(new BasicStroke(Math.max(edge.width, 1)));
+      g.draw(new Line2D.Double(p1, p2));
+
+      if (edge.directed) {
+        double dx = p2.x - p1.x;
+        double dy = p2.y - p1.y;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0)
+          continue;
+        dx /= length;
+        dy /= length;
+        // tip at the edge of the target
+        double back = Math.min(edge.targetRadius * pixelScale, length);
+        double tipX = p2.x - dx * back;
+        double tipY = p2.y - dy * back;
+        double size = 4 + 2 * edge.width;
+        Path2D.Double arrow = new Path2D.Double();
+        arrow.moveTo(tipX, tipY);
+        arrow.lineTo(tipX - dx * size - dy * size / 2, tipY - dy * size + dx * size / 2);
+        arrow.lineTo(tipX - dx * size + dy * size / 2, tipY - dy * size - dx * size / 2);
+        arrow.closePath();
+        g.fill(arrow);
+      }
+    }
+  }
+
+  private void drawLabels(Graphics2D g, Frame frame, AffineTransform world, double pixelScale) {
+    g.setTransform(new AffineTransform());
+    Point2D.Double p = new Point2D.Double();
+    for (int i = 0; i < frame.itemCount; i++) {
+      Item item = frame.items.get(i);
+      if (item.label == null || item.labelFont == null)
+        continue;
+      p.setLocation(item.x, item.y);
+      world.transform(p, p);
+      double radius = radius(item.spatial) * item.scale * pixelScale;
+
+      g.setFont(item.labelFont);
+      FontMetrics metrics = g.getFontMetrics();
+      int textWidth = metrics.stringWidth(item.label);
+      int horizontal = 0, vertical = 0;
+      Position position = item.labelPosition == null ? Position.SOUTH : item.labelPosition;
+      switch (position) {
+      case NORTH:
+        vertical = 1;
+        break;
+      case SOUTH:
+        vertical = -1;
+        break;
+      case EAST:
+        horizontal = 1;
+        break;
+      case WEST:
+        horizontal = -1;
+        break;
+      case NORTH_EAST:
+        horizontal = vertical = 1;
+        break;
+      case NORTH_WEST:
+        horizontal = -1;
+        vertical = 1;
+        break;
+      case SOUTH_EAST:
+        horizontal = 1;
+        vertical = -1;
+        break;
+      case SOUTH_WEST:
+        horizontal = vertical = -1;
+        break;
+      default:
+        break;
+      }
+
+      double x = p.x + item.labelXOffset;
+      if (horizontal == 0)
+        x -= textWidth / 2.0;
+      else if (horizontal > 0)
+        x += radius;
+      else
+        x -= radius + textWidth;
+
+      // label offsets are y up
+      double y = p.y - item.labelYOffset;
+      if (vertical == 0)
+        y += (metrics.getAscent() - metrics.getDescent()) / 2.0;
+      else if (vertical > 0)
+        y -= radius + metrics.getDescent();
+      else
+        y += radius + metrics.getAscent();
+
+      g.setColor(item.labelColor == null ? Color.BLACK : item.labelColor);
+      g.drawString(item.label, (float) x, (float) y);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#destroy()
+   */
+  public void destroy() {
+    if (destroyed)
+      return;
+    destroyed = true;
+    // let the frames that have been captured finish
+    renderer.shutdown();
+    try {
+      if (!renderer.awaitTermination(1, TimeUnit.MINUTES))
+        msg.warn("Timed out waiting for offscreen display frames to be written");
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    try {
+      sink.close();
+    } catch (Exception ex) {
+      msg.error("Error while closing offscreen display output", ex);
+    }
+
+    for (Projection<?> proj : displayData.getProjections()) {
+      proj.removeProjectionListener(this);
+    }
+    displayData = null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#setLayout(repast.simphony.
+   * visualization .Layout)
+   */
+  public void setLayout(Layout<?, ?> layout) {
+    this.layout = layout;
+    layoutUpdater.setLayout(layout);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#getLayout()
+   */
+  public Layout<?, ?> getLayout() {
+    return layout;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.visualization.IDisplay#setLayoutFrequency(repast.simphony
+   * .visualization.IDisplay.LayoutFrequency, int)
+   */
+  public void setLayoutFrequency(LayoutFrequency frequency, int interval) {
+    if (frequency == LayoutFrequency.AT_UPDATE) {
+      layoutUpdater = new UpdateLayoutUpdater(layout);
+    } else if (frequency == LayoutFrequency.AT_INTERVAL) {
+      layoutUpdater = new IntervalLayoutUpdater(layout, interval);
+    } else if (frequency == LayoutFrequency.ON_NEW) {
+      layoutUpdater = new AddedRemovedLayoutUpdater(layout);
+    } else if (frequency == LayoutFrequency.ON_MOVE) {
+      layoutUpdater = new MovedLayoutUpdater(layout);
+    }
+  }
+
+  /**
+   * Frames are rendered as part of update, so this does nothing.
+   */
+  public void render() {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.render.Renderer#setPause(boolean)
+   */
+  public void setPause(boolean pause) {
+  }
+
+  /**
+   * An offscreen display has no panel, so this returns null.
+   *
+   * @return null.
+   */
+  public JPanel getPanel() {
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.visualization.IDisplay#addDisplayListener(repast.simphony
+   * .visualization.DisplayListener)
+   */
+  public void addDisplayListener(DisplayListener listener) {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.visualization.IDisplay#addProbeListener(repast.simphony
+   * .visualization.ProbeListener)
+   */
+  public void addProbeListener(ProbeListener listener) {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.visualization.IDisplay#registerToolBar(javax.swing.JToolBar)
+   */
+  public void registerToolBar(JToolBar bar) {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#createEditor(javax.swing.JPanel)
+   */
+  public DisplayEditorLifecycle createEditor(JPanel panel) {
+    return null;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#iconified()
+   */
+  public void iconified() {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#deIconified()
+   */
+  public void deIconified() {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#closed()
+   */
+  public void closed() {
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.IDisplay#resetHomeView()
+   */
+  public void resetHomeView() {
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package repast.simphony.visualization.offscreen;
+
+import java.io.File;
+import java.io.IOException;
+
+import repast.simphony.engine.environment.RunInfo;
+
+/**
+ * Settings for rendering displays offscreen during batch runs. The settings are
+ * read from system properties so that they can be passed to batch runs on the
+ * command line, for example -Drepast.simphony.offscreen.format=mjpeg.
+ *
+ * <ul>
+ * <li>repast.simphony.offscreen.format: "png" for a sequence of png files, or
+ * "mjpeg" for a motion jpeg avi movie. If this is not set, displays are not
+ * rendered in batch runs.</li>
+ * <li>repast.simphony.offscreen.dir: the directory to write to. Defaults to
+ * "output".</li>
+ * <li>repast.simphony.offscreen.width, repast.simphony.offscreen.height: the
+ * size of the frames in pixels. Default to 800x600.</li>
+ * <li>repast.simphony.offscreen.interval: render a frame every this many
+ * ticks. If this is not set, frames are rendered at the display's own update
+ * schedule.</li>
+ * <li>repast.simphony.offscreen.fps: the frame rate of movies. Defaults to
+ * 10.</li>
+ * <li>repast.simphony.offscreen.quality: the jpeg quality of movies, between 0
+ * and 1. Defaults to 0.8.</li>
+ * </ul>
+ *
+ * @author Nick Collier
+ */
+public class OffscreenSettings {
+
+  public static final String PREFIX = "repast.simphony.offscreen.";
+  public static final String FORMAT = PREFIX + "format";
+  public static final String DIR = PREFIX + "dir";
+  public static final String WIDTH = PREFIX + "width";
+  public static final String HEIGHT = PREFIX + "height";
+  public static final String INTERVAL = PREFIX + "interval";
+  public static final String FPS = PREFIX + "fps";
+  public static final String QUALITY = PREFIX + "quality";
+
+  public enum Format {
+    PNG, MJPEG
+  }
+
+  private Format format;
+  private File dir;
+  private int width, height, fps;
+  private double interval;
+  private float quality;
+
+  public OffscreenSettings(Format format, File dir, int width, int height, double interval,
+      int fps, float quality) {
+    this.format = format;
+    this.dir = dir;
+    this.width = width;
+    this.height = height;
+    this.interval = interval;
+    this.fps = fps;
+    this.quality = quality;
+  }
+
+  /**
+   * Creates OffscreenSettings from the system properties.
+   *
+   * @return the created settings, or null if offscreen rendering has not been
+   *         turned on.
+   * @throws IllegalArgumentException
+   *           if the properties are invalid
+   */
+  public static OffscreenSettings fromSystemProperties() {
+    String formatProp = System.getProperty(FORMAT);
+    if (formatProp == null || formatProp.trim().length() == 0)
+      return null;
+
+    Format format;
+    try {
+      format = Format.valueOf(formatProp.trim().toUpperCase());
+    } catch (IllegalArgumentException ex) {
+      throw new IllegalArgumentException("Invalid " + FORMAT + " '" + formatProp
+          + "', expected png or mjpeg");
+    }
+
+    try {
+      return new OffscreenSettings(format, new File(System.getProperty(DIR, "output")),
+          Integer.parseInt(System.getProperty(WIDTH, "800")), Integer.parseInt(System
+              .getProperty(HEIGHT, "600")), Double.parseDouble(System.getProperty(INTERVAL, "0")),
+          Integer.parseInt(System.getProperty(FPS, "10")), Float.parseFloat(System.getProperty(
+              QUALITY, "0.8")));
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid " + PREFIX + "* property", ex);
+    }
+  }
+
+  public Format getFormat() {
+    return format;
+  }
+
+  public File getDir() {
+    return dir;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Gets the tick interval at which frames are rendered.
+   *
+   * @return the tick interval at which frames are rendered. A value less than
+   *         or equal to 0 means that the display's own schedule is used.
+   */
+  public double getInterval() {
+    return interval;
+  }
+
+  public int getFps() {
+    return fps;
+  }
+
+  public float getQuality() {
+    return quality;
+  }
+
+  /**
+   * Creates the sink for the named display in the specified run. Each display
+   * and run gets its own movie file or png directory, named after the display,
+   * the batch number and the run number.
+   *
+   * @param displayName
+   *          the name of the display
+   * @param info
+   *          the run info of the current run
+   * @return the created sink
+   * @throws IOException
+   *           if the output cannot be created
+   */
+  public FrameSink createSink(String displayName, RunInfo info) throws IOException {
+    String name = displayName.replaceAll("[^A-Za-z0-9_.-]", "_") + "_" + info.getBatchNumber()
+        + "_" + info.getRunNumber();
+    if (format == Format.MJPEG)
+      return new MJPEGSink(new File(dir, name + ".avi"), fps, quality);
+    return new PNGSequenceSink(new File(dir, name), "frame");
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ *
+ */
+package repast.simphony.visualization.offscreen;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * FrameSink that writes each frame to its own numbered png file, for example
+ * frame_000001.png, frame_000002.png and so on.
+ *
+ * @author Nick Collier
+ */
+public class PNGSequenceSink implements FrameSink {
+
+  private File dir;
+  private String prefix;
+  private int frame = 0;
+
+  /**
+   * Creates a PNGSequenceSink that writes its files into the specified
+   * directory, creating it if necessary.
+   *
+   * @param dir
+   *          the directory to write the files to
+   * @param prefix
+   *          the file name prefix
+   * @throws IOException
+   *           if the directory cannot be created
+   */
+  public PNGSequenceSink(File dir, String prefix) throws IOException {
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Unable to create frame directory '" + dir + "'");
+    this.dir = dir;
+    this.prefix = prefix;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see
+   * repast.simphony.visualization.offscreen.FrameSink#writeFrame(java.awt.image
+   * .BufferedImage, double)
+   */
+  public void writeFrame(BufferedImage image, double tick) throws IOException {
+    File file = new File(dir, String.format("%s_%06d.png", prefix, ++frame));
+    if (!ImageIO.write(image, "png", file))
+      throw new IOException("No png writer available");
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see repast.simphony.visualization.offscreen.FrameSink#close()
+   */
+  public void close() throws IOException {
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package repast.simphony.visualization.offscreen;
+
+import java.awt.Color;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import saf.v3d.NamedShapeCreator;
+import saf.v3d.ShapeFactory2D;
+import saf.v3d.scene.VShape;
+import saf.v3d.scene.VSpatial;
+
+/**
+ * ShapeFactory2D that records the java2D geometry of the shapes it creates on
+ * the created VSpatials, so that they can be drawn without opengl. The
+ * geometry is stored as a list of {@link ShapePart}s under the
+ * {@link #PARTS_KEY} property. Images created by the factory need no recording
+ * as their texture keeps the image.
+ *
+ * @author Nick Collier
+ */
+public class RecordingShapeFactory2D extends ShapeFactory2D {
+
+  public static final String PARTS_KEY = "RecordingShapeFactory2D.PARTS_KEY";
+
+  /**
+   * A java2D shape together with how to draw it. A null color means that the
+   * shape takes the color of the style.
+   */
+  public static class ShapePart {
+
+    private Shape shape;
+    private Color color;
+    private boolean fill;
+
+    public ShapePart(Shape shape, Color color, boolean fill) {
+      this.shape = shape;
+      this.color = color;
+      this.fill = fill;
+    }
+
+    public Shape getShape() {
+      return shape;
+    }
+
+    public Color getColor() {
+      return color;
+    }
+
+    public boolean isFill() {
+      return fill;
+    }
+  }
+
+  private Map<String, List<ShapePart>> namedParts = new HashMap<String, List<ShapePart>>();
+
+  /**
+   * Gets the recorded geometry of the specified spatial.
+   *
+   * @param spatial
+   * @return the recorded geometry of the specified spatial, or null if none
+   *         has been recorded.
+   */
+  @SuppressWarnings("unchecked")
+  public static List<ShapePart> getParts(VSpatial spatial) {
+    return (List<ShapePart>) spatial.getProperty(PARTS_KEY);
+  }
+
+  private static <T extends VSpatial> T record(T spatial, Shape shape) {
+    List<ShapePart> parts = new ArrayList<ShapePart>(1);
+    parts.add(new ShapePart(shape, null, true));
+    spatial.putProperty(PARTS_KEY, parts);
+    return spatial;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see saf.v3d.ShapeFactory2D#createCircle(float, int, boolean)
+   */
+  @Override
+  public VShape createCircle(float radius, int slices, boolean gradient) {
+    return record(super.createCircle(radius, slices, gradient), new Ellipse2D.Float(-radius,
+        -radius, radius * 2, radius * 2));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see saf.v3d.ShapeFactory2D#createRectangle(int, int, boolean)
+   */
+  @Override
+  public VShape createRectangle(int width, int height, boolean gradient) {
+    return record(super.createRectangle(width, height, gradient), new Rectangle2D.Float(
+        -width / 2f, -height / 2f, width, height));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see saf.v3d.ShapeFactory2D#createShape(java.awt.Shape)
+   */
+  @Override
+  public VShape createShape(Shape shape) {
+    return record(super.createShape(shape), shape);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see saf.v3d.ShapeFactory2D#createShape(java.awt.Shape, boolean)
+   */
+  @Override
+  public VShape createShape(Shape shape, boolean gradient) {
+    return record(super.createShape(shape, gradient), shape);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see saf.v3d.ShapeFactory2D#createNamedShape(java.lang.String)
+   */
+  @Override
+  public NamedShapeCreator createNamedShape(final String name) {
+    final NamedShapeCreator creator = super.createNamedShape(name);
+    final List<ShapePart> parts = new ArrayList<ShapePart>();
+    return new NamedShapeCreator() {
+      public void addShape(Shape shape, Color color, boolean gradient) {
+        creator.addShape(shape, color, gradient);
+        parts.add(new ShapePart(shape, color, true));
+      }
+
+      public void addLine(Shape shape, Color color, boolean gradient) {
+        creator.addLine(shape, color, gradient);
+        parts.add(new ShapePart(shape, color, false));
+      }
+
+      public void registerShape() {
+        creator.registerShape();
+        synchronized (namedParts) {
+          namedParts.put(name, parts);
+        }
+      }
+    };
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see saf.v3d.ShapeFactory2D#getNamedSpatial(java.lang.String)
+   */
+  @Override
+  public VSpatial getNamedSpatial(String name) {
+    VSpatial spatial = super.getNamedSpatial(name);
+    if (spatial != null) {
+      List<ShapePart> parts;
+      synchronized (namedParts) {
+        parts = namedParts.get(name);
+      }
+      if (parts != null)
+        spatial.putProperty(PARTS_KEY, parts);
+    }
+    return spatial;
+  }
+}
@@ -11,6 +11,7 @@ import org.piccolo2d.PLayer;
 import org.piccolo2d.nodes.PImage;
 
 import repast.simphony.valueLayer.ValueLayer;
+import repast.simphony.visualization.DirtyTileRefresher;
 import repast.simphony.visualization.visualization2D.style.ValueLayerStyle;
 
 /**
@@ -28,6 +29,29 @@ public class ValueDisplayLayer2D extends PLayer{
 	private int xOffset, yOffset;
 
 	private int[] data;
+	
+	private ValueLayer valueLayer;
+	private DirtyTileRefresher refresher;
+	
+	private DirtyTileRefresher.CellPainter painter = new DirtyTileRefresher.CellPainter() {
+		public void paint(int x, int y) {
+			int i = y * xDim + x;
+			x -= xOffset;
+			y -= yOffset;
+			Color color = (Color)style.getPaint(x,y);
+
+			if (color != null)
+				data[i] = color.getRGB();
+			else{
+				int a = 255                 << 24; // alpha
+				int r = style.getRed(x,y)   << 16; // red
+				int b = style.getGreen(x,y) << 8;  // green
+				int g = style.getBlue(x,y);        // blue
+
+				data[i] = a + r + g + b;
+			}
+		}
+	};
 
 	public void addDataLayer(ValueLayer layer){
 		int[] dims = layer.getDimensions().toIntArray(null);
@@ -51,10 +75,14 @@ public class ValueDisplayLayer2D extends PLayer{
 
 	public void setStyle(ValueLayerStyle style){
 		this.style = style;
+		if (valueLayer != null)
+			refresher = new DirtyTileRefresher(valueLayer, style, xDim, yDim);
 	}
 
 	public void init(ValueLayer layer){
 		addDataLayer(layer);
+		valueLayer = layer;
+		refresher = new DirtyTileRefresher(layer, style, xDim, yDim);
 
 		float cellSize = style.getCellSize();
 
@@ -76,27 +104,13 @@ public class ValueDisplayLayer2D extends PLayer{
 		this.addChild(node);
 	}
 
+	/**
+	 * Repaints the cells whose values have changed since the last update. See
+	 * {@link DirtyTileRefresher}.
+	 */
 	public void applyUpdates(){
-		int i = 0;
-		Color color;
-		for (int y=-yOffset; y<yDim-yOffset; y++){
-			for (int x=-xOffset; x<xDim-xOffset; x++){  			 	
-				color = (Color)style.getPaint(x,y);
-
-				if (color != null)
-					data[i] = color.getRGB();
-				else{
-					int a = 255                 << 24; // alpha
-					int r = style.getRed(x,y)   << 16; // red
-					int b = style.getGreen(x,y) << 8;  // green
-					int g = style.getBlue(x,y);        // blue
-
-					data[i] = a + r + g + b;
-				}
-				i++;
-			}
-		}  		
-		repaint();
+		if (refresher.refresh(painter))
+			repaint();
 	}
 
 	public PImage getNode() {
@@ -7,18 +7,26 @@ import java.awt.Color;
 
 import org.jogamp.vecmath.Color3f;
 
+import repast.simphony.visualization.DirtyTileRefresher;
 import saf.v3d.grid.GridColorMap;
 import saf.v3d.util.Utils3D;
 
 /**
- * Adapts a ValueLayerStyle to a saf uil grid color map.
+ * Adapts a ValueLayerStyle to a saf uil grid color map. The adapter can cache
+ * the colors of the cells so that the grid mesh can be recolored without
+ * calling the style for cells that have not changed. The cached colors are
+ * updated by using the adapter as the painter of a {@link DirtyTileRefresher}.
  * 
  * @author Nick Collier
  */
-public class ColorMapStyleAdapter implements GridColorMap {
+public class ColorMapStyleAdapter implements GridColorMap, DirtyTileRefresher.CellPainter {
   
   private ValueLayerStyleOGL style;
   private int[] origin;
+  
+  // cached cell colors in x major order, null if not caching
+  private Color[] colors;
+  private int yDim;
 
   /**
    * @param style the style value layer style
@@ -29,15 +37,41 @@ public class ColorMapStyleAdapter implements GridColorMap {
     this.style = style;
     this.origin = origin;
   }
-
+  
+  /**
+   * Creates a ColorMapStyleAdapter that caches the colors of the cells.
+   * 
+   * @param style the style value layer style
+   * @param origin the origin coordinate of the value layer
+   * @param xDim the size of the x dimension of the value layer
+   * @param yDim the size of the y dimension of the value layer
+   */
+  public ColorMapStyleAdapter(ValueLayerStyleOGL style, int[] origin, int xDim, int yDim) {
+    this(style, origin);
+    this.yDim = yDim;
+    colors = new Color[xDim * yDim];
+  }
+  
+  /**
+   * Updates the cached color of the specified cell from the style.
+   * 
+   * @param x the x location of the cell counted from the origin of the layer
+   * @param y the y location of the cell counted from the origin of the layer
+   */
+  public void paint(int x, int y) {
+    colors[x * yDim + y] = style.getColor(x - origin[0], y - origin[1]);
+  }
 
   /* (non-Javadoc)
    * @see saf.v3d.GridColorMap#getColor(int, int)
    */
   public void getColor(int x, int y, Color3f color) {
-    int tx = x - origin[0];
-    int ty = y - origin[1];
-    Color c = style.getColor(tx, ty);
+    Color c;
+    if (colors == null) {
+      c = style.getColor(x - origin[0], y - origin[1]);
+    } else {
+      c = colors[x * yDim + y];
+    }
     Utils3D.updateColor(color, c);
   }
 }
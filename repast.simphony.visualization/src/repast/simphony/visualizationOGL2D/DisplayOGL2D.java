@@ -14,6 +14,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 
 import com.jogamp.opengl.GLAutoDrawable;
@@ -53,6 +54,14 @@ import simphony.util.messages.MessageCenter;
 /**
  * 2D display that uses jogl for rendering.
  * 
+ * By default, the display's layers are updated on the simulation thread while
+ * holding the render lock, so a slow repaint slows the model. If the display
+ * is asynchronous, update only captures a snapshot of the style values and
+ * locations of the displayed objects and publishes it. The display thread
+ * applies the latest published snapshot when it renders a frame, and any
+ * snapshots published in the meantime are skipped. Value layers and network
+ * edges are still read on the display thread when a frame is rendered.
+ * 
  * @author Nick Collier
  */
 public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, PickListener, ChangeListener {
@@ -62,12 +71,34 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 		System.setProperty("sun.awt.noerasebackground", "true");
 	}
 
+	/**
+	 * System property that makes the displays created from display descriptors
+	 * asynchronous when set to true.
+	 */
+	public static final String ASYNC_PROPERTY = "repast.simphony.display.async";
+
+	// the snapshots of the style layers, one StyleBuffer per layer
+	private static class Snapshot {
+		List<StyledDisplayLayerOGL2D.StyleBuffer> buffers = new ArrayList<StyledDisplayLayerOGL2D.StyleBuffer>();
+		volatile boolean fresh = false;
+	}
+
 	protected Runnable updater = new Runnable() {
 		public void run() {
+			if (async)
+				applySnapshot();
 			canvas.update();
 		}
 	};
 
+	protected boolean async = false;
+	// the layers in snapshot order
+	private List<StyledDisplayLayerOGL2D> snapshotLayers;
+	// triple buffer: the simulation thread captures into back, the display
+	// thread applies front and they are swapped through latest
+	private Snapshot back, front;
+	private AtomicReference<Snapshot> latest;
+
 	protected JPanel panel;
 	protected Layout<?, ?> layout;
 	protected Canvas2D canvas;
@@ -123,6 +154,13 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 	 * @see repast.simphony.visualization.IDisplay#init()
 	 */
 	public void init() {
+		if (async) {
+			snapshotLayers = new ArrayList<StyledDisplayLayerOGL2D>(classStyleMap.values());
+			back = createSnapshot();
+			front = createSnapshot();
+			latest = new AtomicReference<Snapshot>(createSnapshot());
+		}
+
 		boolean decoAdded = false;
 		for (Projection<?> proj : displayData.getProjections()) {
 			proj.addProjectionListener(this);
@@ -140,6 +178,34 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 		}
 	}
 
+	private Snapshot createSnapshot() {
+		Snapshot snapshot = new Snapshot();
+		for (int i = 0; i < snapshotLayers.size(); i++) {
+			snapshot.buffers.add(new StyledDisplayLayerOGL2D.StyleBuffer());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Sets whether or not this display is asynchronous. This must be called
+	 * before init.
+	 * 
+	 * @param async
+	 *          true if the display should be asynchronous, otherwise false
+	 */
+	public void setAsynchronous(boolean async) {
+		this.async = async;
+	}
+
+	/**
+	 * Gets whether or not this display is asynchronous.
+	 * 
+	 * @return true if this display is asynchronous, otherwise false.
+	 */
+	public boolean isAsynchronous() {
+		return async;
+	}
+
 	/**
 	 * Sets the background color of this display.
 	 * 
@@ -179,6 +245,12 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 	protected void addObject(Object o) {
 		StyledDisplayLayerOGL2D layer = findLayer(o);
 		if (layer != null) {
+			if (async) {
+				// the layer's pending objects belong to the simulation thread
+				layer.addObject(o);
+				layoutUpdater.addTriggerCondition(LayoutUpdater.Condition.ADDED);
+				return;
+			}
 			Lock lock = canvas.getRenderLock();
 			try {
 				lock.lock();
@@ -200,6 +272,11 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 	protected void removeObject(Object o) {
 		StyledDisplayLayerOGL2D layer = findLayer(o);
 		if (layer != null) {
+			if (async) {
+				layer.removeObject(o);
+				layoutUpdater.addTriggerCondition(LayoutUpdater.Condition.REMOVED);
+				return;
+			}
 			Lock lock = canvas.getRenderLock();
 			try {
 				lock.lock();
@@ -392,6 +469,10 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 	public void update() {
 		if (glInitialized && !iconified) {
 			layoutUpdater.update();
+			if (async) {
+				publishSnapshot();
+				return;
+			}
 			try {
 				canvas.getRenderLock().lock();
 
@@ -413,6 +494,46 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 		}
 	}
 
+	// captures the style layers and publishes them for the display
+	// thread, called on the simulation thread
+	private void publishSnapshot() {
+		for (int i = 0; i < snapshotLayers.size(); i++) {
+			snapshotLayers.get(i).captureSnapshot(layoutUpdater, back.buffers.get(i));
+		}
+		back.fresh = true;
+		// if the previous snapshot hasn't been applied, we get it
+		// back here and it is skipped
+		back = latest.getAndSet(back);
+		doRender = true;
+	}
+
+	// applies the latest published snapshot if it hasn't already been
+	// applied, called on the display thread
+	private void applySnapshot() {
+		if (!latest.get().fresh)
+			return;
+		front.fresh = false;
+		front = latest.getAndSet(front);
+
+		Lock lock = canvas.getRenderLock();
+		try {
+			lock.lock();
+			for (ValueLayerDisplayLayer layer : valueLayerStyleMap.values()) {
+				layer.update();
+			}
+
+			for (int i = 0; i < snapshotLayers.size(); i++) {
+				snapshotLayers.get(i).applySnapshot(front.buffers.get(i));
+			}
+
+			for (NetworkLayerOGL2D layer : networkStyleMap.values()) {
+				layer.update(layoutUpdater);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -424,8 +545,12 @@ public class DisplayOGL2D extends AbstractDisplay implements CanvasListener, Pic
 			if (ts - lastRenderTS > FRAME_UPDATE_INTERVAL) {
 				ThreadUtilities.runInEventThread(updater);
 				lastRenderTS = ts;
+				doRender = false;
+			} else if (!async) {
+				doRender = false;
 			}
-			doRender = false;
+			// when asynchronous, a skipped frame is rendered on the next
+			// call so that the latest snapshot is eventually shown
 		}
 	}
 
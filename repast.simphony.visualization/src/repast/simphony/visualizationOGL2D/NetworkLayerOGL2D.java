@@ -3,6 +3,9 @@
  */
 package repast.simphony.visualizationOGL2D;
 
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.locks.Lock;
 
 import repast.simphony.space.graph.Network;
@@ -25,6 +28,9 @@ public class NetworkLayerOGL2D extends AbstractDisplayLayerOGL2D<EdgeStyleOGL2D>
 
   private boolean isDirected;
   private DisplayOGL2D display;
+  // edge events waiting for the display thread when the display
+  // is asynchronous
+  private Queue<ProjectionEvent> pendingEvents = new ConcurrentLinkedQueue<ProjectionEvent>();
 
   public NetworkLayerOGL2D(Network<?> network, EdgeStyleOGL2D style, VLayer layer,
       DisplayOGL2D display) {
@@ -48,7 +54,13 @@ public class NetworkLayerOGL2D extends AbstractDisplayLayerOGL2D<EdgeStyleOGL2D>
    * (repast.simphony.space.projection.ProjectionEvent)
    */
   public void projectionEventOccurred(ProjectionEvent evt) {
-    if (evt.getType() == ProjectionEvent.EDGE_ADDED) {
+    if (display.isAsynchronous()) {
+      // don't wait for the display thread, the events
+      // are processed on the next update
+      if (evt.getType() == ProjectionEvent.EDGE_ADDED
+          || evt.getType() == ProjectionEvent.EDGE_REMOVED)
+        pendingEvents.add(evt);
+    } else if (evt.getType() == ProjectionEvent.EDGE_ADDED) {
       Lock lock = display.getRenderLock();
       try {
         lock.lock();
@@ -82,6 +94,14 @@ public class NetworkLayerOGL2D extends AbstractDisplayLayerOGL2D<EdgeStyleOGL2D>
   // Note the updater is not actually used here
   @Override
   public void update(LayoutUpdater updater) {
+    ProjectionEvent evt;
+    while ((evt = pendingEvents.poll()) != null) {
+      if (evt.getType() == ProjectionEvent.EDGE_ADDED)
+        addObject(evt.getSubject());
+      else
+        removeObject(evt.getSubject());
+    }
+
     for (Object obj : toBeRemoved) {
       VEdge2D item = (VEdge2D) objMap.remove(obj);
       layer.removeChild(item);
@@ -98,20 +118,17 @@ public class NetworkLayerOGL2D extends AbstractDisplayLayerOGL2D<EdgeStyleOGL2D>
 
     // create VSpatials for the objs to add,
     // style, update the location of them.
-    for (Object obj : toBeAdded) {
+    for (Iterator<Object> iter = toBeAdded.iterator(); iter.hasNext();) {
+      Object obj = iter.next();
       RepastEdge rEdge = (RepastEdge) obj;
       VSpatial source = display.getSpatialForObject(rEdge.getSource());
       VSpatial target = display.getSpatialForObject(rEdge.getTarget());
       
-      if (source == null) {
-    	  System.out.println("NULL SOURCE: " + rEdge.getSource().hashCode());
-    	  System.exit(0);
-      }
-      
-      if (target == null) {
-    	  System.out.println("NULL TARGET: " + rEdge.getTarget().hashCode());
-    	  System.exit(0);
-      }
+      // an asynchronous display may not have applied the snapshot
+      // with the edge's nodes yet, so try again on the next update
+      if (source == null || target == null)
+        continue;
+      iter.remove();
       
       VEdge2D edge = new VEdge2D(source, target, isDirected);
       edge.putProperty(MODEL_OBJECT_KEY, obj);
@@ -119,7 +136,6 @@ public class NetworkLayerOGL2D extends AbstractDisplayLayerOGL2D<EdgeStyleOGL2D>
       applyStyle(rEdge, edge);
       layer.addChild(edge);
     }
-    toBeAdded.clear();
 
   }
 
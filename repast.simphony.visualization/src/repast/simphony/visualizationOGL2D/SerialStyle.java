@@ -0,0 +1,27 @@
+/**
+ *
+ */
+package repast.simphony.visualizationOGL2D;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a StyleOGL2D as not thread safe. By default, the style values, other
+ * than the VSpatials, of the agents in large display layers are evaluated in
+ * parallel. Styles annotated with SerialStyle are always evaluated one agent
+ * at a time on the display update thread. Styles whose methods read or write
+ * shared mutable state, for example a shared random number stream or a cache
+ * in a plain HashMap, should be annotated with this.
+ *
+ * @author Nick Collier
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Target({ ElementType.TYPE })
+public @interface SerialStyle {
+
+}
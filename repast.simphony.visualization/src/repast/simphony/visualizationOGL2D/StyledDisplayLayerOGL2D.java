@@ -6,11 +6,18 @@ package repast.simphony.visualizationOGL2D;
 import java.awt.Color;
 import java.awt.Font;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import repast.simphony.visualization.LayoutUpdater;
 import saf.v3d.AppearanceFactory;
 import saf.v3d.scene.Label;
+import saf.v3d.scene.Position;
 import saf.v3d.scene.TextureLayer;
 import saf.v3d.scene.TextureRenderable;
 import saf.v3d.scene.VLabelLayer;
@@ -21,6 +28,23 @@ import saf.v3d.scene.VSpatial;
 /**
  * OGL2D display layer that compbines a style with VSpatial objects.
  * 
+ * Existing objects are updated in two phases. First the style values of every
+ * object are evaluated into a flat per layer buffer. In layers of
+ * PARALLEL_THRESHOLD or more objects the value getters, such as getColor and
+ * getLabel, are called in parallel on the common fork join pool, unless the
+ * style is annotated with {@link SerialStyle} or parallel evaluation has been
+ * turned off with {@link #setParallel(boolean)}. getVSpatial, which may build
+ * or modify the objects' VSpatials, is always called serially.
+ * The buffered values are then applied to the scene graph serially, together
+ * with the locations, as layouts are not thread safe.
+ * 
+ * When the display is asynchronous, the two phases run on different threads.
+ * The simulation thread captures the style values and locations of all the
+ * objects in the layer into a StyleBuffer with
+ * {@link #captureSnapshot(LayoutUpdater, StyleBuffer)}, and the display thread
+ * later makes the scene graph match a captured buffer with
+ * {@link #applySnapshot(StyleBuffer)}.
+ * 
  * @author Nick Collier
  */
 @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -29,9 +53,129 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
   private static class LabelEntry {
     public Font font;
     public Label label;
+    // the last snapshot the object was in, when asynchronous
+    public int generation;
+  }
+
+  // an object in the layer as seen by the simulation thread
+  // when asynchronous
+  private static class Member {
+    VSpatial spatial;
+    float x, y;
+    boolean located;
+  }
+
+  /**
+   * The minimum number of objects in a layer for the style values to be
+   * evaluated in parallel.
+   */
+  public static final int PARALLEL_THRESHOLD = 2000;
+
+  // the number of objects evaluated by a single task
+  private static final int CHUNK_SIZE = 256;
+
+  /**
+   * Flat buffer of the style values of the objects in a layer, indexed in the
+   * same order as the objects.
+   */
+  static class StyleBuffer {
+    int size;
+    SpatialWrapper[] items = new SpatialWrapper[0];
+    Object[] objs;
+    // the spatial passed to the style and the one it returns
+    VSpatial[] current;
+    VSpatial[] spatials;
+    Color[] colors;
+    float[] scales;
+    float[] rotations;
+    int[] borderSizes;
+    Color[] borderColors;
+    String[] labels;
+    Font[] labelFonts;
+    Color[] labelColors;
+    Position[] labelPositions;
+    // x, y pairs
+    float[] labelOffsets;
+    // x, y pairs, only used by snapshots
+    float[] locations;
+
+    void reset(int size) {
+      this.size = size;
+      if (items.length < size) {
+        int capacity = Math.max(size, items.length + (items.length >> 1));
+        items = new SpatialWrapper[capacity];
+        objs = new Object[capacity];
+        current = new VSpatial[capacity];
+        spatials = new VSpatial[capacity];
+        colors = new Color[capacity];
+        scales = new float[capacity];
+        rotations = new float[capacity];
+        borderSizes = new int[capacity];
+        borderColors = new Color[capacity];
+        labels = new String[capacity];
+        labelFonts = new Font[capacity];
+        labelColors = new Color[capacity];
+        labelPositions = new Position[capacity];
+        labelOffsets = new float[capacity * 2];
+        locations = new float[capacity * 2];
+      }
+    }
+
+    // releases the references so that removed agents
+    // are not kept alive by the buffer
+    void clear() {
+      if (size == 0)
+        return;
+      Arrays.fill(items, 0, size, null);
+      Arrays.fill(objs, 0, size, null);
+      Arrays.fill(current, 0, size, null);
+      Arrays.fill(spatials, 0, size, null);
+      Arrays.fill(colors, 0, size, null);
+      Arrays.fill(borderColors, 0, size, null);
+      Arrays.fill(labels, 0, size, null);
+      Arrays.fill(labelFonts, 0, size, null);
+      Arrays.fill(labelColors, 0, size, null);
+      Arrays.fill(labelPositions, 0, size, null);
+      size = 0;
+    }
+  }
+
+  // evaluates the style values, other than the VSpatials, of a range of
+  // the buffer's objects
+  private class EvaluateTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private StyleBuffer buf;
+    private int start, end;
+
+    public EvaluateTask(StyleBuffer buf, int start, int end) {
+      this.buf = buf;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= CHUNK_SIZE) {
+        for (int i = start; i < end; i++) {
+          evaluateValues(buf, i);
+        }
+      } else {
+        int mid = (start + end) >>> 1;
+        invokeAll(new EvaluateTask(buf, start, mid), new EvaluateTask(buf, mid, end));
+      }
+    }
   }
 
   private TextureLayer textureLayer = new TextureLayer();
+  private StyleBuffer buffer = new StyleBuffer();
+
+  // the objects in the layer as seen by the simulation thread when
+  // asynchronous
+  private Map<Object, Member> members = new LinkedHashMap<Object, Member>();
+  private int generation = 0;
+  private boolean parallel = true;
 
   private List<SpatialWrapper> textureToRemove = new ArrayList<SpatialWrapper>();
   private List<SpatialWrapper> textureToAdd = new ArrayList<SpatialWrapper>();
@@ -43,6 +187,86 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
     layer.getParent().addChild(textureLayer);
   }
 
+  /**
+   * Sets whether or not the style values of large layers can be evaluated in
+   * parallel. This is true by default. Styles annotated with SerialStyle are
+   * never evaluated in parallel.
+   * 
+   * @param parallel
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * Gets whether or not the style values of large layers can be evaluated in
+   * parallel.
+   * 
+   * @return whether or not the style values of large layers can be evaluated
+   *         in parallel.
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  private boolean evaluateInParallel(int size) {
+    return parallel && size >= PARALLEL_THRESHOLD
+        && ForkJoinPool.getCommonPoolParallelism() > 1
+        && !style.getClass().isAnnotationPresent(SerialStyle.class);
+  }
+
+  // evaluates the VSpatial and the other style values of the object at the
+  // specified index into the buffer
+  private void evaluate(StyleBuffer buf, int i, boolean evalSpatial) {
+    buf.spatials[i] = evalSpatial ? style.getVSpatial(buf.objs[i], buf.current[i]) : null;
+    evaluateValues(buf, i);
+  }
+
+  // evaluates the style values, other than the VSpatial, of the object at the
+  // specified index into the buffer. This may be called from multiple
+  // threads, each with a different index, so it must not touch the scene
+  // graph.
+  private void evaluateValues(StyleBuffer buf, int i) {
+    Object obj = buf.objs[i];
+    buf.colors[i] = style.getColor(obj);
+    buf.scales[i] = style.getScale(obj);
+    buf.rotations[i] = style.getRotation(obj);
+    int borderSize = style.getBorderSize(obj);
+    buf.borderSizes[i] = borderSize;
+    buf.borderColors[i] = borderSize > 0 ? style.getBorderColor(obj) : null;
+
+    String label = style.getLabel(obj);
+    Font font = null;
+    if (label != null && !label.equals("")) {
+      font = style.getLabelFont(obj);
+      if (font != null) {
+        buf.labelColors[i] = style.getLabelColor(obj);
+        buf.labelPositions[i] = style.getLabelPosition(obj);
+        buf.labelOffsets[i * 2] = style.getLabelXOffset(obj);
+        buf.labelOffsets[i * 2 + 1] = style.getLabelYOffset(obj);
+      }
+    }
+    buf.labels[i] = label;
+    buf.labelFonts[i] = font;
+  }
+
+  // evaluates the style values of all the objects in the buffer
+  private void evaluateAll(StyleBuffer buf, boolean evalSpatial) {
+    int size = buf.size;
+    if (evaluateInParallel(size)) {
+      // getVSpatial may create or modify the VSpatials, so only the plain
+      // value getters are called in parallel
+      for (int i = 0; i < size; i++) {
+        buf.spatials[i] = evalSpatial ? style.getVSpatial(buf.objs[i], buf.current[i]) : null;
+      }
+      ForkJoinPool.commonPool().invoke(new EvaluateTask(buf, 0, size));
+    } else {
+      for (int i = 0; i < size; i++) {
+        evaluate(buf, i, evalSpatial);
+      }
+    }
+  }
+
   private VLabelLayer getLabelLayer(Font font, boolean antialias) {
     VLabelLayer labelLayer = labelLayers.get(font);
     if (labelLayer == null) {
@@ -53,24 +277,26 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
     return labelLayer;
   }
 
-  private void applyStyle(Object obj, SpatialWrapper wrapper) {
-    Color paint = style.getColor(obj);
+  // applies the buffered style values at the specified index
+  private void applyStyle(StyleBuffer buf, int i) {
+    SpatialWrapper wrapper = buf.items[i];
+    Color paint = buf.colors[i];
     VSpatial item = wrapper.getChild();
     if (paint != null)
       item.setAppearance(AppearanceFactory.createColorAppearance(paint));
-    item.scale(style.getScale(obj));
-    item.rotate2D(style.getRotation(obj));
-    int borderSize = style.getBorderSize(obj);
+    item.scale(buf.scales[i]);
+    item.rotate2D(buf.rotations[i]);
+    int borderSize = buf.borderSizes[i];
     // TODO borders on compound figures
     if (borderSize > 0 && item instanceof VShape) {
       ((VShape) item).setBorderStrokeSize(borderSize);
-      ((VShape) item).setBorderColor(style.getBorderColor(obj));
+      ((VShape) item).setBorderColor(buf.borderColors[i]);
     }
 
     LabelEntry entry = (LabelEntry) wrapper.getProperty(LABEL_KEY);
-    String label = style.getLabel(obj);
+    String label = buf.labels[i];
     if (label != null && !label.equals("")) {
-      Font font = style.getLabelFont(obj);
+      Font font = buf.labelFonts[i];
       if (font != null) {
         if (entry.label == null) {
           // create new label
@@ -80,10 +306,10 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
           labelLayer.addLabel(entry.label);
         }
 
-        entry.label.setColor(style.getLabelColor(obj));
-        entry.label.setPosition(style.getLabelPosition(obj));
+        entry.label.setColor(buf.labelColors[i]);
+        entry.label.setPosition(buf.labelPositions[i]);
         entry.label.setText(label);
-        entry.label.setOffset(style.getLabelXOffset(obj), style.getLabelYOffset(obj));
+        entry.label.setOffset(buf.labelOffsets[i * 2], buf.labelOffsets[i * 2 + 1]);
 
         if (!entry.font.equals(font)) {
           // font was updated so need to move it to a new label layer
@@ -107,16 +333,16 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
    * appropriately. Otherwise, this returns null meaning the same VSpatial
    * instance was returned from the style.
    * 
-   * @param obj
    * @param wrapper
+   * @param newSpatial
+   *          the VSpatial returned by the style
    * @return A new VSpatial instance in which case this returns that new
    *         instance and updates the objMap appropriately. Otherwise, this
    *         returns null meaning the same VSpatial instance was returned from
    *         the style.
    */
-  private void updateSpatial(Object obj, SpatialWrapper wrapper) {
+  private void updateSpatial(SpatialWrapper wrapper, VSpatial newSpatial) {
     VSpatial spatial = wrapper.getChild();
-    VSpatial newSpatial = style.getVSpatial(obj, spatial);
     // != comparison is intentional here
     if (newSpatial != null && newSpatial != spatial) {
       // System.out.printf("obj: %s, STR: %s, NSTR: %s%n", obj, (spatial
@@ -156,31 +382,62 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
     for (Object obj : toBeRemoved) {
       SpatialWrapper item = (SpatialWrapper) objMap.remove(obj);
       if (item != null) {
-        if (item.getChild() instanceof TextureRenderable)
-          textureLayer.removeChild(item);
-        else
-          layer.removeChild(item);
-        LabelEntry entry = (LabelEntry) item.getProperty(LABEL_KEY);
-        if (entry.label != null) {
-          getLabelLayer(entry.font, true).removeLabel(entry.label);
-        }
+        removeItem(item);
       }
 
     }
     toBeRemoved.clear();
   }
 
+  private void removeItem(SpatialWrapper item) {
+    if (item.getChild() instanceof TextureRenderable)
+      textureLayer.removeChild(item);
+    else
+      layer.removeChild(item);
+    LabelEntry entry = (LabelEntry) item.getProperty(LABEL_KEY);
+    if (entry.label != null) {
+      getLabelLayer(entry.font, true).removeLabel(entry.label);
+    }
+  }
+
   private void updateExistingSpatials(LayoutUpdater updater) {
-    // style, update the location of the existing nodes
+    buffer.reset(layer.getChildCount() + textureLayer.getChildCount());
+    int i = 0;
     for (VSpatial item : layer.children()) {
-      updateSpatial((SpatialWrapper) item, updater);
+      buffer.items[i++] = (SpatialWrapper) item;
     }
-
-    // style, update the location of the existing nodes
     for (VSpatial item : textureLayer.children()) {
-      updateSpatial((SpatialWrapper) item, updater);
+      buffer.items[i++] = (SpatialWrapper) item;
     }
+    for (i = 0; i < buffer.size; i++) {
+      buffer.objs[i] = buffer.items[i].getProperty(MODEL_OBJECT_KEY);
+      buffer.current[i] = buffer.items[i].getChild();
+    }
+
+    try {
+      // evaluate the style values, possibly in parallel
+      evaluateAll(buffer, true);
+
+      // style, update the location of the existing nodes
+      boolean updateLocation = updater.getUpdateItemsLocation();
+      for (i = 0; i < buffer.size; i++) {
+        SpatialWrapper wrapper = buffer.items[i];
+        updateSpatial(wrapper, buffer.spatials[i]);
+        applyStyle(buffer, i);
+        if (updateLocation) {
+          float[] location = updater.getLayout().getLocation(buffer.objs[i]);
+          wrapper.getChild().translate(location[0], location[1], 0);
+        }
+      }
+    } finally {
+      buffer.clear();
+    }
+    moveChangedSpatials();
+  }
 
+  // moves the wrappers whose style returned a new spatial between the
+  // texture layer and the layer as necessary
+  private void moveChangedSpatials() {
     // order is important here -- remove must come before add
     for (SpatialWrapper item : textureToRemove) {
       textureLayer.removeChild(item);
@@ -207,38 +464,154 @@ public class StyledDisplayLayerOGL2D extends AbstractDisplayLayerOGL2D<StyleOGL2
     layerToRemove.clear();
   }
 
-  private void updateSpatial(SpatialWrapper wrapper, LayoutUpdater updater) {
-    Object obj = wrapper.getProperty(MODEL_OBJECT_KEY);
-    updateSpatial(obj, wrapper);
-    applyStyle(obj, wrapper);
-    if (updater.getUpdateItemsLocation()) {
-      float[] location = updater.getLayout().getLocation(obj);
-      wrapper.getChild().translate(location[0], location[1], 0);
-    }
-
-  }
-
   /**
    * Adds the objects to the display that are tagged as added.
    */
   private void processAdded(LayoutUpdater updater) {
     // create VSpatials for the objs to add,
     // style, update the location of them.
+    buffer.reset(toBeAdded.size());
+    int i = 0;
     for (Object obj : toBeAdded) {
       SpatialWrapper wrapper = createSpatial(obj);
       wrapper.putProperty(LABEL_KEY, new LabelEntry());
-      applyStyle(obj, wrapper);
-      VSpatial item = wrapper.getChild();
-      float[] location = updater.getLayout().getLocation(obj);
-      item.translate(location[0], location[1], 0);
-      if (item instanceof TextureRenderable)
-        textureLayer.addChild(wrapper);
-      else
-        layer.addChild(wrapper);
+      buffer.objs[i] = obj;
+      buffer.items[i++] = wrapper;
+    }
+
+    try {
+      // the VSpatials were just created so only the
+      // other style values need to be evaluated
+      evaluateAll(buffer, false);
+      for (i = 0; i < buffer.size; i++) {
+        SpatialWrapper wrapper = buffer.items[i];
+        applyStyle(buffer, i);
+        VSpatial item = wrapper.getChild();
+        float[] location = updater.getLayout().getLocation(buffer.objs[i]);
+        item.translate(location[0], location[1], 0);
+        if (item instanceof TextureRenderable)
+          textureLayer.addChild(wrapper);
+        else
+          layer.addChild(wrapper);
+      }
+    } finally {
+      buffer.clear();
     }
     toBeAdded.clear();
   }
 
+  /**
+   * Captures the style values and locations of all the objects in this layer
+   * into the specified buffer. This is called on the simulation thread when
+   * the display is asynchronous, and the objects added to and removed from
+   * the layer are only tracked here. The captured buffer can then be applied on
+   * the display thread with {@link #applySnapshot(StyleBuffer)}.
+   * 
+   * @param updater
+   * @param buf
+   *          the buffer to capture into
+   */
+  void captureSnapshot(LayoutUpdater updater, StyleBuffer buf) {
+    for (Object obj : toBeRemoved) {
+      members.remove(obj);
+    }
+    toBeRemoved.clear();
+
+    for (Object obj : toBeAdded) {
+      if (!members.containsKey(obj)) {
+        Member member = new Member();
+        member.spatial = style.getVSpatial(obj, null);
+        members.put(obj, member);
+      }
+    }
+    toBeAdded.clear();
+
+    buf.reset(members.size());
+    int i = 0;
+    for (Map.Entry<Object, Member> entry : members.entrySet()) {
+      buf.objs[i] = entry.getKey();
+      buf.current[i++] = entry.getValue().spatial;
+    }
+
+    // evaluate the style values, possibly in parallel
+    evaluateAll(buf, true);
+
+    boolean updateLocation = updater.getUpdateItemsLocation();
+    i = 0;
+    for (Member member : members.values()) {
+      if (buf.spatials[i] != null)
+        member.spatial = buf.spatials[i];
+      else
+        buf.spatials[i] = member.spatial;
+      // null out so the buffer doesn't hold on to spatials
+      // the style has replaced
+      buf.current[i] = null;
+
+      if (updateLocation || !member.located) {
+        float[] location = updater.getLayout().getLocation(buf.objs[i]);
+        member.x = location[0];
+        member.y = location[1];
+        member.located = true;
+      }
+      buf.locations[i * 2] = member.x;
+      buf.locations[i * 2 + 1] = member.y;
+      i++;
+    }
+  }
+
+  /**
+   * Updates the scene graph to match the specified captured buffer: objects
+   * in the buffer but not in the scene graph are added, objects in the scene
+   * graph but not in the buffer are removed and the buffered style values and
+   * locations are applied to the rest. This is called on the display thread
+   * when the display is asynchronous. The buffer is cleared afterwards.
+   * 
+   * @param buf
+   *          the captured buffer
+   */
+  void applySnapshot(StyleBuffer buf) {
+    generation++;
+    try {
+      for (int i = 0; i < buf.size; i++) {
+        Object obj = buf.objs[i];
+        SpatialWrapper wrapper = (SpatialWrapper) objMap.get(obj);
+        boolean added = wrapper == null;
+        if (added) {
+          wrapper = new SpatialWrapper(buf.spatials[i]);
+          objMap.put(obj, wrapper);
+          wrapper.putProperty(MODEL_OBJECT_KEY, obj);
+          wrapper.putProperty(LABEL_KEY, new LabelEntry());
+        } else {
+          updateSpatial(wrapper, buf.spatials[i]);
+        }
+
+        buf.items[i] = wrapper;
+        applyStyle(buf, i);
+        ((LabelEntry) wrapper.getProperty(LABEL_KEY)).generation = generation;
+        VSpatial item = wrapper.getChild();
+        item.translate(buf.locations[i * 2], buf.locations[i * 2 + 1], 0);
+        if (added) {
+          if (item instanceof TextureRenderable)
+            textureLayer.addChild(wrapper);
+          else
+            layer.addChild(wrapper);
+        }
+      }
+    } finally {
+      buf.clear();
+    }
+    moveChangedSpatials();
+
+    // remove the objects that were not in the snapshot
+    for (Iterator<VSpatial> iter = objMap.values().iterator(); iter.hasNext();) {
+      SpatialWrapper item = (SpatialWrapper) iter.next();
+      if (((LabelEntry) item.getProperty(LABEL_KEY)).generation != generation) {
+        iter.remove();
+        removeItem(item);
+      }
+    }
+  }
+
   /**
    * Updates the displayed nodes by applying styles etc. The display is not
    * updated to reflect these changes.
@@ -5,13 +5,16 @@ package repast.simphony.visualizationOGL2D;
 
 import repast.simphony.ui.probe.ValueLayerProbeObject2D;
 import repast.simphony.valueLayer.ValueLayer;
+import repast.simphony.visualization.DirtyTileRefresher;
 import saf.v3d.grid.GridMesh;
 import saf.v3d.grid.VGridShape;
 import saf.v3d.scene.VLayer;
 import simphony.util.messages.MessageCenter;
 
 /**
- * DisplayLayer for displaying value layers.
+ * DisplayLayer for displaying value layers. The colors of the cells are cached
+ * and, on update, only the colors of changed cells are recomputed when the
+ * style allows it. See {@link DirtyTileRefresher}.
  * 
  * @author Nick Collier
  */
@@ -26,6 +29,8 @@ public class ValueLayerDisplayLayer {
   private int xDim, yDim;
   private int[] origin;
   private VGridShape shape;
+  private ColorMapStyleAdapter colorMap;
+  private DirtyTileRefresher refresher;
   
   public ValueLayerDisplayLayer(ValueLayer valueLayer, ValueLayerStyleOGL style, VLayer layer) {
     this.layer = layer;
@@ -54,7 +59,10 @@ public class ValueLayerDisplayLayer {
     yDim = dims[1];
     
     // mesh is in rows x cols so ydim is first
-    GridMesh grid = new GridMesh(yDim, xDim, style.getCellSize(), new ColorMapStyleAdapter(style, origin));
+    colorMap = new ColorMapStyleAdapter(style, origin, xDim, yDim);
+    refresher = new DirtyTileRefresher(valueLayer, style, xDim, yDim);
+    refresher.refresh(colorMap);
+    GridMesh grid = new GridMesh(yDim, xDim, style.getCellSize(), colorMap);
     shape = new VGridShape(grid, AbstractDisplayLayerOGL2D.MODEL_OBJECT_KEY);
     shape.putProperty(VALUE_LAYER_KEY, this);
     // offset half cell size so that object can appear in center of value layer cell
@@ -64,7 +72,9 @@ public class ValueLayerDisplayLayer {
   }
   
   public void update() {
-    shape.update();
+    if (refresher.refresh(colorMap)) {
+      shape.update();
+    }
   }
 
   /**